@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package perf;
+
+import java.util.Random;
+
+import org.eclipse.draw2d.graph.DirectedGraph;
+import org.eclipse.draw2d.graph.DirectedGraphLayout;
+import org.eclipse.draw2d.graph.Edge;
+import org.eclipse.draw2d.graph.Node;
+
+/**
+ * Measures the time taken by DirectedGraphLayout to lay out generated directed
+ * acyclic graphs of 1k, 10k and 50k nodes. Each graph is a random spanning
+ * tree, which keeps it connected, plus half as many random forward edges.
+ * Other sizes may be given as arguments.
+ */
+public class DirectedGraphLayoutBenchmark {
+
+public static void main(String[] args) {
+	int sizes[] = {1000, 10000, 50000};
+	if (args.length > 0) {
+		sizes = new int[args.length];
+		for (int i = 0; i < args.length; i++)
+			sizes[i] = Integer.parseInt(args[i]);
+	}
+	for (int i = 0; i < sizes.length; i++) {
+		DirectedGraph graph = createGraph(sizes[i], new Random(sizes[i]));
+		long start = System.currentTimeMillis();
+		new DirectedGraphLayout().visit(graph);
+		long millis = System.currentTimeMillis() - start;
+		System.out.println(sizes[i] + " nodes, " + graph.edges.size() //$NON-NLS-1$
+			+ " edges: " + millis + " ms, " + graph.ranks.size() //$NON-NLS-1$ //$NON-NLS-2$
+			+ " ranks, size " + graph.getLayoutSize()); //$NON-NLS-1$
+	}
+}
+
+private static DirectedGraph createGraph(int size, Random random) {
+	DirectedGraph graph = new DirectedGraph();
+	Node nodes[] = new Node[size];
+	for (int i = 0; i < size; i++) {
+		nodes[i] = new Node(new Integer(i));
+		nodes[i].width = 20 + random.nextInt(60);
+		nodes[i].height = 20 + random.nextInt(20);
+		graph.nodes.add(nodes[i]);
+	}
+	for (int i = 1; i < size; i++) {
+		// Parents are chosen among recent nodes, so the graph has many ranks
+		int parent = i - 1 - random.nextInt(Math.min(i, 50));
+		graph.edges.add(new Edge(nodes[parent], nodes[i]));
+	}
+	for (int i = 0; i < size / 2; i++) {
+		int source = random.nextInt(size - 1);
+		int target = source + 1
+			+ random.nextInt(Math.min(size - source - 1, 100));
+		graph.edges.add(new Edge(nodes[source], nodes[target]));
+	}
+	return graph;
+}
+
+}
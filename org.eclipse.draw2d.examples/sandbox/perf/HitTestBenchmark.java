@@ -0,0 +1,67 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package perf;
+
+import java.util.Random;
+
+import org.eclipse.draw2d.Figure;
+import org.eclipse.draw2d.FreeformLayer;
+import org.eclipse.draw2d.geometry.Rectangle;
+
+/**
+ * Compares the latency of findFigureAt on a FreeformLayer with and without an
+ * index of its children, at 1k, 10k and 100k children.
+ */
+public class HitTestBenchmark {
+
+private static final int QUERIES = 20000;
+
+public static void main(String[] args) {
+	int sizes[] = new int[] {1000, 10000, 100000};
+	for (int i = 0; i < sizes.length; i++) {
+		FreeformLayer plain = createLayer(sizes[i], false);
+		FreeformLayer indexed = createLayer(sizes[i], true);
+		// warm up
+		run(plain, QUERIES / 10);
+		run(indexed, QUERIES / 10);
+		long linear = run(plain, QUERIES);
+		long grid = run(indexed, QUERIES);
+		System.out.println(sizes[i] + " children, " + QUERIES
+			+ " hits: linear " + linear + " ms, indexed "
+			+ grid + " ms");
+	}
+}
+
+private static FreeformLayer createLayer(int count, boolean index) {
+	FreeformLayer layer = new FreeformLayer();
+	int side = (int)Math.sqrt(count) * 60;
+	layer.setBounds(new Rectangle(0, 0, side, side));
+	layer.setChildrenIndexed(index);
+	Random random = new Random(1);
+	for (int i = 0; i < count; i++) {
+		Figure figure = new Figure();
+		figure.setBounds(new Rectangle(random.nextInt(side), random.nextInt(side),
+			40 + random.nextInt(40), 20 + random.nextInt(20)));
+		layer.add(figure);
+	}
+	return layer;
+}
+
+private static long run(FreeformLayer layer, int queries) {
+	Random random = new Random(2);
+	int side = layer.getBounds().width;
+	long start = System.currentTimeMillis();
+	for (int i = 0; i < queries; i++)
+		layer.findFigureAt(random.nextInt(side), random.nextInt(side));
+	return System.currentTimeMillis() - start;
+}
+
+}
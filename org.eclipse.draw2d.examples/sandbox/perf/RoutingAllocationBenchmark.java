@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package perf;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.draw2d.AbsoluteBendpoint;
+import org.eclipse.draw2d.BendpointConnectionRouter;
+import org.eclipse.draw2d.ChopboxAnchor;
+import org.eclipse.draw2d.ConnectionRouter;
+import org.eclipse.draw2d.EllipseAnchor;
+import org.eclipse.draw2d.Figure;
+import org.eclipse.draw2d.FreeformLayer;
+import org.eclipse.draw2d.ManhattanConnectionRouter;
+import org.eclipse.draw2d.PolylineConnection;
+import org.eclipse.draw2d.geometry.Rectangle;
+
+/**
+ * Measures the bytes allocated and the time taken per routed connection by
+ * BendpointConnectionRouter and ManhattanConnectionRouter, by laying out 50k
+ * connections between randomly placed figures. Allocations are read from the
+ * HotSpot thread MXBean when the VM provides it.
+ */
+public class RoutingAllocationBenchmark {
+
+private static final int CONNECTIONS = 50000;
+private static final int ROUNDS = 5;
+
+public static void main(String[] args) throws Exception {
+	run("bendpoint", new BendpointConnectionRouter(), true);
+	run("manhattan", new ManhattanConnectionRouter(), false);
+}
+
+private static void run(String name, ConnectionRouter router,
+		boolean bendpoints) throws Exception {
+	List connections = createConnections(router, bendpoints);
+	layout(connections); // warm up
+	long bytes = allocatedBytes();
+	long start = System.currentTimeMillis();
+	for (int i = 0; i < ROUNDS; i++)
+		layout(connections);
+	long millis = System.currentTimeMillis() - start;
+	bytes = allocatedBytes() - bytes;
+	int routed = CONNECTIONS * ROUNDS;
+	System.out.println(name + ": " + (millis * 1000000L / routed)
+		+ " ns/connection, "
+		+ (bytes < 0 ? "n/a" : String.valueOf(bytes / routed))
+		+ " bytes/connection");
+}
+
+private static List createConnections(ConnectionRouter router,
+		boolean bendpoints) {
+	FreeformLayer layer = new FreeformLayer();
+	layer.setBounds(new Rectangle(0, 0, 20000, 20000));
+	Random random = new Random(1);
+	Figure nodes[] = new Figure[CONNECTIONS / 5];
+	for (int i = 0; i < nodes.length; i++) {
+		nodes[i] = new Figure();
+		nodes[i].setBounds(new Rectangle(random.nextInt(19900),
+			random.nextInt(19900), 40 + random.nextInt(60), 30));
+		layer.add(nodes[i]);
+	}
+	List connections = new ArrayList();
+	for (int i = 0; i < CONNECTIONS; i++) {
+		PolylineConnection conn = new PolylineConnection();
+		Figure source = nodes[random.nextInt(nodes.length)];
+		Figure target = nodes[random.nextInt(nodes.length)];
+		conn.setSourceAnchor(new ChopboxAnchor(source));
+		if (i % 2 == 0)
+			conn.setTargetAnchor(new ChopboxAnchor(target));
+		else
+			conn.setTargetAnchor(new EllipseAnchor(target));
+		conn.setConnectionRouter(router);
+		if (bendpoints) {
+			List constraint = new ArrayList();
+			constraint.add(new AbsoluteBendpoint(random.nextInt(20000),
+				random.nextInt(20000)));
+			router.setConstraint(conn, constraint);
+		}
+		layer.add(conn);
+		connections.add(conn);
+	}
+	return connections;
+}
+
+private static void layout(List connections) {
+	for (int i = 0; i < connections.size(); i++) {
+		PolylineConnection conn = (PolylineConnection)connections.get(i);
+		conn.getConnectionRouter().invalidate(conn);
+		conn.layout();
+	}
+}
+
+/**
+ * Returns the bytes allocated so far by the current thread, or -1 if the VM
+ * does not report them.
+ */
+private static long allocatedBytes() {
+	try {
+		Object bean = Class.forName("java.lang.management.ManagementFactory") //$NON-NLS-1$
+			.getMethod("getThreadMXBean", new Class[0]).invoke(null, new Object[0]); //$NON-NLS-1$
+		Method method = Class.forName("com.sun.management.ThreadMXBean") //$NON-NLS-1$
+			.getMethod("getThreadAllocatedBytes", new Class[] {long.class}); //$NON-NLS-1$
+		Object id = Thread.class.getMethod("getId", new Class[0]) //$NON-NLS-1$
+			.invoke(Thread.currentThread(), new Object[0]);
+		return ((Long)method.invoke(bean, new Object[] {id})).longValue();
+	} catch (Exception e) {
+		return -1;
+	}
+}
+
+}
@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package perf;
+
+import java.util.Random;
+
+import org.eclipse.draw2d.geometry.Rectangle;
+import org.eclipse.draw2d.graph.Path;
+import org.eclipse.draw2d.graph.ShortestPathRouter;
+
+/**
+ * Measures the time taken by ShortestPathRouter to re-route a diagram while
+ * one of its nodes is dragged a few pixels at a time, as happens on every frame
+ * of an interactive drag. Prints the time of the initial solve, and the time,
+ * searched paths and obstacle tests of each frame on average. The number of
+ * search threads may be given as the first argument.
+ */
+public class ShortestPathDragBenchmark {
+
+private static final int NODES = 500;
+private static final int PATHS = 500;
+private static final int FRAMES = 50;
+
+public static void main(String[] args) {
+	Random random = new Random(1);
+	ShortestPathRouter router = new ShortestPathRouter();
+	if (args.length > 0)
+		router.setThreadCount(Integer.parseInt(args[0]));
+	int side = (int)Math.sqrt(NODES) * 160;
+	Rectangle nodes[] = new Rectangle[NODES];
+	for (int i = 0; i < NODES; i++) {
+		nodes[i] = new Rectangle(random.nextInt(side), random.nextInt(side),
+			40 + random.nextInt(80), 20 + random.nextInt(50));
+		router.addObstacle(nodes[i]);
+	}
+	for (int i = 0; i < PATHS; i++)
+		router.addPath(new Path(nodes[random.nextInt(NODES)].getCenter(),
+			nodes[random.nextInt(NODES)].getCenter()));
+
+	long start = System.currentTimeMillis();
+	router.solve();
+	System.out.println("initial solve: " //$NON-NLS-1$
+		+ (System.currentTimeMillis() - start) + " ms"); //$NON-NLS-1$
+
+	int dragged = random.nextInt(NODES);
+	long solved = 0, tests = 0;
+	start = System.currentTimeMillis();
+	for (int i = 0; i < FRAMES; i++) {
+		Rectangle bounds = nodes[dragged].getTranslated(5, 3);
+		router.updateObstacle(nodes[dragged], bounds);
+		nodes[dragged] = bounds;
+		router.solve();
+		solved += router.getSolvedPathCount();
+		tests += router.getObstacleTestCount();
+	}
+	long millis = System.currentTimeMillis() - start;
+	System.out.println("drag: " + (millis / FRAMES) + " ms/frame, " //$NON-NLS-1$ //$NON-NLS-2$
+		+ (solved / FRAMES) + " paths searched/frame, " //$NON-NLS-1$
+		+ (tests / FRAMES) + " obstacle tests/frame"); //$NON-NLS-1$
+}
+
+}
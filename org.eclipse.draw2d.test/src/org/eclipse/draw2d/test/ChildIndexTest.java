@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.draw2d.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.eclipse.draw2d.Figure;
+import org.eclipse.draw2d.FreeformLayer;
+import org.eclipse.draw2d.Graphics;
+import org.eclipse.draw2d.IFigure;
+import org.eclipse.draw2d.SWTGraphics;
+import org.eclipse.draw2d.geometry.Rectangle;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.widgets.Display;
+
+public class ChildIndexTest extends TestCase {
+
+	private FreeformLayer indexed;
+	private FreeformLayer plain;
+	private List painted = new ArrayList();
+
+	private class PaintRecorder extends Figure {
+		protected void paintFigure(Graphics graphics) {
+			painted.add(new Integer(getParent().getChildren().indexOf(this)));
+		}
+	}
+
+	protected void setUp() throws Exception {
+		indexed = new FreeformLayer();
+		plain = new FreeformLayer();
+		indexed.setBounds(new Rectangle(-3000, -3000, 6000, 6000));
+		plain.setBounds(new Rectangle(-3000, -3000, 6000, 6000));
+		indexed.setChildrenIndexed(true);
+		Random random = new Random(7);
+		for (int i = 0; i < 500; i++) {
+			Rectangle r = new Rectangle(random.nextInt(4000) - 2000,
+					random.nextInt(4000) - 2000, random.nextInt(300),
+					random.nextInt(300));
+			indexed.add(createChild(r));
+			plain.add(createChild(r));
+		}
+	}
+
+	private Figure createChild(Rectangle r) {
+		Figure figure = new PaintRecorder();
+		figure.setBounds(r);
+		return figure;
+	}
+
+	private void assertSameHits() {
+		Random random = new Random(11);
+		for (int i = 0; i < 2000; i++) {
+			int x = random.nextInt(4600) - 2300;
+			int y = random.nextInt(4600) - 2300;
+			assertEquals(plain.getChildren().indexOf(plain.findFigureAt(x, y)),
+					indexed.getChildren().indexOf(indexed.findFigureAt(x, y)));
+			assertEquals(
+					plain.getChildren().indexOf(
+							plain.findMouseEventTargetAt(x, y)),
+					indexed.getChildren().indexOf(
+							indexed.findMouseEventTargetAt(x, y)));
+		}
+	}
+
+	public void testHitsMatchLinearSearch() {
+		assertSameHits();
+	}
+
+	public void testBoundsChanges() {
+		for (int i = 0; i < 500; i += 3) {
+			Rectangle r = ((IFigure) plain.getChildren().get(i)).getBounds()
+					.getTranslated(1500, -700);
+			((IFigure) plain.getChildren().get(i)).setBounds(r);
+			((IFigure) indexed.getChildren().get(i)).setBounds(r);
+		}
+		assertSameHits();
+	}
+
+	public void testInsertAndRemove() {
+		Random random = new Random(3);
+		for (int i = 0; i < 100; i++) {
+			int index = random.nextInt(plain.getChildren().size());
+			plain.remove((IFigure) plain.getChildren().get(index));
+			indexed.remove((IFigure) indexed.getChildren().get(index));
+		}
+		for (int i = 0; i < 100; i++) {
+			int index = random.nextInt(plain.getChildren().size());
+			Rectangle r = new Rectangle(random.nextInt(4000) - 2000,
+					random.nextInt(4000) - 2000, 200, 200);
+			plain.add(createChild(r), index);
+			indexed.add(createChild(r), index);
+		}
+		assertSameHits();
+	}
+
+	public void testExclusion() {
+		IFigure child = (IFigure) indexed.getChildren().get(0);
+		Rectangle r = child.getBounds();
+		IFigure found = indexed.findFigureAtExcluding(r.x + 1, r.y + 1,
+				Collections.singleton(child));
+		assertNotSame(child, found);
+	}
+
+	private List paint(IFigure layer, Rectangle clip) {
+		painted.clear();
+		Image image = new Image(Display.getDefault(), 100, 100);
+		GC gc = new GC(image);
+		SWTGraphics graphics = new SWTGraphics(gc);
+		graphics.translate(-clip.x, -clip.y);
+		graphics.clipRect(clip);
+		layer.paint(graphics);
+		graphics.dispose();
+		gc.dispose();
+		image.dispose();
+		return new ArrayList(painted);
+	}
+
+	public void testIndexedPainting() {
+		indexed.setIndexedPainting(true);
+		assertTrue(indexed.isChildrenIndexed());
+		Random random = new Random(5);
+		for (int i = 0; i < 50; i++) {
+			Rectangle clip = new Rectangle(random.nextInt(4000) - 2000,
+					random.nextInt(4000) - 2000, 100, 100);
+			assertEquals(paint(plain, clip), paint(indexed, clip));
+		}
+	}
+
+	public void testDisableIndex() {
+		indexed.setChildrenIndexed(false);
+		assertFalse(indexed.isChildrenIndexed());
+		assertSameHits();
+	}
+
+}
@@ -0,0 +1,234 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.draw2d.test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.eclipse.draw2d.DeferredUpdateManager;
+import org.eclipse.draw2d.Figure;
+import org.eclipse.draw2d.Graphics;
+import org.eclipse.draw2d.GraphicsSource;
+import org.eclipse.draw2d.IFigure;
+import org.eclipse.draw2d.RegionUpdateListener;
+import org.eclipse.draw2d.UpdateListener;
+import org.eclipse.draw2d.UpdateManager;
+import org.eclipse.draw2d.Viewport;
+import org.eclipse.draw2d.XYLayout;
+import org.eclipse.draw2d.geometry.Rectangle;
+
+public class DeferredUpdateManagerTest extends TestCase {
+
+	private DeferredUpdateManager manager;
+	private Figure root;
+	private List painted = new ArrayList();
+	private Rectangle[] regions;
+	private Rectangle union;
+	private Map dirty;
+	private int layouts;
+
+	protected void setUp() throws Exception {
+		manager = new DeferredUpdateManager() {
+			protected void sendUpdateRequest() {
+			}
+		};
+		manager.setGraphicsSource(new GraphicsSource() {
+			public Graphics getGraphics(Rectangle region) {
+				painted.add(region.getCopy());
+				return null;
+			}
+
+			public void flushGraphics(Rectangle region) {
+			}
+		});
+		root = new Figure() {
+			public UpdateManager getUpdateManager() {
+				return manager;
+			}
+		};
+		root.setBounds(new Rectangle(0, 0, 1000, 1000));
+		manager.setRoot(root);
+		manager.performUpdate();
+		painted.clear();
+		manager.addUpdateListener(new RegionUpdateListener() {
+			public void notifyPainting(Rectangle[] damage, Map dirtyRegions) {
+				regions = damage;
+			}
+
+			public void notifyPainting(Rectangle damage, Map dirtyRegions) {
+				fail();
+			}
+
+			public void notifyValidating() {
+			}
+		});
+		manager.addUpdateListener(new UpdateListener() {
+			public void notifyPainting(Rectangle damage, Map dirtyRegions) {
+				union = damage;
+				dirty = new HashMap();
+				Iterator figures = dirtyRegions.keySet().iterator();
+				while (figures.hasNext()) {
+					Object figure = figures.next();
+					dirty.put(figure,
+							((Rectangle) dirtyRegions.get(figure)).getCopy());
+				}
+			}
+
+			public void notifyValidating() {
+			}
+		});
+	}
+
+	private void addChild(int x, int y, int w, int h) {
+		Figure child = new Figure();
+		child.setBounds(new Rectangle(x, y, w, h));
+		root.add(child);
+	}
+
+	public void testDistantRegionsPaintedSeparately() {
+		addChild(0, 0, 10, 10);
+		addChild(990, 990, 10, 10);
+		manager.performUpdate();
+		assertEquals(2, regions.length);
+		assertEquals(2, painted.size());
+		assertTrue(painted.contains(new Rectangle(0, 0, 10, 10)));
+		assertTrue(painted.contains(new Rectangle(990, 990, 10, 10)));
+		assertEquals(new Rectangle(0, 0, 1000, 1000), union);
+	}
+
+	public void testOverlappingRegionsMerged() {
+		addChild(0, 0, 100, 100);
+		addChild(50, 50, 100, 100);
+		manager.performUpdate();
+		assertEquals(1, regions.length);
+		assertEquals(new Rectangle(0, 0, 150, 150), regions[0]);
+	}
+
+	public void testAdjacentRegionsMerged() {
+		addChild(0, 0, 100, 100);
+		addChild(100, 0, 100, 100);
+		manager.performUpdate();
+		assertEquals(1, regions.length);
+		assertEquals(new Rectangle(0, 0, 200, 100), regions[0]);
+	}
+
+	public void testRegionCountBounded() {
+		manager.setMaxDamageRegions(3);
+		for (int i = 0; i < 10; i++)
+			addChild(i * 100, i * 100, 5, 5);
+		manager.performUpdate();
+		assertEquals(3, regions.length);
+		assertEquals(3, painted.size());
+		for (int i = 0; i < regions.length; i++)
+			for (int j = i + 1; j < regions.length; j++)
+				assertFalse(regions[i].intersects(regions[j]));
+	}
+
+	private Figure addValidationRoot(IFigure parent) {
+		Figure figure = new Figure() {
+			public boolean isValidationRoot() {
+				return true;
+			}
+		};
+		figure.setLayoutManager(new XYLayout() {
+			public void layout(IFigure parent) {
+				layouts++;
+				super.layout(parent);
+			}
+		});
+		figure.setBounds(new Rectangle(0, 0, 100, 100));
+		parent.add(figure);
+		return figure;
+	}
+
+	public void testNestedRootsValidatedOnce() {
+		Figure outer = addValidationRoot(root);
+		Figure inner = addValidationRoot(outer);
+		manager.performValidation();
+		inner.revalidate();
+		outer.revalidate();
+		manager.performValidation();
+		assertEquals(2, manager.getInvalidationCount());
+		assertEquals(1, manager.getValidationRootCount());
+		assertEquals(2, manager.getValidatedFigureCount());
+		assertEquals(2, manager.getLayoutCount());
+	}
+
+	public void testDuplicateInvalidations() {
+		Figure outer = addValidationRoot(root);
+		manager.performValidation();
+		for (int i = 0; i < 10; i++)
+			outer.revalidate();
+		manager.performValidation();
+		assertEquals(10, manager.getInvalidationCount());
+		assertEquals(1, manager.getValidationRootCount());
+		assertEquals(1, manager.getLayoutCount());
+	}
+
+	public void testRunBatched() {
+		final Figure outer = addValidationRoot(root);
+		manager.performValidation();
+		layouts = 0;
+		manager.runBatched(new Runnable() {
+			public void run() {
+				addChild(0, 0, 10, 10);
+				outer.revalidate();
+				manager.performUpdate();
+				assertEquals(0, layouts);
+				assertTrue(painted.isEmpty());
+			}
+		});
+		assertEquals(1, layouts);
+		assertEquals(1, painted.size());
+	}
+
+	public void testSingleRegion() {
+		manager.setMaxDamageRegions(1);
+		addChild(0, 0, 10, 10);
+		addChild(990, 990, 10, 10);
+		manager.performUpdate();
+		assertEquals(1, painted.size());
+		assertEquals(new Rectangle(0, 0, 1000, 1000), painted.get(0));
+	}
+
+	public void testDirtyRegionsInFigureCoordinates() {
+		Viewport viewport = new Viewport(true);
+		viewport.setBounds(new Rectangle(100, 100, 200, 200));
+		Figure contents = new Figure();
+		contents.setBounds(new Rectangle(0, 0, 1000, 1000));
+		viewport.setContents(contents);
+		root.add(viewport);
+		manager.performUpdate();
+		viewport.setViewLocation(20, 20);
+		manager.performUpdate();
+		painted.clear();
+
+		Figure visible = new Figure();
+		visible.setBounds(new Rectangle(160, 160, 10, 10));
+		contents.add(visible);
+		Figure hidden = new Figure();
+		hidden.setBounds(new Rectangle(700, 700, 10, 10));
+		contents.add(hidden);
+		manager.performUpdate();
+
+		// listeners get the regions as queued, neither translated nor clipped
+		assertEquals(new Rectangle(160, 160, 10, 10), dirty.get(visible));
+		assertEquals(new Rectangle(700, 700, 10, 10), dirty.get(hidden));
+		assertEquals(1, painted.size());
+		assertEquals(new Rectangle(140, 140, 10, 10), painted.get(0));
+	}
+
+}
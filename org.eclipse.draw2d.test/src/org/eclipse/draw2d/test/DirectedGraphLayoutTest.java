@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.draw2d.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.eclipse.draw2d.graph.DirectedGraph;
+import org.eclipse.draw2d.graph.DirectedGraphLayout;
+import org.eclipse.draw2d.graph.Edge;
+import org.eclipse.draw2d.graph.GraphLayoutListener;
+import org.eclipse.draw2d.graph.LayoutStepEvent;
+import org.eclipse.draw2d.graph.Node;
+
+public class DirectedGraphLayoutTest extends TestCase {
+
+	private DirectedGraph createGraph(int size) {
+		Random random = new Random(size);
+		DirectedGraph graph = new DirectedGraph();
+		Node nodes[] = new Node[size];
+		for (int i = 0; i < size; i++) {
+			nodes[i] = new Node(new Integer(i));
+			graph.nodes.add(nodes[i]);
+		}
+		for (int i = 1; i < size; i++)
+			graph.edges.add(new Edge(nodes[i - 1 - random.nextInt(Math.min(
+					i, 5))], nodes[i]));
+		return graph;
+	}
+
+	private void assertLayout(DirectedGraph graph) {
+		for (int i = 0; i < graph.edges.size(); i++) {
+			Edge edge = graph.edges.getEdge(i);
+			assertTrue(edge.source.y < edge.target.y);
+		}
+		for (int i = 0; i < graph.nodes.size(); i++)
+			assertTrue(graph.nodes.getNode(i).x >= 0);
+	}
+
+	public void testCancel() {
+		DirectedGraph graph = createGraph(300);
+		final List started = new ArrayList();
+		final boolean canceled[] = new boolean[1];
+		DirectedGraphLayout layout = new DirectedGraphLayout();
+		layout.addGraphLayoutListener(new GraphLayoutListener.Stub() {
+			public boolean isCanceled() {
+				return canceled[0];
+			}
+
+			public void stepFinished(LayoutStepEvent event) {
+				if ("MinCross".equals(event.getName())) //$NON-NLS-1$
+					canceled[0] = true;
+			}
+
+			public void stepStarted(LayoutStepEvent event) {
+				started.add(event.getName());
+			}
+		});
+		layout.visit(graph);
+		assertEquals("MinCross", started.get(started.size() - 1)); //$NON-NLS-1$
+	}
+
+	public void testCrossingReductionBounds() {
+		DirectedGraph graph = createGraph(300);
+		DirectedGraphLayout layout = new DirectedGraphLayout();
+		layout.setCrossingReductionPasses(1);
+		layout.visit(graph);
+		assertLayout(graph);
+
+		graph = createGraph(300);
+		layout = new DirectedGraphLayout();
+		layout.setCrossingReductionTimeLimit(1);
+		layout.visit(graph);
+		assertLayout(graph);
+
+		try {
+			layout.setCrossingReductionPasses(0);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+		try {
+			layout.setCrossingReductionTimeLimit(-1);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	public void testDeepGraph() {
+		// Deep enough to overflow the stack when the trees are walked
+		// recursively
+		DirectedGraph graph = new DirectedGraph();
+		Node previous = null;
+		for (int i = 0; i < 20000; i++) {
+			Node node = new Node(new Integer(i));
+			graph.nodes.add(node);
+			if (previous != null)
+				graph.edges.add(new Edge(previous, node));
+			previous = node;
+		}
+		new DirectedGraphLayout().visit(graph);
+		assertLayout(graph);
+		assertEquals(graph.nodes.getNode(0).x, graph.nodes.getNode(19999).x);
+	}
+
+	public void testListener() {
+		DirectedGraph graph = createGraph(300);
+		final List started = new ArrayList();
+		final List finished = new ArrayList();
+		DirectedGraphLayout layout = new DirectedGraphLayout();
+		layout.setCrossingReductionPasses(3);
+		layout.addGraphLayoutListener(new GraphLayoutListener.Stub() {
+			public void stepFinished(LayoutStepEvent event) {
+				assertSame(started.get(started.size() - 1), event);
+				finished.add(event);
+			}
+
+			public void stepStarted(LayoutStepEvent event) {
+				assertEquals(started.size(), finished.size());
+				started.add(event);
+			}
+		});
+		layout.visit(graph);
+		assertLayout(graph);
+
+		assertEquals(started, finished);
+		LayoutStepEvent first = (LayoutStepEvent) finished.get(0);
+		int count = first.getStepCount();
+		assertEquals(2 * count, finished.size());
+		boolean crossingsCounted = false;
+		for (int i = 0; i < finished.size(); i++) {
+			LayoutStepEvent event = (LayoutStepEvent) finished.get(i);
+			assertSame(layout, event.getSource());
+			assertSame(graph, event.getGraph());
+			assertEquals(i >= count, event.isRevisit());
+			assertEquals(i < count ? i : 2 * count - 1 - i, event
+					.getStepIndex());
+			assertEquals((double) (i + 1) / (2 * count), event.getProgress(),
+					0.0001);
+			assertTrue(event.getTime() >= 0);
+			assertTrue(event.getNodeCount() >= 300);
+			assertTrue(event.getVirtualNodeCount() >= 0);
+			if ("MinCross".equals(event.getName()) && !event.isRevisit()) { //$NON-NLS-1$
+				assertEquals(3, event.getIterationCount());
+				assertTrue(event.getCrossingsBefore() >= event
+						.getCrossingsAfter());
+				assertTrue(event.getCrossingsAfter() >= 0);
+				crossingsCounted = true;
+			}
+		}
+		assertTrue(crossingsCounted);
+	}
+
+}
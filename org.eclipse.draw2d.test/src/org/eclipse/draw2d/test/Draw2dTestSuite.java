@@ -30,9 +30,11 @@ public class Draw2dTestSuite extends TestSuite {
 	 */
 	public Draw2dTestSuite() {
 		addTest(new TestSuite(ShortestPathRoutingTest.class));
+		addTest(new TestSuite(ShortestPathConnectionRouterTest.class));
 		addTest(new TestSuite(XYLayoutTest.class));
 		addTest(new TestSuite(TextFlowWrapTest.class));
 		addTest(new TestSuite(LocalOptimizerTest.class));
+		addTest(new TestSuite(DirectedGraphLayoutTest.class));
 		addTest(new TestSuite(AdvancedGraphicsTests.class));
 		addTest(new TestSuite(FlowBorderTests.class));
 		addTest(new TestSuite(GraphicsClipping.class));
@@ -60,5 +62,10 @@ public class Draw2dTestSuite extends TestSuite {
 		addTest(new TestSuite(ScalablePolygonShapeTest.class));
 		addTest(new TestSuite(LayerTest.class));
 		addTest(new TestSuite(ShapeTest.class));
+		addTest(new TestSuite(ChildIndexTest.class));
+		addTest(new TestSuite(DeferredUpdateManagerTest.class));
+		addTest(new TestSuite(TileCacheTest.class));
+		addTest(new TestSuite(TextExtentCacheTest.class));
+		addTest(new TestSuite(IncrementalFlowLayoutTest.class));
 	}
 }
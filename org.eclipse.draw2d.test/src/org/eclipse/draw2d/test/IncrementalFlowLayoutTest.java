@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.draw2d.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.draw2d.IFigure;
+import org.eclipse.draw2d.geometry.Rectangle;
+import org.eclipse.draw2d.text.BlockFlow;
+import org.eclipse.draw2d.text.FlowPage;
+import org.eclipse.draw2d.text.InlineFlow;
+import org.eclipse.draw2d.text.TextFlow;
+import org.eclipse.draw2d.text.TextFragmentBox;
+import org.eclipse.swt.graphics.Font;
+import org.eclipse.swt.widgets.Display;
+
+/**
+ * Tests that laying out a flow page again after a change gives the same result
+ * as laying out the changed page from scratch.
+ */
+public class IncrementalFlowLayoutTest extends TestCase {
+
+	private static final String PHRASE = "The quick brown fox jumped over the lazy dog. ";
+	private static final int BLOCKS = 6;
+	private static final int RUNS = 4;
+
+	private Font font = Display.getDefault().getSystemFont();
+	private FlowPage page;
+	private List edits = new ArrayList();
+
+	protected void setUp() throws Exception {
+		page = createPage();
+		layout(page);
+	}
+
+	private FlowPage createPage() {
+		FlowPage result = new FlowPage();
+		result.setFont(font);
+		for (int i = 0; i < BLOCKS; i++) {
+			BlockFlow block = new BlockFlow();
+			for (int j = 0; j < RUNS; j++) {
+				if (j == RUNS - 1) {
+					InlineFlow inline = new InlineFlow();
+					inline.add(new TextFlow(PHRASE));
+					block.add(inline);
+				} else
+					block.add(new TextFlow(PHRASE + "\n" + PHRASE));
+			}
+			result.add(block);
+		}
+		return result;
+	}
+
+	private void layout(FlowPage flowPage) {
+		flowPage.setBounds(new Rectangle(0, 0, 200, 1000));
+		flowPage.validate();
+	}
+
+	private TextFlow getText(FlowPage flowPage, int block, int run) {
+		return (TextFlow) ((IFigure) flowPage.getChildren().get(block))
+				.getChildren().get(run);
+	}
+
+	private void assertSameLayout(IFigure expected, IFigure actual) {
+		assertEquals(expected.getBounds(), actual.getBounds());
+		if (expected instanceof TextFlow) {
+			List expectedFragments = ((TextFlow) expected).getFragments();
+			List actualFragments = ((TextFlow) actual).getFragments();
+			assertEquals(expectedFragments.size(), actualFragments.size());
+			for (int i = 0; i < expectedFragments.size(); i++) {
+				TextFragmentBox e = (TextFragmentBox) expectedFragments.get(i);
+				TextFragmentBox a = (TextFragmentBox) actualFragments.get(i);
+				assertEquals(e.offset, a.offset);
+				assertEquals(e.length, a.length);
+				assertEquals(e.getX(), a.getX());
+				assertEquals(e.getWidth(), a.getWidth());
+				assertEquals(e.getBaseline(), a.getBaseline());
+			}
+		}
+		List expectedChildren = expected.getChildren();
+		List actualChildren = actual.getChildren();
+		assertEquals(expectedChildren.size(), actualChildren.size());
+		for (int i = 0; i < expectedChildren.size(); i++)
+			assertSameLayout((IFigure) expectedChildren.get(i),
+					(IFigure) actualChildren.get(i));
+	}
+
+	private void assertEdit(int block, int run, String text) {
+		edits.add(new Object[] { new Integer(block), new Integer(run), text });
+		getText(page, block, run).setText(text);
+		page.validate();
+		// the expected layout is done from scratch
+		FlowPage expected = createPage();
+		for (int i = 0; i < edits.size(); i++) {
+			Object[] edit = (Object[]) edits.get(i);
+			getText(expected, ((Integer) edit[0]).intValue(),
+					((Integer) edit[1]).intValue()).setText((String) edit[2]);
+		}
+		layout(expected);
+		assertSameLayout(expected, page);
+	}
+
+	public void testEditWithinLine() {
+		assertEdit(2, 1, PHRASE + "\n"
+				+ "The quick brown fox jumped over the lazy cat. ");
+	}
+
+	public void testEditAddingLines() {
+		assertEdit(2, 1, PHRASE + PHRASE + "\n" + PHRASE + PHRASE);
+	}
+
+	public void testEditRemovingLines() {
+		assertEdit(3, 0, "The quick ");
+	}
+
+	public void testEditFirstAndLast() {
+		assertEdit(0, 0, "A " + PHRASE);
+		assertEdit(BLOCKS - 1, RUNS - 2, PHRASE + "\n");
+	}
+
+	public void testRepeatedEdits() {
+		for (int i = 0; i < 5; i++)
+			assertEdit(i % BLOCKS, i % (RUNS - 1), PHRASE.substring(i * 5)
+					+ "\n" + PHRASE.substring(0, i * 5));
+	}
+
+	public void testEditInline() {
+		TextFlow text = (TextFlow) ((IFigure) ((IFigure) page.getChildren()
+				.get(1)).getChildren().get(RUNS - 1)).getChildren().get(0);
+		text.setText(PHRASE + PHRASE);
+		page.validate();
+		FlowPage expected = createPage();
+		((TextFlow) ((IFigure) ((IFigure) expected.getChildren().get(1))
+				.getChildren().get(RUNS - 1)).getChildren().get(0))
+				.setText(PHRASE + PHRASE);
+		layout(expected);
+		assertSameLayout(expected, page);
+	}
+
+}
@@ -10,6 +10,7 @@
  *******************************************************************************/
 package org.eclipse.draw2d.test;
 
+import org.eclipse.draw2d.geometry.Geometry;
 import org.eclipse.draw2d.geometry.PointList;
 import org.eclipse.draw2d.geometry.PrecisionPoint;
 import org.eclipse.draw2d.geometry.Rectangle;
@@ -56,4 +57,29 @@ public class PointListTests extends BaseTestCase {
 		assertFalse(points.intersects(new Rectangle(0, 0, 1, 1)));
 	}
 
+	public void testPrimitiveAccess() {
+		PointList points = new PointList();
+		points.setPoints(new int[] { 1, 2, 3, 4, 5, 6, 99 }, 3);
+		assertEquals(3, points.size());
+		assertEquals(new Rectangle(1, 2, 5, 5), points.getBounds());
+
+		int[] xy = new int[2];
+		assertSame(xy, points.getPoint(xy, 1));
+		assertEquals(3, xy[0]);
+		assertEquals(4, xy[1]);
+
+		points.setPoint(-1, 10, 1);
+		assertEquals(-1, points.getPoint(1).x);
+		assertEquals(new Rectangle(-1, 2, 7, 9), points.getBounds());
+		assertTrue(points.polylineContainsPoint(-1, 8, 0));
+		assertTrue(Geometry.polylineContainsPoint(points.toIntArray(), 3,
+				-1, 8, 0));
+		assertFalse(Geometry.polylineContainsPoint(points.toIntArray(), 1,
+				-1, 8, 0));
+
+		points.setPoints(new int[] { 7, 7 }, 1);
+		assertEquals(1, points.size());
+		assertEquals(new Rectangle(7, 7, 1, 1), points.getBounds());
+	}
+
 }
\ No newline at end of file
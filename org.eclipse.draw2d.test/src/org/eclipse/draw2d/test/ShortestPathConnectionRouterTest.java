@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.draw2d.test;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.eclipse.swt.widgets.Display;
+
+import org.eclipse.draw2d.ChopboxAnchor;
+import org.eclipse.draw2d.DeferredUpdateManager;
+import org.eclipse.draw2d.Figure;
+import org.eclipse.draw2d.Graphics;
+import org.eclipse.draw2d.GraphicsSource;
+import org.eclipse.draw2d.IFigure;
+import org.eclipse.draw2d.PolylineConnection;
+import org.eclipse.draw2d.ShortestPathConnectionRouter;
+import org.eclipse.draw2d.UpdateManager;
+import org.eclipse.draw2d.geometry.PointList;
+import org.eclipse.draw2d.geometry.Rectangle;
+
+public class ShortestPathConnectionRouterTest extends TestCase {
+
+	private class Diagram {
+		DeferredUpdateManager manager;
+		Figure[] nodes = new Figure[30];
+		PolylineConnection[] connections = new PolylineConnection[20];
+		ShortestPathConnectionRouter router;
+		int solves;
+
+		Diagram() {
+			manager = new DeferredUpdateManager() {
+				public void runWithUpdate(Runnable runnable) {
+					super.runWithUpdate(runnable);
+					solves++;
+				}
+			};
+			manager.setGraphicsSource(new GraphicsSource() {
+				public Graphics getGraphics(Rectangle region) {
+					return null;
+				}
+
+				public void flushGraphics(Rectangle region) {
+				}
+			});
+			Figure root = new Figure() {
+				public UpdateManager getUpdateManager() {
+					return manager;
+				}
+			};
+			root.setBounds(new Rectangle(0, 0, 1000, 1000));
+			manager.setRoot(root);
+			IFigure container = new Figure();
+			container.setBounds(root.getBounds());
+			root.add(container);
+			router = new ShortestPathConnectionRouter(container);
+
+			Random random = new Random(5);
+			for (int i = 0; i < nodes.length; i++) {
+				nodes[i] = new Figure();
+				nodes[i].setBounds(new Rectangle(random.nextInt(900), random
+						.nextInt(900), 30 + random.nextInt(60), 20 + random
+						.nextInt(40)));
+				container.add(nodes[i]);
+			}
+			for (int i = 0; i < connections.length; i++) {
+				connections[i] = new PolylineConnection();
+				connections[i].setSourceAnchor(new ChopboxAnchor(nodes[random
+						.nextInt(nodes.length)]));
+				connections[i].setTargetAnchor(new ChopboxAnchor(nodes[random
+						.nextInt(nodes.length)]));
+				connections[i].setConnectionRouter(router);
+				root.add(connections[i]);
+			}
+		}
+
+		void moveNode() {
+			IFigure node = connections[0].getSourceAnchor().getOwner();
+			node.setLocation(node.getBounds().getLocation()
+					.translate(200, 100));
+		}
+
+		void waitForSolve(int count) throws InterruptedException {
+			Display display = Display.getCurrent();
+			long end = System.currentTimeMillis() + 10000;
+			while (solves < count && System.currentTimeMillis() < end)
+				if (!display.readAndDispatch())
+					Thread.sleep(10);
+			// runs the update which routes with the solution
+			while (display.readAndDispatch())
+				;
+			assertEquals(count, solves);
+		}
+	}
+
+	private void assertSameRoutes(Diagram expected, Diagram actual) {
+		for (int i = 0; i < expected.connections.length; i++) {
+			PointList points = expected.connections[i].getPoints();
+			PointList actualPoints = actual.connections[i].getPoints();
+			assertEquals(points.size(), actualPoints.size());
+			for (int p = 0; p < points.size(); p++)
+				assertEquals(points.getPoint(p), actualPoints.getPoint(p));
+		}
+	}
+
+	protected void setUp() throws Exception {
+		Display.getDefault();
+	}
+
+	public void testSolveInBackground() throws InterruptedException {
+		Diagram expected = new Diagram();
+		expected.manager.performUpdate();
+		expected.moveNode();
+		expected.manager.performUpdate();
+
+		Diagram diagram = new Diagram();
+		diagram.router.setSolveInBackground(true);
+		diagram.router.setThreadCount(2);
+		diagram.manager.performUpdate();
+		// Moved while the first solve runs, which starts a second one
+		diagram.moveNode();
+		diagram.waitForSolve(2);
+
+		assertFalse(diagram.router.isDirty());
+		assertSameRoutes(expected, diagram);
+	}
+
+}
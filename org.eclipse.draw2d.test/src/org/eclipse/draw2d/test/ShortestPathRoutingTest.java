@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2010 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,6 +10,8 @@
  *******************************************************************************/
 package org.eclipse.draw2d.test;
 
+import java.util.Random;
+
 import junit.framework.TestCase;
 
 import org.eclipse.draw2d.geometry.Point;
@@ -176,8 +178,9 @@ public class ShortestPathRoutingTest extends TestCase {
 	}
 
 	private void doAssertNoPathsSolved() {
-		// assertTrue("No paths should have been solved.", routing.solve() ==
-		// 0);
+		routing.solve();
+		assertEquals("No paths should have been solved.", 0,
+				routing.getSolvedPathCount());
 	}
 
 	private void doAssertNumPoints(PointList path, int expectedBends) {
@@ -572,6 +575,23 @@ public class ShortestPathRoutingTest extends TestCase {
 		doAssertNoPathsSolved();
 	}
 
+	public void testDeltasMoveObstacleSolvesAffectedPath() {
+		Rectangle far = new Rectangle(600, 400, 50, 50);
+		Rectangle near = new Rectangle(300, 80, 40, 40);
+		doSetUp(sideAStart, sideAEnd, sideBStart, sideBEnd, far);
+
+		routing.updateObstacle(far.getCopy(), near.getCopy());
+		routing.solve();
+		assertEquals(1, routing.getSolvedPathCount());
+		doAssertNumPoints(pathA, 2);
+		doAssertNumPoints(pathB, 0);
+
+		routing.updateObstacle(near.getCopy(), far.getCopy());
+		routing.solve();
+		assertEquals(1, routing.getSolvedPathCount());
+		doAssertNumPoints(pathA, 0);
+	}
+
 	public void testDeltasRemoveObstacleIntersection() {
 		doSetUp(deltaAStart, deltaAEnd, deltaBStart, deltaBEnd, deltaRect);
 
@@ -695,6 +715,51 @@ public class ShortestPathRoutingTest extends TestCase {
 		doTestTangent();
 	}
 
+	public void testThreadCountDoesNotChangeSolution() {
+		ShortestPathRouter parallel = new ShortestPathRouter();
+		parallel.setThreadCount(3);
+		Random random = new Random(3);
+		Rectangle[] obstacles = new Rectangle[60];
+		for (int i = 0; i < obstacles.length; i++) {
+			obstacles[i] = new Rectangle(random.nextInt(1200),
+					random.nextInt(1200), 40 + random.nextInt(80),
+					20 + random.nextInt(50));
+			routing.addObstacle(obstacles[i].getCopy());
+			parallel.addObstacle(obstacles[i].getCopy());
+		}
+		Path[] paths = new Path[40];
+		Path[] parallelPaths = new Path[paths.length];
+		for (int i = 0; i < paths.length; i++) {
+			Point start = obstacles[random.nextInt(obstacles.length)]
+					.getCenter();
+			Point end = obstacles[random.nextInt(obstacles.length)]
+					.getCenter();
+			paths[i] = new Path(start, end);
+			parallelPaths[i] = new Path(start, end);
+			routing.addPath(paths[i]);
+			parallel.addPath(parallelPaths[i]);
+		}
+
+		for (int step = 0; step < 5; step++) {
+			routing.solve();
+			parallel.solve();
+			assertEquals(routing.getSolvedPathCount(),
+					parallel.getSolvedPathCount());
+			for (int i = 0; i < paths.length; i++) {
+				PointList expected = paths[i].getPoints();
+				PointList actual = parallelPaths[i].getPoints();
+				assertEquals(expected.size(), actual.size());
+				for (int p = 0; p < expected.size(); p++)
+					assertEquals(expected.getPoint(p), actual.getPoint(p));
+			}
+
+			Rectangle moved = obstacles[step].getTranslated(150, 90);
+			routing.updateObstacle(obstacles[step], moved);
+			parallel.updateObstacle(obstacles[step], moved);
+			obstacles[step] = moved;
+		}
+	}
+
 	public void testTopLeftIntersection() {
 		doSetUp(cornerAStart, cornerAEnd, cornerBStart, cornerBEnd, tl);
 		doTestTopLeftIntersection();
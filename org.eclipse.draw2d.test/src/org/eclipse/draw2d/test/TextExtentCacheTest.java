@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.draw2d.test;
+
+import junit.framework.TestCase;
+
+import org.eclipse.draw2d.FigureUtilities;
+import org.eclipse.draw2d.TextExtentCache;
+import org.eclipse.draw2d.geometry.Dimension;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.Font;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.widgets.Display;
+
+public class TextExtentCacheTest extends TestCase {
+
+	private Font font;
+	private GC gc;
+	private TextExtentCache cache;
+
+	protected void setUp() throws Exception {
+		font = new Font(Display.getDefault(), "Arial", 10, SWT.NORMAL);
+		gc = new GC(Display.getDefault());
+		gc.setFont(font);
+		cache = new TextExtentCache();
+	}
+
+	protected void tearDown() throws Exception {
+		gc.dispose();
+		font.dispose();
+	}
+
+	public void testExtents() {
+		String s = "The quick\tbrown fox";
+		assertEquals(new Dimension(gc.textExtent(s)),
+				cache.getTextExtents(s, font));
+		assertEquals(new Dimension(gc.stringExtent(s)),
+				cache.getStringExtents(s, font));
+		assertEquals(gc.getAdvanceWidth('q'), cache.getAdvanceWidth('q', font));
+		assertEquals(gc.getFontMetrics().getHeight(), cache.getFontMetrics(
+				font).getHeight());
+		assertEquals(FigureUtilities.getTextExtents(s, font),
+				cache.getTextExtents(s, font));
+	}
+
+	public void testHitsAndMisses() {
+		cache.getTextExtents("abc", font);
+		assertEquals(0, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		cache.getTextExtents("abc", font);
+		cache.getStringExtents("abc", font);
+		cache.getAdvanceWidth('a', font);
+		cache.getAdvanceWidth('a', font);
+		assertEquals(2, cache.getHitCount());
+		assertEquals(3, cache.getMissCount());
+		cache.resetCounts();
+		assertEquals(0, cache.getHitCount());
+		assertEquals(0, cache.getMissCount());
+	}
+
+	public void testCopies() {
+		Dimension d = cache.getTextExtents("abc", font);
+		Dimension expected = d.getCopy();
+		d.width = -1;
+		assertEquals(expected, cache.getTextExtents("abc", font));
+	}
+
+	public void testCharacterLimit() {
+		cache = new TextExtentCache(10);
+		cache.getTextExtents("abcd", font);
+		cache.getTextExtents("efgh", font);
+		cache.getTextExtents("ijkl", font);
+		cache.resetCounts();
+		cache.getTextExtents("ijkl", font);
+		cache.getTextExtents("abcd", font);
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+	}
+
+	public void testLeastRecentlyUsedOfEitherKind() {
+		cache = new TextExtentCache(10);
+		cache.getTextExtents("abcd", font);
+		cache.getStringExtents("efgh", font);
+		cache.getTextExtents("abcd", font);
+		cache.getStringExtents("ijkl", font);
+		cache.resetCounts();
+		cache.getTextExtents("abcd", font);
+		cache.getStringExtents("ijkl", font);
+		assertEquals(2, cache.getHitCount());
+		cache.getStringExtents("efgh", font);
+		assertEquals(1, cache.getMissCount());
+	}
+
+	public void testNewStringKept() {
+		cache = new TextExtentCache(10);
+		cache.getStringExtents("abcd", font);
+		cache.getStringExtents("efgh", font);
+		cache.getTextExtents("ij", font);
+		cache.resetCounts();
+		cache.getTextExtents("ij", font);
+		assertEquals(1, cache.getHitCount());
+	}
+
+	public void testInvalidate() {
+		cache.getTextExtents("abc", font);
+		cache.invalidate(font);
+		cache.resetCounts();
+		cache.getTextExtents("abc", font);
+		assertEquals(1, cache.getMissCount());
+		cache.invalidate();
+		cache.getTextExtents("abc", font);
+		assertEquals(2, cache.getMissCount());
+	}
+
+	public void testDisposedFont() {
+		Font disposed = new Font(Display.getDefault(), "Arial", 12, SWT.BOLD);
+		cache.getTextExtents("abc", disposed);
+		disposed.dispose();
+		cache.resetCounts();
+		try {
+			cache.getTextExtents("abc", disposed);
+		} catch (IllegalArgumentException e) {
+			// measuring with a disposed font may fail
+		}
+		assertEquals(0, cache.getHitCount());
+	}
+
+	public void testInvalidLimit() {
+		try {
+			new TextExtentCache(-1);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+}
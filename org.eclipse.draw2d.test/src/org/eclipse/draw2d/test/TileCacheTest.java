@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.draw2d.test;
+
+import junit.framework.TestCase;
+
+import org.eclipse.draw2d.DeferredUpdateManager;
+import org.eclipse.draw2d.Figure;
+import org.eclipse.draw2d.IFigure;
+import org.eclipse.draw2d.SWTGraphics;
+import org.eclipse.draw2d.TileCache;
+import org.eclipse.draw2d.UpdateManager;
+import org.eclipse.draw2d.Viewport;
+import org.eclipse.draw2d.geometry.Dimension;
+import org.eclipse.draw2d.geometry.Rectangle;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.widgets.Display;
+
+public class TileCacheTest extends TestCase {
+
+	private DeferredUpdateManager manager;
+	private Viewport viewport;
+	private IFigure contents;
+	private IFigure child;
+	private TileCache cache;
+
+	protected void setUp() throws Exception {
+		Display.getDefault();
+		manager = new DeferredUpdateManager();
+		Figure root = new Figure() {
+			public UpdateManager getUpdateManager() {
+				return manager;
+			}
+		};
+		root.setBounds(new Rectangle(0, 0, 200, 200));
+		root.addNotify();
+		manager.setRoot(root);
+		viewport = new Viewport(true);
+		contents = new Figure();
+		contents.setPreferredSize(new Dimension(1000, 1000));
+		child = new Figure();
+		child.setBounds(new Rectangle(10, 10, 50, 50));
+		contents.add(child);
+		viewport.setContents(contents);
+		viewport.setBounds(new Rectangle(0, 0, 200, 200));
+		root.add(viewport);
+		cache = new TileCache(100, Long.MAX_VALUE);
+		viewport.setTileCache(cache);
+		manager.performUpdate();
+	}
+
+	protected void tearDown() throws Exception {
+		cache.clear();
+	}
+
+	private void paint() {
+		Image image = new Image(Display.getDefault(), 200, 200);
+		GC gc = new GC(image);
+		SWTGraphics graphics = new SWTGraphics(gc);
+		viewport.paint(graphics);
+		graphics.dispose();
+		gc.dispose();
+		image.dispose();
+	}
+
+	public void testRepaintHitsCache() {
+		paint();
+		assertEquals(0, cache.getHitCount());
+		assertEquals(4, cache.getMissCount());
+		paint();
+		assertEquals(4, cache.getHitCount());
+		assertEquals(0.5, cache.getHitRate(), 0);
+	}
+
+	public void testScrollRendersExposedTiles() {
+		paint();
+		cache.resetCounters();
+		viewport.setViewLocation(100, 0);
+		paint();
+		assertEquals(2, cache.getHitCount());
+		assertEquals(2, cache.getMissCount());
+		assertEquals(6, cache.getTileCount());
+	}
+
+	public void testDirtyRegionInvalidatesTile() {
+		paint();
+		child.repaint();
+		manager.performUpdate();
+		assertEquals(3, cache.getTileCount());
+		cache.resetCounters();
+		paint();
+		assertEquals(1, cache.getMissCount());
+	}
+
+	public void testDirtyRegionInvalidatesTileWhenScrolled() {
+		IFigure visible = new Figure();
+		visible.setBounds(new Rectangle(150, 150, 20, 20));
+		contents.add(visible);
+		manager.performUpdate();
+		paint();
+		viewport.setViewLocation(100, 100);
+		manager.performUpdate();
+		paint();
+		assertEquals(7, cache.getTileCount());
+
+		// the child is out of view, the other figure in the tile at 100, 100
+		child.repaint();
+		visible.repaint();
+		manager.performUpdate();
+		assertEquals(5, cache.getTileCount());
+		cache.resetCounters();
+		paint();
+		assertEquals(1, cache.getMissCount());
+		assertEquals(3, cache.getHitCount());
+
+		viewport.setViewLocation(0, 0);
+		manager.performUpdate();
+		cache.resetCounters();
+		paint();
+		assertEquals(1, cache.getMissCount());
+		assertEquals(3, cache.getHitCount());
+	}
+
+	public void testMemoryLimit() {
+		paint();
+		viewport.setViewLocation(200, 200);
+		paint();
+		assertEquals(8, cache.getTileCount());
+		cache.setMemoryLimit(3 * 4 * 100 * 100);
+		assertEquals(3, cache.getTileCount());
+		assertEquals(5, cache.getEvictionCount());
+	}
+
+}
@@ -22,6 +22,13 @@ public abstract class AbstractConnectionAnchor extends ConnectionAnchorBase
 
 	private IFigure owner;
 
+	private static final OverrideCache POINT_API = new OverrideCache(
+			new String[] { "getReferencePoint" }, //$NON-NLS-1$
+			new Class[][] { {} },
+			new Class[] { AbstractConnectionAnchor.class });
+
+	private static final Point REFERENCE = new Point();
+
 	/**
 	 * Constructs an AbstractConnectionAnchor with no owner.
 	 * 
@@ -82,6 +89,28 @@ public abstract class AbstractConnectionAnchor extends ConnectionAnchorBase
 	public void ancestorRemoved(IFigure ancestor) {
 	}
 
+	/**
+	 * Copies the location of this anchor for the given reference point into
+	 * the first two elements of the given array. The reference point and the
+	 * location are in absolute coordinates, as with
+	 * {@link ConnectionAnchor#getLocation(Point)}. The default implementation
+	 * calls that method; subclasses may override this method to avoid the
+	 * creation of <code>Point</code> objects.
+	 * 
+	 * @param referenceX
+	 *            x coordinate of the reference point
+	 * @param referenceY
+	 *            y coordinate of the reference point
+	 * @param location
+	 *            an array of at least two elements receiving the location
+	 * @since 3.9
+	 */
+	public void getLocation(int referenceX, int referenceY, int[] location) {
+		Point p = getLocation(new Point(referenceX, referenceY));
+		location[0] = p.x;
+		location[1] = p.y;
+	}
+
 	/**
 	 * Returns the owner Figure on which this anchor's location is dependent.
 	 * 
@@ -112,6 +141,65 @@ public abstract class AbstractConnectionAnchor extends ConnectionAnchorBase
 		}
 	}
 
+	/**
+	 * Copies the reference point of this anchor into the first two elements of
+	 * the given array. This method exists to avoid the creation of a new
+	 * <code>Point</code>. It calls {@link #getReferencePoint()} if a subclass
+	 * has overridden that method. The array is left unchanged if there is no
+	 * reference point, for instance because this anchor has no owner.
+	 * 
+	 * @param reference
+	 *            an array of at least two elements receiving the point
+	 * @since 3.9
+	 */
+	public void getReferencePoint(int[] reference) {
+		if (getOwner() == null || POINT_API.isOverridden(getClass())) {
+			Point ref = getReferencePoint();
+			if (ref != null) {
+				reference[0] = ref.x;
+				reference[1] = ref.y;
+			}
+			return;
+		}
+		getOwner().getBounds().getCenter(reference);
+		REFERENCE.setLocation(reference[0], reference[1]);
+		getOwner().translateToAbsolute(REFERENCE);
+		reference[0] = REFERENCE.x;
+		reference[1] = REFERENCE.y;
+	}
+
+	/**
+	 * Returns the x coordinate of a point packed by {@link #pack(int, int)}.
+	 */
+	static int getX(long point) {
+		return (int) (point >> 32);
+	}
+
+	/**
+	 * Returns the y coordinate of a point packed by {@link #pack(int, int)}.
+	 */
+	static int getY(long point) {
+		return (int) point;
+	}
+
+	/**
+	 * Packs a point into a long, so that it can be returned without creating
+	 * an object.
+	 */
+	static long pack(int x, int y) {
+		return ((long) x << 32) | (y & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Returns <code>true</code> if {@link #getLocation(int, int, int[])} and
+	 * {@link #getReferencePoint(int[])} compute exactly what the
+	 * <code>Point</code> based methods would return, without falling back to
+	 * them.
+	 */
+	boolean hasPrimitiveLocation() {
+		return false;
+	}
+
 	/**
 	 * Removes the given listener from this anchor. If all the listeners are
 	 * removed, then this anchor removes itself from its owner.
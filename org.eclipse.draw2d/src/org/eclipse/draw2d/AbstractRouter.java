@@ -51,6 +51,33 @@ public abstract class AbstractRouter implements ConnectionRouter {
 		return END.setLocation(connection.getTargetAnchor().getLocation(ref));
 	}
 
+	/**
+	 * Copies a connection's endpoint, in absolute coordinates, into the first
+	 * two elements of the given array. Unlike {@link #getEndPoint(Connection)},
+	 * this method does not create <code>Point</code> objects when both anchors
+	 * are {@link ChopboxAnchor ChopboxAnchors} or {@link EllipseAnchor
+	 * EllipseAnchors}.
+	 * 
+	 * @param connection
+	 *            The connection
+	 * @param point
+	 *            an array of at least two elements receiving the endpoint
+	 * @since 3.9
+	 */
+	protected void getEndPoint(Connection connection, int[] point) {
+		ConnectionAnchor source = connection.getSourceAnchor();
+		ConnectionAnchor target = connection.getTargetAnchor();
+		if (hasPrimitiveLocation(source) && hasPrimitiveLocation(target)) {
+			((AbstractConnectionAnchor) source).getReferencePoint(point);
+			((AbstractConnectionAnchor) target).getLocation(point[0],
+					point[1], point);
+		} else {
+			Point p = getEndPoint(connection);
+			point[0] = p.x;
+			point[1] = p.y;
+		}
+	}
+
 	/**
 	 * A convenience method for obtaining a connection's start point. The
 	 * connection's startpoint is a point in absolute coordinates obtained by
@@ -69,6 +96,38 @@ public abstract class AbstractRouter implements ConnectionRouter {
 		return START.setLocation(conn.getSourceAnchor().getLocation(ref));
 	}
 
+	/**
+	 * Copies a connection's start point, in absolute coordinates, into the
+	 * first two elements of the given array. Unlike
+	 * {@link #getStartPoint(Connection)}, this method does not create
+	 * <code>Point</code> objects when both anchors are {@link ChopboxAnchor
+	 * ChopboxAnchors} or {@link EllipseAnchor EllipseAnchors}.
+	 * 
+	 * @param conn
+	 *            The connection
+	 * @param point
+	 *            an array of at least two elements receiving the start point
+	 * @since 3.9
+	 */
+	protected void getStartPoint(Connection conn, int[] point) {
+		ConnectionAnchor source = conn.getSourceAnchor();
+		ConnectionAnchor target = conn.getTargetAnchor();
+		if (hasPrimitiveLocation(source) && hasPrimitiveLocation(target)) {
+			((AbstractConnectionAnchor) target).getReferencePoint(point);
+			((AbstractConnectionAnchor) source).getLocation(point[0],
+					point[1], point);
+		} else {
+			Point p = getStartPoint(conn);
+			point[0] = p.x;
+			point[1] = p.y;
+		}
+	}
+
+	static boolean hasPrimitiveLocation(ConnectionAnchor anchor) {
+		return anchor instanceof AbstractConnectionAnchor
+				&& ((AbstractConnectionAnchor) anchor).hasPrimitiveLocation();
+	}
+
 	/**
 	 * Causes the router to discard any cached information about the given
 	 * Connection.
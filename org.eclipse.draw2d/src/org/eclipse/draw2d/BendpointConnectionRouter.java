@@ -28,6 +28,22 @@ public class BendpointConnectionRouter extends AbstractRouter {
 	private Map constraints = new HashMap(11);
 
 	private static final PrecisionPoint A_POINT = new PrecisionPoint();
+	private static final Point REF1 = new Point();
+	private static final Point REF2 = new Point();
+	private static final int[] LOCATION = new int[2];
+
+	private static void addAnchorLocation(Connection conn,
+			ConnectionAnchor anchor, Point ref, boolean primitive,
+			PointList points) {
+		if (primitive) {
+			((AbstractConnectionAnchor) anchor).getLocation(ref.x, ref.y,
+					LOCATION);
+			A_POINT.setLocation(LOCATION[0], LOCATION[1]);
+		} else
+			A_POINT.setLocation(anchor.getLocation(ref));
+		conn.translateToRelative(A_POINT);
+		points.addPoint(A_POINT);
+	}
 
 	/**
 	 * Gets the constraint for the given {@link Connection}.
@@ -40,6 +56,11 @@ public class BendpointConnectionRouter extends AbstractRouter {
 		return constraints.get(connection);
 	}
 
+	private static Point getReferencePoint(ConnectionAnchor anchor, Point ref) {
+		((AbstractConnectionAnchor) anchor).getReferencePoint(LOCATION);
+		return ref.setLocation(LOCATION[0], LOCATION[1]);
+	}
+
 	/**
 	 * Removes the given connection from the map of constraints.
 	 * 
@@ -65,32 +86,37 @@ public class BendpointConnectionRouter extends AbstractRouter {
 		if (bendpoints == null)
 			bendpoints = Collections.EMPTY_LIST;
 
+		ConnectionAnchor source = conn.getSourceAnchor();
+		ConnectionAnchor target = conn.getTargetAnchor();
+		boolean primitive = hasPrimitiveLocation(source)
+				&& hasPrimitiveLocation(target);
 		Point ref1, ref2;
 
 		if (bendpoints.isEmpty()) {
-			ref1 = conn.getTargetAnchor().getReferencePoint();
-			ref2 = conn.getSourceAnchor().getReferencePoint();
+			if (primitive) {
+				ref1 = getReferencePoint(target, REF1);
+				ref2 = getReferencePoint(source, REF2);
+			} else {
+				ref1 = target.getReferencePoint();
+				ref2 = source.getReferencePoint();
+			}
 		} else {
-			ref1 = new Point(((Bendpoint) bendpoints.get(0)).getLocation());
+			ref1 = REF1.setLocation(((Bendpoint) bendpoints.get(0))
+					.getLocation());
 			conn.translateToAbsolute(ref1);
-			ref2 = new Point(
-					((Bendpoint) bendpoints.get(bendpoints.size() - 1))
-							.getLocation());
+			ref2 = REF2.setLocation(((Bendpoint) bendpoints.get(bendpoints
+					.size() - 1)).getLocation());
 			conn.translateToAbsolute(ref2);
 		}
 
-		A_POINT.setLocation(conn.getSourceAnchor().getLocation(ref1));
-		conn.translateToRelative(A_POINT);
-		points.addPoint(A_POINT);
+		addAnchorLocation(conn, source, ref1, primitive, points);
 
 		for (int i = 0; i < bendpoints.size(); i++) {
 			Bendpoint bp = (Bendpoint) bendpoints.get(i);
 			points.addPoint(bp.getLocation());
 		}
 
-		A_POINT.setLocation(conn.getTargetAnchor().getLocation(ref2));
-		conn.translateToRelative(A_POINT);
-		points.addPoint(A_POINT);
+		addAnchorLocation(conn, target, ref2, primitive, points);
 		conn.setPoints(points);
 	}
 
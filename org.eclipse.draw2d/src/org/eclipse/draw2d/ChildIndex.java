@@ -0,0 +1,459 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.draw2d;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.draw2d.geometry.Rectangle;
+
+/**
+ * A uniform grid over the bounds of a figure's children. The grid is hashed,
+ * so it works for children placed anywhere, including negative coordinates
+ * inside a {@link FreeformLayer}. Children are kept in sync through a
+ * {@link FigureListener}, the same way {@link FreeformHelper} tracks the
+ * freeform extent, so children are expected to call
+ * {@link Figure#fireFigureMoved()} whenever their bounds change.
+ * <P>
+ * Children which would cover too many cells are kept in a separate list which
+ * is always searched.
+ *
+ * @since 3.9
+ */
+final class ChildIndex implements FigureListener {
+
+	/**
+	 * The distance outside of a child's bounds that still counts as a hit. A
+	 * {@link Polyline} accepts points within its tolerance of its bounds.
+	 */
+	static final int TOLERANCE = 4;
+
+	private static final int CELL_SHIFT = 7;
+	private static final int MAX_CELLS = 64;
+
+	private static final Comparator Z_ORDER = new Comparator() {
+		public int compare(Object o1, Object o2) {
+			return ((Entry) o1).order - ((Entry) o2).order;
+		}
+	};
+
+	private static final class Entry {
+		final IFigure figure;
+		int x1, y1, x2, y2;
+		boolean large;
+		int order;
+		int stamp;
+
+		Entry(IFigure figure) {
+			this.figure = figure;
+		}
+	}
+
+	private static final class Cell {
+		final int cx, cy;
+		Entry[] entries = new Entry[4];
+		int size;
+		Cell next;
+
+		Cell(int cx, int cy) {
+			this.cx = cx;
+			this.cy = cy;
+		}
+
+		void add(Entry entry) {
+			if (size == entries.length) {
+				Entry[] old = entries;
+				entries = new Entry[size * 2];
+				System.arraycopy(old, 0, entries, 0, size);
+			}
+			entries[size++] = entry;
+		}
+
+		void remove(Entry entry) {
+			for (int i = 0; i < size; i++)
+				if (entries[i] == entry) {
+					entries[i] = entries[--size];
+					entries[size] = null;
+					return;
+				}
+		}
+	}
+
+	private final IFigure host;
+	private final Map entries = new IdentityHashMap();
+	private Cell[] table = new Cell[64];
+	private int cellCount;
+	private Entry[] large = new Entry[4];
+	private int largeCount;
+	private Entry[] results = new Entry[16];
+	private int nextOrder;
+	private boolean orderValid = true;
+	private int stamp;
+	private boolean paintIndexed;
+
+	/**
+	 * Creates an index over the current children of the given figure.
+	 *
+	 * @param host
+	 *            the figure whose children are indexed
+	 */
+	ChildIndex(IFigure host) {
+		this.host = host;
+		List children = host.getChildren();
+		for (int i = 0; i < children.size(); i++)
+			add((IFigure) children.get(i));
+	}
+
+	/**
+	 * Adds a child which has just been added to the host.
+	 *
+	 * @param child
+	 *            the new child
+	 */
+	void add(IFigure child) {
+		Entry entry = new Entry(child);
+		List children = host.getChildren();
+		if (children.get(children.size() - 1) == child)
+			entry.order = nextOrder++;
+		else
+			orderValid = false;
+		entries.put(child, entry);
+		insert(entry);
+		child.addFigureListener(this);
+	}
+
+	/**
+	 * Stops tracking all children.
+	 */
+	void dispose() {
+		Iterator iter = entries.keySet().iterator();
+		while (iter.hasNext())
+			((IFigure) iter.next()).removeFigureListener(this);
+		entries.clear();
+	}
+
+	/**
+	 * Returns the children whose bounds, expanded by {@link #TOLERANCE},
+	 * contain the given point. The children are returned topmost first, which
+	 * is the reverse of the host's children order.
+	 *
+	 * @param x
+	 *            the x coordinate, in the children's coordinate system
+	 * @param y
+	 *            the y coordinate, in the children's coordinate system
+	 * @return the candidate children
+	 */
+	IFigure[] findChildrenAt(int x, int y) {
+		validateOrder();
+		int count = 0;
+		Cell cell = getCell(x >> CELL_SHIFT, y >> CELL_SHIFT);
+		if (cell != null)
+			for (int i = 0; i < cell.size; i++)
+				if (contains(cell.entries[i], x, y))
+					count = addResult(cell.entries[i], count);
+		for (int i = 0; i < largeCount; i++)
+			if (contains(large[i], x, y))
+				count = addResult(large[i], count);
+		sort(count);
+		IFigure[] found = new IFigure[count];
+		for (int i = 0; i < count; i++) {
+			found[i] = results[count - 1 - i].figure;
+			results[count - 1 - i] = null;
+		}
+		return found;
+	}
+
+	/**
+	 * Returns the children whose bounds, expanded by {@link #TOLERANCE},
+	 * intersect the given rectangle. The children are returned in the host's
+	 * children order, which is the order in which they are painted.
+	 *
+	 * @param rect
+	 *            the area, in the children's coordinate system
+	 * @return the candidate children
+	 */
+	IFigure[] findChildrenIntersecting(Rectangle rect) {
+		validateOrder();
+		stamp++;
+		int count = 0;
+		int x1 = rect.x >> CELL_SHIFT, y1 = rect.y >> CELL_SHIFT;
+		int x2 = (rect.x + rect.width) >> CELL_SHIFT;
+		int y2 = (rect.y + rect.height) >> CELL_SHIFT;
+		if ((long) (x2 - x1 + 1) * (y2 - y1 + 1) > cellCount) {
+			// Fewer cells are occupied than covered, so visit the occupied ones
+			for (int i = 0; i < table.length; i++)
+				for (Cell cell = table[i]; cell != null; cell = cell.next)
+					if (cell.cx >= x1 && cell.cx <= x2 && cell.cy >= y1
+							&& cell.cy <= y2)
+						count = collect(cell, rect, count);
+		} else {
+			for (int cx = x1; cx <= x2; cx++)
+				for (int cy = y1; cy <= y2; cy++) {
+					Cell cell = getCell(cx, cy);
+					if (cell != null)
+						count = collect(cell, rect, count);
+				}
+		}
+		for (int i = 0; i < largeCount; i++)
+			if (intersects(large[i], rect))
+				count = addResult(large[i], count);
+		sort(count);
+		IFigure[] found = new IFigure[count];
+		for (int i = 0; i < count; i++) {
+			found[i] = results[i].figure;
+			results[i] = null;
+		}
+		return found;
+	}
+
+	/**
+	 * Updates the grid when a child's bounds change.
+	 *
+	 * @see FigureListener#figureMoved(IFigure)
+	 */
+	public void figureMoved(IFigure source) {
+		Entry entry = (Entry) entries.get(source);
+		if (entry == null)
+			return;
+		Rectangle r = source.getBounds();
+		if (!entry.large && entry.x1 == cellX1(r) && entry.y1 == cellY1(r)
+				&& entry.x2 == cellX2(r) && entry.y2 == cellY2(r))
+			return;
+		delete(entry);
+		insert(entry);
+	}
+
+	/**
+	 * Notes that the host's children have been reordered.
+	 */
+	void invalidateOrder() {
+		orderValid = false;
+	}
+
+	/**
+	 * Forgets a child which has just been removed from the host.
+	 *
+	 * @param child
+	 *            the removed child
+	 */
+	void remove(IFigure child) {
+		Entry entry = (Entry) entries.remove(child);
+		if (entry == null)
+			return;
+		delete(entry);
+		child.removeFigureListener(this);
+	}
+
+	private int addResult(Entry entry, int count) {
+		if (count == results.length) {
+			Entry[] old = results;
+			results = new Entry[count * 2];
+			System.arraycopy(old, 0, results, 0, count);
+		}
+		results[count] = entry;
+		return count + 1;
+	}
+
+	private int collect(Cell cell, Rectangle rect, int count) {
+		for (int i = 0; i < cell.size; i++) {
+			Entry entry = cell.entries[i];
+			if (entry.stamp != stamp && intersects(entry, rect)) {
+				entry.stamp = stamp;
+				count = addResult(entry, count);
+			}
+		}
+		return count;
+	}
+
+	private static int cellX1(Rectangle r) {
+		return (r.x - TOLERANCE) >> CELL_SHIFT;
+	}
+
+	private static int cellX2(Rectangle r) {
+		return (r.x + r.width + TOLERANCE) >> CELL_SHIFT;
+	}
+
+	private static int cellY1(Rectangle r) {
+		return (r.y - TOLERANCE) >> CELL_SHIFT;
+	}
+
+	private static int cellY2(Rectangle r) {
+		return (r.y + r.height + TOLERANCE) >> CELL_SHIFT;
+	}
+
+	private static boolean contains(Entry entry, int x, int y) {
+		Rectangle r = entry.figure.getBounds();
+		return x >= r.x - TOLERANCE && y >= r.y - TOLERANCE
+				&& x <= r.x + r.width + TOLERANCE
+				&& y <= r.y + r.height + TOLERANCE;
+	}
+
+	private void delete(Entry entry) {
+		if (entry.large) {
+			for (int i = 0; i < largeCount; i++)
+				if (large[i] == entry) {
+					large[i] = large[--largeCount];
+					large[largeCount] = null;
+					break;
+				}
+			return;
+		}
+		for (int cx = entry.x1; cx <= entry.x2; cx++)
+			for (int cy = entry.y1; cy <= entry.y2; cy++) {
+				Cell cell = getCell(cx, cy);
+				if (cell == null)
+					continue;
+				cell.remove(entry);
+				if (cell.size == 0)
+					removeCell(cell);
+			}
+	}
+
+	private Cell getCell(int cx, int cy) {
+		Cell cell = table[hash(cx, cy) & (table.length - 1)];
+		while (cell != null && (cell.cx != cx || cell.cy != cy))
+			cell = cell.next;
+		return cell;
+	}
+
+	private static int hash(int cx, int cy) {
+		int h = cx * 0x9E3779B1 + cy;
+		return h ^ (h >>> 16);
+	}
+
+	private void insert(Entry entry) {
+		Rectangle r = entry.figure.getBounds();
+		entry.x1 = cellX1(r);
+		entry.y1 = cellY1(r);
+		entry.x2 = cellX2(r);
+		entry.y2 = cellY2(r);
+		long cells = (long) (entry.x2 - entry.x1 + 1)
+				* (entry.y2 - entry.y1 + 1);
+		entry.large = cells > MAX_CELLS;
+		if (entry.large) {
+			if (largeCount == large.length) {
+				Entry[] old = large;
+				large = new Entry[largeCount * 2];
+				System.arraycopy(old, 0, large, 0, largeCount);
+			}
+			large[largeCount++] = entry;
+			return;
+		}
+		for (int cx = entry.x1; cx <= entry.x2; cx++)
+			for (int cy = entry.y1; cy <= entry.y2; cy++) {
+				Cell cell = getCell(cx, cy);
+				if (cell == null)
+					cell = newCell(cx, cy);
+				cell.add(entry);
+			}
+	}
+
+	private static boolean intersects(Entry entry, Rectangle rect) {
+		Rectangle r = entry.figure.getBounds();
+		return rect.x <= r.x + r.width + TOLERANCE
+				&& rect.y <= r.y + r.height + TOLERANCE
+				&& rect.x + rect.width >= r.x - TOLERANCE
+				&& rect.y + rect.height >= r.y - TOLERANCE;
+	}
+
+	/**
+	 * Returns whether the host paints only the children returned by
+	 * {@link #findChildrenIntersecting(Rectangle)}.
+	 *
+	 * @return <code>true</code> if painting uses the index
+	 */
+	boolean isPaintIndexed() {
+		return paintIndexed;
+	}
+
+	private Cell newCell(int cx, int cy) {
+		if (cellCount >= table.length * 3 / 4) {
+			Cell[] old = table;
+			table = new Cell[old.length * 2];
+			for (int i = 0; i < old.length; i++) {
+				Cell cell = old[i];
+				while (cell != null) {
+					Cell next = cell.next;
+					int index = hash(cell.cx, cell.cy) & (table.length - 1);
+					cell.next = table[index];
+					table[index] = cell;
+					cell = next;
+				}
+			}
+		}
+		Cell cell = new Cell(cx, cy);
+		int index = hash(cx, cy) & (table.length - 1);
+		cell.next = table[index];
+		table[index] = cell;
+		cellCount++;
+		return cell;
+	}
+
+	private void removeCell(Cell cell) {
+		int index = hash(cell.cx, cell.cy) & (table.length - 1);
+		if (table[index] == cell)
+			table[index] = cell.next;
+		else {
+			Cell prev = table[index];
+			while (prev.next != cell)
+				prev = prev.next;
+			prev.next = cell.next;
+		}
+		cellCount--;
+	}
+
+	/**
+	 * Sets whether the host paints only the children returned by
+	 * {@link #findChildrenIntersecting(Rectangle)}.
+	 *
+	 * @param value
+	 *            <code>true</code> if painting uses the index
+	 */
+	void setPaintIndexed(boolean value) {
+		paintIndexed = value;
+	}
+
+	private void sort(int count) {
+		if (count > 8) {
+			Arrays.sort(results, 0, count, Z_ORDER);
+			return;
+		}
+		for (int i = 1; i < count; i++) {
+			Entry entry = results[i];
+			int j = i;
+			for (; j > 0 && results[j - 1].order > entry.order; j--)
+				results[j] = results[j - 1];
+			results[j] = entry;
+		}
+	}
+
+	/**
+	 * Renumbers the children after one was inserted somewhere other than at
+	 * the end of the host's children.
+	 */
+	private void validateOrder() {
+		if (orderValid)
+			return;
+		List children = host.getChildren();
+		for (int i = 0; i < children.size(); i++) {
+			Entry entry = (Entry) entries.get(children.get(i));
+			if (entry != null)
+				entry.order = i;
+		}
+		nextOrder = children.size();
+		orderValid = true;
+	}
+
+}
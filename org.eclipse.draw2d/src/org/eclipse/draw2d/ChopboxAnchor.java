@@ -21,6 +21,13 @@ import org.eclipse.draw2d.geometry.Rectangle;
  */
 public class ChopboxAnchor extends AbstractConnectionAnchor {
 
+	private static final OverrideCache POINT_API = new OverrideCache(
+			new String[] { "getLocation", "getReferencePoint" }, //$NON-NLS-1$ //$NON-NLS-2$
+			new Class[][] { { Point.class }, {} }, new Class[] {
+					ChopboxAnchor.class, ChopboxAnchor.class });
+
+	private static final Point REFERENCE = new Point();
+
 	/**
 	 * Constructs a new ChopboxAnchor.
 	 */
@@ -48,6 +55,36 @@ public class ChopboxAnchor extends AbstractConnectionAnchor {
 	 * @return The anchor location
 	 */
 	public Point getLocation(Point reference) {
+		long location = locate(reference.x, reference.y);
+		return new Point(getX(location), getY(location));
+	}
+
+	/**
+	 * Computes the same location as {@link #getLocation(Point)} without
+	 * creating <code>Point</code> objects, unless a subclass has overridden
+	 * that method.
+	 * 
+	 * @see AbstractConnectionAnchor#getLocation(int, int, int[])
+	 * @since 3.9
+	 */
+	public void getLocation(int referenceX, int referenceY, int[] location) {
+		if (POINT_API.isOverridden(getClass()))
+			super.getLocation(referenceX, referenceY, location);
+		else {
+			long result = locate(referenceX, referenceY);
+			location[0] = getX(result);
+			location[1] = getY(result);
+		}
+	}
+
+	boolean hasPrimitiveLocation() {
+		return !POINT_API.isOverridden(getClass());
+	}
+
+	/**
+	 * Returns the anchor location, packed by {@link #pack(int, int)}.
+	 */
+	private long locate(int referenceX, int referenceY) {
 		Rectangle r = Rectangle.SINGLETON;
 		r.setBounds(getBox());
 		r.translate(-1, -1);
@@ -58,12 +95,13 @@ public class ChopboxAnchor extends AbstractConnectionAnchor {
 		float centerY = r.y + 0.5f * r.height;
 
 		if (r.isEmpty()
-				|| (reference.x == (int) centerX && reference.y == (int) centerY))
-			return new Point((int) centerX, (int) centerY); // This avoids
-															// divide-by-zero
+				|| (referenceX == (int) centerX && referenceY == (int) centerY)) {
+			// This avoids divide-by-zero
+			return pack((int) centerX, (int) centerY);
+		}
 
-		float dx = reference.x - centerX;
-		float dy = reference.y - centerY;
+		float dx = referenceX - centerX;
+		float dy = referenceY - centerY;
 
 		// r.width, r.height, dx, and dy are guaranteed to be non-zero.
 		float scale = 0.5f / Math.max(Math.abs(dx) / r.width, Math.abs(dy)
@@ -74,7 +112,7 @@ public class ChopboxAnchor extends AbstractConnectionAnchor {
 		centerX += dx;
 		centerY += dy;
 
-		return new Point(Math.round(centerX), Math.round(centerY));
+		return pack(Math.round(centerX), Math.round(centerY));
 	}
 
 	/**
@@ -102,6 +140,25 @@ public class ChopboxAnchor extends AbstractConnectionAnchor {
 		return ref;
 	}
 
+	/**
+	 * Copies the center of the box into the given array, unless a subclass
+	 * has overridden {@link #getReferencePoint()}.
+	 * 
+	 * @see AbstractConnectionAnchor#getReferencePoint(int[])
+	 * @since 3.9
+	 */
+	public void getReferencePoint(int[] reference) {
+		if (POINT_API.isOverridden(getClass())) {
+			super.getReferencePoint(reference);
+			return;
+		}
+		getBox().getCenter(reference);
+		REFERENCE.setLocation(reference[0], reference[1]);
+		getOwner().translateToAbsolute(REFERENCE);
+		reference[0] = REFERENCE.x;
+		reference[1] = REFERENCE.y;
+	}
+
 	/**
 	 * Returns <code>true</code> if the other anchor has the same owner and box.
 	 * 
@@ -11,10 +11,14 @@
 package org.eclipse.draw2d;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.SWTException;
@@ -47,9 +51,11 @@ public class DeferredUpdateManager extends UpdateManager {
 
 	private Rectangle damage;
 	private Map dirtyRegions = new HashMap();
+	private int maxDamageRegions = 8;
 
 	private GraphicsSource graphicsSource;
 	private List invalidFigures = new ArrayList();
+	private Set invalidSet = new HashSet();
 	private IFigure root;
 	private boolean updateQueued;
 
@@ -57,6 +63,38 @@ public class DeferredUpdateManager extends UpdateManager {
 	private boolean validating;
 	private RunnableChain afterUpdate;
 
+	private int batchDepth;
+	private boolean updateDeferred;
+	private boolean validationDeferred;
+
+	private int invalidations;
+	private int passInvalidations;
+	private int passRoots;
+	private int passFigures;
+	private int passLayouts;
+
+	/**
+	 * A validation root and its depth in the figure tree.
+	 */
+	private static class InvalidRoot {
+		final IFigure figure;
+		final int depth;
+
+		InvalidRoot(IFigure figure) {
+			this.figure = figure;
+			int d = 0;
+			for (IFigure f = figure.getParent(); f != null; f = f.getParent())
+				d++;
+			depth = d;
+		}
+	}
+
+	private static final Comparator TOP_DOWN = new Comparator() {
+		public int compare(Object o1, Object o2) {
+			return ((InvalidRoot) o1).depth - ((InvalidRoot) o2).depth;
+		}
+	};
+
 	private static class RunnableChain {
 		RunnableChain next;
 		Runnable run;
@@ -120,6 +158,42 @@ public class DeferredUpdateManager extends UpdateManager {
 		queueWork();
 	}
 
+	/**
+	 * Adds a damaged rectangle to the list of disjoint damaged rectangles.
+	 * Rectangles which overlap, or whose union is not much larger than the
+	 * rectangles themselves, are merged. When there are too many rectangles,
+	 * the two which merge with the least additional area are merged.
+	 */
+	private void addDamage(List regions, Rectangle rect) {
+		for (int i = 0; i < regions.size(); i++) {
+			Rectangle region = (Rectangle) regions.get(i);
+			if (shouldMerge(region, rect)) {
+				regions.remove(i);
+				addDamage(regions, rect.getUnion(region));
+				return;
+			}
+		}
+		regions.add(rect);
+		if (regions.size() <= maxDamageRegions)
+			return;
+		int first = 0, second = 1;
+		long least = Long.MAX_VALUE;
+		for (int i = 0; i < regions.size(); i++)
+			for (int j = i + 1; j < regions.size(); j++) {
+				Rectangle r1 = (Rectangle) regions.get(i);
+				Rectangle r2 = (Rectangle) regions.get(j);
+				long waste = area(r1.getUnion(r2)) - area(r1) - area(r2);
+				if (waste < least) {
+					least = waste;
+					first = i;
+					second = j;
+				}
+			}
+		Rectangle r2 = (Rectangle) regions.remove(second);
+		Rectangle r1 = (Rectangle) regions.remove(first);
+		addDamage(regions, r1.getUnion(r2));
+	}
+
 	/**
 	 * Adds the given figure to the update queue. Invalid figures will be
 	 * validated before the damaged regions are repainted.
@@ -128,12 +202,17 @@ public class DeferredUpdateManager extends UpdateManager {
 	 *            the invalid figure
 	 */
 	public synchronized void addInvalidFigure(IFigure f) {
-		if (invalidFigures.contains(f))
+		invalidations++;
+		if (!invalidSet.add(f))
 			return;
 		queueWork();
 		invalidFigures.add(f);
 	}
 
+	private static long area(Rectangle r) {
+		return (long) r.width * r.height;
+	}
+
 	/**
 	 * Returns a Graphics object for the given region.
 	 * 
@@ -147,6 +226,69 @@ public class DeferredUpdateManager extends UpdateManager {
 		return graphicsSource.getGraphics(region);
 	}
 
+	/**
+	 * Returns the number of calls to {@link #addInvalidFigure(IFigure)},
+	 * including duplicates, which were handled by the last validation pass.
+	 * 
+	 * @return the number of invalidations
+	 * @since 3.9
+	 */
+	public int getInvalidationCount() {
+		return passInvalidations;
+	}
+
+	/**
+	 * Returns the number of layouts run by the last validation pass, that is
+	 * the number of validated figures which have a layout manager. See
+	 * {@link #getValidatedFigureCount()} for the figures which are counted.
+	 * 
+	 * @return the number of layouts
+	 * @since 3.9
+	 */
+	public int getLayoutCount() {
+		return passLayouts;
+	}
+
+	/**
+	 * Returns the number of figures validated by the last validation pass.
+	 * These are the figures which were invalid when their validation root was
+	 * validated; figures only invalidated by the layout of their parent are
+	 * validated along with it, but not counted.
+	 * 
+	 * @return the number of validated figures
+	 * @since 3.9
+	 */
+	public int getValidatedFigureCount() {
+		return passFigures;
+	}
+
+	/**
+	 * Returns the number of invalid roots validated by the last validation
+	 * pass. Roots nested in another invalid root are validated with it and are
+	 * not counted.
+	 * 
+	 * @return the number of validation roots
+	 * @since 3.9
+	 */
+	public int getValidationRootCount() {
+		return passRoots;
+	}
+
+	/**
+	 * Counts the invalid figures which validating the given figure validates,
+	 * which are those reached from it through invalid figures.
+	 */
+	private void countInvalidFigures(IFigure figure) {
+		if (figure instanceof Figure && ((Figure) figure).isValid())
+			return;
+		passFigures++;
+		if (figure.getLayoutManager() != null)
+			passLayouts++;
+		List children = figure.getChildren();
+		for (int i = 0; i < children.size(); i++)
+			countInvalidFigures((IFigure) children.get(i));
+	}
+
 	void paint(GC gc) {
 		if (!validating) {
 			SWTGraphics graphics = new SWTGraphics(gc);
@@ -161,7 +303,7 @@ public class DeferredUpdateManager extends UpdateManager {
 				map.put(root, rect);
 				firePainting(rect, map);
 			}
-			performValidation();
+			validateInvalidFigures();
 			root.paint(graphics);
 			graphics.dispose();
 		} else {
@@ -185,6 +327,10 @@ public class DeferredUpdateManager extends UpdateManager {
 	public synchronized void performUpdate() {
 		if (isDisposed() || updating)
 			return;
+		if (batchDepth > 0) {
+			updateDeferred = true;
+			return;
+		}
 		updating = true;
 		try {
 			performValidation();
@@ -206,21 +352,12 @@ public class DeferredUpdateManager extends UpdateManager {
 	 * @see UpdateManager#performValidation()
 	 */
 	public synchronized void performValidation() {
-		if (invalidFigures.isEmpty() || validating)
+		if (batchDepth > 0) {
+			if (!invalidFigures.isEmpty())
+				validationDeferred = true;
 			return;
-		try {
-			IFigure fig;
-			validating = true;
-			fireValidating();
-			for (int i = 0; i < invalidFigures.size(); i++) {
-				fig = (IFigure) invalidFigures.get(i);
-				invalidFigures.set(i, null);
-				fig.validate();
-			}
-		} finally {
-			invalidFigures.clear();
-			validating = false;
 		}
+		validateInvalidFigures();
 	}
 
 	/**
@@ -273,19 +410,26 @@ public class DeferredUpdateManager extends UpdateManager {
 
 	/**
 	 * Repaints the dirty regions on the update queue and calls
-	 * {@link UpdateManager#firePainting(Rectangle, Map)}, unless there are no
-	 * dirty regions.
+	 * {@link UpdateManager#firePainting(Rectangle[], Map)}, unless there are
+	 * no dirty regions. The dirty regions are gathered into a few disjoint
+	 * damaged rectangles, each of which is painted separately, so that
+	 * changes far apart from each other do not repaint the area in between. A
+	 * {@link NativeGraphicsSource} paints all rectangles at once, clipped to
+	 * their region. The dirty regions passed to the listeners are left in the
+	 * coordinates of their figures, and are not clipped.
 	 */
 	protected void repairDamage() {
 		Iterator keys = dirtyRegions.keySet().iterator();
 		Rectangle contribution;
 		IFigure figure;
 		IFigure walker;
+		List regions = new ArrayList();
 
 		while (keys.hasNext()) {
 			figure = (IFigure) keys.next();
 			walker = figure.getParent();
-			contribution = (Rectangle) dirtyRegions.get(figure);
+			// The regions are passed to listeners as they were queued
+			contribution = ((Rectangle) dirtyRegions.get(figure)).getCopy();
 			// A figure can't paint beyond its own bounds
 			contribution.intersect(figure.getBounds());
 			while (!contribution.isEmpty() && walker != null) {
@@ -293,20 +437,26 @@ public class DeferredUpdateManager extends UpdateManager {
 				contribution.intersect(walker.getBounds());
 				walker = walker.getParent();
 			}
-			if (damage == null)
-				damage = new Rectangle(contribution);
-			else
-				damage.union(contribution);
+			if (!contribution.isEmpty())
+				addDamage(regions, new Rectangle(contribution));
 		}
 
+		Rectangle[] damaged = (Rectangle[]) regions
+				.toArray(new Rectangle[regions.size()]);
 		if (!dirtyRegions.isEmpty()) {
 			Map oldRegions = dirtyRegions;
 			dirtyRegions = new HashMap();
-			firePainting(damage, oldRegions);
+			firePainting(damaged, oldRegions);
 		}
 
-		if (damage != null && !damage.isEmpty()) {
-			// ystem.out.println(damage);
+		if (damaged.length > 1
+				&& graphicsSource instanceof NativeGraphicsSource) {
+			// The native paint clips to the region made of all rectangles
+			((NativeGraphicsSource) graphicsSource).redraw(damaged);
+			return;
+		}
+		for (int i = 0; i < damaged.length; i++) {
+			damage = damaged[i];
 			Graphics graphics = getGraphics(damage);
 			if (graphics != null) {
 				root.paint(graphics);
@@ -329,6 +479,32 @@ public class DeferredUpdateManager extends UpdateManager {
 			queueWork();
 	}
 
+	/**
+	 * Runs the given runnable as one batch. Updates and validations requested
+	 * while it runs, including calls to {@link #performUpdate()} and
+	 * {@link #performValidation()}, are deferred until the outermost batch
+	 * returns, and then performed in a single pass.
+	 * 
+	 * @see UpdateManager#runBatched(Runnable)
+	 * @since 3.9
+	 */
+	public synchronized void runBatched(Runnable runnable) {
+		batchDepth++;
+		try {
+			runnable.run();
+		} finally {
+			if (--batchDepth == 0) {
+				boolean update = updateDeferred;
+				boolean validate = validationDeferred;
+				updateDeferred = validationDeferred = false;
+				if (update)
+					performUpdate();
+				else if (validate)
+					performValidation();
+			}
+		}
+	}
+
 	/**
 	 * Sets the graphics source.
 	 * 
@@ -339,6 +515,21 @@ public class DeferredUpdateManager extends UpdateManager {
 		graphicsSource = gs;
 	}
 
+	/**
+	 * Sets the maximum number of disjoint rectangles painted by one update.
+	 * When more rectangles are damaged, those closest to each other are merged.
+	 * A value of 1 paints the union of all damage at once. The default is 8.
+	 * 
+	 * @param count
+	 *            the maximum number of damaged rectangles, at least 1
+	 * @since 3.9
+	 */
+	public void setMaxDamageRegions(int count) {
+		if (count < 1)
+			throw new IllegalArgumentException();
+		maxDamageRegions = count;
+	}
+
 	/**
 	 * Sets the root figure.
 	 * 
@@ -349,6 +540,19 @@ public class DeferredUpdateManager extends UpdateManager {
 		root = figure;
 	}
 
+	/**
+	 * Returns <code>true</code> if the two rectangles should be painted as one:
+	 * they overlap, or their union is at most a quarter larger than the two
+	 * rectangles together.
+	 */
+	private static boolean shouldMerge(Rectangle r1, Rectangle r2) {
+		if (r1.x < r2.x + r2.width && r2.x < r1.x + r1.width
+				&& r1.y < r2.y + r2.height && r2.y < r1.y + r1.height)
+			return true;
+		long parts = area(r1) + area(r2);
+		return area(r1.getUnion(r2)) * 4 <= parts * 5;
+	}
+
 	/**
 	 * Validates all invalid figures on the update queue and calls
 	 * {@link UpdateManager#fireValidating()} unless there are no invalid
@@ -358,4 +562,43 @@ public class DeferredUpdateManager extends UpdateManager {
 		performValidation();
 	}
 
+	/**
+	 * Validates the queued figures top-down, so that a root nested in another
+	 * invalid root is validated together with it. Figures invalidated while
+	 * validating are validated by a further round of the same pass.
+	 */
+	private void validateInvalidFigures() {
+		if (invalidFigures.isEmpty() || validating)
+			return;
+		try {
+			validating = true;
+			passInvalidations = invalidations;
+			invalidations = passRoots = passFigures = passLayouts = 0;
+			fireValidating();
+			while (!invalidFigures.isEmpty()) {
+				InvalidRoot[] roots = new InvalidRoot[invalidFigures.size()];
+				for (int i = 0; i < roots.length; i++)
+					roots[i] = new InvalidRoot(
+							(IFigure) invalidFigures.get(i));
+				invalidFigures.clear();
+				invalidSet.clear();
+				Arrays.sort(roots, TOP_DOWN);
+				for (int i = 0; i < roots.length; i++) {
+					int validated = passFigures;
+					countInvalidFigures(roots[i].figure);
+					if (passFigures > validated)
+						passRoots++;
+					roots[i].figure.validate();
+					roots[i] = null;
+				}
+			}
+		} finally {
+			invalidFigures.clear();
+			invalidSet.clear();
+			passInvalidations += invalidations;
+			invalidations = 0;
+			validating = false;
+		}
+	}
+
 }
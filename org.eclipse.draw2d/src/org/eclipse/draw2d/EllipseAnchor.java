@@ -21,6 +21,11 @@ import org.eclipse.draw2d.geometry.Rectangle;
  */
 public class EllipseAnchor extends AbstractConnectionAnchor {
 
+	private static final OverrideCache POINT_API = new OverrideCache(
+			new String[] { "getLocation", "getReferencePoint" }, //$NON-NLS-1$ //$NON-NLS-2$
+			new Class[][] { { Point.class }, {} }, new Class[] {
+					EllipseAnchor.class, AbstractConnectionAnchor.class });
+
 	/**
 	 * @see org.eclipse.draw2d.AbstractConnectionAnchor#AbstractConnectionAnchor()
 	 */
@@ -41,29 +46,62 @@ public class EllipseAnchor extends AbstractConnectionAnchor {
 	 * @see org.eclipse.draw2d.ConnectionAnchor#getLocation(Point)
 	 */
 	public Point getLocation(Point reference) {
+		long location = locate(reference.x, reference.y);
+		return new Point(getX(location), getY(location));
+	}
+
+	/**
+	 * Computes the same location as {@link #getLocation(Point)} without
+	 * creating <code>Point</code> objects, unless a subclass has overridden
+	 * that method.
+	 * 
+	 * @see AbstractConnectionAnchor#getLocation(int, int, int[])
+	 * @since 3.9
+	 */
+	public void getLocation(int referenceX, int referenceY, int[] location) {
+		if (POINT_API.isOverridden(getClass()))
+			super.getLocation(referenceX, referenceY, location);
+		else {
+			long result = locate(referenceX, referenceY);
+			location[0] = getX(result);
+			location[1] = getY(result);
+		}
+	}
+
+	boolean hasPrimitiveLocation() {
+		return !POINT_API.isOverridden(getClass());
+	}
+
+	/**
+	 * Returns the anchor location, packed by {@link #pack(int, int)}.
+	 */
+	private long locate(int referenceX, int referenceY) {
 		Rectangle r = Rectangle.SINGLETON;
 		r.setBounds(getOwner().getBounds());
 		r.translate(-1, -1);
 		r.resize(1, 1);
 		getOwner().translateToAbsolute(r);
 
-		Point ref = r.getCenter().negate().translate(reference);
+		int centerX = r.x + r.width / 2;
+		int centerY = r.y + r.height / 2;
+		int refX = referenceX - centerX;
+		int refY = referenceY - centerY;
 
-		if (ref.x == 0)
-			return new Point(reference.x, (ref.y > 0) ? r.bottom() : r.y);
-		if (ref.y == 0)
-			return new Point((ref.x > 0) ? r.right() : r.x, reference.y);
+		if (refX == 0)
+			return pack(referenceX, (refY > 0) ? r.bottom() : r.y);
+		if (refY == 0)
+			return pack((refX > 0) ? r.right() : r.x, referenceY);
 
-		float dx = (ref.x > 0) ? 0.5f : -0.5f;
-		float dy = (ref.y > 0) ? 0.5f : -0.5f;
+		float dx = (refX > 0) ? 0.5f : -0.5f;
+		float dy = (refY > 0) ? 0.5f : -0.5f;
 
-		// ref.x, ref.y, r.width, r.height != 0 => safe to proceed
+		// refX, refY, r.width, r.height != 0 => safe to proceed
 
-		float k = (float) (ref.y * r.width) / (ref.x * r.height);
+		float k = (float) (refY * r.width) / (refX * r.height);
 		k = k * k;
 
-		return r.getCenter().translate((int) (r.width * dx / Math.sqrt(1 + k)),
-				(int) (r.height * dy / Math.sqrt(1 + 1 / k)));
+		return pack(centerX + (int) (r.width * dx / Math.sqrt(1 + k)), centerY
+				+ (int) (r.height * dy / Math.sqrt(1 + 1 / k)));
 	}
 
 	/**
@@ -15,6 +15,7 @@ import java.beans.PropertyChangeSupport;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 
@@ -77,6 +78,7 @@ public class Figure implements IFigure {
 	private EventListenerList eventListeners = new EventListenerList();
 
 	private List children = Collections.EMPTY_LIST;
+	private ChildIndex childIndex;
 
 	/**
 	 * This Figure's preferred size.
@@ -153,6 +155,8 @@ public class Figure implements IFigure {
 		else
 			children.add(index, figure);
 		figure.setParent(this);
+		if (childIndex != null)
+			childIndex.add(figure);
 
 		if (layoutManager != null)
 			layoutManager.setConstraint(figure, constraint);
@@ -349,6 +353,18 @@ public class Figure implements IFigure {
 		x = PRIVATE_POINT.x;
 		y = PRIVATE_POINT.y;
 		IFigure fig;
+		if (childIndex != null) {
+			IFigure[] candidates = childIndex.findChildrenAt(x, y);
+			for (int i = 0; i < candidates.length; i++) {
+				fig = candidates[i];
+				if (fig.isVisible()) {
+					fig = fig.findFigureAt(x, y, search);
+					if (fig != null)
+						return fig;
+				}
+			}
+			return null;
+		}
 		for (int i = children.size(); i > 0;) {
 			i--;
 			fig = (IFigure) children.get(i);
@@ -447,6 +463,18 @@ public class Figure implements IFigure {
 			return null;
 
 		IFigure fig;
+		if (childIndex != null) {
+			IFigure[] candidates = childIndex.findChildrenAt(PRIVATE_POINT.x,
+					PRIVATE_POINT.y);
+			for (int i = 0; i < candidates.length; i++) {
+				fig = candidates[i];
+				if (fig.isVisible() && fig.isEnabled()
+						&& fig.containsPoint(PRIVATE_POINT.x, PRIVATE_POINT.y))
+					return fig.findMouseEventTargetAt(PRIVATE_POINT.x,
+							PRIVATE_POINT.y);
+			}
+			return null;
+		}
 		for (int i = children.size(); i > 0;) {
 			i--;
 			fig = (IFigure) children.get(i);
@@ -599,6 +627,16 @@ public class Figure implements IFigure {
 		return bounds;
 	}
 
+	/**
+	 * Returns the spatial index of this Figure's children, or
+	 * <code>null</code> if the children are not indexed.
+	 * 
+	 * @return the index or <code>null</code>
+	 */
+	ChildIndex getChildIndex() {
+		return childIndex;
+	}
+
 	/**
 	 * @see IFigure#getChildren()
 	 */
@@ -979,6 +1017,30 @@ public class Figure implements IFigure {
 		setValid(false);
 	}
 
+	/**
+	 * Returns <code>true</code> if this Figure keeps a spatial index of its
+	 * children.
+	 * 
+	 * @return <code>true</code> if the children are indexed
+	 * @see #setChildrenIndexed(boolean)
+	 * @since 3.9
+	 */
+	public boolean isChildrenIndexed() {
+		return childIndex != null;
+	}
+
+	/**
+	 * Returns <code>true</code> if this Figure paints only the children which
+	 * intersect the clip, as found through the spatial index of its children.
+	 * 
+	 * @return <code>true</code> if painting uses the index
+	 * @see #setIndexedPainting(boolean)
+	 * @since 3.9
+	 */
+	public boolean isIndexedPainting() {
+		return childIndex != null && childIndex.isPaintIndexed();
+	}
+
 	/**
 	 * @see IFigure#invalidateTree()
 	 */
@@ -1142,31 +1204,43 @@ public class Figure implements IFigure {
 	 * entered.
 	 * <P>
 	 * This method must leave the Graphics in its original state upon return.
+	 * <P>
+	 * If {@link #setIndexedPainting(boolean) indexed painting} is enabled, only
+	 * the children found near the current clip are visited.
 	 * 
 	 * @param graphics
 	 *            the graphics used to paint
 	 * @since 2.0
 	 */
 	protected void paintChildren(Graphics graphics) {
-		for (int i = 0; i < children.size(); i++) {
-			IFigure child = (IFigure) children.get(i);
-			if (child.isVisible()) {
-				// determine clipping areas for child
-				Rectangle[] clipping = null;
-				if (clippingStrategy != null) {
-					clipping = clippingStrategy.getClip(child);
-				} else {
-					// default clipping behaviour is to clip at bounds
-					clipping = new Rectangle[] { child.getBounds() };
-				}
-				// child may now paint inside the clipping areas
-				for (int j = 0; j < clipping.length; j++) {
-					if (clipping[j].intersects(graphics
-							.getClip(Rectangle.SINGLETON))) {
-						graphics.clipRect(clipping[j]);
-						child.paint(graphics);
-						graphics.restoreState();
-					}
+		if (childIndex != null && childIndex.isPaintIndexed()) {
+			IFigure[] visible = childIndex
+					.findChildrenIntersecting(graphics.getClip(new Rectangle()));
+			for (int i = 0; i < visible.length; i++)
+				paintChild(visible[i], graphics);
+			return;
+		}
+		for (int i = 0; i < children.size(); i++)
+			paintChild((IFigure) children.get(i), graphics);
+	}
+
+	private void paintChild(IFigure child, Graphics graphics) {
+		if (child.isVisible()) {
+			// determine clipping areas for child
+			Rectangle[] clipping = null;
+			if (clippingStrategy != null) {
+				clipping = clippingStrategy.getClip(child);
+			} else {
+				// default clipping behaviour is to clip at bounds
+				clipping = new Rectangle[] { child.getBounds() };
+			}
+			// child may now paint inside the clipping areas
+			for (int j = 0; j < clipping.length; j++) {
+				if (clipping[j].intersects(graphics
+						.getClip(Rectangle.SINGLETON))) {
+					graphics.clipRect(clipping[j]);
+					child.paint(graphics);
+					graphics.restoreState();
 				}
 			}
 		}
@@ -1272,6 +1346,8 @@ public class Figure implements IFigure {
 		figure.erase();
 		figure.setParent(null);
 		children.remove(figure);
+		if (childIndex != null)
+			childIndex.remove(figure);
 		revalidate();
 	}
 
@@ -1405,6 +1481,40 @@ public class Figure implements IFigure {
 		propertyListeners.removePropertyChangeListener(property, listener);
 	}
 
+	/**
+	 * Puts the children of this Figure in the given order, which must contain
+	 * each of the current children exactly once. Unlike removing and adding
+	 * the children again, reordering keeps their constraints, does not call
+	 * {@link #removeNotify()} and {@link #addNotify()}, and revalidates and
+	 * repaints this Figure only once.
+	 * 
+	 * @param order
+	 *            the children in their new order
+	 * @throws IllegalArgumentException
+	 *             if the list does not hold exactly the children of this
+	 *             Figure
+	 * @since 3.9
+	 */
+	public void reorderChildren(List order) {
+		if (order.size() != children.size())
+			throw new IllegalArgumentException("Order does not match children"); //$NON-NLS-1$
+		IdentityHashMap seen = new IdentityHashMap(order.size());
+		for (int i = 0; i < order.size(); i++) {
+			IFigure child = (IFigure) order.get(i);
+			if (child.getParent() != this || seen.put(child, child) != null)
+				throw new IllegalArgumentException(
+						"Order does not match children"); //$NON-NLS-1$
+		}
+		if (order.equals(children))
+			return;
+		children.clear();
+		children.addAll(order);
+		if (childIndex != null)
+			childIndex.invalidateOrder();
+		revalidate();
+		repaint();
+	}
+
 	/**
 	 * @see IFigure#repaint(Rectangle)
 	 */
@@ -1556,6 +1666,37 @@ public class Figure implements IFigure {
 			iterator.nextFigure().setEnabled(value);
 	}
 
+	/**
+	 * Sets whether this Figure keeps a spatial index of its children. Hit
+	 * testing through {@link #findFigureAt(int, int, TreeSearch)} and
+	 * {@link #findMouseEventTargetAt(int, int)} then only visits the children
+	 * near the given point instead of every child, which matters for layers
+	 * holding many thousands of figures.
+	 * <P>
+	 * The index is kept up to date as children are added and removed, and
+	 * listens for {@link FigureListener#figureMoved(IFigure)} on each child to
+	 * learn about bounds changes. It assumes that a child never contains a
+	 * point lying more than a few pixels outside of its bounds. Containers
+	 * whose children do not meet these conditions should not be indexed.
+	 * <P>
+	 * Turning the index off also turns off indexed painting.
+	 * 
+	 * @param indexed
+	 *            <code>true</code> to index the children
+	 * @see #setIndexedPainting(boolean)
+	 * @since 3.9
+	 */
+	public void setChildrenIndexed(boolean indexed) {
+		if (indexed == (childIndex != null))
+			return;
+		if (indexed)
+			childIndex = new ChildIndex(this);
+		else {
+			childIndex.dispose();
+			childIndex = null;
+		}
+	}
+
 	/**
 	 * Sets the orientation of any {@link Orientable} children. Allowable values
 	 * for <i>orientation</i> are found in {@link PositionConstants}.
@@ -1680,6 +1821,32 @@ public class Figure implements IFigure {
 		repaint();
 	}
 
+	/**
+	 * Sets whether {@link #paintChildren(Graphics)} asks the spatial index of
+	 * the children for those intersecting the clip, instead of visiting every
+	 * child. The children are still painted in z-order, so a repaint costs in
+	 * proportion to what is visible rather than to the number of children.
+	 * Enabling indexed painting also {@link #setChildrenIndexed(boolean)
+	 * indexes the children}.
+	 * <P>
+	 * Children must not paint outside of their bounds, and a
+	 * {@link IClippingStrategy} set on this Figure must not return clip
+	 * areas outside of the child's bounds. Subclasses overriding
+	 * <code>paintChildren</code> are not affected by this setting.
+	 * 
+	 * @param value
+	 *            <code>true</code> to paint only the children near the clip
+	 * @since 3.9
+	 */
+	public void setIndexedPainting(boolean value) {
+		if (value)
+			setChildrenIndexed(true);
+		if (childIndex != null && childIndex.isPaintIndexed() != value) {
+			childIndex.setPaintIndexed(value);
+			repaint();
+		}
+	}
+
 	/**
 	 * @see IFigure#setLayoutManager(LayoutManager)
 	 */
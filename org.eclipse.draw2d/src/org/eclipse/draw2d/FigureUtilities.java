@@ -31,6 +31,7 @@ public class FigureUtilities {
 	private static Font appliedFont;
 	private static FontMetrics metrics;
 	private static Color ghostFillColor = new Color(null, 31, 31, 31);
+	private static TextExtentCache textExtentCache;
 
 	/**
 	 * Returns a new Color the same as the passed color in a darker hue.
@@ -56,12 +57,21 @@ public class FigureUtilities {
 	 * @since 2.0
 	 */
 	public static FontMetrics getFontMetrics(Font f) {
+		return getTextExtentCache().getFontMetrics(f);
+	}
+
+	static FontMetrics measureFontMetrics(Font f) {
 		setFont(f);
 		if (metrics == null)
 			metrics = getGC().getFontMetrics();
 		return metrics;
 	}
 
+	static int measureAdvanceWidth(char c, Font f) {
+		setFont(f);
+		return getGC().getAdvanceWidth(c);
+	}
+
 	/**
 	 * Returns the GC used for various utilities. Advanced graphics must not be
 	 * switched on by clients using this GC.
@@ -94,6 +104,19 @@ public class FigureUtilities {
 		return getGC().textExtent(s);
 	}
 
+	/**
+	 * Returns the cache which remembers the text extents, advance widths and
+	 * font metrics measured by this class and by {@link TextUtilities}.
+	 * 
+	 * @return the text extent cache
+	 * @since 3.9
+	 */
+	public static TextExtentCache getTextExtentCache() {
+		if (textExtentCache == null)
+			textExtentCache = new TextExtentCache();
+		return textExtentCache;
+	}
+
 	/**
 	 * Returns the highest ancestor for the given figure
 	 * 
@@ -137,7 +160,7 @@ public class FigureUtilities {
 	 * @since 2.0
 	 */
 	public static Dimension getTextExtents(String text, Font f) {
-		return new Dimension(getTextDimension(text, f));
+		return getTextExtentCache().getTextExtents(text, f);
 	}
 
 	/**
@@ -151,7 +174,7 @@ public class FigureUtilities {
 	 * @since 2.0
 	 */
 	public static Dimension getStringExtents(String s, Font f) {
-		return new Dimension(getStringDimension(s, f));
+		return getTextExtentCache().getStringExtents(s, f);
 	}
 
 	/**
@@ -167,9 +190,7 @@ public class FigureUtilities {
 	 * @since 2.0
 	 */
 	public static void getTextExtents(String s, Font f, Dimension result) {
-		org.eclipse.swt.graphics.Point pt = getTextDimension(s, f);
-		result.width = pt.x;
-		result.height = pt.y;
+		result.setSize(getTextExtentCache().getTextExtents(s, f));
 	}
 
 	/**
@@ -183,7 +204,7 @@ public class FigureUtilities {
 	 * @since 2.0
 	 */
 	public static int getTextWidth(String s, Font f) {
-		return getTextDimension(s, f).x;
+		return getTextExtentCache().getTextExtents(s, f).width;
 	}
 
 	/**
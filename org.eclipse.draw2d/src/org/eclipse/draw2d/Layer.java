@@ -32,6 +32,13 @@ public class Layer extends Figure {
 		translateFromParent(pt);
 		x = pt.x;
 		y = pt.y;
+		if (getChildIndex() != null) {
+			IFigure[] candidates = getChildIndex().findChildrenAt(x, y);
+			for (int i = 0; i < candidates.length; i++)
+				if (candidates[i].containsPoint(x, y))
+					return true;
+			return false;
+		}
 		for (int i = 0; i < getChildren().size(); i++) {
 			IFigure child = (IFigure) getChildren().get(i);
 			if (child.containsPoint(x, y))
@@ -26,8 +26,8 @@ import org.eclipse.draw2d.geometry.Rectangle;
  */
 public final class ManhattanConnectionRouter extends AbstractRouter {
 
-	private Map rowsUsed = new HashMap();
-	private Map colsUsed = new HashMap();
+	private IntSet rowsUsed = new IntSet();
+	private IntSet colsUsed = new IntSet();
 	// private Hashtable offsets = new Hashtable(7);
 
 	private Map reservedInfo = new HashMap();
@@ -37,9 +37,93 @@ public final class ManhattanConnectionRouter extends AbstractRouter {
 		public List reservedCols = new ArrayList(2);
 	}
 
+	/**
+	 * A set of ints using open addressing, so that probing for a free row or
+	 * column does not create Integer objects.
+	 */
+	private static class IntSet {
+		private int[] keys = new int[16];
+		private boolean[] used = new boolean[16];
+		private int size;
+
+		private int slot(int key) {
+			int h = key * 0x9E3779B9;
+			return (h ^ (h >>> 16)) & (keys.length - 1);
+		}
+
+		boolean contains(int key) {
+			for (int i = slot(key); used[i]; i = (i + 1) & (keys.length - 1))
+				if (keys[i] == key)
+					return true;
+			return false;
+		}
+
+		void add(int key) {
+			if ((size + 1) * 2 > keys.length)
+				grow();
+			int i = slot(key);
+			for (; used[i]; i = (i + 1) & (keys.length - 1))
+				if (keys[i] == key)
+					return;
+			keys[i] = key;
+			used[i] = true;
+			size++;
+		}
+
+		void remove(int key) {
+			int mask = keys.length - 1;
+			int i = slot(key);
+			while (used[i] && keys[i] != key)
+				i = (i + 1) & mask;
+			if (!used[i])
+				return;
+			used[i] = false;
+			size--;
+			// shift back the following entries of the cluster
+			for (int j = (i + 1) & mask; used[j]; j = (j + 1) & mask) {
+				int home = slot(keys[j]);
+				if (i <= j ? (home <= i || home > j) : (home <= i && home > j)) {
+					keys[i] = keys[j];
+					used[i] = true;
+					used[j] = false;
+					i = j;
+				}
+			}
+		}
+
+		private void grow() {
+			int[] oldKeys = keys;
+			boolean[] oldUsed = used;
+			keys = new int[oldKeys.length * 2];
+			used = new boolean[oldKeys.length * 2];
+			size = 0;
+			for (int i = 0; i < oldKeys.length; i++)
+				if (oldUsed[i])
+					add(oldKeys[i]);
+		}
+	}
+
 	private static Ray UP = new Ray(0, -1), DOWN = new Ray(0, 1),
 			LEFT = new Ray(-1, 0), RIGHT = new Ray(1, 0);
 
+	/*
+	 * Directions used by the primitive routing code, indexing DX and DY.
+	 */
+	private static final int DIR_LEFT = 0, DIR_RIGHT = 1, DIR_UP = 2,
+			DIR_DOWN = 3;
+	private static final int[] DX = { -1, 1, 0, 0 }, DY = { 0, 0, -1, 1 };
+	private static final Ray[] RAYS = { LEFT, RIGHT, UP, DOWN };
+
+	/*
+	 * Buffers reused by every call to route(Connection).
+	 */
+	private final int[] startPoint = new int[2];
+	private final int[] endPoint = new int[2];
+	private final int[] positions = new int[8];
+	private final int[] pos = new int[10];
+	private final Rectangle box = new Rectangle();
+	private final Point translated = new Point();
+
 	/**
 	 * @see ConnectionRouter#invalidate(Connection)
 	 */
@@ -61,15 +145,13 @@ public final class ManhattanConnectionRouter extends AbstractRouter {
 		int direction = -1;
 		if (r % 2 == 1)
 			r--;
-		Integer i;
 		while (proximity < r) {
-			i = new Integer(r + proximity * direction);
-			if (!colsUsed.containsKey(i)) {
-				colsUsed.put(i, i);
-				reserveColumn(connection, i);
-				return i.intValue();
+			int j = r + proximity * direction;
+			if (!colsUsed.contains(j)) {
+				colsUsed.add(j);
+				reserveColumn(connection, new Integer(j));
+				return j;
 			}
-			int j = i.intValue();
 			if (j <= min)
 				return j + 2;
 			if (j >= max)
@@ -96,43 +178,55 @@ public final class ManhattanConnectionRouter extends AbstractRouter {
 	 * @return the direction from <i>r</i> to <i>p</i>
 	 */
 	protected Ray getDirection(Rectangle r, Point p) {
-		int i, distance = Math.abs(r.x - p.x);
-		Ray direction;
+		return RAYS[getDirection(r, p.x, p.y)];
+	}
+
+	private static int getDirection(Rectangle r, int x, int y) {
+		int i, distance = Math.abs(r.x - x);
+		int direction;
 
-		direction = LEFT;
+		direction = DIR_LEFT;
 
-		i = Math.abs(r.y - p.y);
+		i = Math.abs(r.y - y);
 		if (i <= distance) {
 			distance = i;
-			direction = UP;
+			direction = DIR_UP;
 		}
 
-		i = Math.abs(r.bottom() - p.y);
+		i = Math.abs(r.bottom() - y);
 		if (i <= distance) {
 			distance = i;
-			direction = DOWN;
+			direction = DIR_DOWN;
 		}
 
-		i = Math.abs(r.right() - p.x);
+		i = Math.abs(r.right() - x);
 		if (i < distance) {
 			distance = i;
-			direction = RIGHT;
+			direction = DIR_RIGHT;
 		}
 
 		return direction;
 	}
 
-	protected Ray getEndDirection(Connection conn) {
-		ConnectionAnchor anchor = conn.getTargetAnchor();
-		Point p = getEndPoint(conn);
-		Rectangle rect;
-		if (anchor.getOwner() == null)
-			rect = new Rectangle(p.x - 1, p.y - 1, 2, 2);
+	/**
+	 * Returns the direction of the absolute point (x, y) in relation to the
+	 * owner of the given anchor.
+	 */
+	private int getDirection(ConnectionAnchor anchor, int x, int y) {
+		IFigure owner = anchor.getOwner();
+		if (owner == null)
+			box.setBounds(x - 1, y - 1, 2, 2);
 		else {
-			rect = conn.getTargetAnchor().getOwner().getBounds().getCopy();
-			conn.getTargetAnchor().getOwner().translateToAbsolute(rect);
+			box.setBounds(owner.getBounds());
+			owner.translateToAbsolute(box);
 		}
-		return getDirection(rect, p);
+		return getDirection(box, x, y);
+	}
+
+	protected Ray getEndDirection(Connection conn) {
+		getEndPoint(conn, endPoint);
+		return RAYS[getDirection(conn.getTargetAnchor(), endPoint[0],
+				endPoint[1])];
 	}
 
 	protected int getRowNear(Connection connection, int r, int n, int x) {
@@ -150,15 +244,13 @@ public final class ManhattanConnectionRouter extends AbstractRouter {
 		int direction = -1;
 		if (r % 2 == 1)
 			r--;
-		Integer i;
 		while (proximity < r) {
-			i = new Integer(r + proximity * direction);
-			if (!rowsUsed.containsKey(i)) {
-				rowsUsed.put(i, i);
-				reserveRow(connection, i);
-				return i.intValue();
+			int j = r + proximity * direction;
+			if (!rowsUsed.contains(j)) {
+				rowsUsed.add(j);
+				reserveRow(connection, new Integer(j));
+				return j;
 			}
-			int j = i.intValue();
 			if (j <= min)
 				return j + 2;
 			if (j >= max)
@@ -174,65 +266,69 @@ public final class ManhattanConnectionRouter extends AbstractRouter {
 	}
 
 	protected Ray getStartDirection(Connection conn) {
-		ConnectionAnchor anchor = conn.getSourceAnchor();
-		Point p = getStartPoint(conn);
-		Rectangle rect;
-		if (anchor.getOwner() == null)
-			rect = new Rectangle(p.x - 1, p.y - 1, 2, 2);
-		else {
-			rect = conn.getSourceAnchor().getOwner().getBounds().getCopy();
-			conn.getSourceAnchor().getOwner().translateToAbsolute(rect);
-		}
-		return getDirection(rect, p);
+		getStartPoint(conn, startPoint);
+		return RAYS[getDirection(conn.getSourceAnchor(), startPoint[0],
+				startPoint[1])];
 	}
 
 	protected void processPositions(Ray start, Ray end, List positions,
 			boolean horizontal, Connection conn) {
+		int count = positions.size();
+		int[] values = count > this.positions.length ? new int[count]
+				: this.positions;
+		for (int i = 0; i < count; i++)
+			values[i] = ((Integer) positions.get(i)).intValue();
+		processPositions(start.x, start.y, end.x, end.y, values, count,
+				horizontal, conn, new PointList());
+	}
+
+	private void processPositions(int startX, int startY, int endX, int endY,
+			int[] positions, int count, boolean horizontal, Connection conn,
+			PointList points) {
 		removeReservedLines(conn);
 
-		int pos[] = new int[positions.size() + 2];
+		int length = count + 2;
+		int pos[] = length > this.pos.length ? new int[length] : this.pos;
 		if (horizontal)
-			pos[0] = start.x;
+			pos[0] = startX;
 		else
-			pos[0] = start.y;
+			pos[0] = startY;
 		int i;
-		for (i = 0; i < positions.size(); i++) {
-			pos[i + 1] = ((Integer) positions.get(i)).intValue();
+		for (i = 0; i < count; i++) {
+			pos[i + 1] = positions[i];
 		}
-		if (horizontal == (positions.size() % 2 == 1))
-			pos[++i] = end.x;
+		if (horizontal == (count % 2 == 1))
+			pos[++i] = endX;
 		else
-			pos[++i] = end.y;
+			pos[++i] = endY;
 
-		PointList points = new PointList();
-		points.addPoint(new Point(start.x, start.y));
-		Point p;
+		points.removeAllPoints();
+		points.addPoint(startX, startY);
 		int current, prev, min, max;
 		boolean adjust;
-		for (i = 2; i < pos.length - 1; i++) {
+		for (i = 2; i < length - 1; i++) {
 			horizontal = !horizontal;
 			prev = pos[i - 1];
 			current = pos[i];
 
-			adjust = (i != pos.length - 2);
+			adjust = (i != length - 2);
 			if (horizontal) {
 				if (adjust) {
 					min = pos[i - 2];
 					max = pos[i + 2];
 					pos[i] = current = getRowNear(conn, current, min, max);
 				}
-				p = new Point(prev, current);
+				points.addPoint(prev, current);
 			} else {
 				if (adjust) {
 					min = pos[i - 2];
 					max = pos[i + 2];
 					pos[i] = current = getColumnNear(conn, current, min, max);
 				}
-				p = new Point(current, prev);
+				points.addPoint(current, prev);
 			}
-			points.addPoint(p);
 		}
-		points.addPoint(new Point(end.x, end.y));
+		points.addPoint(endX, endY);
 		conn.setPoints(points);
 	}
 
@@ -249,10 +345,10 @@ public final class ManhattanConnectionRouter extends AbstractRouter {
 			return;
 
 		for (int i = 0; i < rInfo.reservedRows.size(); i++) {
-			rowsUsed.remove(rInfo.reservedRows.get(i));
+			rowsUsed.remove(((Integer) rInfo.reservedRows.get(i)).intValue());
 		}
 		for (int i = 0; i < rInfo.reservedCols.size(); i++) {
-			colsUsed.remove(rInfo.reservedCols.get(i));
+			colsUsed.remove(((Integer) rInfo.reservedCols.get(i)).intValue());
 		}
 		reservedInfo.remove(connection);
 	}
@@ -283,99 +379,111 @@ public final class ManhattanConnectionRouter extends AbstractRouter {
 				|| (conn.getTargetAnchor() == null))
 			return;
 		int i;
-		Point startPoint = getStartPoint(conn);
-		conn.translateToRelative(startPoint);
-		Point endPoint = getEndPoint(conn);
-		conn.translateToRelative(endPoint);
-
-		Ray start = new Ray(startPoint);
-		Ray end = new Ray(endPoint);
-		Ray average = start.getAveraged(end);
-
-		Ray direction = new Ray(start, end);
-		Ray startNormal = getStartDirection(conn);
-		Ray endNormal = getEndDirection(conn);
-
-		List positions = new ArrayList(5);
-		boolean horizontal = startNormal.isHorizontal();
+		getStartPoint(conn, startPoint);
+		int startNormal = getDirection(conn.getSourceAnchor(), startPoint[0],
+				startPoint[1]);
+		translated.setLocation(startPoint[0], startPoint[1]);
+		conn.translateToRelative(translated);
+		int startX = translated.x, startY = translated.y;
+
+		getEndPoint(conn, endPoint);
+		int endNormal = getDirection(conn.getTargetAnchor(), endPoint[0],
+				endPoint[1]);
+		translated.setLocation(endPoint[0], endPoint[1]);
+		conn.translateToRelative(translated);
+		int endX = translated.x, endY = translated.y;
+
+		int averageX = (startX + endX) / 2, averageY = (startY + endY) / 2;
+		int directionX = endX - startX, directionY = endY - startY;
+
+		int startDX = DX[startNormal], startDY = DY[startNormal];
+		int endDX = DX[endNormal], endDY = DY[endNormal];
+		int normals = startDX * endDX + startDY * endDY;
+		int startDot = startDX * directionX + startDY * directionY;
+		int endDot = endDX * directionX + endDY * directionY;
+
+		int count = 0;
+		boolean horizontal = startDX != 0;
 		if (horizontal)
-			positions.add(new Integer(start.y));
+			positions[count++] = startY;
 		else
-			positions.add(new Integer(start.x));
+			positions[count++] = startX;
 		horizontal = !horizontal;
 
-		if (startNormal.dotProduct(endNormal) == 0) {
-			if ((startNormal.dotProduct(direction) >= 0)
-					&& (endNormal.dotProduct(direction) <= 0)) {
+		if (normals == 0) {
+			if ((startDot >= 0) && (endDot <= 0)) {
 				// 0
 			} else {
 				// 2
-				if (startNormal.dotProduct(direction) < 0)
-					i = startNormal.similarity(start.getAdded(startNormal
-							.getScaled(10)));
+				if (startDot < 0)
+					i = offset(startDX, startDY, startX, startY);
 				else {
 					if (horizontal)
-						i = average.y;
+						i = averageY;
 					else
-						i = average.x;
+						i = averageX;
 				}
-				positions.add(new Integer(i));
+				positions[count++] = i;
 				horizontal = !horizontal;
 
-				if (endNormal.dotProduct(direction) > 0)
-					i = endNormal.similarity(end.getAdded(endNormal
-							.getScaled(10)));
+				if (endDot > 0)
+					i = offset(endDX, endDY, endX, endY);
 				else {
 					if (horizontal)
-						i = average.y;
+						i = averageY;
 					else
-						i = average.x;
+						i = averageX;
 				}
-				positions.add(new Integer(i));
+				positions[count++] = i;
 				horizontal = !horizontal;
 			}
 		} else {
-			if (startNormal.dotProduct(endNormal) > 0) {
+			if (normals > 0) {
 				// 1
-				if (startNormal.dotProduct(direction) >= 0)
-					i = startNormal.similarity(start.getAdded(startNormal
-							.getScaled(10)));
+				if (startDot >= 0)
+					i = offset(startDX, startDY, startX, startY);
 				else
-					i = endNormal.similarity(end.getAdded(endNormal
-							.getScaled(10)));
-				positions.add(new Integer(i));
+					i = offset(endDX, endDY, endX, endY);
+				positions[count++] = i;
 				horizontal = !horizontal;
 			} else {
 				// 3 or 1
-				if (startNormal.dotProduct(direction) < 0) {
-					i = startNormal.similarity(start.getAdded(startNormal
-							.getScaled(10)));
-					positions.add(new Integer(i));
+				if (startDot < 0) {
+					i = offset(startDX, startDY, startX, startY);
+					positions[count++] = i;
 					horizontal = !horizontal;
 				}
 
 				if (horizontal)
-					i = average.y;
+					i = averageY;
 				else
-					i = average.x;
-				positions.add(new Integer(i));
+					i = averageX;
+				positions[count++] = i;
 				horizontal = !horizontal;
 
-				if (startNormal.dotProduct(direction) < 0) {
-					i = endNormal.similarity(end.getAdded(endNormal
-							.getScaled(10)));
-					positions.add(new Integer(i));
+				if (startDot < 0) {
+					i = offset(endDX, endDY, endX, endY);
+					positions[count++] = i;
 					horizontal = !horizontal;
 				}
 			}
 		}
 		if (horizontal)
-			positions.add(new Integer(end.y));
+			positions[count++] = endY;
 		else
-			positions.add(new Integer(end.x));
+			positions[count++] = endX;
 
-		processPositions(start, end, positions, startNormal.isHorizontal(),
-				conn);
+		processPositions(startX, startY, endX, endY, positions, count,
+				startDX != 0, conn, conn.getPoints());
+	}
+
+	/**
+	 * Returns the coordinate of the line 10 pixels away from (x, y) in the
+	 * given direction, as the similarity of the normal and the moved point.
+	 */
+	private static int offset(int normalX, int normalY, int x, int y) {
+		return Math.abs(normalX * (x + normalX * 10) + normalY
+				* (y + normalY * 10));
 	}
 
 }
@@ -49,6 +49,20 @@ public final class NativeGraphicsSource implements GraphicsSource {
 		return null;
 	}
 
+	/**
+	 * Redraws all of the given rectangles with a single native paint. The
+	 * control is painted once, clipped to the region made of the rectangles.
+	 * 
+	 * @param regions
+	 *            the rectangles to redraw
+	 */
+	void redraw(Rectangle[] regions) {
+		for (int i = 0; i < regions.length; i++)
+			canvas.redraw(regions[i].x, regions[i].y, regions[i].width,
+					regions[i].height, false);
+		canvas.update();
+	}
+
 	/**
 	 * Does nothing.
 	 * 
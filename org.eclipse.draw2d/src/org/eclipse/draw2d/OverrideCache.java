@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.draw2d;
+
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+
+/**
+ * Remembers for each class whether it overrides any of a set of public
+ * methods. Used by classes which offer a faster variant of a method, and must
+ * fall back to the original method when a subclass has replaced it.
+ * <P>
+ * The results are kept in an array which is replaced, never changed, when a
+ * class is added, so that looking up a known class takes no lock. Classes are
+ * only weakly referenced.
+ */
+final class OverrideCache {
+
+	private static final class Entry {
+		final Reference type;
+		final boolean overridden;
+
+		Entry(Class type, boolean overridden) {
+			this.type = new WeakReference(type);
+			this.overridden = overridden;
+		}
+	}
+
+	private final String[] names;
+	private final Class[][] parameters;
+	private final Class[] declaringClasses;
+	private volatile Entry[] entries = new Entry[0];
+
+	/**
+	 * @param names
+	 *            the names of the methods
+	 * @param parameters
+	 *            the parameter types of each method
+	 * @param declaringClasses
+	 *            the class expected to declare each method
+	 */
+	OverrideCache(String[] names, Class[][] parameters, Class[] declaringClasses) {
+		this.names = names;
+		this.parameters = parameters;
+		this.declaringClasses = declaringClasses;
+	}
+
+	/**
+	 * Returns <code>true</code> if the given class, or one of its superclasses
+	 * below the expected declaring class, overrides any of the methods.
+	 */
+	boolean isOverridden(Class type) {
+		Entry[] current = entries;
+		for (int i = 0; i < current.length; i++)
+			if (current[i].type.get() == type)
+				return current[i].overridden;
+		return add(type);
+	}
+
+	private synchronized boolean add(Class type) {
+		Entry[] current = entries;
+		for (int i = 0; i < current.length; i++)
+			if (current[i].type.get() == type)
+				return current[i].overridden;
+		boolean result = false;
+		for (int i = 0; i < names.length && !result; i++) {
+			try {
+				result = type.getMethod(names[i], parameters[i])
+						.getDeclaringClass() != declaringClasses[i];
+			} catch (NoSuchMethodException e) {
+				result = true;
+			}
+		}
+		// the entries of unloaded classes are dropped
+		Entry[] updated = new Entry[current.length + 1];
+		int count = 0;
+		for (int i = 0; i < current.length; i++)
+			if (current[i].type.get() != null)
+				updated[count++] = current[i];
+		updated[count++] = new Entry(type, result);
+		if (count < updated.length) {
+			Entry[] trimmed = new Entry[count];
+			System.arraycopy(updated, 0, trimmed, 0, count);
+			updated = trimmed;
+		}
+		entries = updated;
+		return result;
+	}
+
+}
@@ -0,0 +1,39 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.draw2d;
+
+import java.util.Map;
+
+import org.eclipse.draw2d.geometry.Rectangle;
+
+/**
+ * An {@link UpdateListener} which is told about each damaged rectangle being
+ * repainted, rather than about their union. An {@link UpdateManager} calls
+ * {@link #notifyPainting(Rectangle[], Map)} on these listeners instead of
+ * {@link UpdateListener#notifyPainting(Rectangle, Map)}.
+ *
+ * @since 3.9
+ */
+public interface RegionUpdateListener extends UpdateListener {
+
+	/**
+	 * Notifies the listener that the listened to object is painting. The
+	 * damaged rectangles do not overlap and are painted one after the other.
+	 * The array is empty when the dirty regions were clipped or not visible.
+	 *
+	 * @param damage
+	 *            the areas being painted
+	 * @param dirtyRegions
+	 *            a Map of figures to their dirty regions
+	 */
+	void notifyPainting(Rectangle[] damage, Map dirtyRegions);
+
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2010 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,6 +10,7 @@
  *******************************************************************************/
 package org.eclipse.draw2d;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -18,6 +19,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.eclipse.swt.SWTException;
+import org.eclipse.swt.widgets.Display;
+
 import org.eclipse.draw2d.geometry.Point;
 import org.eclipse.draw2d.geometry.PointList;
 import org.eclipse.draw2d.geometry.PrecisionPoint;
@@ -34,6 +38,43 @@ import org.eclipse.draw2d.graph.ShortestPathRouter;
  */
 public final class ShortestPathConnectionRouter extends AbstractRouter {
 
+	/**
+	 * Solves the routing on a background thread and routes the connections with
+	 * the solution on the display's thread once it is ready. Changes to the
+	 * obstacles and connections made in the meantime are kept until then.
+	 */
+	private class BackgroundSolve implements Runnable {
+		List changes = new ArrayList();
+		Display display;
+		UpdateManager manager;
+		List solution;
+		Throwable failure;
+
+		public void run() {
+			try {
+				solution = algorithm.solve();
+			} catch (RuntimeException e) {
+				failure = e;
+			} catch (Error e) {
+				failure = e;
+			}
+			try {
+				// The update manager may only be used on the display's thread
+				display.asyncExec(new Runnable() {
+					public void run() {
+						manager.runWithUpdate(new Runnable() {
+							public void run() {
+								finishSolve();
+							}
+						});
+					}
+				});
+			} catch (SWTException e) {
+				// The display has been disposed
+			}
+		}
+	}
+
 	private class LayoutTracker extends LayoutListener.Stub {
 		public void postLayout(IFigure container) {
 			processLayout();
@@ -59,17 +100,22 @@ public final class ShortestPathConnectionRouter extends AbstractRouter {
 
 	private FigureListener figureListener = new FigureListener() {
 		public void figureMoved(IFigure source) {
-			Rectangle newBounds = source.getBounds().getCopy();
-			if (algorithm.updateObstacle(
-					(Rectangle) figuresToBounds.get(source), newBounds)) {
-				queueSomeRouting();
-				isDirty = true;
-			}
-
-			figuresToBounds.put(source, newBounds);
+			final Rectangle newBounds = source.getBounds().getCopy();
+			final Rectangle oldBounds = (Rectangle) figuresToBounds.put(source,
+					newBounds);
+			change(new Runnable() {
+				public void run() {
+					if (algorithm.updateObstacle(oldBounds, newBounds)) {
+						queueSomeRouting();
+						isDirty = true;
+					}
+				}
+			});
 		}
 	};
 	private boolean ignoreInvalidate;
+	private boolean solveInBackground;
+	private BackgroundSolve solving;
 
 	/**
 	 * Creates a new shortest path router with the given container. The
@@ -93,11 +139,55 @@ public final class ShortestPathConnectionRouter extends AbstractRouter {
 			return;
 		if (figuresToBounds.containsKey(child))
 			return;
-		Rectangle bounds = child.getBounds().getCopy();
-		algorithm.addObstacle(bounds);
+		final Rectangle bounds = child.getBounds().getCopy();
 		figuresToBounds.put(child, bounds);
 		child.addFigureListener(figureListener);
-		isDirty = true;
+		change(new Runnable() {
+			public void run() {
+				algorithm.addObstacle(bounds);
+				isDirty = true;
+			}
+		});
+	}
+
+	/**
+	 * Makes the given change to the routing algorithm, or keeps it until the
+	 * background solve in progress has finished.
+	 * 
+	 * @param change
+	 *            the change
+	 */
+	private void change(Runnable change) {
+		if (solving != null)
+			solving.changes.add(change);
+		else
+			change.run();
+	}
+
+	/**
+	 * Routes the connections with the solution of the background solve, then
+	 * makes the changes kept while it ran. Called on the update manager's
+	 * thread.
+	 */
+	private void finishSolve() {
+		BackgroundSolve solve = solving;
+		solving = null;
+		if (solve.solution != null) {
+			ignoreInvalidate = true;
+			try {
+				updateConnections(solve.solution);
+			} finally {
+				ignoreInvalidate = false;
+			}
+		}
+		for (int i = 0; i < solve.changes.size(); i++)
+			((Runnable) solve.changes.get(i)).run();
+		if (solve.failure instanceof RuntimeException)
+			throw (RuntimeException) solve.failure;
+		if (solve.failure instanceof Error)
+			throw (Error) solve.failure;
+		if (isDirty)
+			queueSomeRouting();
 	}
 
 	private void hookAll() {
@@ -225,8 +315,12 @@ public final class ShortestPathConnectionRouter extends AbstractRouter {
 		constraintMap.remove(connection);
 		if (connectionToPaths == null)
 			return;
-		Path path = (Path) connectionToPaths.remove(connection);
-		algorithm.removePath(path);
+		final Path path = (Path) connectionToPaths.remove(connection);
+		change(new Runnable() {
+			public void run() {
+				algorithm.removePath(path);
+			}
+		});
 		isDirty = true;
 		if (connectionToPaths.isEmpty()) {
 			unhookAll();
@@ -241,60 +335,86 @@ public final class ShortestPathConnectionRouter extends AbstractRouter {
 	void removeChild(IFigure child) {
 		if (connectionToPaths == null)
 			return;
-		Rectangle bounds = child.getBounds().getCopy();
-		boolean change = algorithm.removeObstacle(bounds);
+		final Rectangle bounds = child.getBounds().getCopy();
 		figuresToBounds.remove(child);
 		child.removeFigureListener(figureListener);
-		if (change) {
-			isDirty = true;
-			queueSomeRouting();
-		}
+		change(new Runnable() {
+			public void run() {
+				if (algorithm.removeObstacle(bounds)) {
+					isDirty = true;
+					queueSomeRouting();
+				}
+			}
+		});
 	}
 
 	/**
 	 * @see ConnectionRouter#route(Connection)
 	 */
 	public void route(Connection conn) {
-		if (isDirty) {
+		if (isDirty && solving == null) {
 			ignoreInvalidate = true;
 			processStaleConnections();
 			isDirty = false;
-			List updated = algorithm.solve();
-			Connection current;
-			for (int i = 0; i < updated.size(); i++) {
-				Path path = (Path) updated.get(i);
-				current = (Connection) path.data;
-				current.revalidate();
-
-				PointList points = path.getPoints().getCopy();
-				Point ref1, ref2, start, end;
-				ref1 = new PrecisionPoint(points.getPoint(1));
-				ref2 = new PrecisionPoint(points.getPoint(points.size() - 2));
-				current.translateToAbsolute(ref1);
-				current.translateToAbsolute(ref2);
-
-				start = current.getSourceAnchor().getLocation(ref1).getCopy();
-				end = current.getTargetAnchor().getLocation(ref2).getCopy();
-
-				current.translateToRelative(start);
-				current.translateToRelative(end);
-				points.setPoint(start, 0);
-				points.setPoint(end, points.size() - 1);
-
-				current.setPoints(points);
-			}
+			Display display = null;
+			if (solveInBackground)
+				display = Display.getCurrent();
+			if (display != null) {
+				solving = new BackgroundSolve();
+				solving.display = display;
+				solving.manager = container.getUpdateManager();
+				Thread thread = new Thread(solving, "Connection routing"); //$NON-NLS-1$
+				thread.setDaemon(true);
+				thread.start();
+			} else
+				updateConnections(algorithm.solve());
 			ignoreInvalidate = false;
 		}
 	}
 
+	/**
+	 * Sets the points of the connections of the given paths.
+	 * 
+	 * @param updated
+	 *            the solved paths
+	 */
+	private void updateConnections(List updated) {
+		Connection current;
+		for (int i = 0; i < updated.size(); i++) {
+			Path path = (Path) updated.get(i);
+			current = (Connection) path.data;
+			if (!containsConnection(current))
+				continue;
+			current.revalidate();
+
+			PointList points = path.getPoints().getCopy();
+			Point ref1, ref2, start, end;
+			ref1 = new PrecisionPoint(points.getPoint(1));
+			ref2 = new PrecisionPoint(points.getPoint(points.size() - 2));
+			current.translateToAbsolute(ref1);
+			current.translateToAbsolute(ref2);
+
+			start = current.getSourceAnchor().getLocation(ref1).getCopy();
+			end = current.getTargetAnchor().getLocation(ref2).getCopy();
+
+			current.translateToRelative(start);
+			current.translateToRelative(end);
+			points.setPoint(start, 0);
+			points.setPoint(end, points.size() - 1);
+
+			current.setPoints(points);
+		}
+	}
+
 	/**
 	 * @return All connection paths after routing dirty paths. Some of the paths
 	 *         that were not dirty may change as well, as a consequence of new
-	 *         routings.
+	 *         routings. Returns <code>null</code> if no path is dirty, or if a
+	 *         background solve is in progress.
 	 * @since 3.5
 	 */
 	public List getPathsAfterRouting() {
-		if (isDirty) {
+		if (isDirty && solving == null) {
 			processStaleConnections();
 			isDirty = false;
 			List all = algorithm.solve();
@@ -325,8 +445,52 @@ public final class ShortestPathConnectionRouter extends AbstractRouter {
 	 *            the connection spacing
 	 * @since 3.2
 	 */
-	public void setSpacing(int spacing) {
-		algorithm.setSpacing(spacing);
+	public void setSpacing(final int spacing) {
+		change(new Runnable() {
+			public void run() {
+				algorithm.setSpacing(spacing);
+			}
+		});
+	}
+
+	/**
+	 * Sets whether the routing is solved on a background thread. When
+	 * <code>true</code>, routing a connection starts solving all dirty
+	 * connections on a new thread and returns at once, leaving the connections
+	 * as they are. The connections are routed with the solution through
+	 * {@link UpdateManager#runWithUpdate(Runnable)}, called on the display's
+	 * thread, and routed again if anything changed in the meantime. The
+	 * container's update manager must run these runnables, as
+	 * {@link DeferredUpdateManager} does. Connections routed outside of a
+	 * display's thread are solved at once. The default value is
+	 * <code>false</code>.
+	 * 
+	 * @param value
+	 *            <code>true</code> to solve on a background thread
+	 * @since 3.9
+	 */
+	public void setSolveInBackground(boolean value) {
+		solveInBackground = value;
+	}
+
+	/**
+	 * Sets the number of threads used to search the shortest paths of the
+	 * connections. The routes found do not depend on the number of threads.
+	 * The default value is 1.
+	 * 
+	 * @param count
+	 *            the number of threads, at least 1
+	 * @see ShortestPathRouter#setThreadCount(int)
+	 * @since 3.9
+	 */
+	public void setThreadCount(final int count) {
+		if (count < 1)
+			throw new IllegalArgumentException();
+		change(new Runnable() {
+			public void run() {
+				algorithm.setThreadCount(count);
+			}
+		});
 	}
 
 	/**
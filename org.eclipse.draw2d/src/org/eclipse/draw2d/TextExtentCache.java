@@ -0,0 +1,304 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.draw2d;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.swt.graphics.Font;
+import org.eclipse.swt.graphics.FontMetrics;
+
+import org.eclipse.draw2d.geometry.Dimension;
+
+/**
+ * A cache of text measurements, kept per font. Measuring text with a
+ * {@link org.eclipse.swt.graphics.GC} is a native call, and switching the
+ * font of the GC also discards its font metrics, so figures which measure the
+ * same strings over and over again, such as labels and text flows during
+ * layout, spend much of their time measuring.
+ * <P>
+ * For each font the cache keeps the extents of recently measured strings, the
+ * advance widths of the characters measured so far, and the font metrics. The
+ * strings kept for a font hold at most {@link #getCharacterLimit()}
+ * characters, and the least recently used ones are discarded first. The
+ * measurements of a font are discarded once the font is found to be disposed,
+ * or by calling {@link #invalidate(Font)}.
+ * <P>
+ * The cache used by {@link FigureUtilities} and {@link TextUtilities} is
+ * returned by {@link FigureUtilities#getTextExtentCache()}. Like the rest of
+ * Draw2d, the cache must only be used from the UI thread.
+ *
+ * @since 3.9
+ */
+public class TextExtentCache {
+
+	/**
+	 * The default number of characters of the strings kept per font.
+	 */
+	public static final int DEFAULT_CHARACTER_LIMIT = 64 * 1024;
+
+	/**
+	 * The number of fonts after which disposed fonts are looked for.
+	 */
+	private static final int FONT_LIMIT = 32;
+
+	/**
+	 * The extents measured for a string, with or without tab expansion.
+	 */
+	private static class Extents {
+		Dimension string;
+		Dimension text;
+	}
+
+	private static class FontEntry {
+		final Map extents = new LinkedHashMap(16, 0.75f, true);
+		int characters;
+		final int[][] advances = new int[256][];
+		FontMetrics metrics;
+	}
+
+	private final int characterLimit;
+	private final Map fonts = new IdentityHashMap();
+	private Font lastFont;
+	private FontEntry lastEntry;
+	private long hits, misses;
+
+	/**
+	 * Creates a cache keeping {@link #DEFAULT_CHARACTER_LIMIT} characters of
+	 * strings per font.
+	 */
+	public TextExtentCache() {
+		this(DEFAULT_CHARACTER_LIMIT);
+	}
+
+	/**
+	 * Creates a cache keeping at most the given number of characters of
+	 * strings per font.
+	 *
+	 * @param characterLimit
+	 *            the number of characters kept per font
+	 */
+	public TextExtentCache(int characterLimit) {
+		if (characterLimit < 0)
+			throw new IllegalArgumentException();
+		this.characterLimit = characterLimit;
+	}
+
+	/**
+	 * Returns the number of characters of the strings kept per font.
+	 *
+	 * @return the character limit
+	 */
+	public int getCharacterLimit() {
+		return characterLimit;
+	}
+
+	/**
+	 * Returns the advance width of the given character in the given font.
+	 *
+	 * @param c
+	 *            the character
+	 * @param f
+	 *            the font
+	 * @return the advance width
+	 * @see org.eclipse.swt.graphics.GC#getAdvanceWidth(char)
+	 */
+	public int getAdvanceWidth(char c, Font f) {
+		FontEntry entry = getEntry(f);
+		int[] page = entry.advances[c >> 8];
+		if (page == null) {
+			page = new int[256];
+			for (int i = 0; i < page.length; i++)
+				page[i] = -1;
+			entry.advances[c >> 8] = page;
+		}
+		int advance = page[c & 0xFF];
+		if (advance == -1) {
+			misses++;
+			advance = FigureUtilities.measureAdvanceWidth(c, f);
+			page[c & 0xFF] = advance;
+		} else
+			hits++;
+		return advance;
+	}
+
+	/**
+	 * Returns the FontMetrics of the given font.
+	 *
+	 * @param f
+	 *            the font
+	 * @return the font metrics
+	 * @see FigureUtilities#getFontMetrics(Font)
+	 */
+	public FontMetrics getFontMetrics(Font f) {
+		FontEntry entry = getEntry(f);
+		if (entry.metrics == null) {
+			misses++;
+			entry.metrics = FigureUtilities.measureFontMetrics(f);
+		} else
+			hits++;
+		return entry.metrics;
+	}
+
+	/**
+	 * Returns the extents of the given string in the given font, without tab
+	 * expansion or carriage return processing.
+	 *
+	 * @param s
+	 *            the string
+	 * @param f
+	 *            the font
+	 * @return a new Dimension holding the extents
+	 * @see FigureUtilities#getStringExtents(String, Font)
+	 */
+	public Dimension getStringExtents(String s, Font f) {
+		FontEntry entry = getEntry(f);
+		Extents extents = get(entry, s);
+		if (extents.string == null) {
+			misses++;
+			extents.string = new Dimension(FigureUtilities.getStringDimension(
+					s, f));
+		} else
+			hits++;
+		return extents.string.getCopy();
+	}
+
+	/**
+	 * Returns the extents of the given text in the given font, expanding tabs
+	 * and processing carriage returns.
+	 *
+	 * @param s
+	 *            the text
+	 * @param f
+	 *            the font
+	 * @return a new Dimension holding the extents
+	 * @see FigureUtilities#getTextExtents(String, Font)
+	 */
+	public Dimension getTextExtents(String s, Font f) {
+		FontEntry entry = getEntry(f);
+		Extents extents = get(entry, s);
+		if (extents.text == null) {
+			misses++;
+			extents.text = new Dimension(FigureUtilities.getTextDimension(s, f));
+		} else
+			hits++;
+		return extents.text.getCopy();
+	}
+
+	/**
+	 * Returns the number of measurements answered from the cache.
+	 *
+	 * @return the number of hits
+	 */
+	public long getHitCount() {
+		return hits;
+	}
+
+	/**
+	 * Returns the number of measurements which had to be made.
+	 *
+	 * @return the number of misses
+	 */
+	public long getMissCount() {
+		return misses;
+	}
+
+	/**
+	 * Sets the hit and miss counts back to zero.
+	 */
+	public void resetCounts() {
+		hits = misses = 0;
+	}
+
+	/**
+	 * Discards the measurements of all fonts.
+	 */
+	public void invalidate() {
+		fonts.clear();
+		lastFont = null;
+		lastEntry = null;
+	}
+
+	/**
+	 * Discards the measurements of the given font. This should be called when
+	 * a font is disposed, although the measurements of disposed fonts are also
+	 * discarded once they are noticed.
+	 *
+	 * @param f
+	 *            the font
+	 */
+	public void invalidate(Font f) {
+		fonts.remove(f);
+		if (lastFont == f) {
+			lastFont = null;
+			lastEntry = null;
+		}
+	}
+
+	private FontEntry getEntry(Font f) {
+		if (f == lastFont && !f.isDisposed())
+			return lastEntry;
+		FontEntry entry = (FontEntry) fonts.get(f);
+		if (entry != null && f.isDisposed()) {
+			// let the font be measured, and fail, as if there were no cache
+			invalidate(f);
+			entry = null;
+		}
+		if (entry == null) {
+			entry = new FontEntry();
+			if (!f.isDisposed()) {
+				if (fonts.size() >= FONT_LIMIT)
+					removeDisposedFonts();
+				fonts.put(f, entry);
+			}
+		}
+		lastFont = f;
+		lastEntry = entry;
+		return entry;
+	}
+
+	/**
+	 * Returns the extents kept for the given string, marking them as the most
+	 * recently used. Strings which do not fit in the cache get extents which
+	 * are not kept.
+	 */
+	private Extents get(FontEntry entry, String s) {
+		Extents extents = (Extents) entry.extents.get(s);
+		if (extents != null)
+			return extents;
+		extents = new Extents();
+		if (s.length() + 1 > characterLimit)
+			return extents;
+		entry.extents.put(s, extents);
+		entry.characters += s.length() + 1;
+		// discard the least recently used strings. The new string is the most
+		// recently used, and fits on its own, so it is never discarded.
+		Iterator iter = entry.extents.keySet().iterator();
+		while (entry.characters > characterLimit) {
+			String key = (String) iter.next();
+			iter.remove();
+			entry.characters -= key.length() + 1;
+		}
+		return extents;
+	}
+
+	private void removeDisposedFonts() {
+		for (Iterator iter = fonts.keySet().iterator(); iter.hasNext();) {
+			if (((Font) iter.next()).isDisposed())
+				iter.remove();
+		}
+		if (fonts.size() >= FONT_LIMIT)
+			fonts.clear();
+	}
+
+}
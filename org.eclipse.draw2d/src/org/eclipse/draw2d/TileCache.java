@@ -0,0 +1,385 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.draw2d;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.widgets.Display;
+
+import org.eclipse.draw2d.geometry.Rectangle;
+
+/**
+ * A cache of rendered tiles of a {@link Viewport Viewport's} contents. The
+ * contents are divided into a grid of square tiles. Each tile is rendered once
+ * into an image and drawn from that image until a dirty region reported by the
+ * {@link UpdateManager} touches it. Since tiles are kept in the coordinates of
+ * the contents, scrolling only renders the tiles that have not been seen
+ * before.
+ * <P>
+ * Tiles are keyed by the scale of an optional {@link ScalableFigure}, so that
+ * zooming back to a previous zoom level can reuse its tiles. The cache keeps at
+ * most {@link #getMemoryLimit()} bytes of images and discards the least
+ * recently drawn tiles first.
+ * <P>
+ * The cache assumes that the contents are drawn over the background color of
+ * the viewport, and that the contents only change through figures which
+ * repaint themselves. Call {@link #invalidate()} after any other change.
+ * <P>
+ * A tile cache is installed using {@link Viewport#setTileCache(TileCache)} and
+ * is only used by viewports which use graphics translation.
+ *
+ * @since 3.9
+ */
+public class TileCache implements UpdateListener {
+
+	/**
+	 * The default tile size in pixels.
+	 */
+	public static final int DEFAULT_TILE_SIZE = 256;
+
+	/**
+	 * The default memory limit in bytes.
+	 */
+	public static final long DEFAULT_MEMORY_LIMIT = 64L * 1024 * 1024;
+
+	private static class Key {
+		final double zoom;
+		final int x, y;
+
+		Key(double zoom, int x, int y) {
+			this.zoom = zoom;
+			this.x = x;
+			this.y = y;
+		}
+
+		public boolean equals(Object o) {
+			if (!(o instanceof Key))
+				return false;
+			Key other = (Key) o;
+			return other.x == x && other.y == y && other.zoom == zoom;
+		}
+
+		public int hashCode() {
+			long bits = Double.doubleToLongBits(zoom);
+			return (x * 31 + y) * 31 + (int) (bits ^ (bits >>> 32));
+		}
+	}
+
+	private final int tileSize;
+	private final long tileBytes;
+	private long memoryLimit;
+	private long memoryUsed;
+
+	private ScalableFigure scalable;
+	private double lastZoom = Double.NaN;
+	private Viewport viewport;
+
+	private int hits;
+	private int misses;
+	private int evictions;
+
+	private final LinkedHashMap tiles = new LinkedHashMap(64, 0.75f, true);
+
+	/**
+	 * Creates a tile cache with the default tile size and memory limit.
+	 */
+	public TileCache() {
+		this(DEFAULT_TILE_SIZE, DEFAULT_MEMORY_LIMIT);
+	}
+
+	/**
+	 * Creates a tile cache.
+	 *
+	 * @param tileSize
+	 *            the width and height of a tile in pixels
+	 * @param memoryLimit
+	 *            the maximum number of bytes of tile images to keep
+	 */
+	public TileCache(int tileSize, long memoryLimit) {
+		if (tileSize < 1)
+			throw new IllegalArgumentException("Tile size must be positive"); //$NON-NLS-1$
+		this.tileSize = tileSize;
+		this.tileBytes = 4L * tileSize * tileSize;
+		setMemoryLimit(memoryLimit);
+	}
+
+	/**
+	 * Disposes all tiles. The hit and miss counters are not changed.
+	 */
+	public void clear() {
+		for (Iterator iter = tiles.values().iterator(); iter.hasNext();)
+			((Image) iter.next()).dispose();
+		tiles.clear();
+		memoryUsed = 0;
+	}
+
+	private void evict(int keep) {
+		Iterator iter = tiles.values().iterator();
+		while (memoryUsed > memoryLimit && tiles.size() > keep) {
+			((Image) iter.next()).dispose();
+			iter.remove();
+			memoryUsed -= tileBytes;
+			evictions++;
+		}
+	}
+
+	/**
+	 * Returns the number of tiles discarded because of the memory limit.
+	 *
+	 * @return the number of evicted tiles
+	 */
+	public int getEvictionCount() {
+		return evictions;
+	}
+
+	/**
+	 * Returns the number of times a tile was drawn from the cache.
+	 *
+	 * @return the number of hits
+	 */
+	public int getHitCount() {
+		return hits;
+	}
+
+	/**
+	 * Returns the fraction of tile requests which were served from the cache,
+	 * or 0 if no tile has been requested.
+	 *
+	 * @return the hit rate between 0 and 1
+	 */
+	public double getHitRate() {
+		int total = hits + misses;
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	/**
+	 * Returns the maximum number of bytes of tile images kept by this cache.
+	 *
+	 * @return the memory limit
+	 */
+	public long getMemoryLimit() {
+		return memoryLimit;
+	}
+
+	/**
+	 * Returns the approximate number of bytes of tile images currently kept.
+	 *
+	 * @return the memory used
+	 */
+	public long getMemoryUsed() {
+		return memoryUsed;
+	}
+
+	/**
+	 * Returns the number of times a tile had to be rendered.
+	 *
+	 * @return the number of misses
+	 */
+	public int getMissCount() {
+		return misses;
+	}
+
+	/**
+	 * Returns the number of tiles currently cached.
+	 *
+	 * @return the number of tiles
+	 */
+	public int getTileCount() {
+		return tiles.size();
+	}
+
+	/**
+	 * Returns the width and height of a tile.
+	 *
+	 * @return the tile size
+	 */
+	public int getTileSize() {
+		return tileSize;
+	}
+
+	private double getZoom() {
+		return scalable == null ? 1.0 : scalable.getScale();
+	}
+
+	/**
+	 * Discards every cached tile.
+	 */
+	public void invalidate() {
+		clear();
+	}
+
+	/**
+	 * Discards the tiles of the current zoom level which intersect the given
+	 * area, and every tile of the other zoom levels, since their contents
+	 * cannot be mapped reliably.
+	 *
+	 * @param area
+	 *            the area in the coordinates of the viewport's contents
+	 */
+	public void invalidate(Rectangle area) {
+		if (area.isEmpty() || tiles.isEmpty())
+			return;
+		double zoom = getZoom();
+		int x1 = tile(area.x), y1 = tile(area.y);
+		int x2 = tile(area.right() - 1), y2 = tile(area.bottom() - 1);
+		for (Iterator iter = tiles.entrySet().iterator(); iter.hasNext();) {
+			Map.Entry entry = (Map.Entry) iter.next();
+			Key key = (Key) entry.getKey();
+			if (key.zoom != zoom
+					|| (key.x >= x1 && key.x <= x2 && key.y >= y1 && key.y <= y2)) {
+				((Image) entry.getValue()).dispose();
+				iter.remove();
+				memoryUsed -= tileBytes;
+			}
+		}
+	}
+
+	/**
+	 * Maps the dirty regions of the viewport's descendants into the coordinates
+	 * of its contents and discards the tiles they touch. The regions are not
+	 * clipped, so that tiles outside of the visible area are discarded too.
+	 * The repaint caused by a change of zoom is ignored, since tiles are kept
+	 * per zoom level.
+	 *
+	 * @see UpdateListener#notifyPainting(Rectangle, Map)
+	 */
+	public void notifyPainting(Rectangle damage, Map dirtyRegions) {
+		if (viewport == null || tiles.isEmpty())
+			return;
+		double zoom = getZoom();
+		boolean zoomChanged = zoom != lastZoom;
+		lastZoom = zoom;
+		Rectangle area = new Rectangle();
+		for (Iterator iter = dirtyRegions.entrySet().iterator(); iter.hasNext();) {
+			Map.Entry entry = (Map.Entry) iter.next();
+			IFigure figure = (IFigure) entry.getKey();
+			if (zoomChanged && figure == scalable)
+				continue;
+			area.setBounds((Rectangle) entry.getValue());
+			IFigure walker = figure.getParent();
+			while (walker != null && walker != viewport) {
+				walker.translateToParent(area);
+				walker = walker.getParent();
+			}
+			if (walker == viewport && figure != viewport)
+				invalidate(area);
+		}
+	}
+
+	/**
+	 * @see UpdateListener#notifyValidating()
+	 */
+	public void notifyValidating() {
+	}
+
+	/**
+	 * Paints the contents of the viewport from the cache, rendering the missing
+	 * tiles first. The graphics is translated to the contents' coordinates.
+	 */
+	void paint(Viewport viewport, Graphics graphics) {
+		double zoom = getZoom();
+		if (tiles.isEmpty())
+			lastZoom = zoom;
+		Rectangle clip = graphics.getClip(new Rectangle());
+		if (clip.isEmpty())
+			return;
+		int x1 = tile(clip.x), y1 = tile(clip.y);
+		int x2 = tile(clip.right() - 1), y2 = tile(clip.bottom() - 1);
+		for (int ty = y1; ty <= y2; ty++)
+			for (int tx = x1; tx <= x2; tx++) {
+				Key key = new Key(zoom, tx, ty);
+				Image image = (Image) tiles.get(key);
+				if (image == null) {
+					misses++;
+					image = render(viewport, graphics, tx * tileSize, ty
+							* tileSize);
+					tiles.put(key, image);
+					memoryUsed += tileBytes;
+				} else
+					hits++;
+				graphics.drawImage(image, tx * tileSize, ty * tileSize);
+			}
+		evict((x2 - x1 + 1) * (y2 - y1 + 1));
+	}
+
+	private Image render(Viewport viewport, Graphics graphics, int x, int y) {
+		Image image = new Image(Display.getCurrent(), tileSize, tileSize);
+		GC gc = new GC(image);
+		SWTGraphics tile = new SWTGraphics(gc);
+		try {
+			tile.setBackgroundColor(viewport.getBackgroundColor());
+			tile.fillRectangle(0, 0, tileSize, tileSize);
+			tile.setBackgroundColor(graphics.getBackgroundColor());
+			tile.setForegroundColor(graphics.getForegroundColor());
+			tile.setFont(graphics.getFont());
+			tile.translate(-x, -y);
+			tile.clipRect(new Rectangle(x, y, tileSize, tileSize));
+			tile.pushState();
+			viewport.paintTile(tile);
+			tile.popState();
+		} finally {
+			tile.dispose();
+			gc.dispose();
+		}
+		return image;
+	}
+
+	/**
+	 * Resets the hit, miss and eviction counters.
+	 */
+	public void resetCounters() {
+		hits = misses = evictions = 0;
+	}
+
+	/**
+	 * Sets the maximum number of bytes of tile images kept by this cache. The
+	 * tiles drawn by the last paint are kept even if they exceed the limit.
+	 *
+	 * @param limit
+	 *            the memory limit in bytes
+	 */
+	public void setMemoryLimit(long limit) {
+		if (limit < 0)
+			throw new IllegalArgumentException("Memory limit must not be negative"); //$NON-NLS-1$
+		memoryLimit = limit;
+		evict(0);
+	}
+
+	/**
+	 * Sets the figure whose scale identifies the zoom level of the cached
+	 * tiles. May be <code>null</code> if the contents are not zoomed.
+	 *
+	 * @param figure
+	 *            the zoomed figure, or <code>null</code>
+	 */
+	public void setScalableFigure(ScalableFigure figure) {
+		if (scalable == figure)
+			return;
+		scalable = figure;
+		clear();
+	}
+
+	void setViewport(Viewport viewport) {
+		if (this.viewport != viewport)
+			clear();
+		this.viewport = viewport;
+	}
+
+	private int tile(int coordinate) {
+		return coordinate >= 0 ? coordinate / tileSize : -1
+				- (-1 - coordinate) / tileSize;
+	}
+
+}
@@ -36,11 +36,13 @@ import org.eclipse.draw2d.geometry.Rectangle;
  * <P>
  * The second phase is to repaint all damaged areas. The update manager will
  * typically batch, clip, and union, all rectangles and perform a single paint
- * of the overall damaged area.
+ * of the overall damaged area, or a few paints of disjoint damaged areas.
  * 
  */
 public abstract class UpdateManager {
 
+	private static final Rectangle[] NO_REGIONS = new Rectangle[0];
+
 	private UpdateListener listeners[] = new UpdateListener[0];
 	private boolean disposed;
 
@@ -70,6 +72,19 @@ public abstract class UpdateManager {
 		addDirtyRegion(figure, rect.x, rect.y, rect.width, rect.height);
 	}
 
+	/**
+	 * Runs the given runnable, grouping the invalidations and repaints it
+	 * causes into as few validation and painting passes as possible. The
+	 * default implementation simply runs the runnable.
+	 * 
+	 * @param run
+	 *            the runnable
+	 * @since 3.9
+	 */
+	public void runBatched(Runnable run) {
+		run.run();
+	}
+
 	/**
 	 * Causes an update to occur at some time, and the given runnable to be
 	 * executed following the update.
@@ -129,9 +144,43 @@ public abstract class UpdateManager {
 	 *            map of dirty regions to figures
 	 */
 	protected void firePainting(Rectangle damage, Map dirtyRegions) {
+		Rectangle[] regions = NO_REGIONS;
+		if (damage != null && !damage.isEmpty())
+			regions = new Rectangle[] { damage };
+		UpdateListener localListeners[] = listeners;
+		for (int i = 0; i < localListeners.length; i++)
+			if (localListeners[i] instanceof RegionUpdateListener)
+				((RegionUpdateListener) localListeners[i]).notifyPainting(
+						regions, dirtyRegions);
+			else
+				localListeners[i].notifyPainting(damage, dirtyRegions);
+	}
+
+	/**
+	 * Notifies listeners that painting of several disjoint rectangles is about
+	 * to occur. {@link RegionUpdateListener}s are passed the rectangles, other
+	 * listeners are passed their union.
+	 * 
+	 * @param damage
+	 *            the damaged rectangles
+	 * @param dirtyRegions
+	 *            map of dirty regions to figures
+	 * @since 3.9
+	 */
+	protected void firePainting(Rectangle[] damage, Map dirtyRegions) {
+		Rectangle union = new Rectangle();
+		for (int i = 0; i < damage.length; i++)
+			if (i == 0)
+				union.setBounds(damage[i]);
+			else
+				union.union(damage[i]);
 		UpdateListener localListeners[] = listeners;
 		for (int i = 0; i < localListeners.length; i++)
-			localListeners[i].notifyPainting(damage, dirtyRegions);
+			if (localListeners[i] instanceof RegionUpdateListener)
+				((RegionUpdateListener) localListeners[i]).notifyPainting(
+						damage, dirtyRegions);
+			else
+				localListeners[i].notifyPainting(union, dirtyRegions);
 	}
 
 	/**
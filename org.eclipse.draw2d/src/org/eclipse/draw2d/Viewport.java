@@ -32,6 +32,7 @@ public class Viewport extends Figure implements PropertyChangeListener {
 	private boolean trackHeight = false;
 	private boolean ignoreScroll = false;
 	private RangeModel horiztonalRangeModel = null, verticalRangeModel = null;
+	private TileCache tileCache;
 
 	{
 		setLayoutManager(new ViewportLayout());
@@ -56,6 +57,17 @@ public class Viewport extends Figure implements PropertyChangeListener {
 		useTranslate = setting;
 	}
 
+	/**
+	 * Registers the tile cache with the update manager.
+	 * 
+	 * @see IFigure#addNotify()
+	 */
+	public void addNotify() {
+		super.addNotify();
+		if (tileCache != null)
+			getUpdateManager().addUpdateListener(tileCache);
+	}
+
 	/**
 	 * @see IFigure#getClientArea(Rectangle)
 	 */
@@ -117,6 +129,16 @@ public class Viewport extends Figure implements PropertyChangeListener {
 		return trackWidth;
 	}
 
+	/**
+	 * Returns the cache used to paint the contents, or <code>null</code>.
+	 * 
+	 * @return the tile cache
+	 * @since 3.9
+	 */
+	public TileCache getTileCache() {
+		return tileCache;
+	}
+
 	/**
 	 * Returns the range model associated with the vertical motion of the
 	 * Viewport.
@@ -157,7 +179,10 @@ public class Viewport extends Figure implements PropertyChangeListener {
 			try {
 				g.translate(-p.x, -p.y);
 				g.pushState();
-				super.paintClientArea(g);
+				if (tileCache != null && !getChildren().isEmpty())
+					tileCache.paint(this, g);
+				else
+					super.paintClientArea(g);
 				g.popState();
 			} finally {
 				g.translate(p.x, p.y);
@@ -196,6 +221,15 @@ public class Viewport extends Figure implements PropertyChangeListener {
 		}
 	}
 
+	/**
+	 * Paints the contents into a tile of the tile cache. The graphics is
+	 * translated to the contents' coordinates, so the client area is not used
+	 * for clipping.
+	 */
+	void paintTile(Graphics graphics) {
+		paintChildren(graphics);
+	}
+
 	/**
 	 * Sets extents of {@link RangeModel RangeModels} to the client area of this
 	 * Viewport. Sets RangeModel minimums to zero. Sets RangeModel maximums to
@@ -212,6 +246,19 @@ public class Viewport extends Figure implements PropertyChangeListener {
 				getContents().getBounds().width);
 	}
 
+	/**
+	 * Unregisters the tile cache and disposes its tiles.
+	 * 
+	 * @see IFigure#removeNotify()
+	 */
+	public void removeNotify() {
+		if (tileCache != null) {
+			getUpdateManager().removeUpdateListener(tileCache);
+			tileCache.clear();
+		}
+		super.removeNotify();
+	}
+
 	/**
 	 * Sets this Viewport to be associated with the passed Figure.
 	 * 
@@ -292,6 +339,33 @@ public class Viewport extends Figure implements PropertyChangeListener {
 		ignoreScroll = value;
 	}
 
+	/**
+	 * Sets the cache used to paint the contents of this viewport from
+	 * previously rendered tiles. The cache is only used when this viewport
+	 * uses graphics translation. The tiles of the previous cache are disposed.
+	 * 
+	 * @param cache
+	 *            the tile cache, or <code>null</code>
+	 * @since 3.9
+	 */
+	public void setTileCache(TileCache cache) {
+		if (tileCache == cache)
+			return;
+		boolean realized = getFlag(FLAG_REALIZED);
+		if (tileCache != null) {
+			if (realized)
+				getUpdateManager().removeUpdateListener(tileCache);
+			tileCache.clear();
+		}
+		tileCache = cache;
+		if (tileCache != null) {
+			tileCache.setViewport(this);
+			if (realized)
+				getUpdateManager().addUpdateListener(tileCache);
+		}
+		repaint();
+	}
+
 	/**
 	 * Sets the vertical location of the Viewport's view to the passed value.
 	 * 
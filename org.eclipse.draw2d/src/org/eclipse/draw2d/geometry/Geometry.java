@@ -111,11 +111,35 @@ public class Geometry {
 	 */
 	public static boolean polylineContainsPoint(PointList points, int x, int y,
 			int tolerance) {
-		int coordinates[] = points.toIntArray();
+		return polylineContainsPoint(points.getCoordinates(), points.size(), x,
+				y, tolerance);
+	}
+
+	/**
+	 * Determines whether the polyline given by the first <i>count</i> points of
+	 * the given array passes within <i>tolerance</i> of the point (x, y). Two
+	 * consecutive ints of the array form the coordinates of a point.
+	 * 
+	 * @param coordinates
+	 *            the coordinates of the polyline's points
+	 * @param count
+	 *            the number of points
+	 * @param x
+	 *            x coordinate of the point
+	 * @param y
+	 *            y coordinate of the point
+	 * @param tolerance
+	 *            allowed distance between the point and a segment
+	 * @return <code>true</code> if the point is on the polyline
+	 * @see #polylineContainsPoint(PointList, int, int, int)
+	 * @since 3.9
+	 */
+	public static boolean polylineContainsPoint(int[] coordinates, int count,
+			int x, int y, int tolerance) {
 		/*
 		 * For each segment of PolyLine calling isSegmentPoint
 		 */
-		for (int index = 0; index < coordinates.length - 3; index += 2) {
+		for (int index = 0; index < count * 2 - 3; index += 2) {
 			if (segmentContainsPoint(coordinates[index],
 					coordinates[index + 1], coordinates[index + 2],
 					coordinates[index + 3], x, y, tolerance)) {
@@ -178,9 +202,31 @@ public class Geometry {
 	 * @since 3.5
 	 */
 	public static boolean polygonContainsPoint(PointList points, int x, int y) {
+		return polygonContainsPoint(points.getCoordinates(), points.size(), x,
+				y);
+	}
+
+	/**
+	 * Determines whether the polygon given by the first <i>count</i> points of
+	 * the given array contains the point (x, y). Two consecutive ints of the
+	 * array form the coordinates of a point.
+	 * 
+	 * @param coordinates
+	 *            the coordinates of the polygon's points
+	 * @param count
+	 *            the number of points
+	 * @param x
+	 *            x coordinate of the point
+	 * @param y
+	 *            y coordinate of the point
+	 * @return <code>true</code> if the point is inside or on the polygon
+	 * @see #polygonContainsPoint(PointList, int, int)
+	 * @since 3.9
+	 */
+	public static boolean polygonContainsPoint(int[] coordinates, int count,
+			int x, int y) {
 		boolean isOdd = false;
-		int coordinates[] = points.toIntArray();
-		int n = coordinates.length;
+		int n = count * 2;
 		if (n > 3) { // If there are at least 2 Points (4 ints)
 			int x1, y1;
 			int x0 = coordinates[n - 2];
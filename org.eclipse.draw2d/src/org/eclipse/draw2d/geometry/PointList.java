@@ -119,13 +119,21 @@ public class PointList implements java.io.Serializable, Translatable {
 			return bounds;
 		bounds = new Rectangle();
 		if (size > 0) {
-			bounds.setLocation(getPoint(0));
-			for (int i = 0; i < size; i++)
-				bounds.union(getPoint(i));
+			bounds.setLocation(points[0], points[1]);
+			for (int i = 0; i < size * 2; i += 2)
+				bounds.union(points[i], points[i + 1]);
 		}
 		return bounds;
 	}
 
+	/**
+	 * Returns the backing array without trimming it. Only the first
+	 * <code>size() * 2</code> values are points.
+	 */
+	int[] getCoordinates() {
+		return points;
+	}
+
 	/**
 	 * Creates a copy
 	 * 
@@ -219,6 +227,29 @@ public class PointList implements java.io.Serializable, Translatable {
 		return p;
 	}
 
+	/**
+	 * Copies the x and y values at given index into the first two elements of
+	 * the given array. This method exists to avoid the creation of a new
+	 * <code>Point</code>.
+	 * 
+	 * @see #getPoint(Point, int)
+	 * @param xy
+	 *            an array of at least two elements
+	 * @param index
+	 *            The index being requested
+	 * @return The parameter <code>xy</code> is returned for convenience
+	 * @since 3.9
+	 */
+	public int[] getPoint(int[] xy, int index) {
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index: " + index + //$NON-NLS-1$
+					", Size: " + size); //$NON-NLS-1$
+		index *= 2;
+		xy[0] = points[index];
+		xy[1] = points[index + 1];
+		return xy;
+	}
+
 	/**
 	 * Inserts a given point at a specified index.
 	 * 
@@ -370,13 +401,48 @@ public class PointList implements java.io.Serializable, Translatable {
 	 * @since 2.0
 	 */
 	public void setPoint(Point pt, int index) {
+		setPoint(pt.x, pt.y, index);
+	}
+
+	/**
+	 * Overwrites a point at a given index in the list with the given values.
+	 * 
+	 * @param x
+	 *            X value of the point
+	 * @param y
+	 *            Y value of the point
+	 * @param index
+	 *            Index where the given point is to be stored.
+	 * @since 3.9
+	 */
+	public void setPoint(int x, int y, int index) {
 		if (index < 0 || index >= size)
 			throw new IndexOutOfBoundsException("Index: " + index + //$NON-NLS-1$
 					", Size: " + size); //$NON-NLS-1$
-		if (bounds != null && !bounds.contains(pt))
+		if (bounds != null && !bounds.contains(x, y))
 			bounds = null;
-		points[index * 2] = pt.x;
-		points[index * 2 + 1] = pt.y;
+		points[index * 2] = x;
+		points[index * 2 + 1] = y;
+	}
+
+	/**
+	 * Replaces the points of this PointList with the first <i>count</i> points
+	 * of the given array, where two consecutive ints form the coordinates of a
+	 * point. The array is copied, and the existing storage is reused when it
+	 * is large enough.
+	 * 
+	 * @param coordinates
+	 *            the coordinates of the points
+	 * @param count
+	 *            the number of points
+	 * @since 3.9
+	 */
+	public void setPoints(int[] coordinates, int count) {
+		bounds = null;
+		size = 0;
+		ensureCapacity(count);
+		System.arraycopy(coordinates, 0, points, 0, count * 2);
+		size = count;
 	}
 
 	/**
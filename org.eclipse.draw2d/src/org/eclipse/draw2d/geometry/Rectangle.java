@@ -344,6 +344,22 @@ public class Rectangle implements Cloneable, java.io.Serializable, Translatable
 		return new Point(x + width / 2, y + height / 2);
 	}
 
+	/**
+	 * Copies the center of this Rectangle into the first two elements of the
+	 * given array. This method exists to avoid the creation of a new
+	 * <code>Point</code>.
+	 * 
+	 * @param xy
+	 *            an array of at least two elements
+	 * @return The parameter <code>xy</code> is returned for convenience
+	 * @since 3.9
+	 */
+	public int[] getCenter(int[] xy) {
+		xy[0] = x + width / 2;
+		xy[1] = y + height / 2;
+		return xy;
+	}
+
 	/**
 	 * Returns a new Rectangle which has the exact same parameters as this
 	 * Rectangle.
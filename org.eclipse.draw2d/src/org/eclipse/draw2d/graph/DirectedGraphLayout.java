@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2010 IBM Corporation and others.
+ * Copyright (c) 2003, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -70,6 +70,7 @@ import java.util.List;
  */
 public class DirectedGraphLayout {
 
+	private List listeners = new ArrayList();
 	List steps = new ArrayList();
 
 	/**
@@ -79,6 +80,26 @@ public class DirectedGraphLayout {
 		init();
 	}
 
+	/**
+	 * Adds a listener which is notified as each step of the layout is
+	 * performed, and which may stop the layout.
+	 * 
+	 * @param listener
+	 *            the listener
+	 * @since 3.9
+	 */
+	public void addGraphLayoutListener(GraphLayoutListener listener) {
+		listeners.add(listener);
+	}
+
+	private static int countVirtualNodes(DirectedGraph graph) {
+		int count = 0;
+		for (int i = 0; i < graph.nodes.size(); i++)
+			if (graph.nodes.get(i) instanceof VirtualNode)
+				count++;
+		return count;
+	}
+
 	void init() {
 		steps.add(new TransposeMetrics());
 		steps.add(new BreakCycles());
@@ -93,6 +114,58 @@ public class DirectedGraphLayout {
 		steps.add(new HorizontalPlacement());
 	}
 
+	boolean isCanceled() {
+		for (int i = 0; i < listeners.size(); i++)
+			if (((GraphLayoutListener) listeners.get(i)).isCanceled())
+				return true;
+		return false;
+	}
+
+	/**
+	 * Removes a listener previously added.
+	 * 
+	 * @param listener
+	 *            the listener
+	 * @since 3.9
+	 */
+	public void removeGraphLayoutListener(GraphLayoutListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Sets the number of times the ranks are swept to reduce edge crossings.
+	 * The default is 45. Fewer passes lay out large graphs faster, at the cost
+	 * of more crossings.
+	 * 
+	 * @param passes
+	 *            the number of passes, at least 1
+	 * @since 3.9
+	 */
+	public void setCrossingReductionPasses(int passes) {
+		if (passes < 1)
+			throw new IllegalArgumentException();
+		for (int i = 0; i < steps.size(); i++)
+			if (steps.get(i) instanceof MinCross)
+				((MinCross) steps.get(i)).setPasses(passes);
+	}
+
+	/**
+	 * Sets the time in milliseconds after which no further passes are made to
+	 * reduce edge crossings. The pass in progress is always completed. The
+	 * default is <code>0</code>, meaning that all passes are made.
+	 * 
+	 * @param millis
+	 *            the time limit, or <code>0</code> for none
+	 * @since 3.9
+	 */
+	public void setCrossingReductionTimeLimit(long millis) {
+		if (millis < 0)
+			throw new IllegalArgumentException();
+		for (int i = 0; i < steps.size(); i++)
+			if (steps.get(i) instanceof MinCross)
+				((MinCross) steps.get(i)).setTimeLimit(millis);
+	}
+
 	/**
 	 * Lays out the given graph
 	 * 
@@ -104,12 +177,60 @@ public class DirectedGraphLayout {
 			return;
 		for (int i = 0; i < steps.size(); i++) {
 			GraphVisitor visitor = (GraphVisitor) steps.get(i);
-			visitor.visit(graph);
+			if (listeners.isEmpty())
+				visitor.visit(graph);
+			else if (!visit(visitor, graph, i, false))
+				return;
 		}
 		for (int i = steps.size() - 1; i >= 0; i--) {
 			GraphVisitor visitor = (GraphVisitor) steps.get(i);
-			visitor.revisit(graph);
+			if (listeners.isEmpty())
+				visitor.revisit(graph);
+			else if (!visit(visitor, graph, i, true))
+				return;
 		}
 	}
 
+	/**
+	 * Performs a step while notifying listeners. Returns <code>false</code> if
+	 * the layout has been canceled.
+	 */
+	private boolean visit(GraphVisitor visitor, DirectedGraph graph, int index,
+			boolean revisit) {
+		if (isCanceled())
+			return false;
+		String name = visitor.getClass().getName();
+		LayoutStepEvent event = new LayoutStepEvent(this, graph, name
+				.substring(name.lastIndexOf('.') + 1), index, steps.size(),
+				revisit);
+		for (int i = 0; i < listeners.size(); i++)
+			((GraphLayoutListener) listeners.get(i)).stepStarted(event);
+
+		boolean ordersRanks = !revisit && visitor.ordersRanks();
+		if (ordersRanks)
+			event.crossingsBefore = GraphUtilities.countCrossings(graph);
+		visitor.layout = this;
+		long start = System.currentTimeMillis();
+		try {
+			if (revisit)
+				visitor.revisit(graph);
+			else
+				visitor.visit(graph);
+		} finally {
+			visitor.layout = null;
+		}
+		event.time = System.currentTimeMillis() - start;
+		if (ordersRanks)
+			event.crossingsAfter = GraphUtilities.countCrossings(graph);
+		if (!revisit)
+			event.iterationCount = visitor.getIterationCount();
+		event.nodeCount = graph.nodes.size();
+		event.edgeCount = graph.edges.size();
+		event.virtualNodeCount = countVirtualNodes(graph);
+
+		for (int i = 0; i < listeners.size(); i++)
+			((GraphLayoutListener) listeners.get(i)).stepFinished(event);
+		return !isCanceled();
+	}
+
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2010 IBM Corporation and others.
+ * Copyright (c) 2003, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -67,6 +67,10 @@ public class Edge {
 
 	boolean flag;
 
+	// The position of this edge in the list of candidates when finding a tight
+	// spanning tree.
+	int index;
+
 	/**
 	 * @deprecated INTERNAL field, use accessor method Indicates an edge was
 	 *             inverted during the layout
@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.draw2d.graph;
+
+/**
+ * Classes which implement this interface are notified of the progress of a
+ * {@link DirectedGraphLayout}, and may stop it.
+ * <P>
+ * A layout is made of several steps, such as assigning ranks, reducing edge
+ * crossings and placing nodes horizontally. Each step visits the graph once in
+ * order, and then once more in reverse order. Listeners are told when each of
+ * these visits starts and finishes. All notifications are made on the thread
+ * performing the layout.
+ * <P>
+ * Instances can be hooked to a layout by calling
+ * {@link DirectedGraphLayout#addGraphLayoutListener(GraphLayoutListener)}.
+ *
+ * @since 3.9
+ */
+public interface GraphLayoutListener {
+
+	/**
+	 * A stub implementation which implements all of the declared methods.
+	 *
+	 * @since 3.9
+	 */
+	class Stub implements GraphLayoutListener {
+
+		/**
+		 * Stub which returns <code>false</code>.
+		 *
+		 * @see GraphLayoutListener#isCanceled()
+		 */
+		public boolean isCanceled() {
+			return false;
+		}
+
+		/**
+		 * Stub which does nothing.
+		 *
+		 * @see GraphLayoutListener#stepFinished(LayoutStepEvent)
+		 */
+		public void stepFinished(LayoutStepEvent event) {
+		}
+
+		/**
+		 * Stub which does nothing.
+		 *
+		 * @see GraphLayoutListener#stepStarted(LayoutStepEvent)
+		 */
+		public void stepStarted(LayoutStepEvent event) {
+		}
+
+	}
+
+	/**
+	 * Returns <code>true</code> if the layout should stop. This is asked
+	 * before each step, and regularly during the steps which iterate. Once a
+	 * layout has stopped, the graph is left partially laid out and should be
+	 * discarded.
+	 *
+	 * @return <code>true</code> if the layout should stop
+	 */
+	boolean isCanceled();
+
+	/**
+	 * Called after a step has visited the graph. The event's measurements are
+	 * available.
+	 *
+	 * @param event
+	 *            the step's event
+	 */
+	void stepFinished(LayoutStepEvent event);
+
+	/**
+	 * Called before a step visits the graph. Only the event's name, index and
+	 * direction are known at this point.
+	 *
+	 * @param event
+	 *            the step's event
+	 */
+	void stepStarted(LayoutStepEvent event);
+
+}
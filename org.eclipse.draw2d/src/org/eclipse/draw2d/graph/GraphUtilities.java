@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2010 IBM Corporation and others.
+ * Copyright (c) 2003, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,6 +10,10 @@
  *******************************************************************************/
 package org.eclipse.draw2d.graph;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * Some utility methods for graphs.
  * 
@@ -18,6 +22,70 @@ package org.eclipse.draw2d.graph;
  */
 class GraphUtilities {
 
+	/**
+	 * Counts the crossings of the edges between each rank and the next, using
+	 * the order of the nodes within the ranks. Edges spanning more than one
+	 * rank are ignored. Rather than comparing every pair of edges, the
+	 * positions of the edges' targets are listed in the order of their sources,
+	 * and the inversions in that list are counted while merge sorting it.
+	 * 
+	 * @param graph
+	 *            the graph
+	 * @return the number of crossings
+	 */
+	static int countCrossings(DirectedGraph graph) {
+		int crossings = 0;
+		Map positions = new HashMap();
+		for (int r = 0; r < graph.ranks.size() - 1; r++) {
+			Rank rank = graph.ranks.getRank(r);
+			Rank next = graph.ranks.getRank(r + 1);
+			positions.clear();
+			for (int i = 0; i < next.size(); i++)
+				positions.put(next.getNode(i), new Integer(i));
+			int size = 0;
+			for (int i = 0; i < rank.size(); i++)
+				size += rank.getNode(i).outgoing.size();
+			int targets[] = new int[size];
+			size = 0;
+			for (int i = 0; i < rank.size(); i++) {
+				EdgeList outgoing = rank.getNode(i).outgoing;
+				int start = size;
+				for (int j = 0; j < outgoing.size(); j++) {
+					Integer position = (Integer) positions.get(outgoing
+							.getEdge(j).target);
+					if (position != null)
+						targets[size++] = position.intValue();
+				}
+				// Edges leaving the same node do not cross
+				Arrays.sort(targets, start, size);
+			}
+			crossings += countInversions(targets, new int[size], 0, size);
+		}
+		return crossings;
+	}
+
+	private static int countInversions(int values[], int buffer[], int from,
+			int to) {
+		if (to - from < 2)
+			return 0;
+		int middle = (from + to) / 2;
+		int inversions = countInversions(values, buffer, from, middle)
+				+ countInversions(values, buffer, middle, to);
+		int left = from, right = middle, i = from;
+		while (left < middle && right < to)
+			if (values[right] < values[left]) {
+				inversions += middle - left;
+				buffer[i++] = values[right++];
+			} else
+				buffer[i++] = values[left++];
+		while (left < middle)
+			buffer[i++] = values[left++];
+		while (right < to)
+			buffer[i++] = values[right++];
+		System.arraycopy(buffer, from, values, from, to - from);
+		return inversions;
+	}
+
 	static Subgraph getCommonAncestor(Node left, Node right) {
 		Subgraph parent;
 		if (right instanceof Subgraph)
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2010 IBM Corporation and others.
+ * Copyright (c) 2003, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -18,6 +18,39 @@ package org.eclipse.draw2d.graph;
  */
 abstract class GraphVisitor {
 
+	// The layout performing this step, if any
+	DirectedGraphLayout layout;
+
+	/**
+	 * Returns the number of iterations made by the last visit, or -1 if this
+	 * step does not iterate.
+	 * 
+	 * @return the number of iterations
+	 */
+	int getIterationCount() {
+		return -1;
+	}
+
+	/**
+	 * Returns <code>true</code> if the layout performing this step has been
+	 * canceled. Steps which iterate should check this regularly and stop.
+	 * 
+	 * @return <code>true</code> if canceled
+	 */
+	boolean isCanceled() {
+		return layout != null && layout.isCanceled();
+	}
+
+	/**
+	 * Returns <code>true</code> if this step changes the order of nodes within
+	 * ranks.
+	 * 
+	 * @return <code>true</code> if ranks are ordered
+	 */
+	boolean ordersRanks() {
+		return false;
+	}
+
 	/**
 	 * Act on the given directed graph.
 	 * 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2010 IBM Corporation and others.
+ * Copyright (c) 2003, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -17,6 +17,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Stack;
 
 /**
  * Assigns the X and width values for nodes in a directed graph.
@@ -227,7 +228,7 @@ class HorizontalPlacement extends SpanningTreeVisitor {
 				}
 			}
 			i++;
-			if (i == allClusters.size() && somethingMoved) {
+			if (i == allClusters.size() && somethingMoved && !isCanceled()) {
 				i = 0;
 				somethingMoved = false;
 			}
@@ -323,6 +324,8 @@ class HorizontalPlacement extends SpanningTreeVisitor {
 		allClusters.add(cluster);
 		growCluster(root, cluster);
 
+		// Collapsed edges are flagged and removed from the graph's list at once
+		prime.edges.resetFlags(false);
 		for (int i = 0; i < prime.edges.size(); i++) {
 			Edge e = prime.edges.getEdge(i);
 			NodeCluster sourceCluster = (NodeCluster) clusterMap.get(e.source);
@@ -338,10 +341,20 @@ class HorizontalPlacement extends SpanningTreeVisitor {
 				sourceCluster.addRightNeighbor(targetCluster, link);
 				targetCluster.addLeftNeighbor(sourceCluster, link);
 			} else {
-				prime.removeEdge(link.processEdge(e));
-				i--;
+				Edge removed = link.processEdge(e);
+				removed.flag = true;
+				removed.source.outgoing.remove(removed);
+				removed.target.incoming.remove(removed);
 			}
 		}
+		int size = 0;
+		for (int i = 0; i < prime.edges.size(); i++) {
+			Edge e = prime.edges.getEdge(i);
+			if (!e.flag)
+				prime.edges.set(size++, e);
+		}
+		prime.edges.subList(size, prime.edges.size()).clear();
+
 		for (int i = 0; i < allClusters.size(); i++)
 			((NodeCluster) allClusters.get(i)).initValues();
 	}
@@ -351,18 +364,28 @@ class HorizontalPlacement extends SpanningTreeVisitor {
 	}
 
 	void growCluster(Node root, NodeCluster cluster) {
-		cluster.add(root);
-		clusterMap.put(root, cluster);
-		EdgeList treeChildren = getSpanningTreeChildren(root);
-		for (int i = 0; i < treeChildren.size(); i++) {
-			Edge e = treeChildren.getEdge(i);
-			if (e.cut != 0)
-				growCluster(getTreeTail(e), cluster);
-			else {
-				NodeCluster newCluster = new NodeCluster();
-				allClusters.add(newCluster);
-				growCluster(getTreeTail(e), newCluster);
+		// The tree may be as deep as the graph is large, so a stack of tree
+		// edges and their parents' clusters is used instead of recursion.
+		Stack stack = new Stack();
+		growCluster(root, cluster, stack);
+		while (!stack.isEmpty()) {
+			Edge e = (Edge) stack.pop();
+			cluster = (NodeCluster) stack.pop();
+			if (e.cut == 0) {
+				cluster = new NodeCluster();
+				allClusters.add(cluster);
 			}
+			growCluster(getTreeTail(e), cluster, stack);
+		}
+	}
+
+	private void growCluster(Node node, NodeCluster cluster, Stack stack) {
+		cluster.add(node);
+		clusterMap.put(node, cluster);
+		EdgeList treeChildren = getSpanningTreeChildren(node);
+		for (int i = treeChildren.size() - 1; i >= 0; i--) {
+			stack.push(cluster);
+			stack.push(treeChildren.getEdge(i));
 		}
 	}
 
@@ -405,6 +428,7 @@ class HorizontalPlacement extends SpanningTreeVisitor {
 		new TightSpanningTreeSolver().visit(prime);
 
 		RankAssignmentSolver solver = new RankAssignmentSolver();
+		solver.layout = layout;
 		solver.visit(prime);
 		graph.size.width = graphRight.rank;
 		balanceClusters();
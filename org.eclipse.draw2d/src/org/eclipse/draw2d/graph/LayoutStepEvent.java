@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.draw2d.graph;
+
+import java.util.EventObject;
+
+/**
+ * An event describing one visit of a {@link DirectedGraphLayout} step, and
+ * measurements taken during it. The source of the event is the layout.
+ * Measurements which do not apply to a step are <code>-1</code>.
+ *
+ * @see GraphLayoutListener
+ * @since 3.9
+ */
+public class LayoutStepEvent extends EventObject {
+
+	private static final long serialVersionUID = 1L;
+
+	private int count;
+	int crossingsAfter = -1;
+	int crossingsBefore = -1;
+	int edgeCount = -1;
+	private transient DirectedGraph graph;
+	private int index;
+	int iterationCount = -1;
+	private String name;
+	int nodeCount = -1;
+	private boolean revisit;
+	long time = -1;
+	int virtualNodeCount = -1;
+
+	LayoutStepEvent(DirectedGraphLayout source, DirectedGraph graph,
+			String name, int index, int count, boolean revisit) {
+		super(source);
+		this.graph = graph;
+		this.name = name;
+		this.index = index;
+		this.count = count;
+		this.revisit = revisit;
+	}
+
+	/**
+	 * Returns the number of edge crossings between adjacent ranks after the
+	 * step, for steps which order the nodes within ranks.
+	 *
+	 * @return the number of crossings, or <code>-1</code>
+	 */
+	public int getCrossingsAfter() {
+		return crossingsAfter;
+	}
+
+	/**
+	 * Returns the number of edge crossings between adjacent ranks before the
+	 * step, for steps which order the nodes within ranks.
+	 *
+	 * @return the number of crossings, or <code>-1</code>
+	 */
+	public int getCrossingsBefore() {
+		return crossingsBefore;
+	}
+
+	/**
+	 * Returns the number of edges in the graph after the step.
+	 *
+	 * @return the number of edges
+	 */
+	public int getEdgeCount() {
+		return edgeCount;
+	}
+
+	/**
+	 * Returns the graph being laid out.
+	 *
+	 * @return the graph
+	 */
+	public DirectedGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * Returns the number of iterations the step made, for steps which iterate
+	 * towards a solution.
+	 *
+	 * @return the number of iterations, or <code>-1</code>
+	 */
+	public int getIterationCount() {
+		return iterationCount;
+	}
+
+	/**
+	 * Returns the name of the step, such as <code>"MinCross"</code>.
+	 *
+	 * @return the name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the number of nodes in the graph after the step, including
+	 * virtual nodes.
+	 *
+	 * @return the number of nodes
+	 */
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * Returns the fraction of the layout which is done once this visit has
+	 * finished, between <code>0</code> and <code>1</code>. Each visit counts
+	 * equally.
+	 *
+	 * @return the progress
+	 */
+	public double getProgress() {
+		int done = revisit ? 2 * count - index : index + 1;
+		return (double) done / (2 * count);
+	}
+
+	/**
+	 * Returns the position of the step in the layout.
+	 *
+	 * @return the step's index
+	 */
+	public int getStepIndex() {
+		return index;
+	}
+
+	/**
+	 * Returns the number of steps in the layout.
+	 *
+	 * @return the number of steps
+	 */
+	public int getStepCount() {
+		return count;
+	}
+
+	/**
+	 * Returns the time the step took in milliseconds.
+	 *
+	 * @return the time
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	/**
+	 * Returns the number of virtual nodes in the graph after the step. Virtual
+	 * nodes are added to bend edges which span more than one rank.
+	 *
+	 * @return the number of virtual nodes
+	 */
+	public int getVirtualNodeCount() {
+		return virtualNodeCount;
+	}
+
+	/**
+	 * Returns <code>true</code> if this is the second visit of the step, made
+	 * in reverse order after all steps have visited the graph once.
+	 *
+	 * @return <code>true</code> for the reverse visit
+	 */
+	public boolean isRevisit() {
+		return revisit;
+	}
+
+	/**
+	 * @see java.util.EventObject#toString()
+	 */
+	public String toString() {
+		return name + (revisit ? " (revisit): " : ": ") + time + " ms, " //$NON-NLS-1$ //$NON-NLS-2$
+				+ nodeCount + " nodes, " + edgeCount + " edges, " //$NON-NLS-1$ //$NON-NLS-2$
+				+ virtualNodeCount + " virtual nodes, " + iterationCount //$NON-NLS-1$
+				+ " iterations, " + crossingsBefore + " -> " + crossingsAfter //$NON-NLS-1$ //$NON-NLS-2$
+				+ " crossings"; //$NON-NLS-1$
+	}
+
+}
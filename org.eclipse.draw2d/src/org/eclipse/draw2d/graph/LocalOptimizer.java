@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2010 IBM Corporation and others.
+ * Copyright (c) 2003, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -19,6 +19,8 @@ package org.eclipse.draw2d.graph;
  */
 class LocalOptimizer extends GraphVisitor {
 
+	private int iterations;
+
 	boolean shouldSwap(Node current, Node next) {
 		if (GraphUtilities.isConstrained(current, next))
 			return false;
@@ -80,8 +82,15 @@ class LocalOptimizer extends GraphVisitor {
 		return false;
 	}
 
-	private void swapNodes(Node current, Node next, Rank rank) {
-		int index = rank.indexOf(current);
+	int getIterationCount() {
+		return iterations;
+	}
+
+	boolean ordersRanks() {
+		return true;
+	}
+
+	private void swapNodes(Node current, Node next, Rank rank, int index) {
 		rank.set(index + 1, current);
 		rank.set(index, next);
 		index = current.index;
@@ -94,7 +103,9 @@ class LocalOptimizer extends GraphVisitor {
 	 */
 	public void visit(DirectedGraph g) {
 		boolean flag;
+		iterations = 0;
 		do {
+			iterations++;
 			flag = false;
 			for (int r = 0; r < g.ranks.size(); r++) {
 				Rank rank = g.ranks.getRank(r);
@@ -102,13 +113,13 @@ class LocalOptimizer extends GraphVisitor {
 					Node currentNode = rank.getNode(n);
 					Node nextNode = rank.getNode(n + 1);
 					if (shouldSwap(currentNode, nextNode)) {
-						swapNodes(currentNode, nextNode, rank);
+						swapNodes(currentNode, nextNode, rank, n);
 						flag = true;
 						n = Math.max(0, n - 2);
 					}
 				}
 			}
-		} while (flag);
+		} while (flag && !isCanceled());
 	}
 
 }
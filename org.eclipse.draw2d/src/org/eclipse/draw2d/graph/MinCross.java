@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2010 IBM Corporation and others.
+ * Copyright (c) 2003, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -21,7 +21,10 @@ class MinCross extends GraphVisitor {
 	static final int MAX = 45;
 
 	private DirectedGraph g;
+	private int iterations;
+	private int passes = MAX;
 	private RankSorter sorter = new RankSorter();
+	private long timeLimit;
 
 	public MinCross() {
 	}
@@ -33,23 +36,51 @@ class MinCross extends GraphVisitor {
 		setRankSorter(sorter);
 	}
 
+	int getIterationCount() {
+		return iterations;
+	}
+
+	boolean ordersRanks() {
+		return true;
+	}
+
+	/**
+	 * Sets the number of passes made over the ranks.
+	 */
+	void setPasses(int passes) {
+		this.passes = passes;
+	}
+
 	public void setRankSorter(RankSorter sorter) {
 		this.sorter = sorter;
 	}
 
+	/**
+	 * Sets the time in milliseconds after which no further passes are started,
+	 * or <code>0</code> if all passes should be made.
+	 */
+	void setTimeLimit(long millis) {
+		timeLimit = millis;
+	}
+
 	void solve() {
 		Rank rank;
-		for (int loop = 0; loop < MAX; loop++) {
+		long end = System.currentTimeMillis() + timeLimit;
+		iterations = 0;
+		for (int loop = 0; loop < passes && !isCanceled(); loop++) {
+			iterations++;
 			for (int row = 1; row < g.ranks.size(); row++) {
 				rank = g.ranks.getRank(row);
-				sorter.sortRankIncoming(g, rank, row, (double) loop / MAX);
+				sorter.sortRankIncoming(g, rank, row, (double) loop / passes);
 			}
-			if (loop == MAX - 1)
+			if (loop == passes - 1)
 				continue;
 			for (int row = g.ranks.size() - 2; row >= 0; row--) {
 				rank = g.ranks.getRank(row);
-				sorter.sortRankOutgoing(g, rank, row, (double) loop / MAX);
+				sorter.sortRankOutgoing(g, rank, row, (double) loop / passes);
 			}
+			if (timeLimit > 0 && System.currentTimeMillis() >= end)
+				break;
 		}
 	}
 
@@ -26,6 +26,8 @@ import org.eclipse.draw2d.geometry.Rectangle;
 class Obstacle extends Rectangle {
 
 	boolean exclude;
+	boolean large;
+	int order, stamp;
 	Vertex topLeft, topRight, bottomLeft, bottomRight, center;
 	private ShortestPathRouter router;
 
@@ -40,6 +42,21 @@ class Obstacle extends Rectangle {
 		this.router = router;
 	}
 
+	/**
+	 * Returns <code>true</code> if the given segment crosses either diagonal of
+	 * this obstacle, or has an end point properly inside of it.
+	 * 
+	 * @param segment
+	 *            a segment
+	 * @return <code>true</code> if the segment is blocked by this obstacle
+	 */
+	boolean blocks(Segment segment) {
+		return segment.intersects(x, y, right() - 1, bottom() - 1)
+				|| segment.intersects(x, bottom() - 1, right() - 1, y)
+				|| containsProper(segment.start)
+				|| containsProper(segment.end);
+	}
+
 	/**
 	 * Returns <code>true</code> if the given point is contained but not on the
 	 * boundary of this obstacle.
@@ -57,19 +74,24 @@ class Obstacle extends Rectangle {
 		return router.getSpacing();
 	}
 
-	private void growVertex(Vertex vertex) {
-		if (vertex.totalCount > 0)
+	private int growVertex(Vertex vertex, int growth) {
+		if (vertex.totalCount > 0) {
 			vertex.grow();
+			growth = Math.max(growth, vertex.getGrowth());
+		}
+		return growth;
 	}
 
 	/**
 	 * Grows all vertices on this obstacle.
+	 * 
+	 * @return the farthest distance a vertex was moved
 	 */
-	void growVertices() {
-		growVertex(topLeft);
-		growVertex(topRight);
-		growVertex(bottomLeft);
-		growVertex(bottomRight);
+	int growVertices() {
+		int growth = growVertex(topLeft, 0);
+		growth = growVertex(topRight, growth);
+		growth = growVertex(bottomLeft, growth);
+		return growVertex(bottomRight, growth);
 	}
 
 	/**
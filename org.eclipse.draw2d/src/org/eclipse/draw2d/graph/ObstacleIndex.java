@@ -0,0 +1,460 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.draw2d.graph;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.eclipse.draw2d.geometry.Point;
+import org.eclipse.draw2d.geometry.Rectangle;
+
+/**
+ * A uniform grid over the obstacles of a {@link ShortestPathRouter}. The grid
+ * is hashed, so obstacles may be placed anywhere. It is updated as obstacles are
+ * added and removed, and is kept between solves.
+ * <P>
+ * Queries return every obstacle which may be hit. Each obstacle is numbered in
+ * the order in which it was added to the router. The router's algorithm acts
+ * on the first obstacle hit in that order, so using the grid does not change
+ * the routes found. Obstacles which would cover too many cells are kept in a
+ * separate list which is always searched.
+ *
+ * This class is for internal use only.
+ *
+ * @since 3.9
+ */
+final class ObstacleIndex {
+
+	private static final int CELL_SHIFT = 7;
+	private static final int CELL_SIZE = 1 << CELL_SHIFT;
+	private static final int MAX_CELLS = 64;
+	private static final Obstacle[] NONE = new Obstacle[0];
+
+	private static final Comparator ORDER = new Comparator() {
+		public int compare(Object o1, Object o2) {
+			return ((Obstacle) o1).order - ((Obstacle) o2).order;
+		}
+	};
+
+	private static final class Cell {
+		final int cx, cy;
+		Obstacle[] obstacles = new Obstacle[4];
+		int size;
+		Cell next;
+
+		Cell(int cx, int cy) {
+			this.cx = cx;
+			this.cy = cy;
+		}
+
+		void add(Obstacle obs) {
+			if (size == obstacles.length) {
+				Obstacle[] old = obstacles;
+				obstacles = new Obstacle[size * 2];
+				System.arraycopy(old, 0, obstacles, 0, size);
+			}
+			obstacles[size++] = obs;
+		}
+
+		void remove(Obstacle obs) {
+			for (int i = 0; i < size; i++)
+				if (obstacles[i] == obs) {
+					obstacles[i] = obstacles[--size];
+					obstacles[size] = null;
+					return;
+				}
+		}
+	}
+
+	private Cell[] table = new Cell[64];
+	private int cellCount;
+	private Obstacle[] large = new Obstacle[4];
+	private int largeCount;
+	private Obstacle[] results = new Obstacle[16];
+	private int nextOrder;
+	private int stamp;
+	private int tests;
+
+	private Segment segment;
+	private Obstacle exclude1, exclude2, blocking;
+
+	/**
+	 * Adds an obstacle after all of the obstacles already in the index.
+	 *
+	 * @param obs
+	 *            the new obstacle
+	 */
+	void add(Obstacle obs) {
+		obs.order = nextOrder++;
+		obs.large = (long) (cell(right(obs)) - cell(obs.x) + 1)
+				* (cell(bottom(obs)) - cell(obs.y) + 1) > MAX_CELLS;
+		if (obs.large) {
+			if (largeCount == large.length) {
+				Obstacle[] old = large;
+				large = new Obstacle[largeCount * 2];
+				System.arraycopy(old, 0, large, 0, largeCount);
+			}
+			large[largeCount++] = obs;
+			return;
+		}
+		for (int cx = cell(obs.x); cx <= cell(right(obs)); cx++)
+			for (int cy = cell(obs.y); cy <= cell(bottom(obs)); cy++) {
+				Cell cell = getCell(cx, cy);
+				if (cell == null)
+					cell = newCell(cx, cy);
+				cell.add(obs);
+			}
+	}
+
+	private int addResult(Obstacle obs, int count) {
+		if (count == results.length) {
+			Obstacle[] old = results;
+			results = new Obstacle[count * 2];
+			System.arraycopy(old, 0, results, 0, count);
+		}
+		results[count] = obs;
+		return count + 1;
+	}
+
+	private static int bottom(Rectangle r) {
+		return Math.max(r.y, r.y + r.height - 1);
+	}
+
+	private static int cell(int coordinate) {
+		return coordinate >> CELL_SHIFT;
+	}
+
+	private int collect(Obstacle obs, int count) {
+		obs.stamp = stamp;
+		if (segment == null)
+			return addResult(obs, count);
+		// Only the first blocking obstacle is wanted, so test it right away
+		tests++;
+		if (obs != exclude1 && obs != exclude2 && !obs.exclude
+				&& (blocking == null || obs.order < blocking.order)
+				&& obs.blocks(segment))
+			blocking = obs;
+		return count;
+	}
+
+	private int collect(Cell cell, int x1, int y1, int x2, int y2, int count) {
+		if (cell == null)
+			return count;
+		for (int i = 0; i < cell.size; i++) {
+			Obstacle obs = cell.obstacles[i];
+			if (obs.stamp != stamp && intersects(obs, x1, y1, x2, y2))
+				count = collect(obs, count);
+		}
+		return count;
+	}
+
+	private int collectLarge(int x1, int y1, int x2, int y2, int count) {
+		for (int i = 0; i < largeCount; i++) {
+			// Large obstacles are kept in order, so none of the rest can be
+			// the first to block
+			if (blocking != null && large[i].order > blocking.order)
+				break;
+			if (large[i].stamp != stamp
+					&& intersects(large[i], x1, y1, x2, y2))
+				count = collect(large[i], count);
+		}
+		return count;
+	}
+
+	/**
+	 * Collects the obstacles of the cells within the given area by visiting
+	 * all cells, for areas which span more cells than there are.
+	 */
+	private int collectSparse(int x1, int y1, int x2, int y2, int count) {
+		int cx1 = cell(x1), cy1 = cell(y1), cx2 = cell(x2), cy2 = cell(y2);
+		for (int i = 0; i < table.length; i++)
+			for (Cell cell = table[i]; cell != null; cell = cell.next)
+				if (cell.cx >= cx1 && cell.cx <= cx2 && cell.cy >= cy1
+						&& cell.cy <= cy2)
+					count = collect(cell, x1, y1, x2, y2, count);
+		return count;
+	}
+
+	private int collectNear(Point start, Point end, int margin) {
+		stamp++;
+		int count = 0;
+		int left = Math.min(start.x, end.x), right = Math.max(start.x, end.x);
+		int x1 = left - margin, x2 = right + margin;
+		int y1 = Math.min(start.y, end.y) - margin;
+		int y2 = Math.max(start.y, end.y) + margin;
+		if (isSparse(x1, y1, x2, y2))
+			return collectLarge(x1, y1, x2, y2, collectSparse(x1, y1, x2,
+					y2, count));
+		for (int cx = cell(x1); cx <= cell(x2); cx++) {
+			// The part of the segment within reach of this column
+			int from = Math.max(left, (cx << CELL_SHIFT) - margin);
+			int to = Math.min(right, (cx << CELL_SHIFT) + CELL_SIZE + margin);
+			int top, bottom;
+			if (start.x == end.x) {
+				top = Math.min(start.y, end.y);
+				bottom = Math.max(start.y, end.y);
+			} else {
+				double slope = (double) (end.y - start.y) / (end.x - start.x);
+				double ya = start.y + (from - start.x) * slope;
+				double yb = start.y + (to - start.x) * slope;
+				top = (int) Math.floor(Math.min(ya, yb));
+				bottom = (int) Math.ceil(Math.max(ya, yb));
+			}
+			for (int cy = cell(top - margin); cy <= cell(bottom + margin); cy++)
+				count = collect(getCell(cx, cy), x1, y1, x2, y2, count);
+		}
+		return collectLarge(x1, y1, x2, y2, count);
+	}
+
+	/**
+	 * Returns the first obstacle added which has the given bounds.
+	 *
+	 * @param rect
+	 *            the bounds
+	 * @return the obstacle, or <code>null</code>
+	 */
+	Obstacle find(Rectangle rect) {
+		Obstacle[] found = findIntersecting(rect.x, rect.y, rect.x, rect.y);
+		Obstacle first = null;
+		for (int i = 0; i < found.length; i++)
+			if (found[i].equals(rect)
+					&& (first == null || found[i].order < first.order))
+				first = found[i];
+		return first;
+	}
+
+	/**
+	 * Returns the obstacles which contain either of the given points.
+	 *
+	 * @param p1
+	 *            a point
+	 * @param p2
+	 *            another point
+	 * @return the obstacles, in the order they were added
+	 */
+	Obstacle[] findContaining(Point p1, Point p2) {
+		stamp++;
+		int count = collect(getCell(cell(p1.x), cell(p1.y)), p1.x, p1.y,
+				p1.x, p1.y, 0);
+		count = collectLarge(p1.x, p1.y, p1.x, p1.y, count);
+		count = collect(getCell(cell(p2.x), cell(p2.y)), p2.x, p2.y, p2.x,
+				p2.y, count);
+		count = collectLarge(p2.x, p2.y, p2.x, p2.y, count);
+		return toArray(count, true);
+	}
+
+	/**
+	 * Returns the first obstacle added which blocks the given segment, as
+	 * tested by {@link Obstacle#blocks(Segment)}. Obstacles which are excluded
+	 * are ignored.
+	 *
+	 * @param segment
+	 *            the segment
+	 * @param exclude1
+	 *            an obstacle to ignore, or <code>null</code>
+	 * @param exclude2
+	 *            another obstacle to ignore, or <code>null</code>
+	 * @return the blocking obstacle, or <code>null</code>
+	 */
+	Obstacle findFirstBlocking(Segment segment, Obstacle exclude1,
+			Obstacle exclude2) {
+		this.segment = segment;
+		this.exclude1 = exclude1;
+		this.exclude2 = exclude2;
+		try {
+			collectNear(segment.start, segment.end, 0);
+			return blocking;
+		} finally {
+			this.segment = null;
+			this.exclude1 = this.exclude2 = blocking = null;
+		}
+	}
+
+	/**
+	 * Returns the obstacles which intersect the given area, in no particular
+	 * order. The bounds are inclusive.
+	 *
+	 * @param x1
+	 *            the left edge
+	 * @param y1
+	 *            the top edge
+	 * @param x2
+	 *            the right edge
+	 * @param y2
+	 *            the bottom edge
+	 * @return the obstacles
+	 */
+	Obstacle[] findIntersecting(int x1, int y1, int x2, int y2) {
+		stamp++;
+		int count = 0;
+		if (isSparse(x1, y1, x2, y2))
+			count = collectSparse(x1, y1, x2, y2, count);
+		else {
+			for (int cx = cell(x1); cx <= cell(x2); cx++)
+				for (int cy = cell(y1); cy <= cell(y2); cy++)
+					count = collect(getCell(cx, cy), x1, y1, x2, y2, count);
+		}
+		count = collectLarge(x1, y1, x2, y2, count);
+		return toArray(count, false);
+	}
+
+	/**
+	 * Returns the obstacles which come within the given distance of a segment.
+	 * Only the cells along the segment are visited, so long diagonal segments
+	 * do not visit the whole of their bounding box.
+	 *
+	 * @param start
+	 *            the start of the segment
+	 * @param end
+	 *            the end of the segment
+	 * @param margin
+	 *            the distance
+	 * @return the obstacles, in the order they were added
+	 */
+	Obstacle[] findNear(Point start, Point end, int margin) {
+		return toArray(collectNear(start, end, margin), true);
+	}
+
+	private Cell getCell(int cx, int cy) {
+		Cell cell = table[hash(cx, cy) & (table.length - 1)];
+		while (cell != null && (cell.cx != cx || cell.cy != cy))
+			cell = cell.next;
+		return cell;
+	}
+
+	/**
+	 * Returns the number of obstacles returned by queries since the last call
+	 * to {@link #resetTestCount()}. Each of them is tested by the caller.
+	 *
+	 * @return the number of obstacle tests
+	 */
+	int getTestCount() {
+		return tests;
+	}
+
+	private static int hash(int cx, int cy) {
+		int h = cx * 0x9E3779B1 + cy;
+		return h ^ (h >>> 16);
+	}
+
+	private static boolean intersects(Obstacle obs, int x1, int y1, int x2,
+			int y2) {
+		return x1 <= right(obs) && y1 <= bottom(obs) && x2 >= obs.x
+				&& y2 >= obs.y;
+	}
+
+	private Cell newCell(int cx, int cy) {
+		if (cellCount >= table.length * 3 / 4) {
+			Cell[] old = table;
+			table = new Cell[old.length * 2];
+			for (int i = 0; i < old.length; i++) {
+				Cell cell = old[i];
+				while (cell != null) {
+					Cell next = cell.next;
+					int index = hash(cell.cx, cell.cy) & (table.length - 1);
+					cell.next = table[index];
+					table[index] = cell;
+					cell = next;
+				}
+			}
+		}
+		Cell cell = new Cell(cx, cy);
+		int index = hash(cx, cy) & (table.length - 1);
+		cell.next = table[index];
+		table[index] = cell;
+		cellCount++;
+		return cell;
+	}
+
+	/**
+	 * Removes an obstacle.
+	 *
+	 * @param obs
+	 *            the obstacle
+	 */
+	void remove(Obstacle obs) {
+		if (obs.large) {
+			for (int i = 0; i < largeCount; i++)
+				if (large[i] == obs) {
+					System.arraycopy(large, i + 1, large, i, largeCount - i
+							- 1);
+					large[--largeCount] = null;
+					break;
+				}
+			return;
+		}
+		for (int cx = cell(obs.x); cx <= cell(right(obs)); cx++)
+			for (int cy = cell(obs.y); cy <= cell(bottom(obs)); cy++) {
+				Cell cell = getCell(cx, cy);
+				if (cell == null)
+					continue;
+				cell.remove(obs);
+				if (cell.size == 0)
+					removeCell(cell);
+			}
+	}
+
+	private void removeCell(Cell cell) {
+		int index = hash(cell.cx, cell.cy) & (table.length - 1);
+		if (table[index] == cell)
+			table[index] = cell.next;
+		else {
+			Cell prev = table[index];
+			while (prev.next != cell)
+				prev = prev.next;
+			prev.next = cell.next;
+		}
+		cellCount--;
+	}
+
+	/**
+	 * Resets the count returned by {@link #getTestCount()}.
+	 */
+	void resetTestCount() {
+		tests = 0;
+	}
+
+	private boolean isSparse(int x1, int y1, int x2, int y2) {
+		return (long) (cell(x2) - cell(x1) + 1) * (cell(y2) - cell(y1) + 1)
+				> cellCount;
+	}
+
+	private static int right(Rectangle r) {
+		return Math.max(r.x, r.x + r.width - 1);
+	}
+
+	private void sort(int count) {
+		if (count > 8) {
+			Arrays.sort(results, 0, count, ORDER);
+			return;
+		}
+		for (int i = 1; i < count; i++) {
+			Obstacle obs = results[i];
+			int j = i;
+			for (; j > 0 && results[j - 1].order > obs.order; j--)
+				results[j] = results[j - 1];
+			results[j] = obs;
+		}
+	}
+
+	private Obstacle[] toArray(int count, boolean ordered) {
+		if (count == 0)
+			return NONE;
+		if (ordered)
+			sort(count);
+		Obstacle[] found = new Obstacle[count];
+		System.arraycopy(results, 0, found, 0, count);
+		Arrays.fill(results, 0, count, null);
+		tests += count;
+		return found;
+	}
+
+}
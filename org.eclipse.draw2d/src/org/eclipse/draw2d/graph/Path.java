@@ -299,36 +299,23 @@ public class Path {
 	 *            an obstacle to exclude from the search
 	 * @param exclude2
 	 *            another obstacle to exclude from the search
-	 * @param allObstacles
-	 *            the list of all obstacles
+	 * @param obstacles
+	 *            the index of all obstacles
 	 */
 	private void addSegment(Segment segment, Obstacle exclude1,
-			Obstacle exclude2, List allObstacles) {
+			Obstacle exclude2, ObstacleIndex obstacles) {
 		if (threshold != 0
 				&& (segment.end.getDistance(end)
 						+ segment.end.getDistance(start) > threshold || segment.start
 						.getDistance(end) + segment.start.getDistance(start) > threshold))
 			return;
 
-		for (int i = 0; i < allObstacles.size(); i++) {
-			Obstacle obs = (Obstacle) allObstacles.get(i);
-
-			if (obs == exclude1 || obs == exclude2 || obs.exclude)
-				continue;
-
-			if (segment.intersects(obs.x, obs.y, obs.right() - 1,
-					obs.bottom() - 1)
-					|| segment.intersects(obs.x, obs.bottom() - 1,
-							obs.right() - 1, obs.y)
-					|| obs.containsProper(segment.start)
-					|| obs.containsProper(segment.end)) {
-				if (!visibleObstacles.contains(obs))
-					addObstacle(obs);
-				return;
-			}
-		}
-
-		linkVertices(segment);
+		Obstacle obs = obstacles.findFirstBlocking(segment, exclude1,
+				exclude2);
+		if (obs == null)
+			linkVertices(segment);
+		else if (!visibleObstacles.contains(obs))
+			addObstacle(obs);
 	}
 
 	/**
@@ -525,17 +512,17 @@ public class Path {
 	/**
 	 * Begins the creation of the visibility graph with the first segment
 	 * 
-	 * @param allObstacles
-	 *            list of all obstacles
+	 * @param obstacles
+	 *            the index of all obstacles
 	 */
-	private void createVisibilityGraph(List allObstacles) {
+	private void createVisibilityGraph(ObstacleIndex obstacles) {
 		stack.push(null);
 		stack.push(null);
 		stack.push(new Segment(start, end));
 
 		while (!stack.isEmpty())
 			addSegment(stack.pop(), stack.popObstacle(), stack.popObstacle(),
-					allObstacles);
+					obstacles);
 	}
 
 	/**
@@ -584,12 +571,12 @@ public class Path {
 	 * Creates the visibility graph and returns whether or not a shortest path
 	 * could be determined.
 	 * 
-	 * @param allObstacles
-	 *            the list of all obstacles
+	 * @param obstacles
+	 *            the index of all obstacles
 	 * @return true if a shortest path was found
 	 */
-	boolean generateShortestPath(List allObstacles) {
-		createVisibilityGraph(allObstacles);
+	boolean generateShortestPath(ObstacleIndex obstacles) {
+		createVisibilityGraph(obstacles);
 
 		if (visibleVertices.size() == 0)
 			return false;
@@ -784,17 +771,21 @@ public class Path {
 	}
 
 	/**
-	 * Refreshes the exclude field on the obstacles in the list. Excludes all
-	 * obstacles that contain the start or end point for this path.
+	 * Refreshes the exclude field on the obstacles near the start or end point
+	 * for this path. Excludes all obstacles that contain the start or end point
+	 * for this path. The exclude field of all other obstacles is expected to be
+	 * <code>false</code>.
 	 * 
-	 * @param allObstacles
-	 *            list of all obstacles
+	 * @param obstacles
+	 *            the index of all obstacles
+	 * @return the obstacles whose exclude field was refreshed
 	 */
-	void refreshExcludedObstacles(List allObstacles) {
+	Obstacle[] refreshExcludedObstacles(ObstacleIndex obstacles) {
 		excludedObstacles.clear();
 
-		for (int i = 0; i < allObstacles.size(); i++) {
-			Obstacle o = (Obstacle) allObstacles.get(i);
+		Obstacle[] candidates = obstacles.findContaining(start, end);
+		for (int i = 0; i < candidates.length; i++) {
+			Obstacle o = candidates[i];
 			o.exclude = false;
 
 			if (o.contains(start)) {
@@ -823,6 +814,7 @@ public class Path {
 			if (o.exclude && !excludedObstacles.contains(o))
 				excludedObstacles.add(o);
 		}
+		return candidates;
 	}
 
 	/**
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2010 IBM Corporation and others.
+ * Copyright (c) 2003, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -23,43 +23,54 @@ import java.util.Stack;
 class RankAssignmentSolver extends SpanningTreeVisitor {
 
 	DirectedGraph graph;
+	// The tree edges with a negative cut value, which are flagged
 	EdgeList spanningTree;
 	boolean searchDirection;
+	private int iterations;
 
-	int depthFirstCutValue(Edge edge, int count) {
-		Node n = getTreeTail(edge);
-		setTreeMin(n, count);
-		int cutvalue = 0;
-		int multiplier = (edge.target == n) ? 1 : -1;
-		EdgeList list;
+	/*
+	 * Trees may be as deep as the graph is large, so they are walked using
+	 * these arrays rather than recursion.
+	 */
+	private Edge edgePath[];
+	private Node nodePath[];
+	private int positions[];
 
-		list = n.outgoing;
-		Edge e;
-		for (int i = 0; i < list.size(); i++) {
-			e = list.getEdge(i);
-			if (e.tree && e != edge) {
-				count = depthFirstCutValue(e, count);
-				cutvalue += (e.cut - e.weight) * multiplier;
-			} else {
-				cutvalue -= e.weight * multiplier;
+	int depthFirstCutValue(Edge edge, int count) {
+		int depth = 0;
+		edgePath[0] = edge;
+		positions[0] = 0;
+		setTreeMin(getTreeTail(edge), count);
+		while (depth >= 0) {
+			edge = edgePath[depth];
+			Node n = getTreeTail(edge);
+			int outgoing = n.outgoing.size();
+			int i = positions[depth];
+			Edge child = null;
+			while (child == null && i < outgoing + n.incoming.size()) {
+				Edge e;
+				if (i < outgoing)
+					e = n.outgoing.getEdge(i);
+				else
+					e = n.incoming.getEdge(i - outgoing);
+				if (e.tree && e != edge)
+					child = e;
+				i++;
 			}
-		}
-		list = n.incoming;
-		for (int i = 0; i < list.size(); i++) {
-			e = list.getEdge(i);
-			if (e.tree && e != edge) {
-				count = depthFirstCutValue(e, count);
-				cutvalue -= (e.cut - e.weight) * multiplier;
+			positions[depth] = i;
+			if (child != null) {
+				depth++;
+				edgePath[depth] = child;
+				positions[depth] = 0;
+				setTreeMin(getTreeTail(child), count);
 			} else {
-				cutvalue += e.weight * multiplier;
+				setCutValue(edge);
+				setTreeMax(n, count);
+				count++;
+				depth--;
 			}
 		}
-
-		edge.cut = cutvalue;
-		if (cutvalue < 0)
-			spanningTree.add(edge);
-		setTreeMax(n, count);
-		return count + 1;
+		return count;
 	}
 
 	/**
@@ -98,6 +109,10 @@ class RankAssignmentSolver extends SpanningTreeVisitor {
 		return result;
 	}
 
+	int getIterationCount() {
+		return iterations;
+	}
+
 	int getTreeMax(Node n) {
 		return n.workingInts[1];
 	}
@@ -109,6 +124,10 @@ class RankAssignmentSolver extends SpanningTreeVisitor {
 	void initCutValues() {
 		Node root = graph.nodes.getNode(0);
 		spanningTree = new EdgeList();
+		graph.edges.resetFlags(false);
+		edgePath = new Edge[graph.nodes.size()];
+		nodePath = new Node[graph.nodes.size()];
+		positions = new int[graph.nodes.size()];
 		Edge e;
 		setTreeMin(root, 1);
 		setTreeMax(root, 1);
@@ -149,7 +168,7 @@ class RankAssignmentSolver extends SpanningTreeVisitor {
 	void networkSimplexLoop() {
 		Edge leave, enter;
 		int count = 0;
-		while ((leave = leave()) != null && count < 900) {
+		while ((leave = leave()) != null && count < 900 && !isCanceled()) {
 
 			count++;
 
@@ -164,7 +183,7 @@ class RankAssignmentSolver extends SpanningTreeVisitor {
 			getSpanningTreeChildren(leaveHead).remove(leave);
 			setParentEdge(leaveTail, null);
 			leave.tree = false;
-			spanningTree.remove(leave);
+			removeCutValue(leave);
 
 			Node enterTail = enter.source;
 			if (!subtreeContains(leaveTail, enterTail))
@@ -195,10 +214,22 @@ class RankAssignmentSolver extends SpanningTreeVisitor {
 			updateMinMax(commonAncestor, getTreeMin(commonAncestor));
 			tightenEdge(enter);
 		}
+		iterations = count;
+	}
+
+	private void removeCutValue(Edge edge) {
+		if (edge.flag) {
+			spanningTree.remove(edge);
+			edge.flag = false;
+		}
 	}
 
 	void repairCutValues(Edge edge) {
-		spanningTree.remove(edge);
+		removeCutValue(edge);
+		setCutValue(edge);
+	}
+
+	void setCutValue(Edge edge) {
 		Node n = getTreeTail(edge);
 		int cutvalue = 0;
 		int multiplier = (edge.target == n) ? 1 : -1;
@@ -223,8 +254,10 @@ class RankAssignmentSolver extends SpanningTreeVisitor {
 		}
 
 		edge.cut = cutvalue;
-		if (cutvalue < 0)
+		if (cutvalue < 0) {
 			spanningTree.add(edge);
+			edge.flag = true;
+		}
 	}
 
 	void setTreeMax(Node n, int value) {
@@ -245,33 +278,60 @@ class RankAssignmentSolver extends SpanningTreeVisitor {
 		int delta = edge.getSlack();
 		if (tail == edge.target)
 			delta = -delta;
-		Node n;
-		for (int i = 0; i < graph.nodes.size(); i++) {
-			n = graph.nodes.getNode(i);
-			if (subtreeContains(tail, n))
-				n.rank += delta;
+		// Moves the subtree of the tail
+		int size = 1;
+		nodePath[0] = tail;
+		while (size > 0) {
+			Node n = nodePath[--size];
+			n.rank += delta;
+			EdgeList edges = getSpanningTreeChildren(n);
+			for (int i = 0; i < edges.size(); i++)
+				nodePath[size++] = edges.getEdge(i).opposite(n);
 		}
 	}
 
 	int updateMinMax(Node root, int count) {
+		int depth = 0;
+		nodePath[0] = root;
+		positions[0] = 0;
 		setTreeMin(root, count);
-		EdgeList edges = getSpanningTreeChildren(root);
-		for (int i = 0; i < edges.size(); i++)
-			count = updateMinMax(getTreeTail(edges.getEdge(i)), count);
-		setTreeMax(root, count);
-		return count + 1;
+		while (depth >= 0) {
+			Node n = nodePath[depth];
+			EdgeList edges = getSpanningTreeChildren(n);
+			if (positions[depth] < edges.size()) {
+				Node child = edges.getEdge(positions[depth]++).opposite(n);
+				depth++;
+				nodePath[depth] = child;
+				positions[depth] = 0;
+				setTreeMin(child, count);
+			} else {
+				setTreeMax(n, count);
+				count++;
+				depth--;
+			}
+		}
+		return count;
 	}
 
 	void updateSubgraph(Node root) {
-		Edge flip = getParentEdge(root);
-		if (flip != null) {
-			Node rootParent = getTreeParent(root);
-			getSpanningTreeChildren(rootParent).remove(flip);
-			updateSubgraph(rootParent);
-			setParentEdge(root, null);
-			setParentEdge(rootParent, flip);
+		// Reverses the path from the root of the tree to the given node
+		int depth = 0;
+		Node node = root;
+		Edge flip;
+		while ((flip = getParentEdge(node)) != null) {
+			Node parent = flip.opposite(node);
+			getSpanningTreeChildren(parent).remove(flip);
+			nodePath[depth] = node;
+			edgePath[depth++] = flip;
+			node = parent;
+		}
+		while (depth-- > 0) {
+			node = nodePath[depth];
+			flip = edgePath[depth];
+			setParentEdge(node, null);
+			setParentEdge(flip.opposite(node), flip);
 			repairCutValues(flip);
-			getSpanningTreeChildren(root).add(flip);
+			getSpanningTreeChildren(node).add(flip);
 		}
 	}
 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2010 IBM Corporation and others.
+ * Copyright (c) 2003, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -22,6 +22,18 @@ import java.util.Random;
  */
 class RankSorter {
 
+	private static final Comparator SORT_VALUE_COMPARATOR = new Comparator() {
+		public int compare(Object left, Object right) {
+			double leftValue = ((Node) left).sortValue;
+			double rightValue = ((Node) right).sortValue;
+			if (leftValue < rightValue)
+				return -1;
+			if (leftValue > rightValue)
+				return 1;
+			return 0;
+		}
+	};
+
 	Random flipflop = new Random(3);
 	Node node;
 	double rankSize, prevRankSize, nextRankSize;
@@ -166,7 +178,28 @@ class RankSorter {
 		rank.assignIndices();
 	}
 
+	/**
+	 * Returns <code>true</code> if no two nodes in the rank are constrained
+	 * relative to each other and every sort value can be compared, in which case
+	 * a stable sort gives the same order as swapping neighbors.
+	 */
+	private boolean isUnconstrained() {
+		int constrained = 0;
+		for (int i = 0; i < rank.size(); i++) {
+			Node node = rank.getNode(i);
+			if (node.getParent() != null || Double.isNaN(node.sortValue))
+				return false;
+			if (node.rowOrder != -1 && ++constrained > 1)
+				return false;
+		}
+		return true;
+	}
+
 	void sort() {
+		if (isUnconstrained()) {
+			Collections.sort(rank, SORT_VALUE_COMPARATOR);
+			return;
+		}
 		boolean change;
 		do {
 			change = false;
@@ -58,19 +58,72 @@ public class ShortestPathRouter {
 		}
 	}
 
+	/**
+	 * Searches dirty paths against a private copy of the obstacles, so that the
+	 * searches of several paths can run at the same time. The copies are added
+	 * to the index in the same order as the obstacles, so each search finds
+	 * exactly the path it would find against the obstacles themselves.
+	 */
+	private class PathSearch implements Runnable {
+		ObstacleIndex obstacles = new ObstacleIndex();
+		Throwable failure;
+
+		public void run() {
+			try {
+				for (int i = 0; i < userObstacles.size(); i++) {
+					Obstacle copy = new Obstacle(
+							(Obstacle) userObstacles.get(i),
+							ShortestPathRouter.this);
+					copy.reset();
+					obstacles.add(copy);
+				}
+				Path path;
+				while ((path = nextSearch()) != null) {
+					Obstacle[] excluded = path
+							.refreshExcludedObstacles(obstacles);
+					search(path, obstacles);
+					for (int e = 0; e < excluded.length; e++)
+						excluded[e].exclude = false;
+				}
+			} catch (RuntimeException e) {
+				failure = e;
+			} catch (Error e) {
+				failure = e;
+			}
+		}
+	}
+
 	/**
 	 * The number of times to grow obstacles and test for intersections. This is
 	 * a tradeoff between performance and quality of output.
 	 */
 	private static final int NUM_GROW_PASSES = 2;
 
+	/**
+	 * The number of dirty paths each thread must have to search before the
+	 * searches are split between threads.
+	 */
+	private static final int MIN_SEARCHES_PER_THREAD = 2;
+
 	private int spacing = 4;
 	private boolean growPassChangedObstacles;
+	private int growth;
+	private ObstacleIndex obstacleIndex;
 	private List orderedPaths;
 	private Map pathsToChildPaths;
 
 	private PathStack stack;
 	private List subPaths;
+	private List touchedVertices;
+	private boolean resetAllVertices;
+
+	private int threadCount = 1;
+	private List searches;
+	private int nextSearch;
+	private int searchTests;
+
+	private int solvedPaths;
+	private int obstacleTests;
 
 	private List userObstacles;
 	private List userPaths;
@@ -84,6 +137,8 @@ public class ShortestPathRouter {
 		workingPaths = new ArrayList();
 		pathsToChildPaths = new HashMap();
 		userObstacles = new ArrayList();
+		obstacleIndex = new ObstacleIndex();
+		touchedVertices = new ArrayList();
 	}
 
 	/**
@@ -161,8 +216,10 @@ public class ShortestPathRouter {
 
 		int xDist, yDist;
 
-		for (int o = 0; o < userObstacles.size(); o++) {
-			Obstacle obs = (Obstacle) userObstacles.get(o);
+		Obstacle[] candidates = obstacleIndex.findIntersecting(x, y, x
+				+ sideLength - 1, y + sideLength - 1);
+		for (int o = 0; o < candidates.length; o++) {
+			Obstacle obs = candidates[o];
 			if (obs != vertex.obs && r.intersects(obs)) {
 				int pos = obs.getPosition(vertex);
 				if (pos == 0)
@@ -224,8 +281,11 @@ public class ShortestPathRouter {
 	private void countVertices() {
 		for (int i = 0; i < workingPaths.size(); i++) {
 			Path path = (Path) workingPaths.get(i);
-			for (int v = 0; v < path.segments.size() - 1; v++)
-				((Segment) path.segments.get(v)).end.totalCount++;
+			for (int v = 0; v < path.segments.size() - 1; v++) {
+				Vertex vertex = ((Segment) path.segments.get(v)).end;
+				vertex.totalCount++;
+				touchedVertices.add(vertex);
+			}
 		}
 	}
 
@@ -284,6 +344,69 @@ public class ShortestPathRouter {
 			return v1;
 	}
 
+	/**
+	 * Returns the vertex corresponding to the given vertex of an obstacle copy
+	 * made by a {@link PathSearch}. The copies are indexed in the order of the
+	 * obstacles, so the order of a copy is the index of its obstacle.
+	 * 
+	 * @param vertex
+	 *            the vertex of a copy, or an end point of a path
+	 * @param obstacles
+	 *            the obstacles in the order they were copied
+	 * @return the vertex of the obstacle, or the end point itself
+	 */
+	private static Vertex getOriginal(Vertex vertex, Obstacle[] obstacles) {
+		Obstacle copy = vertex.obs;
+		if (copy == null)
+			return vertex;
+		Obstacle obs = obstacles[copy.order];
+		if (vertex == copy.topLeft)
+			return obs.topLeft;
+		if (vertex == copy.topRight)
+			return obs.topRight;
+		if (vertex == copy.bottomLeft)
+			return obs.bottomLeft;
+		if (vertex == copy.bottomRight)
+			return obs.bottomRight;
+		return obs.center;
+	}
+
+	/**
+	 * Returns the number of times an obstacle was tested against a segment or
+	 * vertex during the last solve. Obstacles are kept in a spatial index
+	 * between solves, so only the obstacles near a segment are tested.
+	 * 
+	 * @return the number of obstacle tests
+	 * @since 3.9
+	 */
+	public int getObstacleTestCount() {
+		return obstacleTests;
+	}
+
+	/**
+	 * Returns the number of paths whose shortest path was searched during the
+	 * last solve. Only the paths dirtied by changes to their end points,
+	 * bendpoints or nearby obstacles are searched again; the others only have
+	 * their bends recomputed.
+	 * 
+	 * @return the number of paths searched
+	 * @since 3.9
+	 */
+	public int getSolvedPathCount() {
+		return solvedPaths;
+	}
+
+	/**
+	 * Returns the number of threads used to search paths.
+	 * 
+	 * @return the number of threads
+	 * @see #setThreadCount(int)
+	 * @since 3.9
+	 */
+	public int getThreadCount() {
+		return threadCount;
+	}
+
 	/**
 	 * Returns the spacing maintained between paths.
 	 * 
@@ -329,8 +452,10 @@ public class ShortestPathRouter {
 	 */
 	private void growObstaclesPass() {
 		// grow obstacles
+		growth = 0;
 		for (int i = 0; i < userObstacles.size(); i++)
-			((Obstacle) userObstacles.get(i)).growVertices();
+			growth = Math.max(growth,
+					((Obstacle) userObstacles.get(i)).growVertices());
 
 		// go through paths and test segments
 		for (int i = 0; i < workingPaths.size(); i++) {
@@ -359,6 +484,7 @@ public class ShortestPathRouter {
 		// revert obstacles
 		for (int i = 0; i < userObstacles.size(); i++)
 			((Obstacle) userObstacles.get(i)).shrinkVertices();
+		growth = 0;
 	}
 
 	/**
@@ -368,7 +494,9 @@ public class ShortestPathRouter {
 	 *            the obstacle
 	 */
 	private boolean internalAddObstacle(Obstacle obs) {
+		obs.reset();
 		userObstacles.add(obs);
+		obstacleIndex.add(obs);
 		return testAndDirtyPaths(obs);
 	}
 
@@ -380,17 +508,9 @@ public class ShortestPathRouter {
 	 * @return the obstacle removed
 	 */
 	private boolean internalRemoveObstacle(Rectangle rect) {
-		Obstacle obs = null;
-		int index = -1;
-		for (int i = 0; i < userObstacles.size(); i++) {
-			obs = (Obstacle) userObstacles.get(i);
-			if (obs.equals(rect)) {
-				index = i;
-				break;
-			}
-		}
-
-		userObstacles.remove(index);
+		Obstacle obs = obstacleIndex.find(rect);
+		userObstacles.remove(obs == null ? -1 : userObstacles.indexOf(obs));
+		obstacleIndex.remove(obs);
 
 		boolean result = false;
 		result |= dirtyPathsOn(obs.bottomLeft);
@@ -516,6 +636,18 @@ public class ShortestPathRouter {
 			segment.end.type = Vertex.INNIE;
 	}
 
+	/**
+	 * Returns the next path to be searched by a {@link PathSearch}, or
+	 * <code>null</code> if all paths have been taken.
+	 * 
+	 * @return the next path to search
+	 */
+	private synchronized Path nextSearch() {
+		if (nextSearch == searches.size())
+			return null;
+		return (Path) searches.get(nextSearch++);
+	}
+
 	/**
 	 * Orders the path by comparing its angle at shared vertices with other
 	 * paths.
@@ -639,25 +771,126 @@ public class ShortestPathRouter {
 	}
 
 	/**
-	 * Resets exclude field on all obstacles
+	 * Resets the vertices which were given a count, an offset or a type by the
+	 * previous solve. All vertices are reset if the spacing has changed.
 	 */
-	private void resetObstacleExclusions() {
-		for (int i = 0; i < userObstacles.size(); i++)
-			((Obstacle) userObstacles.get(i)).exclude = false;
+	private void resetTouchedVertices() {
+		if (resetAllVertices) {
+			for (int i = 0; i < userObstacles.size(); i++)
+				((Obstacle) userObstacles.get(i)).reset();
+			resetAllVertices = false;
+		} else
+			for (int i = 0; i < touchedVertices.size(); i++)
+				((Vertex) touchedVertices.get(i)).fullReset();
+		touchedVertices.clear();
+		for (int i = 0; i < workingPaths.size(); i++) {
+			Path path = (Path) workingPaths.get(i);
+			path.start.fullReset();
+			path.end.fullReset();
+		}
+	}
+
+	/**
+	 * Resets the vertices labeled by the search for the given path. These are
+	 * its end points and the vertices of the obstacles it could see.
+	 * 
+	 * @param path
+	 *            the path
+	 */
+	private void resetVertices(Path path) {
+		Iterator iter = path.visibleObstacles.iterator();
+		while (iter.hasNext())
+			((Obstacle) iter.next()).reset();
+		path.start.fullReset();
+		path.end.fullReset();
 	}
 
 	/**
-	 * Resets all vertices found on paths and obstacles.
+	 * Searches the shortest path for the given dirty path. The path is searched
+	 * again without a threshold if the first search fails or finds a path
+	 * which is too long.
+	 * 
+	 * @param path
+	 *            the path
+	 * @param obstacles
+	 *            the index of all obstacles
 	 */
-	private void resetVertices() {
-		for (int i = 0; i < userObstacles.size(); i++) {
-			Obstacle obs = (Obstacle) userObstacles.get(i);
-			obs.reset();
+	private void search(Path path, ObstacleIndex obstacles) {
+		path.fullReset();
+
+		boolean pathFoundCheck = path.generateShortestPath(obstacles);
+		if (!pathFoundCheck || path.end.cost > path.threshold) {
+			// path not found, or path found was too long
+			resetVertices(path);
+			path.fullReset();
+			path.threshold = 0;
+			pathFoundCheck = path.generateShortestPath(obstacles);
 		}
-		for (int i = 0; i < workingPaths.size(); i++) {
-			Path path = (Path) workingPaths.get(i);
-			path.start.fullReset();
-			path.end.fullReset();
+
+		resetVertices(path);
+	}
+
+	/**
+	 * Searches the given dirty paths on {@link #getThreadCount()} threads,
+	 * including the calling thread. Each thread searches against its own copy
+	 * of the obstacles. The vertices of the segments found are then replaced
+	 * by the corresponding vertices of the obstacles, so the paths look as if
+	 * they were searched on the calling thread.
+	 * 
+	 * @param dirtyPaths
+	 *            the paths to search
+	 */
+	private void searchInParallel(List dirtyPaths) {
+		searches = dirtyPaths;
+		nextSearch = 0;
+		PathSearch[] workers = new PathSearch[threadCount];
+		Thread[] threads = new Thread[threadCount - 1];
+		for (int i = 0; i < workers.length; i++)
+			workers[i] = new PathSearch();
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(workers[i + 1], "Path search"); //$NON-NLS-1$
+			threads[i].setDaemon(true);
+			threads[i].start();
+		}
+		workers[0].run();
+		boolean interrupted = false;
+		for (int i = 0; i < threads.length; i++) {
+			while (threads[i].isAlive()) {
+				try {
+					threads[i].join();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		searches = null;
+
+		for (int i = 0; i < workers.length; i++) {
+			Throwable failure = workers[i].failure;
+			if (failure instanceof RuntimeException)
+				throw (RuntimeException) failure;
+			if (failure instanceof Error)
+				throw (Error) failure;
+			searchTests += workers[i].obstacles.getTestCount();
+		}
+
+		Obstacle[] obstacles = (Obstacle[]) userObstacles
+				.toArray(new Obstacle[userObstacles.size()]);
+		for (int i = 0; i < dirtyPaths.size(); i++) {
+			Path path = (Path) dirtyPaths.get(i);
+			for (int s = 0; s < path.segments.size(); s++) {
+				Segment segment = (Segment) path.segments.get(s);
+				segment.start = getOriginal(segment.start, obstacles);
+				segment.end = getOriginal(segment.end, obstacles);
+			}
+			Obstacle[] visible = (Obstacle[]) path.visibleObstacles
+					.toArray(new Obstacle[path.visibleObstacles.size()]);
+			path.visibleObstacles.clear();
+			for (int v = 0; v < visible.length; v++)
+				path.visibleObstacles.add(obstacles[visible[v].order]);
+			path.visibleVertices.clear();
 		}
 	}
 
@@ -672,9 +905,29 @@ public class ShortestPathRouter {
 	 * @since 3.2
 	 */
 	public void setSpacing(int spacing) {
+		if (this.spacing != spacing)
+			resetAllVertices = true;
 		this.spacing = spacing;
 	}
 
+	/**
+	 * Sets the number of threads used to search the shortest paths of the
+	 * dirty paths during {@link #solve()}. The search of each path is
+	 * independent of the others, so they can run at the same time; the
+	 * searched paths are then ordered and bent on the calling thread. The
+	 * solution does not depend on the number of threads. The default value is
+	 * 1, which searches all paths on the calling thread.
+	 * 
+	 * @param count
+	 *            the number of threads, at least 1
+	 * @since 3.9
+	 */
+	public void setThreadCount(int count) {
+		if (count < 1)
+			throw new IllegalArgumentException();
+		threadCount = count;
+	}
+
 	/**
 	 * Updates the points in the paths in order to represent the current
 	 * solution with the given paths and obstacles.
@@ -682,8 +935,9 @@ public class ShortestPathRouter {
 	 * @return returns the list of paths which were updated.
 	 */
 	public List solve() {
-
-		solveDirtyPaths();
+		obstacleIndex.resetTestCount();
+		searchTests = 0;
+		solvedPaths = solveDirtyPaths();
 
 		countVertices();
 		checkVertexIntersections();
@@ -704,6 +958,7 @@ public class ShortestPathRouter {
 
 		recombineChildrenPaths();
 		cleanup();
+		obstacleTests = obstacleIndex.getTestCount() + searchTests;
 
 		return Collections.unmodifiableList(userPaths);
 	}
@@ -715,6 +970,7 @@ public class ShortestPathRouter {
 	 */
 	private int solveDirtyPaths() {
 		int numSolved = 0;
+		resetTouchedVertices();
 
 		for (int i = 0; i < userPaths.size(); i++) {
 			Path path = (Path) userPaths.get(i);
@@ -736,34 +992,30 @@ public class ShortestPathRouter {
 			refreshChildrenEndpoints(path, children);
 		}
 
+		List dirtyPaths = new ArrayList();
+		for (int i = 0; i < workingPaths.size(); i++)
+			if (((Path) workingPaths.get(i)).isDirty)
+				dirtyPaths.add(workingPaths.get(i));
+		if (threadCount > 1
+				&& dirtyPaths.size() >= threadCount * MIN_SEARCHES_PER_THREAD) {
+			searchInParallel(dirtyPaths);
+			numSolved = dirtyPaths.size();
+		}
+
 		for (int i = 0; i < workingPaths.size(); i++) {
 			Path path = (Path) workingPaths.get(i);
-			path.refreshExcludedObstacles(userObstacles);
+			Obstacle[] excluded = path
+					.refreshExcludedObstacles(obstacleIndex);
 			if (!path.isDirty) {
 				path.resetPartial();
-				continue;
-			}
-
-			numSolved++;
-			path.fullReset();
-
-			boolean pathFoundCheck = path.generateShortestPath(userObstacles);
-			if (!pathFoundCheck || path.end.cost > path.threshold) {
-				// path not found, or path found was too long
-				resetVertices();
-				path.fullReset();
-				path.threshold = 0;
-				pathFoundCheck = path.generateShortestPath(userObstacles);
+			} else {
+				numSolved++;
+				search(path, obstacleIndex);
 			}
-
-			resetVertices();
+			for (int e = 0; e < excluded.length; e++)
+				excluded[e].exclude = false;
 		}
 
-		resetObstacleExclusions();
-
-		if (numSolved == 0)
-			resetVertices();
-
 		return numSolved;
 	}
 
@@ -842,8 +1094,10 @@ public class ShortestPathRouter {
 	 */
 	private int testOffsetSegmentForIntersections(Segment segment, int index,
 			Path path) {
-		for (int i = 0; i < userObstacles.size(); i++) {
-			Obstacle obs = (Obstacle) userObstacles.get(i);
+		Obstacle[] candidates = obstacleIndex.findNear(segment.start,
+				segment.end, Math.max(getSpacing(), 0) + growth);
+		for (int i = 0; i < candidates.length; i++) {
+			Obstacle obs = candidates[i];
 
 			if (segment.end.obs == obs || segment.start.obs == obs
 					|| obs.exclude)
@@ -895,10 +1149,12 @@ public class ShortestPathRouter {
 
 				vertex.totalCount++;
 				vertex.nearestObstacleChecked = false;
+				touchedVertices.add(vertex);
 
 				vertex.shrink();
 				checkVertexForIntersections(vertex);
 				vertex.grow();
+				growth = Math.max(growth, vertex.getGrowth());
 
 				if (vertex.nearestObstacle != 0)
 					vertex.updateOffset();
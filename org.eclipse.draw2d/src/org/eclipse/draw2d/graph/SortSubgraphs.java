@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2010 IBM Corporation and others.
+ * Copyright (c) 2003, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -33,6 +33,10 @@ class SortSubgraphs extends GraphVisitor {
 	Set orderingGraphNodes = new HashSet();
 	NodePair pair = new NodePair();
 
+	boolean ordersRanks() {
+		return true;
+	}
+
 	private void breakSubgraphCycles() {
 		// The stack of nodes which have no unmarked incoming edges
 		List noLefts = new ArrayList();
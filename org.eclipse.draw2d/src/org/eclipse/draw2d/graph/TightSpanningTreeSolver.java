@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2010 IBM Corporation and others.
+ * Copyright (c) 2003, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -23,41 +23,120 @@ class TightSpanningTreeSolver extends SpanningTreeVisitor {
 	protected DirectedGraph graph;
 	protected CandidateList candidates = new CandidateList();
 
+	/*
+	 * The edges with exactly one end in the tree. Besides the list itself, a
+	 * tree of minimums over the list positions is kept so that the first edge
+	 * with the least slack can be found without scanning every candidate. An
+	 * edge's slack only changes when the members are shifted, and it changes
+	 * in one direction for edges leaving the tree and in the other for edges
+	 * entering it, so the two kinds are kept apart relative to the shift.
+	 */
 	static final class CandidateList {
-		private Edge edges[] = new Edge[10];
+		private static final long NONE = Long.MAX_VALUE / 4;
+		private Edge edges[] = new Edge[16];
+		private long entering[] = new long[32];
+		private long leaving[] = new long[32];
 		private int size;
 
-		public void add(Edge edge) {
-			if (size == edges.length - 1) {
+		{
+			java.util.Arrays.fill(entering, NONE);
+			java.util.Arrays.fill(leaving, NONE);
+		}
+
+		/**
+		 * Adds a candidate whose slack is <code>slack</code> when the members
+		 * are shifted by <code>shift</code>.
+		 */
+		public void add(Edge edge, int slack, int shift, boolean leavesTree) {
+			if (size == edges.length) {
 				Edge newEdges[] = new Edge[edges.length * 2];
 				System.arraycopy(edges, 0, newEdges, 0, edges.length);
 				edges = newEdges;
+				entering = grow(entering);
+				leaving = grow(leaving);
 			}
-			edges[size++] = edge;
+			edge.index = size;
+			edges[size] = edge;
+			if (leavesTree)
+				update(size, NONE, (long) slack + shift);
+			else
+				update(size, (long) slack - shift, NONE);
+			size++;
 		}
 
 		public Edge getEdge(int index) {
 			return edges[index];
 		}
 
+		/**
+		 * Returns the first candidate with the least slack when the members are
+		 * shifted by <code>shift</code>, or <code>null</code> if there are no
+		 * candidates.
+		 */
+		public Edge getMinSlackEdge(int shift) {
+			if (size == 0)
+				return null;
+			long min = getMin(1, shift);
+			int i = 1;
+			while (i < edges.length)
+				if (getMin(2 * i, shift) == min)
+					i = 2 * i;
+				else
+					i = 2 * i + 1;
+			return edges[i - edges.length];
+		}
+
+		private long getMin(int i, int shift) {
+			return Math.min(entering[i] + shift, leaving[i] - shift);
+		}
+
+		private long[] grow(long tree[]) {
+			int length = edges.length;
+			long newTree[] = new long[2 * length];
+			java.util.Arrays.fill(newTree, NONE);
+			System.arraycopy(tree, length / 2, newTree, length, length / 2);
+			for (int i = length - 1; i > 0; i--)
+				newTree[i] = Math.min(newTree[2 * i], newTree[2 * i + 1]);
+			return newTree;
+		}
+
 		public void remove(Edge edge) {
-			for (int i = 0; i < size; i++) {
-				if (edges[i] == edge) {
-					edges[i] = edges[size - 1];
-					size--;
-					return;
-				}
-			}
-			throw new RuntimeException("Remove called on invalid Edge"); //$NON-NLS-1$
+			int i = edge.index;
+			if (i >= size || edges[i] != edge)
+				throw new RuntimeException("Remove called on invalid Edge"); //$NON-NLS-1$
+			size--;
+			int last = size + edges.length;
+			edges[i] = edges[size];
+			edges[i].index = i;
+			edges[size] = null;
+			update(i, entering[last], leaving[last]);
+			update(size, NONE, NONE);
 		}
 
 		public int size() {
 			return size;
 		}
+
+		private void update(int index, long enteringSlack, long leavingSlack) {
+			int i = index + edges.length;
+			entering[i] = enteringSlack;
+			leaving[i] = leavingSlack;
+			for (i /= 2; i > 0; i /= 2) {
+				entering[i] = Math.min(entering[2 * i], entering[2 * i + 1]);
+				leaving[i] = Math.min(leaving[2 * i], leaving[2 * i + 1]);
+			}
+		}
 	}
 
 	protected NodeList members = new NodeList();
 
+	/*
+	 * The amount by which all members have been moved. Rather than adjusting
+	 * every member each time an edge is added to the tree, the members' ranks
+	 * are stored relative to this shift, which is applied once at the end.
+	 */
+	private int shift;
+
 	public void visit(DirectedGraph graph) {
 		this.graph = graph;
 		init();
@@ -65,7 +144,7 @@ class TightSpanningTreeSolver extends SpanningTreeVisitor {
 	}
 
 	Node addEdge(Edge edge) {
-		int delta = edge.getSlack();
+		int delta = getSlack(edge);
 		edge.tree = true;
 		Node node;
 		if (edge.target.flag) {
@@ -78,11 +157,21 @@ class TightSpanningTreeSolver extends SpanningTreeVisitor {
 			setParentEdge(node, edge);
 			getSpanningTreeChildren(edge.source).add(edge);
 		}
-		members.adjustRank(delta);
+		shift += delta;
 		addNode(node);
 		return node;
 	}
 
+	private int getRank(Node node) {
+		if (isNodeReachable(node))
+			return node.rank + shift;
+		return node.rank;
+	}
+
+	private int getSlack(Edge edge) {
+		return getRank(edge.target) - getRank(edge.source) - edge.delta;
+	}
+
 	private boolean isNodeReachable(Node node) {
 		return node.flag;
 	}
@@ -101,6 +190,7 @@ class TightSpanningTreeSolver extends SpanningTreeVisitor {
 
 	void addNode(Node node) {
 		setNodeReachable(node);
+		node.rank -= shift;
 		EdgeList list = node.incoming;
 		Edge e;
 		for (int i = 0; i < list.size(); i++) {
@@ -108,7 +198,7 @@ class TightSpanningTreeSolver extends SpanningTreeVisitor {
 			if (!isNodeReachable(e.source)) {
 				if (!isCandidate(e)) {
 					setCandidate(e);
-					candidates.add(e);
+					candidates.add(e, getSlack(e), shift, false);
 				}
 			} else
 				candidates.remove(e);
@@ -120,7 +210,7 @@ class TightSpanningTreeSolver extends SpanningTreeVisitor {
 			if (!isNodeReachable(e.target)) {
 				if (!isCandidate(e)) {
 					setCandidate(e);
-					candidates.add(e);
+					candidates.add(e, getSlack(e), shift, true);
 				}
 			} else
 				candidates.remove(e);
@@ -144,18 +234,9 @@ class TightSpanningTreeSolver extends SpanningTreeVisitor {
 		while (members.size() < graph.nodes.size()) {
 			if (candidates.size() == 0)
 				throw new RuntimeException("graph is not fully connected");//$NON-NLS-1$
-			int minSlack = Integer.MAX_VALUE, slack;
-			Edge minEdge = null, edge;
-			for (int i = 0; i < candidates.size() && minSlack > 0; i++) {
-				edge = candidates.getEdge(i);
-				slack = edge.getSlack();
-				if (slack < minSlack) {
-					minSlack = slack;
-					minEdge = edge;
-				}
-			}
-			addEdge(minEdge);
+			addEdge(candidates.getMinSlackEdge(shift));
 		}
+		members.adjustRank(shift);
 		graph.nodes.normalizeRanks();
 	}
 
@@ -179,6 +179,16 @@ class Vertex extends Point {
 		return rect;
 	}
 
+	/**
+	 * Returns how far this vertex has been moved away from its original
+	 * position along either axis.
+	 * 
+	 * @return the distance moved
+	 */
+	int getGrowth() {
+		return Math.max(Math.abs(x - origX), Math.abs(y - origY));
+	}
+
 	private int getSpacing() {
 		if (obs == null)
 			return 0;
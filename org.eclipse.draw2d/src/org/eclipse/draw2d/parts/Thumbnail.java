@@ -10,7 +10,9 @@
  *******************************************************************************/
 package org.eclipse.draw2d.parts;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import org.eclipse.swt.SWT;
@@ -51,6 +53,7 @@ public class Thumbnail extends Figure implements UpdateListener {
 		private GC thumbnailGC;
 		private ScaledGraphics thumbnailGraphics;
 		private Dimension tileSize;
+		private Rectangle[] paintAreas;
 
 		/**
 		 * Stops the updater and disposes of any resources.
@@ -133,19 +136,9 @@ public class Thumbnail extends Figure implements UpdateListener {
 		}
 
 		/**
-		 * Updates the current tile on the Thumbnail. An area of the source
-		 * Figure is painted to an {@link Image}. That Image is then drawn on
-		 * the Thumbnail. Scaling of the source Image is done inside
-		 * {@link GC#drawImage(Image, int, int, int, int, int, int, int, int)}
-		 * since the source and target sizes are different. The current tile
-		 * indexes are incremented and if more updating is necesary, this
-		 * {@link Runnable} is called again in a
-		 * {@link Display#timerExec(int, Runnable)}. If no more updating is
-		 * required, {@link #stop()} is called.
+		 * Returns the area of the source Figure covered by the current tile.
 		 */
-		public void run() {
-			if (!isActive() || !isRunning() || thumbnailGraphics == null)
-				return;
+		private Rectangle getCurrentTile() {
 			int v = getCurrentVTile();
 			int sy1 = v * tileSize.height;
 			int sy2 = Math.min((v + 1) * tileSize.height,
@@ -158,14 +151,27 @@ public class Thumbnail extends Figure implements UpdateListener {
 			org.eclipse.draw2d.geometry.Point p = getSourceRectangle()
 					.getLocation();
 
-			Rectangle rect = new Rectangle(sx1 + p.x, sy1 + p.y, sx2 - sx1, sy2
-					- sy1);
-			thumbnailGraphics.pushState();
-			thumbnailGraphics.setClip(rect);
-			thumbnailGraphics.fillRectangle(rect);
-			sourceFigure.paint(thumbnailGraphics);
-			thumbnailGraphics.popState();
+			return new Rectangle(sx1 + p.x, sy1 + p.y, sx2 - sx1, sy2 - sy1);
+		}
+
+		/**
+		 * Returns <code>true</code> if the given tile shows a part of the
+		 * source Figure which has changed since the tile was last painted.
+		 */
+		private boolean isDamaged(Rectangle tile) {
+			if (paintAreas == null)
+				return true;
+			for (int i = 0; i < paintAreas.length; i++)
+				if (paintAreas[i].intersects(tile))
+					return true;
+			return false;
+		}
 
+		/**
+		 * Advances to the next tile, returning <code>false</code> when the
+		 * last tile has been passed.
+		 */
+		private boolean nextTile() {
 			if (getCurrentHTile() < (hTiles - 1))
 				setCurrentHTile(getCurrentHTile() + 1);
 			else {
@@ -175,11 +181,44 @@ public class Thumbnail extends Figure implements UpdateListener {
 				else
 					setCurrentVTile(0);
 			}
+			return getCurrentHTile() != 0 || getCurrentVTile() != 0;
+		}
+
+		/**
+		 * Updates the current tile on the Thumbnail. An area of the source
+		 * Figure is painted to an {@link Image}. That Image is then drawn on
+		 * the Thumbnail. Scaling of the source Image is done inside
+		 * {@link GC#drawImage(Image, int, int, int, int, int, int, int, int)}
+		 * since the source and target sizes are different. Tiles showing only
+		 * parts of the source Figure which have not been repainted since the
+		 * last update are skipped. The current tile indexes are incremented
+		 * and if more updating is necesary, this {@link Runnable} is called
+		 * again in a {@link Display#timerExec(int, Runnable)}. If no more
+		 * updating is required, {@link #stop()} is called.
+		 */
+		public void run() {
+			if (!isActive() || !isRunning() || thumbnailGraphics == null)
+				return;
+			Rectangle rect = getCurrentTile();
+			boolean more = true;
+			while (!isDamaged(rect) && more) {
+				more = nextTile();
+				rect = getCurrentTile();
+			}
+			if (more) {
+				thumbnailGraphics.pushState();
+				thumbnailGraphics.setClip(rect);
+				thumbnailGraphics.fillRectangle(rect);
+				sourceFigure.paint(thumbnailGraphics);
+				thumbnailGraphics.popState();
+				more = nextTile();
+			}
 
-			if (getCurrentHTile() != 0 || getCurrentVTile() != 0)
+			if (more)
 				Display.getCurrent().asyncExec(this);
 			else if (isDirty()) {
 				setDirty(false);
+				paintAreas = takeDamagedAreas();
 				Display.getCurrent().asyncExec(this);
 				repaint();
 			} else {
@@ -231,9 +270,11 @@ public class Thumbnail extends Figure implements UpdateListener {
 			isRunning = true;
 			setDirty(false);
 			resetTileValues();
+			paintAreas = takeDamagedAreas();
 
 			if (!targetSize.equals(thumbnailImageSize)) {
 				resetThumbnailImage();
+				paintAreas = null;
 			}
 
 			if (targetSize.isEmpty())
@@ -299,6 +340,9 @@ public class Thumbnail extends Figure implements UpdateListener {
 		}
 	}
 
+	private static final int MAX_DAMAGED_AREAS = 32;
+
+	private List damagedAreas;
 	private boolean isDirty;
 	private float scaleX;
 	private float scaleY;
@@ -328,6 +372,15 @@ public class Thumbnail extends Figure implements UpdateListener {
 		setSource(fig);
 	}
 
+	private void addDamagedArea(Rectangle area) {
+		if (damagedAreas == null)
+			return;
+		if (damagedAreas.size() == MAX_DAMAGED_AREAS)
+			damagedAreas = null;
+		else
+			damagedAreas.add(area);
+	}
+
 	private Dimension adjustToAspectRatio(Dimension size,
 			boolean adjustToMaxDimension) {
 		Dimension sourceSize = getSourceRectangle().getSize();
@@ -457,20 +510,36 @@ public class Thumbnail extends Figure implements UpdateListener {
 	}
 
 	/**
+	 * Marks this Thumbnail dirty if any of the dirty figures is the source
+	 * Figure or one of its descendants. The dirty regions of those figures are
+	 * remembered, so that the next update only repaints the tiles showing
+	 * them. The damage rectangle is not used because it is clipped to the
+	 * visible part of the source, while the Thumbnail shows all of it. The
+	 * dirty regions are not clipped, and are in the coordinates of their
+	 * figures, from which they are translated to those of the source.
+	 * 
 	 * @see org.eclipse.draw2d.UpdateListener#notifyPainting(Rectangle, Map)
 	 */
 	public void notifyPainting(Rectangle damage, Map dirtyRegions) {
+		boolean dirty = false;
 		Iterator dirtyFigures = dirtyRegions.keySet().iterator();
 		while (dirtyFigures.hasNext()) {
-			IFigure current = (IFigure) dirtyFigures.next();
-			while (current != null) {
-				if (current == getSource()) {
-					setDirty(true);
-					repaint();
-					return;
-				}
+			IFigure figure = (IFigure) dirtyFigures.next();
+			Rectangle area = ((Rectangle) dirtyRegions.get(figure)).getCopy();
+			IFigure current = figure;
+			while (current != null && current != getSource()) {
 				current = current.getParent();
+				if (current != null)
+					current.translateToParent(area);
 			}
+			if (current != null) {
+				dirty = true;
+				addDamagedArea(area);
+			}
+		}
+		if (dirty) {
+			setDirty(true);
+			repaint();
 		}
 	}
 
@@ -492,6 +561,21 @@ public class Thumbnail extends Figure implements UpdateListener {
 		graphics.drawImage(thumbnail, getClientArea().getLocation());
 	}
 
+	/**
+	 * Returns the areas of the source Figure which changed since the last
+	 * call, or <code>null</code> if all of it must be repainted. This is also
+	 * the case when the Thumbnail was marked dirty by other means than
+	 * {@link #notifyPainting(Rectangle, Map)}.
+	 */
+	private Rectangle[] takeDamagedAreas() {
+		Rectangle[] areas = null;
+		if (damagedAreas != null && !damagedAreas.isEmpty())
+			areas = (Rectangle[]) damagedAreas
+					.toArray(new Rectangle[damagedAreas.size()]);
+		damagedAreas = new ArrayList();
+		return areas;
+	}
+
 	/**
 	 * Sets the dirty flag.
 	 * 
@@ -529,6 +613,7 @@ public class Thumbnail extends Figure implements UpdateListener {
 		if (sourceFigure != null)
 			sourceFigure.getUpdateManager().removeUpdateListener(this);
 		sourceFigure = fig;
+		damagedAreas = null;
 		if (sourceFigure != null) {
 			setScales((float) getSize().width
 					/ (float) getSourceRectangle().width,
@@ -55,6 +55,7 @@ public final class BidiProcessor {
 	private StringBuffer bidiText;
 	private List list = new ArrayList();
 	private int orientation = SWT.LEFT_TO_RIGHT;
+	private boolean requiresBidi;
 
 	private BidiProcessor() {
 	}
@@ -194,6 +195,7 @@ public final class BidiProcessor {
 	 * contributions are discarded at the end of this method.
 	 */
 	public void process() {
+		requiresBidi = false;
 		try {
 			if (bidiText.length() == 0)
 				return;
@@ -230,6 +232,7 @@ public final class BidiProcessor {
 				System.arraycopy(levels, 0, newLevels, 0, j);
 				levels = newLevels;
 			}
+			requiresBidi = true;
 			assignResults(levels);
 
 			// reset the orientation of the layout, in case it was set to RTL
@@ -242,6 +245,16 @@ public final class BidiProcessor {
 		}
 	}
 
+	/**
+	 * Returns <code>true</code> if the text processed last had to be assigned
+	 * bidi levels.
+	 * 
+	 * @return whether the last text processed required bidi
+	 */
+	boolean requiresBidi() {
+		return requiresBidi;
+	}
+
 	/**
 	 * Sets the paragraph embedding. The given orientation will be used on
 	 * TextLayout when determining the Bidi levels.
@@ -43,6 +43,7 @@ public class BlockFlow extends FlowFigure {
 	private int alignment = PositionConstants.NONE;
 	private int orientation = SWT.NONE;
 	private boolean bidiValid;
+	boolean requiresBidi;
 
 	/**
 	 * Constructs a new BlockFlow.
@@ -227,11 +228,17 @@ public class BlockFlow extends FlowFigure {
 
 	/**
 	 * A Block will invalidate the Bidi state of all its children, so that it is
-	 * re-evaluated when this block is next validated.
+	 * re-evaluated when this block is next validated. The child containing the
+	 * origin is invalidated, so that the layout knows where the block changed.
 	 * 
 	 * @see org.eclipse.draw2d.text.FlowFigure#revalidateBidi(org.eclipse.draw2d.IFigure)
 	 */
 	protected void revalidateBidi(IFigure origin) {
+		IFigure child = origin;
+		while (child != null && child.getParent() != this)
+			child = child.getParent();
+		if (child != null)
+			child.invalidate();
 		if (bidiValid) {
 			bidiValid = false;
 			revalidate();
@@ -309,6 +316,7 @@ public class BlockFlow extends FlowFigure {
 				BidiProcessor.INSTANCE.addControlChar(BidiChars.LRE);
 			super.contributeBidi(BidiProcessor.INSTANCE);
 			BidiProcessor.INSTANCE.process();
+			requiresBidi = BidiProcessor.INSTANCE.requiresBidi();
 			bidiValid = true;
 		}
 		super.validate();
@@ -10,10 +10,13 @@
  *******************************************************************************/
 package org.eclipse.draw2d.text;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.Font;
 
+import org.eclipse.draw2d.Border;
 import org.eclipse.draw2d.Figure;
 import org.eclipse.draw2d.PositionConstants;
 import org.eclipse.draw2d.geometry.Insets;
@@ -34,6 +37,26 @@ public class BlockFlowLayout extends FlowContainerLayout {
 	private boolean continueOnSameLine = false;
 	private CompositeBox previousLine = null;
 
+	/*
+	 * What the last layout of the block's contents produced: the lines in
+	 * order with the tops they were placed at, and the state of the current
+	 * line when each child was laid out. This is what allows a layout to start
+	 * at the first changed child and to reuse the lines following the changed
+	 * children once the current line is in the same state as before.
+	 */
+	private final List lines = new ArrayList();
+	private int[] lineTops = new int[16];
+	private boolean recording;
+	private Object[] laidOutChildren;
+	private int[] startLine, startFragments, startWidth;
+	private boolean[] startContinue;
+	private int laidOutWidth, laidOutAlignment;
+	private Font laidOutFont;
+	private Border laidOutBorder;
+	private boolean laidOutWithoutBidi;
+	private int lastChanged;
+	private int postValidateStart, postValidateEnd;
+
 	/**
 	 * Creates a new BlockFlowLayout with the given BlockFlow.
 	 * 
@@ -45,13 +68,8 @@ public class BlockFlowLayout extends FlowContainerLayout {
 	}
 
 	private void addBelowPreviousLine(CompositeBox line) {
-		if (previousLine == null)
-			line.setLineTop(line.getTopMargin());
-		else
-			line.setLineTop(previousLine.getBaseline()
-					+ previousLine.getDescent()
-					+ Math.max(previousLine.getBottomMargin(),
-							line.getTopMargin()));
+		int top = getLineTop(line, previousLine);
+		line.setLineTop(top);
 
 		int alignment = getBlockFlow().getHorizontalAligment();
 		if (alignment == PositionConstants.LEFT
@@ -84,6 +102,10 @@ public class BlockFlowLayout extends FlowContainerLayout {
 		}
 		blockBox.add(line);
 		previousLine = line;
+		if (recording)
+			recordLine(line, top);
+		else
+			laidOutChildren = null;
 	}
 
 	/**
@@ -118,6 +140,7 @@ public class BlockFlowLayout extends FlowContainerLayout {
 	protected void cleanup() {
 		super.cleanup();
 		previousLine = null;
+		recording = false;
 	}
 
 	/**
@@ -145,11 +168,63 @@ public class BlockFlowLayout extends FlowContainerLayout {
 		if (blockInvalid) {
 			blockInvalid = false;
 			List v = getFlowFigure().getChildren();
-			for (int i = 0; i < v.size(); i++)
+			for (int i = postValidateStart; i < postValidateEnd; i++)
 				((FlowFigure) v.get(i)).postValidate();
 		}
 	}
 
+	/**
+	 * Returns the index of the child at which the layout of the block's
+	 * contents can start, or -1 if all children need to be laid out. The
+	 * layout can start after the unchanged children, except for those whose
+	 * last line may have been broken differently because of the leading word
+	 * of a changed child.
+	 */
+	private int findRestart(List children) {
+		BlockFlow flow = getBlockFlow();
+		if (laidOutChildren == null || laidOutChildren.length != children.size()
+				|| !laidOutWithoutBidi || !isWithoutBidi()
+				|| laidOutWidth != blockBox.getRecommendedWidth()
+				|| laidOutAlignment != flow.getHorizontalAligment()
+				|| laidOutFont != flow.getFont()
+				|| laidOutBorder != flow.getBorder())
+			return -1;
+		int first = -1;
+		for (int i = 0; i < children.size(); i++) {
+			FlowFigure child = (FlowFigure) children.get(i);
+			if (child != laidOutChildren[i])
+				return -1;
+			if (child.needsLayout()) {
+				if (first == -1)
+					first = i;
+				lastChanged = i;
+			}
+		}
+		if (first == -1)
+			// the block itself changed
+			return -1;
+		int restart = Math.max(0, first - 1);
+		// the lookahead passes through children without a line break
+		while (restart > 0
+				&& !((FlowFigure) children.get(restart))
+						.addLeadingWordRequirements(new int[1]))
+			restart--;
+		return restart;
+	}
+
+	private boolean isWithoutBidi() {
+		BlockFlow flow = getBlockFlow();
+		return !flow.requiresBidi && !flow.isMirrored()
+				&& flow.getOrientation() == SWT.LEFT_TO_RIGHT;
+	}
+
+	private static int getLineTop(CompositeBox line, CompositeBox previous) {
+		if (previous == null)
+			return line.getTopMargin();
+		return previous.getBaseline() + previous.getDescent()
+				+ Math.max(previous.getBottomMargin(), line.getTopMargin());
+	}
+
 	/**
 	 * @see FlowContext#endLine()
 	 */
@@ -172,6 +247,86 @@ public class BlockFlowLayout extends FlowContainerLayout {
 		return blockInvalid;
 	}
 
+	/**
+	 * Lays out the children once the block's contents have changed. Only the
+	 * children from the first changed one are laid out, after restoring the
+	 * lines and the current line as they were when that child was last laid
+	 * out. Once the changed children have been laid out, and the current line
+	 * is found in the same state as in the last layout before a child, the
+	 * lines of the remaining children are reused and moved up or down instead.
+	 * 
+	 * @see FlowContainerLayout#layoutChildren()
+	 */
+	protected void layoutChildren() {
+		if (!blockInvalid) {
+			super.layoutChildren();
+			return;
+		}
+		List children = getFlowFigure().getChildren();
+		int size = children.size();
+		int restart = findRestart(children);
+		List oldLines = null;
+		int[] oldTops = null;
+		postValidateEnd = size;
+		if (restart == -1) {
+			restart = 0;
+			postValidateStart = 0;
+			lastChanged = size;
+			lines.clear();
+			startLine = new int[size];
+			startFragments = new int[size];
+			startWidth = new int[size];
+			startContinue = new boolean[size];
+		} else {
+			oldLines = new ArrayList(lines);
+			oldTops = (int[]) lineTops.clone();
+			int kept = startLine[restart];
+			postValidateStart = restart;
+			if (startFragments[restart] > 0) {
+				// the children on the current line move with the new line
+				while (postValidateStart > 0
+						&& startLine[postValidateStart - 1] == kept)
+					postValidateStart--;
+				if (postValidateStart > 0)
+					postValidateStart--;
+			}
+			lines.subList(kept, lines.size()).clear();
+			for (int i = 0; i < kept; i++)
+				blockBox.add((CompositeBox) lines.get(i));
+			if (kept > 0)
+				previousLine = (CompositeBox) lines.get(kept - 1);
+			if (startFragments[restart] > 0) {
+				List fragments = ((LineBox) oldLines.get(kept)).getFragments();
+				createNewLine();
+				for (int i = 0; i < startFragments[restart]; i++)
+					currentLine.add((FlowBox) fragments.get(i));
+			}
+			setContinueOnSameLine(startContinue[restart]);
+		}
+
+		recording = true;
+		for (int i = restart; i < size; i++) {
+			if (i > lastChanged && reuseLines(i, oldLines, oldTops))
+				break;
+			startLine[i] = lines.size();
+			startFragments[i] = currentLine == null ? 0 : currentLine
+					.getFragments().size();
+			startWidth[i] = currentLine == null ? 0 : currentLine.getWidth();
+			startContinue[i] = getContinueOnSameLine();
+			Figure child = (Figure) children.get(i);
+			child.invalidate();
+			child.validate();
+		}
+
+		BlockFlow flow = getBlockFlow();
+		laidOutChildren = children.toArray();
+		laidOutWidth = blockBox.getRecommendedWidth();
+		laidOutAlignment = flow.getHorizontalAligment();
+		laidOutFont = flow.getFont();
+		laidOutBorder = flow.getBorder();
+		laidOutWithoutBidi = isWithoutBidi();
+	}
+
 	/**
 	 * Returns the BlockFlow associated with this BlockFlowLayout
 	 * 
@@ -217,6 +372,72 @@ public class BlockFlowLayout extends FlowContainerLayout {
 		// Probably could setup current and previous line here, or just previous
 	}
 
+	private void recordLine(CompositeBox line, int top) {
+		if (lines.size() == lineTops.length) {
+			int[] old = lineTops;
+			lineTops = new int[old.length * 2];
+			System.arraycopy(old, 0, lineTops, 0, old.length);
+		}
+		lineTops[lines.size()] = top;
+		lines.add(line);
+	}
+
+	/**
+	 * Reuses the lines of the last layout from the given child on, if the
+	 * current line is in the same state as when that child was last laid out.
+	 * The fragments which the child and those after it added to the current
+	 * line are added to the current line again, and the following lines are
+	 * moved by the change in height of the lines before them.
+	 * 
+	 * @return <code>true</code> if the lines were reused
+	 */
+	private boolean reuseLines(int child, List oldLines, int[] oldTops) {
+		int fragments = currentLine == null ? 0 : currentLine.getFragments()
+				.size();
+		int width = currentLine == null ? 0 : currentLine.getWidth();
+		if ((fragments == 0) != (startFragments[child] == 0)
+				|| width != startWidth[child]
+				|| getContinueOnSameLine() != startContinue[child])
+			return false;
+
+		int oldLine = startLine[child];
+		int first = oldLine;
+		if (fragments > 0) {
+			List rest = ((LineBox) oldLines.get(oldLine)).getFragments();
+			for (int i = startFragments[child]; i < rest.size(); i++)
+				currentLine.add((FlowBox) rest.get(i));
+			addCurrentLine();
+			first++;
+		}
+		currentLine = null;
+
+		int shift = lines.size() - first;
+		int dy = 0;
+		if (first < oldLines.size())
+			dy = getLineTop((CompositeBox) oldLines.get(first), previousLine)
+					- oldTops[first];
+		for (int i = first; i < oldLines.size(); i++) {
+			CompositeBox line = (CompositeBox) oldLines.get(i);
+			if (dy != 0)
+				line.setLineTop(oldTops[i] + dy);
+			blockBox.add(line);
+			recordLine(line, oldTops[i] + dy);
+			previousLine = line;
+		}
+
+		int extraFragments = fragments - startFragments[child];
+		postValidateEnd = dy != 0 ? startLine.length : child;
+		for (int i = child; i < startLine.length; i++) {
+			if (fragments > 0 && startLine[i] == oldLine) {
+				// the child has fragments on the line which was added again
+				startFragments[i] += extraFragments;
+				postValidateEnd = Math.max(postValidateEnd, i + 1);
+			}
+			startLine[i] += shift;
+		}
+		return true;
+	}
+
 	/**
 	 * @see org.eclipse.draw2d.text.FlowContext#setContinueOnSameLine(boolean)
 	 */
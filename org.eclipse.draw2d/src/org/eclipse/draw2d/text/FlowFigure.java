@@ -103,6 +103,16 @@ public abstract class FlowFigure extends Figure {
 	 */
 	protected abstract FlowFigureLayout createDefaultFlowLayout();
 
+	/**
+	 * Returns <code>true</code> if this figure has been invalidated since it
+	 * was last laid out.
+	 * 
+	 * @return whether this figure needs to be laid out
+	 */
+	boolean needsLayout() {
+		return !isValid();
+	}
+
 	/**
 	 * Called after validate has occurred. This is used to update the bounds of
 	 * the FlowFigure to encompass its new flow boxed created during validate.
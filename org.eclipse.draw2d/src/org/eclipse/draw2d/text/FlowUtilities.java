@@ -19,6 +19,7 @@ import org.eclipse.swt.graphics.TextLayout;
 import org.eclipse.swt.widgets.Display;
 
 import org.eclipse.draw2d.FigureUtilities;
+import org.eclipse.draw2d.TextExtentCache;
 import org.eclipse.draw2d.TextUtilities;
 
 /**
@@ -56,6 +57,26 @@ public class FlowUtilities {
 		return result;
 	}
 
+	/**
+	 * Estimates how many characters of the given string, from the start up to
+	 * <code>limit</code>, fit in the given width, by adding up the cached
+	 * advance widths of the characters. Only the characters up to the first one
+	 * which does not fit are looked at. The estimate is used as a starting
+	 * point for measuring, since it ignores kerning, tab expansion and bidi
+	 * reordering.
+	 */
+	private static int estimateFit(String string, int limit, int width,
+			Font font) {
+		TextExtentCache cache = FigureUtilities.getTextExtentCache();
+		int total = 0;
+		for (int i = 0; i < limit; i++) {
+			total += cache.getAdvanceWidth(string.charAt(i), font);
+			if (total > width)
+				return i;
+		}
+		return limit;
+	}
+
 	private static int findFirstDelimeter(String string) {
 		int macNL = string.indexOf('\r');
 		int unixNL = string.indexOf('\n');
@@ -247,6 +268,7 @@ public class FlowUtilities {
 
 		int availableWidth = context.getRemainingLineWidth();
 		int guess = 0, guessSize = 0;
+		boolean estimated = false;
 
 		while (true) {
 			if ((max - min) <= 1) {
@@ -259,6 +281,7 @@ public class FlowUtilities {
 										.getWidth() : 0)) {
 					context.endLine();
 					availableWidth = context.getRemainingLineWidth();
+					estimated = false;
 					max = Math.min(strLen, firstDelimiter) + 1;
 					if ((max - min) <= 1)
 						break;
@@ -266,9 +289,14 @@ public class FlowUtilities {
 					break;
 			}
 			// Pick a new guess size
-			// New guess is the last guess plus the missing width in pixels
-			// divided by the average character size in pixels
-			guess += 0.5f + (availableWidth - guessSize) / avgCharWidth;
+			if (!estimated) {
+				// The first guess adds up the advance widths of the characters
+				guess = estimateFit(string, max - 1, availableWidth, font);
+				estimated = true;
+			} else
+				// New guess is the last guess plus the missing width in pixels
+				// divided by the average character size in pixels
+				guess += 0.5f + (availableWidth - guessSize) / avgCharWidth;
 
 			if (guess >= max)
 				guess = max - 1;
@@ -340,16 +368,25 @@ public class FlowUtilities {
 						int truncatedWidth = availableWidth
 								- getEllipsisWidth(font);
 						if (truncatedWidth > 0) {
-							// $TODO this is very slow. It should be using
-							// avgCharWidth to go faster
-							while (min > 0) {
-								guessSize = measureString(frag, string, min,
-										font);
-								if (guessSize <= truncatedWidth)
-									break;
-								min--;
+							// Start from the estimate, and measure towards the
+							// longest prefix which fits
+							int fit = Math.min(min, estimateFit(string, min,
+									truncatedWidth, font));
+							if (fit == 0
+									|| measureString(frag, string, fit, font) <= truncatedWidth) {
+								while (fit < min
+										&& measureString(frag, string,
+												fit + 1, font) <= truncatedWidth)
+									fit++;
+							} else {
+								while (fit > 0) {
+									if (--fit == 0
+											|| measureString(frag, string,
+													fit, font) <= truncatedWidth)
+										break;
+								}
 							}
-							frag.length = min;
+							frag.length = fit;
 						} else
 							frag.length = 0;
 						frag.setTruncated(true);
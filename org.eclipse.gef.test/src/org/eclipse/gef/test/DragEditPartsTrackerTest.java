@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2006, 2010 IBM Corporation and others.
+ * Copyright (c) 2006, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,6 +11,7 @@
 
 package org.eclipse.gef.test;
 
+import java.util.Arrays;
 import java.util.List;
 
 import junit.framework.TestCase;
@@ -18,12 +19,24 @@ import junit.framework.TestCase;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.draw2d.Figure;
 import org.eclipse.draw2d.IFigure;
+import org.eclipse.draw2d.geometry.Rectangle;
 import org.eclipse.gef.DefaultEditDomain;
 import org.eclipse.gef.EditPart;
+import org.eclipse.gef.EditPartFactory;
+import org.eclipse.gef.EditPolicy;
+import org.eclipse.gef.LayerConstants;
 import org.eclipse.gef.editparts.AbstractGraphicalEditPart;
+import org.eclipse.gef.editparts.ScalableRootEditPart;
+import org.eclipse.gef.editpolicies.NonResizableEditPolicy;
 import org.eclipse.gef.tools.DragEditPartsTracker;
+import org.eclipse.gef.ui.parts.GraphicalViewerImpl;
+import org.eclipse.jface.viewers.StructuredSelection;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.events.MouseEvent;
 import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Shell;
 import org.eclipse.ui.IEditorInput;
 import org.eclipse.ui.IEditorSite;
 import org.eclipse.ui.IPropertyListener;
@@ -31,17 +44,37 @@ import org.eclipse.ui.IWorkbenchPartSite;
 import org.eclipse.ui.PartInitException;
 
 public class DragEditPartsTrackerTest extends TestCase {
+
+	private Shell shell;
+	private GraphicalViewerImpl viewer;
+	private ScalableRootEditPart root;
+	private DefaultEditDomain domain;
+
 	/**
 	 * @see TestCase#setUp()
 	 */
 	protected void setUp() throws Exception {
 		super.setUp();
+		shell = new Shell();
+		viewer = new GraphicalViewerImpl();
+		viewer.createControl(shell);
+		root = new ScalableRootEditPart();
+		viewer.setRootEditPart(root);
+		viewer.setEditPartFactory(new TestEditPartFactory());
+		domain = new DefaultEditDomain(new DummyEditorPart());
+		domain.addViewer(viewer);
+		viewer.setContents(Arrays.asList(new Rectangle[] {
+				new Rectangle(10, 10, 20, 20), new Rectangle(40, 10, 20, 20),
+				new Rectangle(10, 40, 20, 20) }));
+		viewer.setSelection(new StructuredSelection(viewer.getContents()
+				.getChildren()));
 	}
 
 	/**
 	 * @see TestCase#tearDown()
 	 */
 	protected void tearDown() throws Exception {
+		shell.dispose();
 		super.tearDown();
 	}
 
@@ -77,6 +110,44 @@ public class DragEditPartsTrackerTest extends TestCase {
 		}
 	}
 
+	private static class TestEditPartFactory implements EditPartFactory {
+
+		public EditPart createEditPart(EditPart context, Object model) {
+			if (model instanceof List)
+				return new ContentsEditPart();
+			return new NodeEditPart();
+		}
+	}
+
+	private static class ContentsEditPart extends AbstractGraphicalEditPart {
+
+		protected IFigure createFigure() {
+			return new Figure();
+		}
+
+		protected void createEditPolicies() {
+			// do nothing
+		}
+
+		protected List getModelChildren() {
+			return (List) getModel();
+		}
+	}
+
+	private static class NodeEditPart extends AbstractGraphicalEditPart {
+
+		protected IFigure createFigure() {
+			Figure figure = new Figure();
+			figure.setBounds((Rectangle) getModel());
+			return figure;
+		}
+
+		protected void createEditPolicies() {
+			installEditPolicy(EditPolicy.PRIMARY_DRAG_ROLE,
+					new NonResizableEditPolicy());
+		}
+	}
+
 	private class DummyEditorPart implements org.eclipse.ui.IEditorPart {
 
 		public void addPropertyListener(IPropertyListener listener) {
@@ -165,6 +236,106 @@ public class DragEditPartsTrackerTest extends TestCase {
 		}
 	};
 
+	private static class AggregateDragEditPartsTracker extends
+			DragEditPartsTracker {
+
+		private final int threshold;
+
+		public AggregateDragEditPartsTracker(EditPart sourceEditPart,
+				int threshold) {
+			super(sourceEditPart);
+			this.threshold = threshold;
+		}
+
+		protected int getAggregateFeedbackThreshold() {
+			return threshold;
+		}
+
+		public void eraseSourceFeedback() {
+			super.eraseSourceFeedback();
+		}
+	}
+
+	private MouseEvent createMouseEvent(int x, int y, int button,
+			int stateMask) {
+		Event event = new Event();
+		event.widget = viewer.getControl();
+		event.display = shell.getDisplay();
+		event.x = x;
+		event.y = y;
+		event.button = button;
+		event.stateMask = stateMask;
+		return new MouseEvent(event);
+	}
+
+	/**
+	 * Drags the selected edit parts by the given delta, starting on the first
+	 * of them.
+	 */
+	private AggregateDragEditPartsTracker drag(int threshold, int dx, int dy) {
+		AggregateDragEditPartsTracker tracker = new AggregateDragEditPartsTracker(
+				(EditPart) viewer.getContents().getChildren().get(0),
+				threshold);
+		tracker.setEditDomain(domain);
+		tracker.activate();
+		tracker.mouseDown(createMouseEvent(30, 30, 1, 0), viewer);
+		tracker.mouseDrag(createMouseEvent(30 + dx, 30 + dy, 0, SWT.BUTTON1),
+				viewer);
+		return tracker;
+	}
+
+	private IFigure getFeedbackLayer() {
+		return root.getLayer(LayerConstants.FEEDBACK_LAYER);
+	}
+
+	public void testAggregateFeedbackAboveThreshold() {
+		AggregateDragEditPartsTracker tracker = drag(3, 30, 40);
+		// each edit part shows its own ghost
+		assertEquals(3, getFeedbackLayer().getChildren().size());
+		tracker.deactivate();
+		assertEquals(0, getFeedbackLayer().getChildren().size());
+
+		tracker = drag(2, 30, 40);
+		// only the aggregate figure, the edit parts were not asked
+		assertEquals(1, getFeedbackLayer().getChildren().size());
+		assertEquals(new Rectangle(40, 50, 50, 50),
+				((IFigure) getFeedbackLayer().getChildren().get(0))
+						.getBounds());
+		tracker.deactivate();
+	}
+
+	public void testEraseAggregateFeedback() {
+		AggregateDragEditPartsTracker tracker = drag(0, 30, 40);
+		assertEquals(1, getFeedbackLayer().getChildren().size());
+		tracker.eraseSourceFeedback();
+		assertEquals(0, getFeedbackLayer().getChildren().size());
+
+		// showing feedback again creates a new figure
+		tracker.mouseDrag(createMouseEvent(70, 80, 0, SWT.BUTTON1), viewer);
+		assertEquals(1, getFeedbackLayer().getChildren().size());
+		tracker.deactivate();
+		assertEquals(0, getFeedbackLayer().getChildren().size());
+	}
+
+	public void testAggregateFeedbackLocationWhenZoomed() {
+		root.getZoomManager().setZoom(2);
+
+		AggregateDragEditPartsTracker tracker = drag(Integer.MAX_VALUE, 30,
+				40);
+		List ghosts = getFeedbackLayer().getChildren();
+		Rectangle union = ((IFigure) ghosts.get(0)).getBounds().getCopy();
+		for (int i = 1; i < ghosts.size(); i++)
+			union.union(((IFigure) ghosts.get(i)).getBounds());
+		tracker.deactivate();
+
+		tracker = drag(0, 30, 40);
+		IFigure aggregate = (IFigure) getFeedbackLayer().getChildren().get(0);
+		// the feedback layer is not scaled, so the move delta is not either
+		assertEquals(new Rectangle(50, 60, 100, 100), aggregate.getBounds());
+		assertEquals(union, aggregate.getBounds());
+		tracker.deactivate();
+	}
+
 	public void test_createOperationSet() {
 		TestDragEditPartsTracker dept = new TestDragEditPartsTracker(
 				new TestGraphicalEditPart());
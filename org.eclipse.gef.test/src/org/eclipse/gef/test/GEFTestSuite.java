@@ -31,6 +31,10 @@ public class GEFTestSuite extends TestSuite {
 		addTest(new TestSuite(PaletteCustomizerTest.class));
 		addTest(new TestSuite(ToolUtilitiesTest.class));
 		addTest(new TestSuite(DragEditPartsTrackerTest.class));
+		addTest(new TestSuite(RefreshChildrenTest.class));
+		addTest(new TestSuite(VirtualChildrenHelperTest.class));
+		addTest(new TestSuite(RefreshBatcherTest.class));
+		addTest(new TestSuite(SelectionManagerTest.class));
 	}
 
 }
@@ -0,0 +1,179 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.gef.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.draw2d.Figure;
+import org.eclipse.draw2d.IFigure;
+import org.eclipse.gef.EditPart;
+import org.eclipse.gef.commands.Command;
+import org.eclipse.gef.commands.CommandStack;
+import org.eclipse.gef.commands.CompoundCommand;
+import org.eclipse.gef.editparts.AbstractGraphicalEditPart;
+import org.eclipse.gef.editparts.RefreshBatcher;
+
+public class RefreshBatcherTest extends TestCase {
+
+	private CommandStack stack;
+	private RefreshBatcher batcher;
+	private TestEditPart parent;
+
+	private class TestEditPart extends AbstractGraphicalEditPart {
+
+		List modelChildren = new ArrayList();
+		int visualRefreshes;
+		int childRefreshes;
+
+		protected EditPart createChild(Object model) {
+			EditPart child = new TestEditPart();
+			child.setModel(model);
+			return child;
+		}
+
+		protected IFigure createFigure() {
+			return new Figure();
+		}
+
+		protected void createEditPolicies() {
+			// do nothing
+		}
+
+		protected List getModelChildren() {
+			return modelChildren;
+		}
+
+		protected void refreshChildren() {
+			childRefreshes++;
+			super.refreshChildren();
+		}
+
+		protected void refreshVisuals() {
+			visualRefreshes++;
+		}
+
+		protected void register() {
+			// do nothing
+		}
+
+		protected void unregister() {
+			// do nothing
+		}
+
+		/*
+		 * Stands for the model listener of the EditPart.
+		 */
+		void modelChanged(boolean children) {
+			if (children)
+				batcher.refreshChildren(this);
+			else
+				batcher.refreshVisuals(this);
+		}
+	}
+
+	private class AddCommand extends Command {
+
+		private Object model;
+
+		AddCommand(Object model) {
+			this.model = model;
+		}
+
+		public void execute() {
+			parent.modelChildren.add(model);
+			parent.modelChanged(true);
+			parent.modelChanged(false);
+		}
+
+		public void undo() {
+			parent.modelChildren.remove(model);
+			parent.modelChanged(true);
+			parent.modelChanged(false);
+		}
+	}
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		stack = new CommandStack();
+		batcher = new RefreshBatcher(stack);
+		batcher.activate();
+		parent = new TestEditPart();
+		parent.activate();
+	}
+
+	protected void tearDown() throws Exception {
+		batcher.deactivate();
+		super.tearDown();
+	}
+
+	private Command createPaste(int count) {
+		CompoundCommand command = new CompoundCommand();
+		for (int i = 0; i < count; i++)
+			command.add(new AddCommand("model " + i)); //$NON-NLS-1$
+		return command;
+	}
+
+	public void test_compoundCommandRefreshesOnce() {
+		stack.execute(createPaste(100));
+		assertEquals(100, parent.getChildren().size());
+		assertEquals(1, parent.childRefreshes);
+		assertEquals(1, parent.visualRefreshes);
+		assertEquals(200, batcher.getRequestCount());
+		assertEquals(1, batcher.getRefreshCount());
+
+		stack.undo();
+		assertEquals(0, parent.getChildren().size());
+		assertEquals(2, parent.childRefreshes);
+		stack.redo();
+		assertEquals(100, parent.getChildren().size());
+		assertEquals(3, parent.childRefreshes);
+		assertEquals(3, parent.visualRefreshes);
+	}
+
+	public void test_refreshOutsideOfBatch() {
+		parent.modelChildren.add("model"); //$NON-NLS-1$
+		parent.modelChanged(true);
+		assertEquals(1, parent.getChildren().size());
+		assertEquals(1, parent.childRefreshes);
+		assertEquals(0, batcher.getRequestCount());
+	}
+
+	public void test_nestedBatches() {
+		batcher.beginBatch();
+		stack.execute(createPaste(10));
+		assertEquals(0, parent.getChildren().size());
+		assertTrue(batcher.isBatching());
+		stack.execute(new AddCommand("other")); //$NON-NLS-1$
+		batcher.endBatch();
+		assertFalse(batcher.isBatching());
+		assertEquals(11, parent.getChildren().size());
+		assertEquals(1, parent.childRefreshes);
+	}
+
+	public void test_removedPartIsSkipped() {
+		parent.modelChildren.add("child"); //$NON-NLS-1$
+		parent.refresh();
+		TestEditPart child = (TestEditPart) parent.getChildren().get(0);
+		int visualRefreshes = child.visualRefreshes;
+		batcher.beginBatch();
+		parent.modelChildren.clear();
+		parent.modelChanged(true);
+		child.modelChanged(false);
+		batcher.endBatch();
+		assertEquals(0, parent.getChildren().size());
+		assertEquals(visualRefreshes, child.visualRefreshes);
+	}
+
+}
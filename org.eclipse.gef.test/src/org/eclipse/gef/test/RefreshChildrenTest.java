@@ -0,0 +1,230 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.gef.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.eclipse.draw2d.Figure;
+import org.eclipse.draw2d.IFigure;
+import org.eclipse.gef.DragTracker;
+import org.eclipse.gef.EditPart;
+import org.eclipse.gef.GraphicalEditPart;
+import org.eclipse.gef.Request;
+import org.eclipse.gef.editparts.AbstractEditPart;
+import org.eclipse.gef.editparts.AbstractGraphicalEditPart;
+
+public class RefreshChildrenTest extends TestCase {
+
+	private static class TestFigure extends Figure {
+
+		int removes;
+
+		public void remove(IFigure figure) {
+			removes++;
+			super.remove(figure);
+		}
+	}
+
+	private static class TestGraphicalEditPart extends
+			AbstractGraphicalEditPart {
+
+		List modelChildren = new ArrayList();
+
+		protected EditPart createChild(Object model) {
+			EditPart child = new TestGraphicalEditPart();
+			child.setModel(model);
+			return child;
+		}
+
+		protected IFigure createFigure() {
+			return new TestFigure();
+		}
+
+		protected void createEditPolicies() {
+			// do nothing
+		}
+
+		protected List getModelChildren() {
+			return modelChildren;
+		}
+
+		protected void register() {
+			// do nothing
+		}
+
+		protected void unregister() {
+			// do nothing
+		}
+
+		public void refreshChildren() {
+			super.refreshChildren();
+		}
+	}
+
+	private static class ReorderingGraphicalEditPart extends
+			TestGraphicalEditPart {
+
+		int reorders;
+
+		protected void reorderChild(EditPart child, int index) {
+			reorders++;
+			super.reorderChild(child, index);
+		}
+	}
+
+	private static class TestEditPart extends AbstractEditPart {
+
+		List modelChildren = new ArrayList();
+		int reorders;
+
+		protected void addChildVisual(EditPart child, int index) {
+			// do nothing
+		}
+
+		protected EditPart createChild(Object model) {
+			EditPart child = new TestEditPart();
+			child.setModel(model);
+			return child;
+		}
+
+		protected void createEditPolicies() {
+			// do nothing
+		}
+
+		public DragTracker getDragTracker(Request request) {
+			return null;
+		}
+
+		protected List getModelChildren() {
+			return modelChildren;
+		}
+
+		protected void register() {
+			// do nothing
+		}
+
+		protected void removeChildVisual(EditPart child) {
+			// do nothing
+		}
+
+		protected void unregister() {
+			// do nothing
+		}
+
+		protected void reorderChild(EditPart child, int index) {
+			reorders++;
+			super.reorderChild(child, index);
+		}
+
+		public void refreshChildren() {
+			super.refreshChildren();
+		}
+	}
+
+	private List createModels(int count) {
+		List models = new ArrayList();
+		for (int i = 0; i < count; i++)
+			models.add("model " + i); //$NON-NLS-1$
+		return models;
+	}
+
+	private void assertChildren(EditPart parent, List models) {
+		List children = parent.getChildren();
+		assertEquals(models.size(), children.size());
+		for (int i = 0; i < models.size(); i++)
+			assertSame(models.get(i), ((EditPart) children.get(i)).getModel());
+		if (parent instanceof GraphicalEditPart) {
+			List figures = ((GraphicalEditPart) parent).getContentPane()
+					.getChildren();
+			assertEquals(children.size(), figures.size());
+			for (int i = 0; i < children.size(); i++)
+				assertSame(((GraphicalEditPart) children.get(i)).getFigure(),
+						figures.get(i));
+		}
+	}
+
+	public void test_reverse() {
+		TestGraphicalEditPart parent = new TestGraphicalEditPart();
+		parent.modelChildren = createModels(50);
+		parent.refreshChildren();
+		List children = new ArrayList(parent.getChildren());
+
+		Collections.reverse(parent.modelChildren);
+		parent.refreshChildren();
+		assertChildren(parent, parent.modelChildren);
+		// the EditParts are kept, and their figures are reordered at once
+		Collections.reverse(children);
+		assertEquals(children, parent.getChildren());
+		assertEquals(0, ((TestFigure) parent.getFigure()).removes);
+	}
+
+	public void test_reorderChildOverridden() {
+		ReorderingGraphicalEditPart parent = new ReorderingGraphicalEditPart();
+		parent.modelChildren = createModels(50);
+		parent.refreshChildren();
+
+		// the override is not bypassed
+		Collections.reverse(parent.modelChildren);
+		parent.refreshChildren();
+		assertChildren(parent, parent.modelChildren);
+		assertEquals(parent.modelChildren.size() - 1, parent.reorders);
+	}
+
+	public void test_shuffleAddAndRemove() {
+		TestGraphicalEditPart parent = new TestGraphicalEditPart();
+		List models = createModels(100);
+		parent.modelChildren = new ArrayList(models);
+		parent.refreshChildren();
+
+		Random random = new Random(1);
+		for (int i = 0; i < 10; i++) {
+			List newModels = new ArrayList(parent.modelChildren);
+			Collections.shuffle(newModels, random);
+			newModels.remove(random.nextInt(newModels.size()));
+			newModels.add(random.nextInt(newModels.size()), "new model " + i); //$NON-NLS-1$
+			parent.modelChildren = newModels;
+			parent.refreshChildren();
+			assertChildren(parent, newModels);
+		}
+	}
+
+	public void test_fewestMoves() {
+		TestEditPart parent = new TestEditPart();
+		parent.modelChildren = createModels(10);
+		parent.refreshChildren();
+
+		// moving the first model to the end moves only its EditPart
+		parent.modelChildren.add(parent.modelChildren.remove(0));
+		parent.refreshChildren();
+		assertChildren(parent, parent.modelChildren);
+		assertEquals(1, parent.reorders);
+
+		// removing a model moves only its EditPart, out of the way
+		parent.reorders = 0;
+		parent.modelChildren.remove(3);
+		parent.refreshChildren();
+		assertChildren(parent, parent.modelChildren);
+		assertEquals(1, parent.reorders);
+
+		parent.reorders = 0;
+		Collections.reverse(parent.modelChildren);
+		parent.refreshChildren();
+		assertChildren(parent, parent.modelChildren);
+		assertEquals(parent.modelChildren.size() - 1, parent.reorders);
+	}
+
+}
@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.gef.test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.draw2d.Figure;
+import org.eclipse.draw2d.IFigure;
+import org.eclipse.gef.EditPart;
+import org.eclipse.gef.editparts.AbstractGraphicalEditPart;
+import org.eclipse.gef.ui.parts.GraphicalViewerImpl;
+
+public class SelectionManagerTest extends TestCase {
+
+	private static class TestGraphicalEditPart extends
+			AbstractGraphicalEditPart {
+
+		protected IFigure createFigure() {
+			return new Figure();
+		}
+
+		protected void createEditPolicies() {
+			// do nothing
+		}
+
+		public boolean isSelectable() {
+			return true;
+		}
+	}
+
+	private static class TestViewer extends GraphicalViewerImpl {
+
+		List getSelectionList() {
+			return primGetSelectedEditParts();
+		}
+	}
+
+	private TestViewer viewer;
+	private EditPart a, b, c;
+
+	protected void setUp() throws Exception {
+		viewer = new TestViewer();
+		a = new TestGraphicalEditPart();
+		b = new TestGraphicalEditPart();
+		c = new TestGraphicalEditPart();
+	}
+
+	public void testAppendSelection() {
+		viewer.select(a);
+		viewer.appendSelection(b);
+		viewer.appendSelection(a);
+		assertEquals(Arrays.asList(new Object[] { b, a }),
+				viewer.getSelectedEditParts());
+		assertEquals(EditPart.SELECTED_PRIMARY, a.getSelected());
+		assertEquals(EditPart.SELECTED, b.getSelected());
+	}
+
+	public void testDeselect() {
+		viewer.select(a);
+		viewer.appendSelection(b);
+		viewer.deselect(b);
+		viewer.deselect(c);
+		assertEquals(Arrays.asList(new Object[] { a }),
+				viewer.getSelectedEditParts());
+		assertEquals(EditPart.SELECTED_PRIMARY, a.getSelected());
+	}
+
+	/**
+	 * Subclasses of the viewer may change the selection list directly.
+	 */
+	public void testSelectionListChangedDirectly() {
+		viewer.select(a);
+		viewer.appendSelection(b);
+		List list = viewer.getSelectionList();
+		list.set(0, c);
+		assertTrue(list.contains(c));
+		assertFalse(list.contains(a));
+
+		viewer.appendSelection(a);
+		assertEquals(Arrays.asList(new Object[] { c, b, a }),
+				viewer.getSelectedEditParts());
+		viewer.deselect(c);
+		assertEquals(Arrays.asList(new Object[] { b, a }),
+				viewer.getSelectedEditParts());
+
+		list.remove(b);
+		list.add(0, c);
+		viewer.deselect(c);
+		viewer.appendSelection(b);
+		assertEquals(Arrays.asList(new Object[] { a, b }),
+				viewer.getSelectedEditParts());
+	}
+
+}
@@ -0,0 +1,150 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.gef.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.draw2d.Figure;
+import org.eclipse.draw2d.IFigure;
+import org.eclipse.draw2d.Viewport;
+import org.eclipse.draw2d.geometry.Rectangle;
+import org.eclipse.gef.EditPart;
+import org.eclipse.gef.editparts.AbstractGraphicalEditPart;
+import org.eclipse.gef.editparts.VirtualChildrenHelper;
+
+public class VirtualChildrenHelperTest extends TestCase {
+
+	private static final int SIZE = 100;
+	private static final int SPACING = 20;
+
+	private Viewport viewport;
+	private TestContainerEditPart container;
+
+	private static class TestEditPart extends AbstractGraphicalEditPart {
+
+		protected IFigure createFigure() {
+			return new Figure();
+		}
+
+		protected void createEditPolicies() {
+			// do nothing
+		}
+
+		protected void register() {
+			// do nothing
+		}
+
+		protected void unregister() {
+			// do nothing
+		}
+	}
+
+	private static class TestContainerEditPart extends TestEditPart {
+
+		List models = new ArrayList();
+		VirtualChildrenHelper helper = new VirtualChildrenHelper(this) {
+			protected Rectangle getModelBounds(Object model) {
+				return (Rectangle) model;
+			}
+		};
+
+		protected EditPart createChild(Object model) {
+			EditPart child = new TestEditPart();
+			child.setModel(model);
+			return child;
+		}
+
+		protected List getModelChildren() {
+			return helper.getMaterializedChildren(models);
+		}
+
+		public void activate() {
+			super.activate();
+			helper.activate();
+		}
+
+		public void deactivate() {
+			helper.deactivate();
+			super.deactivate();
+		}
+	}
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		viewport = new Viewport(true);
+		viewport.setBounds(new Rectangle(0, 0, 200, 200));
+		container = new TestContainerEditPart();
+		for (int i = 0; i < SIZE; i++)
+			for (int j = 0; j < SIZE; j++)
+				container.models.add(new Rectangle(i * SPACING, j * SPACING,
+						10, 10));
+		IFigure contents = container.getFigure();
+		contents.setBounds(new Rectangle(0, 0, SIZE * SPACING, SIZE
+				* SPACING));
+		viewport.setContents(contents);
+		viewport.getHorizontalRangeModel().setAll(0, 200, SIZE * SPACING);
+		viewport.getVerticalRangeModel().setAll(0, 200, SIZE * SPACING);
+	}
+
+	private void assertMaterialized(Rectangle region) {
+		List children = container.getChildren();
+		int expected = 0;
+		for (int i = 0; i < container.models.size(); i++) {
+			Rectangle model = (Rectangle) container.models.get(i);
+			if (model.x <= region.right() && model.y <= region.bottom()
+					&& model.right() >= region.x && model.bottom() >= region.y)
+				assertSame(model, ((EditPart) children.get(expected++))
+						.getModel());
+		}
+		assertEquals(expected, children.size());
+	}
+
+	public void test_visibleChildren() {
+		container.refresh();
+		// the visible region, expanded by half its size
+		assertMaterialized(new Rectangle(-100, -100, 400, 400));
+		assertTrue(container.getChildren().size() < SIZE * SIZE / 10);
+	}
+
+	public void test_scrolling() {
+		container.refresh();
+		container.activate();
+		viewport.setViewLocation(1000, 600);
+		assertMaterialized(new Rectangle(900, 500, 400, 400));
+
+		// scrolling within the materialized region keeps the children
+		List children = new ArrayList(container.getChildren());
+		viewport.setViewLocation(1050, 650);
+		assertEquals(children, container.getChildren());
+
+		container.deactivate();
+		viewport.setViewLocation(0, 0);
+		assertEquals(children, container.getChildren());
+	}
+
+	public void test_selectedChildIsKept() {
+		container.refresh();
+		container.activate();
+		EditPart selected = (EditPart) container.getChildren().get(0);
+		selected.setSelected(EditPart.SELECTED_PRIMARY);
+		viewport.setViewLocation(1000, 1000);
+		// the selected child stays first, as it is first in model order
+		assertSame(selected, container.getChildren().get(0));
+		selected.setSelected(EditPart.SELECTED_NONE);
+		container.refresh();
+		assertFalse(container.getChildren().contains(selected));
+	}
+
+}
@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.gef.test.perf;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.swt.widgets.Display;
+
+import org.eclipse.draw2d.Figure;
+import org.eclipse.draw2d.FreeformLayer;
+import org.eclipse.draw2d.FreeformLayout;
+import org.eclipse.draw2d.IFigure;
+import org.eclipse.draw2d.geometry.Point;
+import org.eclipse.draw2d.geometry.Rectangle;
+
+import org.eclipse.gef.EditPart;
+import org.eclipse.gef.EditPartFactory;
+import org.eclipse.gef.GraphicalEditPart;
+import org.eclipse.gef.Request;
+import org.eclipse.gef.RequestConstants;
+import org.eclipse.gef.editparts.AbstractGraphicalEditPart;
+import org.eclipse.gef.editparts.FreeformGraphicalRootEditPart;
+import org.eclipse.gef.tools.DragEditPartsTracker;
+import org.eclipse.gef.ui.parts.GraphicalViewerImpl;
+
+/**
+ * Measures the latency of dragging a selection of 100, 1k and 5k parts out of
+ * a diagram of 10k parts. For each size it reports the time taken to select
+ * the parts one by one, to start the drag (computing the operation set and
+ * exclusion set of a {@link DragEditPartsTracker}), and to find the target
+ * under the mouse at each move, which visits every figure of the diagram
+ * under the mouse and looks each up in the exclusion set. The first drag is
+ * not counted, to leave time for the JIT.
+ * <p>
+ * Must be run on the UI thread.
+ */
+public class DragMoveBenchmark {
+
+	private static final int PARTS = 10000;
+
+	private static final int[] SELECTION_SIZES = { 100, 1000, 5000 };
+
+	private static final int MOVES = 2000;
+
+	private static final int SIDE = 100 * 60;
+
+	private static class DiagramPart extends AbstractGraphicalEditPart {
+		protected IFigure createFigure() {
+			FreeformLayer layer = new FreeformLayer();
+			layer.setLayoutManager(new FreeformLayout());
+			return layer;
+		}
+
+		protected void createEditPolicies() {
+		}
+
+		protected List getModelChildren() {
+			return (List) getModel();
+		}
+	}
+
+	private static class NodePart extends AbstractGraphicalEditPart {
+		protected IFigure createFigure() {
+			Figure figure = new Figure();
+			figure.setOpaque(true);
+			return figure;
+		}
+
+		protected void createEditPolicies() {
+		}
+
+		protected void refreshVisuals() {
+			((GraphicalEditPart) getParent()).setLayoutConstraint(this,
+					getFigure(), getModel());
+		}
+
+		public boolean understandsRequest(Request req) {
+			return RequestConstants.REQ_MOVE.equals(req.getType());
+		}
+	}
+
+	private static class TimedDragEditPartsTracker extends
+			DragEditPartsTracker {
+
+		TimedDragEditPartsTracker(EditPart sourceEditPart) {
+			super(sourceEditPart);
+		}
+
+		void startDrag() {
+			getOperationSet();
+			getExclusionSet();
+		}
+
+		EditPart move(Point location) {
+			return getCurrentViewer().findObjectAtExcluding(location,
+					getExclusionSet());
+		}
+	}
+
+	public static void main(String[] args) {
+		Display.getDefault();
+		GraphicalViewerImpl viewer = createViewer();
+		List parts = viewer.getContents().getChildren();
+		run(viewer, parts, SELECTION_SIZES[0]);
+		for (int i = 0; i < SELECTION_SIZES.length; i++) {
+			long[] times = run(viewer, parts, SELECTION_SIZES[i]);
+			System.out.println(SELECTION_SIZES[i] + " selected: select "
+					+ times[0] + " ms, drag start " + times[1]
+					+ " ms, move " + (times[2] * 1000 / MOVES) + " us/move");
+		}
+	}
+
+	private static GraphicalViewerImpl createViewer() {
+		GraphicalViewerImpl viewer = new GraphicalViewerImpl();
+		viewer.setRootEditPart(new FreeformGraphicalRootEditPart());
+		viewer.setEditPartFactory(new EditPartFactory() {
+			public EditPart createEditPart(EditPart context, Object model) {
+				if (model instanceof List)
+					return new DiagramPart();
+				return new NodePart();
+			}
+		});
+		Random random = new Random(1);
+		List model = new ArrayList(PARTS);
+		for (int i = 0; i < PARTS; i++)
+			model.add(new Rectangle(random.nextInt(SIDE), random
+					.nextInt(SIDE), 40 + random.nextInt(40), 20 + random
+					.nextInt(20)));
+		viewer.setContents(model);
+		((GraphicalEditPart) viewer.getContents()).getFigure().validate();
+		return viewer;
+	}
+
+	private static long[] run(GraphicalViewerImpl viewer, List parts,
+			int selectionSize) {
+		long[] times = new long[3];
+		viewer.deselectAll();
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < selectionSize; i++)
+			viewer.appendSelection((EditPart) parts.get(i * PARTS
+					/ selectionSize));
+		times[0] = System.currentTimeMillis() - start;
+
+		TimedDragEditPartsTracker tracker = new TimedDragEditPartsTracker(
+				(EditPart) parts.get(0));
+		tracker.setEditDomain(viewer.getEditDomain());
+		tracker.setViewer(viewer);
+		start = System.currentTimeMillis();
+		tracker.startDrag();
+		times[1] = System.currentTimeMillis() - start;
+
+		Random random = new Random(2);
+		Point location = new Point();
+		start = System.currentTimeMillis();
+		for (int i = 0; i < MOVES; i++)
+			tracker.move(location.setLocation(random.nextInt(SIDE),
+					random.nextInt(SIDE)));
+		times[2] = System.currentTimeMillis() - start;
+		return times;
+	}
+
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2010 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -736,8 +736,10 @@ public abstract class AbstractEditPart implements EditPart, RequestConstants,
 	 * <P>
 	 * The update is performed by comparing the existing EditParts with the set
 	 * of model children returned from {@link #getModelChildren()}. EditParts
-	 * whose models no longer exist are {@link #removeChild(EditPart) removed}.
-	 * New models have their EditParts {@link #createChild(Object) created}.
+	 * in the wrong location are {@link #reorderChildren(List) reordered}.
+	 * EditParts whose models no longer exist are {@link #removeChild(EditPart)
+	 * removed}. New models have their EditParts {@link #createChild(Object)
+	 * created}.
 	 * <P>
 	 * This method should <em>not</em> be overridden.
 	 * 
@@ -760,6 +762,15 @@ public abstract class AbstractEditPart implements EditPart, RequestConstants,
 		}
 
 		List modelObjects = getModelChildren();
+		if (size > 1) {
+			// Move the EditParts which are in the wrong location first, so
+			// that as few as possible are moved
+			List order = ListReorderer.getOrder(children, modelToEditPart,
+					modelObjects);
+			if (!order.equals(children))
+				reorderChildren(order);
+		}
+
 		for (i = 0; i < modelObjects.size(); i++) {
 			model = modelObjects.get(i);
 
@@ -950,8 +961,9 @@ public abstract class AbstractEditPart implements EditPart, RequestConstants,
 	}
 
 	/**
-	 * Moves a child <code>EditPart</code> into a lower index than it currently
-	 * occupies. This method is called from {@link #refreshChildren()}.
+	 * Moves a child <code>EditPart</code> to a new index. The index is counted
+	 * without the child. This method is called from
+	 * {@link #reorderChildren(List)}.
 	 * 
 	 * @param editpart
 	 *            the child being reordered
@@ -966,6 +978,29 @@ public abstract class AbstractEditPart implements EditPart, RequestConstants,
 		addChildVisual(editpart, index);
 	}
 
+	/**
+	 * Puts the children in the given order, which holds the current children.
+	 * This method is called by {@link #refreshChildren()} when children are in
+	 * the wrong location. The order has the children whose model is still a
+	 * model child first, followed by those about to be removed.
+	 * <P>
+	 * The default implementation keeps the longest run of children which are
+	 * already in order where they are, and calls
+	 * {@link #reorderChild(EditPart, int)} for each of the other children, so
+	 * that reversing or shuffling many children does not move each of them.
+	 * 
+	 * @param order
+	 *            the children in their new order
+	 * @since 3.9
+	 */
+	protected void reorderChildren(List order) {
+		new ListReorderer() {
+			void move(Object element, int index) {
+				reorderChild((EditPart) element, index);
+			}
+		}.reorder(getChildren(), order);
+	}
+
 	/**
 	 * Sets the value of the specified flag. Flag values are decalared as static
 	 * constants. Subclasses may define additional constants above
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2010 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,15 +13,18 @@ package org.eclipse.gef.editparts;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
 
 import org.eclipse.swt.accessibility.ACC;
 import org.eclipse.swt.accessibility.AccessibleControlEvent;
 
 import org.eclipse.core.runtime.IAdaptable;
 
+import org.eclipse.draw2d.Figure;
 import org.eclipse.draw2d.IFigure;
 import org.eclipse.draw2d.LayoutManager;
 import org.eclipse.draw2d.geometry.Point;
@@ -50,6 +53,23 @@ import org.eclipse.gef.Request;
 public abstract class AbstractGraphicalEditPart extends AbstractEditPart
 		implements GraphicalEditPart {
 
+	/**
+	 * The methods which {@link #reorderChildren(List)} bypasses, with their
+	 * parameter types.
+	 */
+	private static final String[] REORDER_METHODS = { "reorderChild", //$NON-NLS-1$
+			"addChildVisual", "removeChildVisual" }; //$NON-NLS-1$ //$NON-NLS-2$
+	private static final Class[][] REORDER_PARAMETERS = {
+			{ EditPart.class, int.class }, { EditPart.class, int.class },
+			{ EditPart.class } };
+
+	/**
+	 * Maps each class to whether it overrides any of the methods which
+	 * {@link #reorderChildren(List)} bypasses. Classes are only weakly
+	 * referenced.
+	 */
+	private static final Map REORDER_OVERRIDES = new WeakHashMap();
+
 	/**
 	 * The Figure
 	 */
@@ -682,6 +702,18 @@ public abstract class AbstractGraphicalEditPart extends AbstractEditPart
 		if (modelObjects == null) {
 			modelObjects = Collections.EMPTY_LIST;
 		}
+		if (size > 1) {
+			List order = ListReorderer.getOrder(sourceConnections,
+					modelToEditPart, modelObjects);
+			if (!order.equals(sourceConnections)) {
+				new ListReorderer() {
+					void move(Object element, int index) {
+						reorderSourceConnection((ConnectionEditPart) element,
+								index);
+					}
+				}.reorder(sourceConnections, order);
+			}
+		}
 		for (i = 0; i < modelObjects.size(); i++) {
 			model = modelObjects.get(i);
 
@@ -745,6 +777,18 @@ public abstract class AbstractGraphicalEditPart extends AbstractEditPart
 		if (modelObjects == null) {
 			modelObjects = Collections.EMPTY_LIST;
 		}
+		if (size > 1) {
+			List order = ListReorderer.getOrder(targetConnections,
+					modelToEditPart, modelObjects);
+			if (!order.equals(targetConnections)) {
+				new ListReorderer() {
+					void move(Object element, int index) {
+						reorderTargetConnection((ConnectionEditPart) element,
+								index);
+					}
+				}.reorder(targetConnections, order);
+			}
+		}
 		for (i = 0; i < modelObjects.size(); i++) {
 			model = modelObjects.get(i);
 
@@ -880,8 +924,89 @@ public abstract class AbstractGraphicalEditPart extends AbstractEditPart
 	}
 
 	/**
-	 * Moves a source <code>ConnectionEditPart</code> into a lower index than it
-	 * currently occupies. This method is called from
+	 * Extended to reorder the figures of the children in one step, with
+	 * {@link Figure#reorderChildren(List)}, rather than removing and adding
+	 * the figure of each child being moved. The figures of the children take
+	 * the places in the {@link #getContentPane() contentPane} which they held
+	 * before, so any other figures there keep their places. If the
+	 * contentPane is not a {@link Figure}, or does not hold the figures of all
+	 * the children, or if the class of this EditPart overrides
+	 * {@link #reorderChild(EditPart, int)},
+	 * {@link #addChildVisual(EditPart, int)} or
+	 * {@link #removeChildVisual(EditPart)}, <code>reorderChild</code> is called
+	 * for each child being moved instead.
+	 * 
+	 * @see org.eclipse.gef.editparts.AbstractEditPart#reorderChildren(List)
+	 * @since 3.9
+	 */
+	protected void reorderChildren(List order) {
+		IFigure contentPane = getContentPane();
+		Map childFigures = new IdentityHashMap(order.size());
+		for (int i = 0; i < order.size(); i++) {
+			IFigure childFigure = ((GraphicalEditPart) order.get(i))
+					.getFigure();
+			if (childFigure.getParent() != contentPane)
+				break;
+			childFigures.put(childFigure, childFigure);
+		}
+		if (!(contentPane instanceof Figure)
+				|| childFigures.size() != order.size()
+				|| overridesReorderMethods(getClass())) {
+			super.reorderChildren(order);
+			return;
+		}
+
+		List figures = contentPane.getChildren();
+		List figureOrder = new ArrayList(figures.size());
+		int next = 0;
+		for (int i = 0; i < figures.size(); i++) {
+			Object childFigure = figures.get(i);
+			if (childFigures.containsKey(childFigure))
+				childFigure = ((GraphicalEditPart) order.get(next++))
+						.getFigure();
+			figureOrder.add(childFigure);
+		}
+		((Figure) contentPane).reorderChildren(figureOrder);
+		List children = getChildren();
+		children.clear();
+		children.addAll(order);
+	}
+
+	/**
+	 * Returns <code>true</code> if the given class, or one of its superclasses
+	 * below AbstractGraphicalEditPart, declares any of the methods which
+	 * {@link #reorderChildren(List)} bypasses.
+	 */
+	private static boolean overridesReorderMethods(Class type) {
+		synchronized (REORDER_OVERRIDES) {
+			Boolean result = (Boolean) REORDER_OVERRIDES.get(type);
+			if (result == null) {
+				result = Boolean.FALSE;
+				for (Class c = type; c != AbstractGraphicalEditPart.class
+						&& result == Boolean.FALSE; c = c.getSuperclass()) {
+					for (int i = 0; i < REORDER_METHODS.length; i++) {
+						try {
+							c.getDeclaredMethod(REORDER_METHODS[i],
+									REORDER_PARAMETERS[i]);
+							result = Boolean.TRUE;
+							break;
+						} catch (NoSuchMethodException e) {
+							// not declared by this class
+						} catch (SecurityException e) {
+							result = Boolean.TRUE;
+							break;
+						}
+					}
+				}
+				REORDER_OVERRIDES.put(type, result);
+			}
+			return result.booleanValue();
+		}
+	}
+
+	/**
+	 * Moves a source <code>ConnectionEditPart</code> to a new index. The index
+	 * is counted without the connection. This method is called from
 	 * {@link #refreshSourceConnections()}.
 	 * 
 	 * @param connection
@@ -896,8 +1021,8 @@ public abstract class AbstractGraphicalEditPart extends AbstractEditPart
 	}
 
 	/**
-	 * Moves a target <code>ConnectionEditPart</code> into a lower index than it
-	 * currently occupies. This method is called from
+	 * Moves a target <code>ConnectionEditPart</code> to a new index. The index
+	 * is counted without the connection. This method is called from
 	 * {@link #refreshTargetConnections()}.
 	 * 
 	 * @param connection
@@ -0,0 +1,146 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.gef.editparts;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Puts the elements of a list into a new order by moving as few elements as
+ * possible. The elements which keep their place are those of a longest
+ * subsequence of the new order which is already in order in the list. Each
+ * other element is moved once, by {@link #move(Object, int)}.
+ */
+abstract class ListReorderer {
+
+	/**
+	 * Returns the order in which the given parts should be for the given
+	 * models: first the parts of the models, in the order of the models, then
+	 * the parts whose model is not in the list, in their current order. This
+	 * is the order the parts end up in when reconciling them one model at a
+	 * time.
+	 *
+	 * @param parts
+	 *            the current parts
+	 * @param modelToPart
+	 *            the current parts by model
+	 * @param models
+	 *            the models
+	 * @return the parts in their new order
+	 */
+	static List getOrder(List parts, Map modelToPart, List models) {
+		List order = new ArrayList(parts.size());
+		Map used = new IdentityHashMap(parts.size());
+		for (int i = 0; i < models.size(); i++) {
+			Object part = modelToPart.get(models.get(i));
+			if (part != null && used.put(part, part) == null)
+				order.add(part);
+		}
+		if (order.size() < parts.size()) {
+			for (int i = 0; i < parts.size(); i++) {
+				Object part = parts.get(i);
+				if (!used.containsKey(part))
+					order.add(part);
+			}
+		}
+		return order;
+	}
+
+	/**
+	 * Returns which elements of the given sequence form a longest strictly
+	 * increasing subsequence.
+	 *
+	 * @param sequence
+	 *            the sequence
+	 * @return for each element, whether it is in the subsequence
+	 */
+	static boolean[] getIncreasingSubsequence(int[] sequence) {
+		int n = sequence.length;
+		// tails[k] is the index of the smallest element ending an increasing
+		// subsequence of length k + 1
+		int[] tails = new int[n];
+		int[] previous = new int[n];
+		int length = 0;
+		for (int i = 0; i < n; i++) {
+			int low = 0, high = length;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (sequence[tails[mid]] < sequence[i])
+					low = mid + 1;
+				else
+					high = mid;
+			}
+			previous[i] = low > 0 ? tails[low - 1] : -1;
+			tails[low] = i;
+			if (low == length)
+				length++;
+		}
+		boolean[] result = new boolean[n];
+		for (int i = length > 0 ? tails[length - 1] : -1; i != -1; i = previous[i])
+			result[i] = true;
+		return result;
+	}
+
+	/**
+	 * Moves the given element to the given index. The element is removed from
+	 * the list first, so the index is counted without it.
+	 *
+	 * @param element
+	 *            the element
+	 * @param index
+	 *            the new index
+	 */
+	abstract void move(Object element, int index);
+
+	/**
+	 * Moves the elements of the list into the given order, which must hold the
+	 * same elements.
+	 *
+	 * @param list
+	 *            the list, which is changed by {@link #move(Object, int)}
+	 * @param order
+	 *            the new order
+	 */
+	void reorder(List list, List order) {
+		int n = order.size();
+		Map indices = new IdentityHashMap(n);
+		for (int i = 0; i < n; i++)
+			indices.put(list.get(i), new Integer(i));
+		int[] sequence = new int[n];
+		for (int i = 0; i < n; i++)
+			sequence[i] = ((Integer) indices.get(order.get(i))).intValue();
+		boolean[] stays = getIncreasingSubsequence(sequence);
+
+		// Elements before pos are either in place, or passed over and yet to
+		// be moved.
+		Map passed = new IdentityHashMap();
+		int pos = 0;
+		for (int i = 0; i < n; i++) {
+			Object element = order.get(i);
+			if (stays[i]) {
+				Object next;
+				while ((next = list.get(pos)) != element) {
+					passed.put(next, next);
+					pos++;
+				}
+				pos++;
+			} else if (passed.remove(element) != null)
+				move(element, pos - 1);
+			else if (list.get(pos) == element)
+				pos++;
+			else
+				move(element, pos++);
+		}
+	}
+
+}
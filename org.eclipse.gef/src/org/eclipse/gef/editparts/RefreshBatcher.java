@@ -0,0 +1,309 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.gef.editparts;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.gef.EditPart;
+import org.eclipse.gef.commands.CommandStack;
+import org.eclipse.gef.commands.CommandStackEvent;
+import org.eclipse.gef.commands.CommandStackEventListener;
+
+/**
+ * Coalesces the refreshes of EditParts requested while commands are executed,
+ * undone or redone. A {@link org.eclipse.gef.commands.CompoundCommand} changing
+ * many model elements causes a model notification per change, and EditParts
+ * usually refresh themselves on each notification. EditParts which instead
+ * request their refreshes from a batcher listening to the command stack are
+ * refreshed once, when the outermost command is done.
+ * <P>
+ * EditParts call the batcher from their model listeners, in place of
+ * refreshing themselves:
+ *
+ * <pre>
+ * public void propertyChange(PropertyChangeEvent evt) {
+ * 	if (Node.CHILDREN.equals(evt.getPropertyName()))
+ * 		batcher.refreshChildren(this);
+ * 	else
+ * 		batcher.refreshVisuals(this);
+ * }
+ * </pre>
+ *
+ * Outside of a batch, refreshes are done at once. Batches can also be started
+ * and ended by clients, for changes which are not made by commands.
+ * <P>
+ * When a batch ends, the visuals and children of the EditParts are refreshed
+ * first, in the order in which they were first requested, then their
+ * connections, so that the EditParts at both ends of new connections exist.
+ * EditParts which are no longer active, for instance because they have been
+ * removed by the refresh of their parent, are skipped.
+ * <P>
+ * The batcher also keeps the time spent in commands and the time spent in
+ * refreshes, to tell which of the two makes an edit slow.
+ *
+ * @since 3.9
+ */
+public class RefreshBatcher implements CommandStackEventListener {
+
+	private static final int VISUALS = 1;
+	private static final int CHILDREN = 2;
+	private static final int SOURCE_CONNECTIONS = 4;
+	private static final int TARGET_CONNECTIONS = 8;
+	private static final int ALL = VISUALS | CHILDREN | SOURCE_CONNECTIONS
+			| TARGET_CONNECTIONS;
+
+	private final CommandStack stack;
+	private int depth;
+	private long batchStart;
+	private Map pending = new LinkedHashMap();
+
+	private long commandTime;
+	private long refreshTime;
+	private int requestCount;
+	private int refreshCount;
+
+	/**
+	 * Constructs a batcher for the commands of the given command stack.
+	 *
+	 * @param stack
+	 *            the command stack
+	 */
+	public RefreshBatcher(CommandStack stack) {
+		this.stack = stack;
+	}
+
+	/**
+	 * Starts listening to the command stack.
+	 */
+	public void activate() {
+		stack.addCommandStackEventListener(this);
+	}
+
+	/**
+	 * Starts a batch. Batches may be nested, and the refreshes are done when
+	 * the outermost batch ends.
+	 */
+	public void beginBatch() {
+		if (depth++ == 0)
+			batchStart = System.currentTimeMillis();
+	}
+
+	/**
+	 * Stops listening to the command stack. Pending refreshes are done.
+	 */
+	public void deactivate() {
+		stack.removeCommandStackEventListener(this);
+		if (depth > 0) {
+			depth = 1;
+			endBatch();
+		}
+	}
+
+	/**
+	 * Ends a batch. When the outermost batch ends, the refreshes requested
+	 * during the batch are done.
+	 */
+	public void endBatch() {
+		if (depth == 0)
+			throw new IllegalStateException("No batch in progress"); //$NON-NLS-1$
+		if (--depth > 0)
+			return;
+		long start = System.currentTimeMillis();
+		commandTime += start - batchStart;
+		// refreshes may request further refreshes, which are done at once
+		Map parts = pending;
+		pending = new LinkedHashMap();
+		List connections = new ArrayList();
+		for (Iterator iter = parts.entrySet().iterator(); iter.hasNext();) {
+			Map.Entry entry = (Map.Entry) iter.next();
+			AbstractEditPart part = (AbstractEditPart) entry.getKey();
+			int flags = ((Integer) entry.getValue()).intValue();
+			if (!part.isActive())
+				continue;
+			if ((flags & VISUALS) != 0)
+				part.refreshVisuals();
+			if ((flags & CHILDREN) != 0)
+				part.refreshChildren();
+			if ((flags & (SOURCE_CONNECTIONS | TARGET_CONNECTIONS)) != 0)
+				connections.add(entry);
+			refreshCount++;
+		}
+		for (int i = 0; i < connections.size(); i++) {
+			Map.Entry entry = (Map.Entry) connections.get(i);
+			AbstractGraphicalEditPart part = (AbstractGraphicalEditPart) entry
+					.getKey();
+			int flags = ((Integer) entry.getValue()).intValue();
+			if (!part.isActive())
+				continue;
+			if ((flags & SOURCE_CONNECTIONS) != 0)
+				part.refreshSourceConnections();
+			if ((flags & TARGET_CONNECTIONS) != 0)
+				part.refreshTargetConnections();
+		}
+		refreshTime += System.currentTimeMillis() - start;
+	}
+
+	/**
+	 * Returns the time spent in batches, excluding the refreshes done at their
+	 * end, in milliseconds. For batches started by the command stack, this is
+	 * the time spent executing, undoing and redoing commands.
+	 *
+	 * @return the time spent in commands
+	 */
+	public long getCommandTime() {
+		return commandTime;
+	}
+
+	/**
+	 * Returns the number of EditParts refreshed at the end of batches.
+	 *
+	 * @return the number of refreshes
+	 */
+	public int getRefreshCount() {
+		return refreshCount;
+	}
+
+	/**
+	 * Returns the time spent refreshing EditParts at the end of batches, in
+	 * milliseconds.
+	 *
+	 * @return the time spent in refreshes
+	 */
+	public long getRefreshTime() {
+		return refreshTime;
+	}
+
+	/**
+	 * Returns the number of refreshes requested during batches. Compared to
+	 * {@link #getRefreshCount()}, this tells how many refreshes were saved.
+	 *
+	 * @return the number of requests
+	 */
+	public int getRequestCount() {
+		return requestCount;
+	}
+
+	/**
+	 * Returns whether a batch is in progress.
+	 *
+	 * @return <code>true</code> if refreshes are deferred
+	 */
+	public boolean isBatching() {
+		return depth > 0;
+	}
+
+	/**
+	 * Refreshes the given EditPart completely, or defers it until the end of
+	 * the batch.
+	 *
+	 * @param part
+	 *            the EditPart
+	 * @see EditPart#refresh()
+	 */
+	public void refresh(AbstractEditPart part) {
+		if (depth == 0)
+			part.refresh();
+		else
+			request(part, part instanceof AbstractGraphicalEditPart ? ALL
+					: VISUALS | CHILDREN);
+	}
+
+	/**
+	 * Refreshes the children of the given EditPart, or defers it until the end
+	 * of the batch.
+	 *
+	 * @param part
+	 *            the EditPart
+	 */
+	public void refreshChildren(AbstractEditPart part) {
+		if (depth == 0)
+			part.refreshChildren();
+		else
+			request(part, CHILDREN);
+	}
+
+	/**
+	 * Refreshes the source connections of the given EditPart, or defers it
+	 * until the end of the batch.
+	 *
+	 * @param part
+	 *            the EditPart
+	 */
+	public void refreshSourceConnections(AbstractGraphicalEditPart part) {
+		if (depth == 0)
+			part.refreshSourceConnections();
+		else
+			request(part, SOURCE_CONNECTIONS);
+	}
+
+	/**
+	 * Refreshes the target connections of the given EditPart, or defers it
+	 * until the end of the batch.
+	 *
+	 * @param part
+	 *            the EditPart
+	 */
+	public void refreshTargetConnections(AbstractGraphicalEditPart part) {
+		if (depth == 0)
+			part.refreshTargetConnections();
+		else
+			request(part, TARGET_CONNECTIONS);
+	}
+
+	/**
+	 * Refreshes the visuals of the given EditPart, or defers it until the end
+	 * of the batch.
+	 *
+	 * @param part
+	 *            the EditPart
+	 */
+	public void refreshVisuals(AbstractEditPart part) {
+		if (depth == 0)
+			part.refreshVisuals();
+		else
+			request(part, VISUALS);
+	}
+
+	/**
+	 * Resets the times and counts to zero.
+	 */
+	public void resetMetrics() {
+		commandTime = 0;
+		refreshTime = 0;
+		requestCount = 0;
+		refreshCount = 0;
+	}
+
+	/**
+	 * Starts a batch before each command, and ends it after.
+	 *
+	 * @see CommandStackEventListener#stackChanged(CommandStackEvent)
+	 */
+	public void stackChanged(CommandStackEvent event) {
+		if (event.isPreChangeEvent())
+			beginBatch();
+		else if (event.isPostChangeEvent() && depth > 0)
+			endBatch();
+	}
+
+	private void request(AbstractEditPart part, int flags) {
+		requestCount++;
+		Integer old = (Integer) pending.get(part);
+		if (old != null)
+			flags |= old.intValue();
+		pending.put(part, new Integer(flags));
+	}
+
+}
@@ -0,0 +1,453 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.gef.editparts;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.draw2d.IFigure;
+import org.eclipse.draw2d.Viewport;
+import org.eclipse.draw2d.geometry.Rectangle;
+
+import org.eclipse.gef.EditPart;
+
+/**
+ * Creates the children of a container EditPart only when they are visible.
+ * Containers with many children, of which only a few are visible in the
+ * viewer at a time, can use this helper so that opening a large model does not
+ * create and activate an EditPart and a figure for every model child.
+ * <P>
+ * The helper needs to know the bounds of each model child, in the coordinates
+ * of the children of the owner's {@link AbstractGraphicalEditPart#getContentPane()
+ * contentPane}, for instance the constraints of an XYLayout. It keeps an index
+ * of these bounds, and materializes the model children whose bounds are
+ * within the visible region of the enclosing {@link Viewport}, or close to
+ * it. As the viewport is scrolled, resized or zoomed, the owner's children are
+ * refreshed, so that the EditParts of children coming into view are created
+ * and activated, and those of children gone out of view are deactivated and
+ * removed.
+ * <P>
+ * Selected and focused children are kept. Other children can be kept by
+ * {@link #materialize(Object) materializing} them, for instance when a tool or
+ * action needs the EditPart of a model child which is not visible. Up to
+ * {@link #getPinLimit()} such children are kept, the least recently
+ * materialized ones being released first, and all of them are released when
+ * memory runs low.
+ * <P>
+ * The owner opts in by filtering its model children, and by activating and
+ * deactivating the helper along with itself:
+ *
+ * <pre>
+ * protected List getModelChildren() {
+ * 	return helper.getMaterializedChildren(getDiagram().getChildren());
+ * }
+ * </pre>
+ *
+ * The index is rebuilt when a different list of model children, or a list of
+ * a different size, is passed. Otherwise {@link #invalidate()} must be called
+ * when the bounds of model children change. Connections to model children
+ * which are not {@link #isMaterialized(Object) materialized} should be left
+ * out of the model connections of the owner's children.
+ *
+ * @since 3.9
+ */
+public abstract class VirtualChildrenHelper {
+
+	/**
+	 * The default number of children kept after being materialized.
+	 */
+	public static final int DEFAULT_PIN_LIMIT = 1000;
+
+	/**
+	 * Model children covering more cells than this are kept in a separate
+	 * list, which is always searched.
+	 */
+	private static final int LARGE_CELLS = 64;
+
+	private static class Cell {
+		int[] items = new int[4];
+		int count;
+
+		void add(int item) {
+			if (count == items.length) {
+				int[] old = items;
+				items = new int[count * 2];
+				System.arraycopy(old, 0, items, 0, count);
+			}
+			items[count++] = item;
+		}
+	}
+
+	private final AbstractGraphicalEditPart owner;
+	private Viewport viewport;
+	private final PropertyChangeListener viewportListener = new PropertyChangeListener() {
+		public void propertyChange(PropertyChangeEvent evt) {
+			viewportChanged();
+		}
+	};
+	private boolean refreshing;
+
+	private List models;
+	private boolean valid;
+	private Rectangle[] bounds;
+	private Map indices;
+	private Map cells;
+	private int[] large;
+	private int largeCount;
+	private int cellSize;
+	private int[] stamps;
+	private int stamp;
+	private int[] hits = new int[16];
+
+	private Rectangle materializedRegion;
+	private final Map pinned = new LinkedHashMap(16, 0.75f, true);
+	private int pinLimit = DEFAULT_PIN_LIMIT;
+	private Reference memorySentinel = new SoftReference(new Object());
+
+	/**
+	 * Constructs a helper for the given container EditPart.
+	 *
+	 * @param owner
+	 *            the EditPart whose children are materialized
+	 */
+	public VirtualChildrenHelper(AbstractGraphicalEditPart owner) {
+		this.owner = owner;
+	}
+
+	/**
+	 * Starts listening to the enclosing viewport. Should be called when the
+	 * owner is activated.
+	 */
+	public void activate() {
+		Viewport port = findViewport();
+		if (port == null)
+			return;
+		viewport = port;
+		viewport.getHorizontalRangeModel().addPropertyChangeListener(
+				viewportListener);
+		viewport.getVerticalRangeModel().addPropertyChangeListener(
+				viewportListener);
+		viewportChanged();
+	}
+
+	/**
+	 * Stops listening to the enclosing viewport. Should be called when the
+	 * owner is deactivated.
+	 */
+	public void deactivate() {
+		if (viewport == null)
+			return;
+		viewport.getHorizontalRangeModel().removePropertyChangeListener(
+				viewportListener);
+		viewport.getVerticalRangeModel().removePropertyChangeListener(
+				viewportListener);
+		viewport = null;
+	}
+
+	/**
+	 * Returns the bounds of the given model child, in the coordinates of the
+	 * children of the owner's contentPane.
+	 *
+	 * @param model
+	 *            the model child
+	 * @return the bounds of the model child
+	 */
+	protected abstract Rectangle getModelBounds(Object model);
+
+	/**
+	 * Returns the model children which should have an EditPart, in the order
+	 * in which they are given. If there is no viewport around the owner, all
+	 * model children are returned.
+	 *
+	 * @param modelChildren
+	 *            all of the model children
+	 * @return the model children to materialize
+	 */
+	public List getMaterializedChildren(List modelChildren) {
+		Viewport port = viewport != null ? viewport : findViewport();
+		if (port == null)
+			return modelChildren;
+		if (memorySentinel.get() == null) {
+			pinned.clear();
+			memorySentinel = new SoftReference(new Object());
+		}
+		if (!valid || modelChildren != models
+				|| modelChildren.size() != bounds.length)
+			buildIndex(modelChildren);
+
+		Rectangle visible = getVisibleRegion(port);
+		materializedRegion = visible.getCopy().expand(visible.width / 2,
+				visible.height / 2);
+		if (++stamp == 0) {
+			Arrays.fill(stamps, 0);
+			stamp = 1;
+		}
+		int count = findModels(materializedRegion);
+		for (Iterator iter = pinned.keySet().iterator(); iter.hasNext();)
+			count = addModel(iter.next(), count);
+		List children = owner.getChildren();
+		for (int i = 0; i < children.size(); i++) {
+			EditPart child = (EditPart) children.get(i);
+			if (child.getSelected() != EditPart.SELECTED_NONE
+					|| child.hasFocus())
+				count = addModel(child.getModel(), count);
+		}
+
+		Arrays.sort(hits, 0, count);
+		List result = new ArrayList(count);
+		for (int i = 0; i < count; i++)
+			result.add(modelChildren.get(hits[i]));
+		return result;
+	}
+
+	/**
+	 * Returns the number of children kept after being materialized.
+	 *
+	 * @return the pin limit
+	 */
+	public int getPinLimit() {
+		return pinLimit;
+	}
+
+	/**
+	 * Discards the index of the bounds of the model children. Should be called
+	 * when the bounds of model children change, before the owner's children
+	 * are refreshed.
+	 */
+	public void invalidate() {
+		valid = false;
+	}
+
+	/**
+	 * Returns whether the given model child has an EditPart.
+	 *
+	 * @param model
+	 *            the model child
+	 * @return <code>true</code> if the model child is materialized
+	 */
+	public boolean isMaterialized(Object model) {
+		Object part = owner.getViewer().getEditPartRegistry().get(model);
+		return part != null && ((EditPart) part).getParent() == owner;
+	}
+
+	/**
+	 * Makes sure the given model child has an EditPart, and keeps it until it
+	 * is released, either because {@link #getPinLimit()} other children have
+	 * been materialized since, or because memory runs low, or because of a
+	 * call to {@link #release()}.
+	 *
+	 * @param model
+	 *            the model child
+	 * @return the EditPart of the model child, or <code>null</code> if it is
+	 *         not one of the owner's model children
+	 */
+	public EditPart materialize(Object model) {
+		if (!isMaterialized(model)) {
+			pin(model);
+			refreshChildren();
+		} else if (!pinned.containsKey(model))
+			pin(model);
+		if (!isMaterialized(model))
+			return null;
+		return (EditPart) owner.getViewer().getEditPartRegistry().get(model);
+	}
+
+	/**
+	 * Releases the children kept by {@link #materialize(Object)}, removing
+	 * those which are not visible.
+	 */
+	public void release() {
+		if (pinned.isEmpty())
+			return;
+		pinned.clear();
+		refreshChildren();
+	}
+
+	/**
+	 * Sets the number of children kept after being materialized.
+	 *
+	 * @param limit
+	 *            the pin limit
+	 */
+	public void setPinLimit(int limit) {
+		if (limit < 0)
+			throw new IllegalArgumentException();
+		pinLimit = limit;
+		while (pinned.size() > pinLimit)
+			unpinEldest();
+	}
+
+	private int addHit(int index, int count) {
+		if (stamps[index] == stamp)
+			return count;
+		stamps[index] = stamp;
+		if (count == hits.length) {
+			int[] old = hits;
+			hits = new int[count * 2];
+			System.arraycopy(old, 0, hits, 0, count);
+		}
+		hits[count] = index;
+		return count + 1;
+	}
+
+	private int addModel(Object model, int count) {
+		Integer index = (Integer) indices.get(model);
+		if (index == null)
+			return count;
+		return addHit(index.intValue(), count);
+	}
+
+	private void buildIndex(List modelChildren) {
+		int n = modelChildren.size();
+		models = modelChildren;
+		bounds = new Rectangle[n];
+		indices = new HashMap(n * 2);
+		stamps = new int[n];
+		stamp = 0;
+		cells = new HashMap();
+		large = new int[4];
+		largeCount = 0;
+		Rectangle extent = null;
+		for (int i = 0; i < n; i++) {
+			Object model = modelChildren.get(i);
+			bounds[i] = getModelBounds(model).getCopy();
+			indices.put(model, new Integer(i));
+			if (extent == null)
+				extent = bounds[i].getCopy();
+			else
+				extent.union(bounds[i]);
+		}
+		// about four children per cell, for evenly spread children
+		cellSize = 16;
+		if (n > 0)
+			cellSize = Math.max(cellSize, 2 * (int) Math.sqrt((double) extent.width
+					* extent.height / n));
+		for (int i = 0; i < n; i++) {
+			Rectangle r = bounds[i];
+			int x1 = cell(r.x), y1 = cell(r.y);
+			int x2 = cell(r.right()), y2 = cell(r.bottom());
+			if ((long) (x2 - x1 + 1) * (y2 - y1 + 1) > LARGE_CELLS) {
+				if (largeCount == large.length) {
+					int[] old = large;
+					large = new int[largeCount * 2];
+					System.arraycopy(old, 0, large, 0, largeCount);
+				}
+				large[largeCount++] = i;
+				continue;
+			}
+			for (int x = x1; x <= x2; x++)
+				for (int y = y1; y <= y2; y++) {
+					Long key = new Long(((long) x << 32) | (y & 0xFFFFFFFFL));
+					Cell cell = (Cell) cells.get(key);
+					if (cell == null) {
+						cell = new Cell();
+						cells.put(key, cell);
+					}
+					cell.add(i);
+				}
+		}
+		valid = true;
+	}
+
+	private int cell(int coordinate) {
+		return coordinate >= 0 ? coordinate / cellSize : -((-coordinate - 1)
+				/ cellSize) - 1;
+	}
+
+	private Viewport findViewport() {
+		IFigure figure = owner.getContentPane();
+		while (figure != null && !(figure instanceof Viewport))
+			figure = figure.getParent();
+		return (Viewport) figure;
+	}
+
+	private int findModels(Rectangle region) {
+		int count = 0;
+		int x1 = cell(region.x), y1 = cell(region.y);
+		int x2 = cell(region.right()), y2 = cell(region.bottom());
+		if ((long) (x2 - x1 + 1) * (y2 - y1 + 1) > cells.size()) {
+			for (int i = 0; i < bounds.length; i++)
+				if (touches(bounds[i], region))
+					count = addHit(i, count);
+			return count;
+		}
+		for (int x = x1; x <= x2; x++)
+			for (int y = y1; y <= y2; y++) {
+				Cell cell = (Cell) cells.get(new Long(((long) x << 32)
+						| (y & 0xFFFFFFFFL)));
+				if (cell == null)
+					continue;
+				for (int i = 0; i < cell.count; i++)
+					if (stamps[cell.items[i]] != stamp
+							&& touches(bounds[cell.items[i]], region))
+						count = addHit(cell.items[i], count);
+			}
+		for (int i = 0; i < largeCount; i++)
+			if (touches(bounds[large[i]], region))
+				count = addHit(large[i], count);
+		return count;
+	}
+
+	private Rectangle getVisibleRegion(Viewport port) {
+		Rectangle region = port.getBounds().getCopy().crop(port.getInsets());
+		port.translateToAbsolute(region);
+		IFigure contentPane = owner.getContentPane();
+		contentPane.translateToRelative(region);
+		contentPane.translateFromParent(region);
+		return region;
+	}
+
+	private void pin(Object model) {
+		pinned.put(model, model);
+		while (pinned.size() > pinLimit)
+			unpinEldest();
+	}
+
+	private void refreshChildren() {
+		if (refreshing)
+			return;
+		refreshing = true;
+		try {
+			owner.refreshChildren();
+		} finally {
+			refreshing = false;
+		}
+	}
+
+	private boolean touches(Rectangle r, Rectangle region) {
+		return r.x <= region.right() && r.y <= region.bottom()
+				&& r.right() >= region.x && r.bottom() >= region.y;
+	}
+
+	private void unpinEldest() {
+		Iterator iter = pinned.keySet().iterator();
+		iter.next();
+		iter.remove();
+	}
+
+	private void viewportChanged() {
+		if (viewport == null || refreshing)
+			return;
+		if (materializedRegion == null
+				|| !materializedRegion.contains(getVisibleRegion(viewport)))
+			refreshChildren();
+	}
+
+}
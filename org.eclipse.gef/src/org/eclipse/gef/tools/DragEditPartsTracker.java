@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2010 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,8 +12,10 @@ package org.eclipse.gef.tools;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.events.KeyEvent;
@@ -21,12 +23,17 @@ import org.eclipse.swt.graphics.Cursor;
 
 import org.eclipse.core.runtime.Platform;
 
+import org.eclipse.draw2d.ColorConstants;
+import org.eclipse.draw2d.Connection;
+import org.eclipse.draw2d.Figure;
+import org.eclipse.draw2d.Graphics;
 import org.eclipse.draw2d.IFigure;
 import org.eclipse.draw2d.PositionConstants;
 import org.eclipse.draw2d.geometry.Dimension;
 import org.eclipse.draw2d.geometry.Point;
 import org.eclipse.draw2d.geometry.PrecisionPoint;
 import org.eclipse.draw2d.geometry.PrecisionRectangle;
+import org.eclipse.draw2d.geometry.Rectangle;
 
 import org.eclipse.gef.AutoexposeHelper;
 import org.eclipse.gef.EditPart;
@@ -49,6 +56,47 @@ import org.eclipse.gef.requests.ChangeBoundsRequest;
  */
 public class DragEditPartsTracker extends SelectEditPartTracker {
 
+	/**
+	 * The default number of edit parts being dragged above which
+	 * {@link #createAggregateFeedbackFigure() aggregate feedback} is shown
+	 * instead of the source feedback of each edit part.
+	 * 
+	 * @since 3.9
+	 */
+	public static final int DEFAULT_AGGREGATE_FEEDBACK_THRESHOLD = 500;
+
+	/**
+	 * Paints the ghost outlines of many figures at once. The outlines are kept
+	 * relative to the figure's location, so that the figure can be moved by
+	 * translating it.
+	 */
+	private static class AggregateFeedbackFigure extends Figure {
+
+		private final int[] outlines;
+
+		AggregateFeedbackFigure(int[] outlines) {
+			this.outlines = outlines;
+		}
+
+		protected void paintFigure(Graphics graphics) {
+			Rectangle clip = graphics.getClip(new Rectangle());
+			int x = getBounds().x;
+			int y = getBounds().y;
+			graphics.setXORMode(true);
+			graphics.setForegroundColor(ColorConstants.white);
+			graphics.setLineStyle(Graphics.LINE_DOT);
+			for (int i = 0; i < outlines.length; i += 4) {
+				int left = x + outlines[i];
+				int top = y + outlines[i + 1];
+				int width = outlines[i + 2];
+				int height = outlines[i + 3];
+				if (left < clip.right() && top < clip.bottom()
+						&& left + width > clip.x && top + height > clip.y)
+					graphics.drawRectangle(left, top, width - 1, height - 1);
+			}
+		}
+	}
+
 	/**
 	 * Key modifier for cloning. It's ALT on Mac, and CTRL on all other
 	 * platforms.
@@ -70,7 +118,8 @@ public class DragEditPartsTracker extends SelectEditPartTracker {
 	private static final int FLAG_SOURCE_FEEDBACK = SelectEditPartTracker.MAX_FLAG << 1;
 	/** Max flag */
 	protected static final int MAX_FLAG = FLAG_SOURCE_FEEDBACK;
-	private List exclusionSet;
+	private Set exclusionSet;
+	private IFigure aggregateFeedback;
 	private PrecisionPoint sourceRelativeStartPoint;
 	private SnapToHelper snapToHelper;
 	private PrecisionRectangle sourceRectangle, compoundSrcRect;
@@ -233,6 +282,11 @@ public class DragEditPartsTracker extends SelectEditPartTracker {
 		if (!getFlag(FLAG_SOURCE_FEEDBACK))
 			return;
 		setFlag(FLAG_SOURCE_FEEDBACK, false);
+		if (aggregateFeedback != null) {
+			removeFeedback(aggregateFeedback);
+			aggregateFeedback = null;
+			return;
+		}
 		List editParts = getOperationSet();
 		for (int i = 0; i < editParts.size(); i++) {
 			EditPart editPart = (EditPart) editParts.get(i);
@@ -304,16 +358,18 @@ public class DragEditPartsTracker extends SelectEditPartTracker {
 	}
 
 	/**
-	 * Returns a list of all the edit parts in the
+	 * Returns a set of the figures of all the edit parts in the
 	 * {@link AbstractTool#getOperationSet() operation set}, plus the
-	 * {@link org.eclipse.draw2d.ConnectionLayer}.
+	 * {@link org.eclipse.draw2d.ConnectionLayer}. The exclusion set is
+	 * consulted for every figure visited while searching for the target, so a
+	 * set is used to keep dragging large selections fast.
 	 * 
 	 * @see org.eclipse.gef.tools.TargetingTool#getExclusionSet()
 	 */
 	protected Collection getExclusionSet() {
 		if (exclusionSet == null) {
 			List set = getOperationSet();
-			exclusionSet = new ArrayList(set.size() + 1);
+			exclusionSet = new HashSet(set.size() * 2 + 2);
 			for (int i = 0; i < set.size(); i++) {
 				GraphicalEditPart editpart = (GraphicalEditPart) set.get(i);
 				exclusionSet.add(editpart.getFigure());
@@ -563,17 +619,94 @@ public class DragEditPartsTracker extends SelectEditPartTracker {
 
 	/**
 	 * Asks the edit parts in the {@link AbstractTool#getOperationSet()
-	 * operation set} to show source feedback.
+	 * operation set} to show source feedback. If there are more edit parts
+	 * than the {@link #getAggregateFeedbackThreshold() threshold}, the edit
+	 * parts are not asked, and the
+	 * {@link #createAggregateFeedbackFigure() aggregate feedback} is moved by
+	 * the move delta instead.
 	 */
 	protected void showSourceFeedback() {
 		List editParts = getOperationSet();
-		for (int i = 0; i < editParts.size(); i++) {
-			EditPart editPart = (EditPart) editParts.get(i);
-			editPart.showSourceFeedback(getTargetRequest());
+		if (editParts.size() > getAggregateFeedbackThreshold()
+				&& compoundSrcRect != null) {
+			if (aggregateFeedback == null)
+				aggregateFeedback = createAggregateFeedbackFigure();
+			PrecisionRectangle rect = compoundSrcRect.getPreciseCopy();
+			rect.translate(((ChangeBoundsRequest) getTargetRequest())
+					.getMoveDelta());
+			aggregateFeedback.translateToRelative(rect);
+			aggregateFeedback.setLocation(rect.getLocation());
+		} else {
+			for (int i = 0; i < editParts.size(); i++) {
+				EditPart editPart = (EditPart) editParts.get(i);
+				editPart.showSourceFeedback(getTargetRequest());
+			}
 		}
 		setFlag(FLAG_SOURCE_FEEDBACK, true);
 	}
 
+	/**
+	 * Returns the number of edit parts being dragged above which aggregate
+	 * feedback is shown instead of the source feedback of each edit part. Edit
+	 * parts whose source feedback is more than a ghost outline of their figure
+	 * lose that feedback above the threshold. Subclasses may override to
+	 * change the threshold, or return {@link Integer#MAX_VALUE} to always ask
+	 * the edit parts.
+	 * 
+	 * @return the aggregate feedback threshold
+	 * @since 3.9
+	 */
+	protected int getAggregateFeedbackThreshold() {
+		return DEFAULT_AGGREGATE_FEEDBACK_THRESHOLD;
+	}
+
+	/**
+	 * Creates the figure used for feedback when dragging more edit parts than
+	 * the {@link #getAggregateFeedbackThreshold() threshold}, and adds it to
+	 * the feedback layer. The figure's bounds must be those of all the figures
+	 * being dragged, in the coordinates of the feedback layer. While dragging,
+	 * the figure is only moved. The default figure paints a ghost outline of
+	 * each figure being dragged, other than connections.
+	 * 
+	 * @return the new aggregate feedback figure
+	 * @since 3.9
+	 */
+	protected IFigure createAggregateFeedbackFigure() {
+		List editParts = getOperationSet();
+		int count = 0;
+		PrecisionRectangle[] rects = new PrecisionRectangle[editParts.size()];
+		for (int i = 0; i < editParts.size(); i++) {
+			IFigure figure = ((GraphicalEditPart) editParts.get(i))
+					.getFigure();
+			if (figure instanceof Connection)
+				continue;
+			PrecisionRectangle rect;
+			if (figure instanceof HandleBounds)
+				rect = new PrecisionRectangle(
+						((HandleBounds) figure).getHandleBounds());
+			else
+				rect = new PrecisionRectangle(figure.getBounds());
+			figure.translateToAbsolute(rect);
+			rects[count++] = rect;
+		}
+
+		int[] outlines = new int[count * 4];
+		AggregateFeedbackFigure feedback = new AggregateFeedbackFigure(
+				outlines);
+		addFeedback(feedback);
+		PrecisionRectangle bounds = compoundSrcRect.getPreciseCopy();
+		feedback.translateToRelative(bounds);
+		for (int i = 0; i < count; i++) {
+			feedback.translateToRelative(rects[i]);
+			outlines[i * 4] = rects[i].x - bounds.x;
+			outlines[i * 4 + 1] = rects[i].y - bounds.y;
+			outlines[i * 4 + 2] = rects[i].width;
+			outlines[i * 4 + 3] = rects[i].height;
+		}
+		feedback.setBounds(bounds);
+		return feedback;
+	}
+
 	/**
 	 * Extended to activate cloning and to update the captured source dimensions
 	 * when applicable.
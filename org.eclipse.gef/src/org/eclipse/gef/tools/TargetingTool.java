@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2010 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -125,7 +125,9 @@ public abstract class TargetingTool extends AbstractTool {
 
 	/**
 	 * Returns a List of objects that should be excluded as potential targets
-	 * for the operation.
+	 * for the operation. The collection is asked whether it contains each
+	 * figure visited while searching for the target, so subclasses excluding
+	 * many objects should return a {@link java.util.Set}.
 	 * 
 	 * @return the list of objects to be excluded as targets
 	 */
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2010 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,8 +12,10 @@ package org.eclipse.gef.tools;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 import org.eclipse.gef.EditPart;
 import org.eclipse.gef.EditPartViewer;
@@ -33,14 +35,7 @@ public class ToolUtilities {
 	 * @return the selection excluding dependants
 	 */
 	public static List getSelectionWithoutDependants(EditPartViewer viewer) {
-		List selectedParts = viewer.getSelectedEditParts();
-		List result = new ArrayList();
-		for (int i = 0; i < selectedParts.size(); i++) {
-			EditPart editpart = (EditPart) selectedParts.get(i);
-			if (!isAncestorContainedIn(selectedParts, editpart))
-				result.add(editpart);
-		}
-		return result;
+		return getSelectionWithoutDependants(viewer.getSelectedEditParts());
 	}
 
 	/**
@@ -53,9 +48,12 @@ public class ToolUtilities {
 	 */
 	public static List getSelectionWithoutDependants(List selectedParts) {
 		List result = new ArrayList();
+		// look the ancestors up in a set, so that large selections are not
+		// scanned once for every selected part
+		Set selectedSet = new HashSet(selectedParts);
 		for (int i = 0; i < selectedParts.size(); i++) {
 			EditPart editpart = (EditPart) selectedParts.get(i);
-			if (!isAncestorContainedIn(selectedParts, editpart))
+			if (!isAncestorContainedIn(selectedSet, editpart))
 				result.add(editpart);
 		}
 		return result;
@@ -82,7 +80,9 @@ public class ToolUtilities {
 	}
 
 	/**
-	 * Checks if collection contains any ancestor of editpart <code>ep</code>
+	 * Checks if collection contains any ancestor of editpart <code>ep</code>.
+	 * The collection is searched once for each ancestor, so for large
+	 * collections a {@link Set} should be passed.
 	 * 
 	 * @param c
 	 *            - collection of editparts
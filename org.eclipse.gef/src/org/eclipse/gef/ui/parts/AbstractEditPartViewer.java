@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2010 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,6 +12,7 @@ package org.eclipse.gef.ui.parts;
 
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -66,7 +67,7 @@ public abstract class AbstractEditPartViewer implements EditPartViewer {
 	/**
 	 * The raw list of selected editparts.
 	 */
-	protected final List selection = new ArrayList();
+	protected final List selection = new SelectionList();
 
 	/**
 	 * The unmodifiable list of selected editparts.
@@ -777,4 +778,86 @@ public abstract class AbstractEditPartViewer implements EditPartViewer {
 	public void unregisterAccessibleEditPart(AccessibleEditPart acc) {
 	}
 
+	/**
+	 * The list of selected editparts. It also counts its editparts in a map,
+	 * so that finding out whether an editpart is selected, as the
+	 * SelectionManager does for every editpart it selects or deselects, does
+	 * not search the list. Every change to the list, including those made
+	 * through its iterators and sublists, goes through
+	 * {@link #add(int, Object)}, {@link #set(int, Object)},
+	 * {@link #remove(int)} or {@link #clear()}, which keep the map up to date.
+	 */
+	private static class SelectionList extends AbstractList {
+		private final List parts = new ArrayList();
+		private final Map counts = new HashMap();
+
+		public void add(int index, Object part) {
+			parts.add(index, part);
+			modCount++;
+			added(part);
+		}
+
+		private void added(Object part) {
+			Integer count = (Integer) counts.get(part);
+			counts.put(part, new Integer(count == null ? 1
+					: count.intValue() + 1));
+		}
+
+		public void clear() {
+			parts.clear();
+			counts.clear();
+			modCount++;
+		}
+
+		public boolean contains(Object part) {
+			return counts.containsKey(part);
+		}
+
+		public Object get(int index) {
+			return parts.get(index);
+		}
+
+		public int indexOf(Object part) {
+			return contains(part) ? parts.indexOf(part) : -1;
+		}
+
+		public int lastIndexOf(Object part) {
+			return contains(part) ? parts.lastIndexOf(part) : -1;
+		}
+
+		public Object remove(int index) {
+			Object part = parts.remove(index);
+			modCount++;
+			removed(part);
+			return part;
+		}
+
+		public boolean remove(Object part) {
+			int index = indexOf(part);
+			if (index == -1)
+				return false;
+			remove(index);
+			return true;
+		}
+
+		private void removed(Object part) {
+			int count = ((Integer) counts.get(part)).intValue();
+			if (count == 1)
+				counts.remove(part);
+			else
+				counts.put(part, new Integer(count - 1));
+		}
+
+		public Object set(int index, Object part) {
+			Object old = parts.set(index, part);
+			removed(old);
+			added(part);
+			return old;
+		}
+
+		public int size() {
+			return parts.size();
+		}
+	}
+
 }
@@ -231,10 +231,6 @@ public abstract class AbstractStructuredGraphViewer extends AbstractZoomableView
 		return this.connectionsMap.keySet().toArray();
 	}
 
-	HashMap getNodesMap() {
-		return this.nodesMap;
-	}
-
 	GraphNode addGraphModelContainer(Object element) {
 		GraphNode node = this.getGraphModelNode(element);
 		if (node == null) {
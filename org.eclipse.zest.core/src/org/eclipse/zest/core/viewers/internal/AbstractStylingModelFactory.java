@@ -10,13 +10,15 @@
 package org.eclipse.zest.core.viewers.internal;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.draw2d.IFigure;
+import org.eclipse.draw2d.geometry.Dimension;
+import org.eclipse.draw2d.geometry.Point;
 import org.eclipse.jface.viewers.IBaseLabelProvider;
 import org.eclipse.jface.viewers.IStructuredContentProvider;
 import org.eclipse.jface.viewers.StructuredViewer;
@@ -24,8 +26,10 @@ import org.eclipse.jface.viewers.ViewerFilter;
 import org.eclipse.swt.SWT;
 import org.eclipse.zest.core.viewers.IFigureProvider;
 import org.eclipse.zest.core.viewers.INestedContentProvider;
+import org.eclipse.zest.core.widgets.CGraphNode;
 import org.eclipse.zest.core.widgets.Graph;
 import org.eclipse.zest.core.widgets.GraphConnection;
+import org.eclipse.zest.core.widgets.GraphContainer;
 import org.eclipse.zest.core.widgets.GraphItem;
 import org.eclipse.zest.core.widgets.GraphNode;
 import org.eclipse.zest.core.widgets.IContainer;
@@ -39,11 +43,22 @@ import org.eclipse.zest.core.widgets.IContainer;
 // @tag zest.bug.160367-Refreshing.fix : update the factory to use the
 // IStylingGraphModelFactory
 public abstract class AbstractStylingModelFactory implements IStylingGraphModelFactory {
+	/**
+	 * The key under which each item keeps the values it was last styled with.
+	 */
+	private static final String STYLE_KEY = "org.eclipse.zest.core.viewers.internal.styleKey";
+
 	private AbstractStructuredGraphViewer viewer;
 	private int connectionStyle;
 	private int nodeStyle;
 	private List /* ConstraintAdapater */constraintAdapters = new ArrayList();
 
+	/**
+	 * The items found in the content so far while the whole graph is
+	 * refreshed, in the order they were found, or null.
+	 */
+	private Set /* GraphItem */refreshedItems;
+
 	/**
 	 * 
 	 */
@@ -122,6 +137,12 @@ public abstract class AbstractStylingModelFactory implements IStylingGraphModelF
 	}
 
 	public void styleItem(GraphItem item) {
+		List key = GraphItemStyler.getStyleKey(item, getLabelProvider());
+		if (refreshedItems != null && key != null && key.equals(item.getData(STYLE_KEY))) {
+			// the labels have not changed since the item was last styled
+			return;
+		}
+		item.setData(STYLE_KEY, key);
 		GraphItemStyler.styleItem(item, getLabelProvider());
 		if (item instanceof GraphConnection) {
 			styleConnection((GraphConnection) item);
@@ -163,10 +184,17 @@ public abstract class AbstractStylingModelFactory implements IStylingGraphModelF
 		GraphConnection oldConnection = viewer.getGraphModelConnection(element);
 		GraphNode sn = viewer.getGraphModelNode(source);
 		GraphNode dn = viewer.getGraphModelNode(dest);
+		if (sn != null && markRefreshed(sn)) {
+			styleItem(sn);
+		}
+		if (dn != null && markRefreshed(dn)) {
+			styleItem(dn);
+		}
 		if (oldConnection != null) {
-			if (sn != oldConnection.getSource() || dn != oldConnection.getDestination()) {
-				viewer.removeGraphModelConnection(oldConnection);
+			if (oldConnection.isDisposed() || sn != oldConnection.getSource() || dn != oldConnection.getDestination()) {
+				viewer.removeGraphModelConnection(element);
 			} else {
+				markRefreshed(oldConnection);
 				styleItem(oldConnection);
 				return oldConnection;
 			}
@@ -198,6 +226,7 @@ public abstract class AbstractStylingModelFactory implements IStylingGraphModelF
 			}
 		}
 		GraphConnection c = viewer.addGraphModelConnection(element, sn, dn);
+		markRefreshed(c);
 		styleItem(c);
 		return c;
 	}
@@ -212,23 +241,51 @@ public abstract class AbstractStylingModelFactory implements IStylingGraphModelF
 		GraphNode node = null;
 		if (getContentProvider() instanceof INestedContentProvider) {
 			boolean isContainer = ((INestedContentProvider) getContentProvider()).hasChildren(element);
+			GraphNode oldNode = viewer.getGraphModelNode(element);
+			if (oldNode != null && isContainer != oldNode instanceof GraphContainer) {
+				// the element gained or lost its children since the last refresh
+				viewer.removeGraphModelNode(element);
+				oldNode = null;
+			}
 			if (isContainer) {
 				node = viewer.addGraphModelContainer(element);
+				markRefreshed(node);
 				styleItem(node);
 				Object[] childNodes = ((INestedContentProvider) getContentProvider()).getChildren(element);
 				childNodes = filter(getViewer().getInput(), childNodes);
 				if (childNodes == null) {
 					return node;
 				}
+				// only lay out the children again if they changed
+				boolean changed = oldNode == null || ((IContainer) node).getNodes().size() != childNodes.length;
 				for (int i = 0; i < childNodes.length; i++) {
+					changed |= viewer.getGraphModelNode(childNodes[i]) == null;
 					GraphNode childNode = viewer.addGraphModelNode((IContainer) node, childNodes[i]);
+					markRefreshed(childNode);
 					styleItem(childNode);
 				}
-				((IContainer) node).applyLayout();
+				if (changed) {
+					((IContainer) node).applyLayout();
+				}
 				return node;
 			}
 		}
-		node = viewer.addGraphModelNode(element, figure);
+		GraphNode oldNode = viewer.getGraphModelNode(element);
+		if (oldNode != null && figure != (oldNode instanceof CGraphNode ? oldNode.getNodeFigure() : null)) {
+			// a node keeps the figure it was created with, so the figure
+			// provider's new figure needs a new node
+			Point location = oldNode.getLocation();
+			Dimension size = oldNode.isSizeFixed() ? oldNode.getSize() : null;
+			viewer.removeGraphModelNode(element);
+			node = viewer.addGraphModelNode(element, figure);
+			node.setLocation(location.x, location.y);
+			if (size != null) {
+				node.setSize(size.width, size.height);
+			}
+		} else {
+			node = viewer.addGraphModelNode(element, figure);
+		}
+		markRefreshed(node);
 		styleItem(node);
 		return node;
 	}
@@ -291,46 +348,83 @@ public abstract class AbstractStylingModelFactory implements IStylingGraphModelF
 	 * @see org.eclipse.zest.core.internal.graphmodel.IStylingGraphModelFactory#refreshGraph(org.eclipse.zest.core.internal.graphmodel.GraphModel)
 	 */
 	public void refreshGraph(Graph graph) {
-		// with this kind of graph, it is just as easy and cost-effective to
-		// rebuild the whole thing.
-
-		Map oldMap = viewer.getNodesMap();
-		HashMap nodesMap = new HashMap();
-		// have to copy the Map data accross so that it doesn't get overwritten
-		for (Iterator keys = oldMap.keySet().iterator(); keys.hasNext();) {
-			Object key = keys.next();
-			nodesMap.put(key, oldMap.get(key));
-		}
-		clearGraph(graph);
-		doBuildGraph(graph);
-		// update the positions on the new nodes to match the old ones.
-		GraphNode[] nodes = getNodesArray(graph);
-		// save a little time, go with the smallest list as the primary list
-		if (nodes.length < nodesMap.keySet().size()) {
-			for (int i = 0; i < nodes.length; i++) {
-				GraphNode oldNode = (GraphNode) nodesMap.get(nodes[i].getData());
-				if (oldNode != null) {
-					nodes[i].setLocation(oldNode.getLocation().x, oldNode.getLocation().y);
-					if (oldNode.isSizeFixed()) {
-						nodes[i].setSize(oldNode.getSize().width, oldNode.getSize().height);
-					}
+		// build the graph again over the existing items, so that only the
+		// items of added or removed elements are created or disposed, and
+		// only the items whose labels changed are styled again. The nodes
+		// which are kept also keep their locations and sizes.
+		refreshedItems = new LinkedHashSet();
+		try {
+			doBuildGraph(graph);
+
+			Object[] nodeElements = viewer.getNodeElements();
+			for (int i = 0; i < nodeElements.length; i++) {
+				GraphNode node = viewer.getGraphModelNode(nodeElements[i]);
+				if (node.isDisposed() || !refreshedItems.contains(node)) {
+					viewer.removeGraphModelNode(nodeElements[i]);
 				}
 			}
-		} else {
-			for (Iterator i = nodesMap.keySet().iterator(); i.hasNext();) {
-				Object key = i.next();
-				GraphNode node = viewer.getGraphModelNode(key);
-				if (node != null) {
-					GraphNode oldNode = (GraphNode) nodesMap.get(key);
-					node.setLocation(oldNode.getLocation().x, oldNode.getLocation().y);
-					if (oldNode.isSizeFixed()) {
-						node.setSize(oldNode.getSize().width, oldNode.getSize().height);
+			List reconnected = new ArrayList();
+			Object[] connectionElements = viewer.getConnectionElements();
+			for (int i = 0; i < connectionElements.length; i++) {
+				GraphConnection connection = viewer.getGraphModelConnection(connectionElements[i]);
+				if (connection.isDisposed() || !refreshedItems.contains(connection)) {
+					if (!connection.isDisposed()) {
+						graph.getSelection().remove(connection);
+						reconnected.add(connection);
 					}
+					viewer.removeGraphModelConnection(connectionElements[i]);
 				}
 			}
+			// curve the remaining connections between the same nodes again
+			for (Iterator i = reconnected.iterator(); i.hasNext();) {
+				GraphConnection connection = (GraphConnection) i.next();
+				GraphNode source = connection.getSource();
+				GraphNode dest = connection.getDestination();
+				LinkedList remaining = getConnectionList(source, dest);
+				if (remaining.isEmpty()) {
+					remaining = getConnectionList(dest, source);
+				}
+				if (!remaining.isEmpty()) {
+					styleConnection((GraphConnection) remaining.getFirst());
+				}
+			}
+		} finally {
+			refreshedItems = null;
 		}
 	}
 
+	/**
+	 * Notes that the given item was found in the content while the whole
+	 * graph is refreshed.
+	 * 
+	 * @return true if the graph is being refreshed and the item was not found
+	 *         before
+	 */
+	private boolean markRefreshed(GraphItem item) {
+		return refreshedItems != null && refreshedItems.add(item);
+	}
+
+	/**
+	 * Returns the elements of the nodes in the graph. While the whole graph
+	 * is refreshed, only the elements found in the content so far are
+	 * returned.
+	 * 
+	 * @return the node elements
+	 */
+	protected Object[] getNodeElements() {
+		if (refreshedItems == null) {
+			return viewer.getNodeElements();
+		}
+		List elements = new ArrayList();
+		for (Iterator i = refreshedItems.iterator(); i.hasNext();) {
+			Object item = i.next();
+			if (item instanceof GraphNode && !((GraphNode) item).isDisposed()) {
+				elements.add(((GraphNode) item).getData());
+			}
+		}
+		return elements.toArray();
+	}
+
 	/**
 	 * Convenience method for clearing all the elements in the graph.
 	 * 
@@ -351,11 +445,15 @@ public abstract class AbstractStylingModelFactory implements IStylingGraphModelF
 	/**
 	 * Builds the graph model from the viewer's content provider. There is no
 	 * guarantee that the model will be cleared before this method is called.
+	 * While the whole graph is refreshed the model is not cleared, and the
+	 * items of the elements found again are kept.
 	 * 
 	 * @param graph
 	 */
 	protected void doBuildGraph(Graph model) {
-		clearGraph(model);
+		if (refreshedItems == null) {
+			clearGraph(model);
+		}
 		model.setConnectionStyle(getConnectionStyle());
 		model.setNodeStyle(getNodeStyle());
 		model.setConstraintAdapters(getConstraintAdapters());
@@ -9,6 +9,9 @@
  ******************************************************************************/
 package org.eclipse.zest.core.viewers.internal;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.eclipse.draw2d.IFigure;
 import org.eclipse.jface.viewers.IBaseLabelProvider;
 import org.eclipse.jface.viewers.IColorProvider;
@@ -92,6 +95,42 @@ public class GraphItemStyler {
 		}
 	}
 
+	/**
+	 * Returns the values which {@link #styleItem(GraphItem, IBaseLabelProvider)}
+	 * would take from the label provider for the given item, so that an item
+	 * need only be styled again when they change. Returns <code>null</code> if
+	 * the label provider styles items in ways which can not be compared, in
+	 * which case the item must always be styled again.
+	 */
+	public static List getStyleKey(GraphItem item, final IBaseLabelProvider labelProvider) {
+		if (labelProvider instanceof IEntityStyleProvider || labelProvider instanceof IEntityConnectionStyleProvider || labelProvider instanceof IConnectionStyleProvider || labelProvider instanceof ISelfStyleProvider) {
+			return null;
+		}
+		List key = new ArrayList();
+		Object element;
+		if (item instanceof GraphNode) {
+			element = item.getData();
+			key.add(new Integer(((GraphNode) item).getGraphModel().getNodeStyle()));
+			if (labelProvider instanceof IColorProvider) {
+				key.add(((IColorProvider) labelProvider).getForeground(element));
+				key.add(((IColorProvider) labelProvider).getBackground(element));
+			}
+			if (labelProvider instanceof IFontProvider) {
+				key.add(((IFontProvider) labelProvider).getFont(element));
+			}
+		} else if (item instanceof GraphConnection) {
+			element = ((GraphConnection) item).getExternalConnection();
+			key.add(new Integer(((GraphConnection) item).getGraphModel().getConnectionStyle()));
+		} else {
+			return null;
+		}
+		if (labelProvider instanceof ILabelProvider) {
+			key.add(((ILabelProvider) labelProvider).getText(element));
+			key.add(((ILabelProvider) labelProvider).getImage(element));
+		}
+		return key;
+	}
+
 	/**
 	 * @param conn
 	 * @param provider
@@ -13,7 +13,6 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Set;
 
 import org.eclipse.zest.core.viewers.EntityConnectionData;
 import org.eclipse.zest.core.viewers.IFigureProvider;
@@ -74,8 +73,7 @@ public class GraphModelEntityFactory extends AbstractStylingModelFactory {
 		}
 
 		// We may have other entities (such as children of containers) 
-		Set keySet = ((AbstractStructuredGraphViewer) getViewer()).getNodesMap().keySet();
-		entities = keySet.toArray();
+		entities = getNodeElements();
 
 		for (int i = 0; i < entities.length; i++) {
 			Object data = entities[i];
@@ -48,6 +48,7 @@ import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Event;
 import org.eclipse.swt.widgets.Item;
 import org.eclipse.zest.core.widgets.internal.ContainerFigure;
+import org.eclipse.zest.core.widgets.internal.LayoutSnapshot;
 import org.eclipse.zest.core.widgets.internal.RevealListener;
 import org.eclipse.zest.core.widgets.internal.ZestRootLayer;
 import org.eclipse.zest.layouts.InvalidLayoutConfiguration;
@@ -55,8 +56,11 @@ import org.eclipse.zest.layouts.LayoutAlgorithm;
 import org.eclipse.zest.layouts.LayoutEntity;
 import org.eclipse.zest.layouts.LayoutRelationship;
 import org.eclipse.zest.layouts.LayoutStyles;
+import org.eclipse.zest.layouts.algorithms.AbstractLayoutAlgorithm;
 import org.eclipse.zest.layouts.algorithms.TreeLayoutAlgorithm;
 import org.eclipse.zest.layouts.constraints.LayoutConstraint;
+import org.eclipse.zest.layouts.progress.ProgressEvent;
+import org.eclipse.zest.layouts.progress.ProgressListener;
 
 /*
  * Holds the nodes and connections for the graph.
@@ -112,6 +116,26 @@ public class Graph extends FigureCanvas implements IContainer {
 
 	private boolean hasPendingLayoutRequest;
 
+	private boolean asynchronousLayout;
+
+	/**
+	 * Counts the changes to the nodes and connections, including moves and
+	 * resizes of nodes, so that the results of an asynchronous layout of an
+	 * older state of the graph can be discarded.
+	 */
+	private int modificationCount;
+
+	/**
+	 * The asynchronous layout currently running, or <code>null</code>.
+	 */
+	private AsynchronousLayout runningLayout;
+
+	/**
+	 * Whether another layout was requested while the running layout was
+	 * running.
+	 */
+	private boolean hasQueuedLayout;
+
 	/**
 	 * Constructor for a Graph. This widget represents the root of the graph,
 	 * and can contain graph items such as graph nodes and graph connections.
@@ -380,6 +404,7 @@ public class Graph extends FigureCanvas implements IContainer {
 	 * Dispose of the nodes and edges when the graph is disposed.
 	 */
 	public void dispose() {
+		cancelLayout();
 		release();
 		super.dispose();
 	}
@@ -431,6 +456,46 @@ public class Graph extends FigureCanvas implements IContainer {
 		return this.layoutAlgorithm;
 	}
 
+	/**
+	 * Sets whether layouts are computed on a separate thread, so that the
+	 * display thread is not blocked by long layouts. An asynchronous layout
+	 * works on a snapshot of the nodes and connections. The computed
+	 * locations are applied on the display thread in a single animation once
+	 * the layout has ended, unless nodes or connections were added, removed,
+	 * moved or resized in the meantime, or the layout failed. Layout
+	 * algorithms which cannot run asynchronously, such as a
+	 * {@link org.eclipse.zest.layouts.algorithms.CompositeLayoutAlgorithm}, are
+	 * run synchronously.
+	 * 
+	 * @param asynchronous
+	 *            <code>true</code> to compute layouts on a separate thread
+	 */
+	public void setAsynchronousLayout(boolean asynchronous) {
+		this.asynchronousLayout = asynchronous;
+	}
+
+	/**
+	 * Returns whether layouts are computed on a separate thread.
+	 * 
+	 * @return <code>true</code> if layouts are computed on a separate thread
+	 * @see #setAsynchronousLayout(boolean)
+	 */
+	public boolean isAsynchronousLayout() {
+		return asynchronousLayout;
+	}
+
+	/**
+	 * Stops the asynchronous layout currently running, if any. Its results
+	 * are discarded.
+	 */
+	public void cancelLayout() {
+		hasQueuedLayout = false;
+		if (runningLayout != null) {
+			runningLayout.canceled = true;
+			runningLayout.algorithm.stop();
+		}
+	}
+
 	/**
 	 * Finds a figure at the location X, Y in the graph
 	 * 
@@ -978,6 +1043,7 @@ public class Graph extends FigureCanvas implements IContainer {
 				.getTargetContainerConnectionFigure();
 		connection.removeFigure();
 		this.getConnections().remove(connection);
+		modificationCount++;
 		figure2ItemMap.remove(figure);
 		if (sourceContainerConnectionFigure != null) {
 			figure2ItemMap.remove(sourceContainerConnectionFigure);
@@ -997,6 +1063,7 @@ public class Graph extends FigureCanvas implements IContainer {
 			}
 		}
 		this.getNodes().remove(node);
+		modificationCount++;
 		if (this.getSelection() != null) {
 			this.getSelection().remove(node);
 		}
@@ -1005,6 +1072,7 @@ public class Graph extends FigureCanvas implements IContainer {
 
 	void addConnection(GraphConnection connection, boolean addToEdgeLayer) {
 		this.getConnections().add(connection);
+		modificationCount++;
 		if (addToEdgeLayer) {
 			zestRootLayer.addConnection(connection.getFigure());
 		}
@@ -1030,11 +1098,20 @@ public class Graph extends FigureCanvas implements IContainer {
 
 	void addNode(GraphNode node) {
 		this.getNodes().add(node);
+		modificationCount++;
 		zestRootLayer.addNode(node.getFigure());
 	}
 
+	/**
+	 * Called when a node has been moved or resized.
+	 */
+	void nodeMoved(GraphNode node) {
+		modificationCount++;
+	}
+
 	void addNode(GraphContainer graphContainer) {
 		this.getNodes().add(graphContainer);
+		modificationCount++;
 		zestRootLayer.addNode(graphContainer.getFigure());
 
 	}
@@ -1103,6 +1180,15 @@ public class Graph extends FigureCanvas implements IContainer {
 			return;
 		}
 
+		if (runningLayout != null) {
+			// the algorithm can only run once at a time, so stop the running
+			// layout and start again once it has ended
+			hasQueuedLayout = true;
+			runningLayout.canceled = true;
+			runningLayout.algorithm.stop();
+			return;
+		}
+
 		int layoutStyle = 0;
 
 		if ((nodeStyle & ZestStyles.NODES_NO_LAYOUT_RESIZE) > 0) {
@@ -1133,6 +1219,12 @@ public class Graph extends FigureCanvas implements IContainer {
 		LayoutRelationship[] connectionsToLayout = getConnectionsToLayout(nodes);
 		LayoutEntity[] nodesToLayout = getNodesToLayout(getNodes());
 
+		if (asynchronousLayout
+				&& applyLayoutAsynchronously(nodesToLayout,
+						connectionsToLayout, d)) {
+			return;
+		}
+
 		try {
 			if ((nodeStyle & ZestStyles.NODES_NO_LAYOUT_ANIMATION) == 0) {
 				Animation.markBegin();
@@ -1150,6 +1242,100 @@ public class Graph extends FigureCanvas implements IContainer {
 
 	}
 
+	/**
+	 * Starts laying out a snapshot of the given nodes and connections on a
+	 * separate thread.
+	 * 
+	 * @return <code>false</code> if the layout algorithm cannot run
+	 *         asynchronously
+	 */
+	private boolean applyLayoutAsynchronously(LayoutEntity[] nodesToLayout,
+			LayoutRelationship[] connectionsToLayout, Dimension d) {
+		LayoutSnapshot snapshot = new LayoutSnapshot(nodesToLayout,
+				connectionsToLayout);
+		AsynchronousLayout layout = new AsynchronousLayout(layoutAlgorithm,
+				snapshot);
+		layoutAlgorithm.addProgressListener(layout);
+		runningLayout = layout;
+		try {
+			layoutAlgorithm.applyLayout(snapshot.getEntities(),
+					snapshot.getRelationships(), 0, 0, d.width, d.height,
+					true, false);
+			return true;
+		} catch (InvalidLayoutConfiguration e) {
+			layoutAlgorithm.removeProgressListener(layout);
+			runningLayout = null;
+			return false;
+		}
+	}
+
+	/**
+	 * Applies the results of an asynchronous layout which has ended, unless
+	 * it was canceled, it failed or the graph has changed since it started.
+	 */
+	private void asynchronousLayoutEnded(AsynchronousLayout layout) {
+		if (layout != runningLayout) {
+			return;
+		}
+		layout.algorithm.removeProgressListener(layout);
+		runningLayout = null;
+		if (isDisposed()) {
+			return;
+		}
+		if (!layout.canceled && !layout.failed
+				&& layout.modificationCount == modificationCount) {
+			if ((nodeStyle & ZestStyles.NODES_NO_LAYOUT_ANIMATION) == 0) {
+				Animation.markBegin();
+			}
+			layout.snapshot.apply();
+			if ((nodeStyle & ZestStyles.NODES_NO_LAYOUT_ANIMATION) == 0) {
+				Animation.run(ANIMATION_TIME);
+			}
+			getLightweightSystem().getUpdateManager().performUpdate();
+		}
+		if (hasQueuedLayout) {
+			hasQueuedLayout = false;
+			applyLayoutInternal();
+		}
+	}
+
+	/**
+	 * A layout running on a separate thread. Once it has ended, its results
+	 * are passed back to the display thread.
+	 */
+	private class AsynchronousLayout implements ProgressListener {
+		final LayoutAlgorithm algorithm;
+		final LayoutSnapshot snapshot;
+		final int modificationCount = Graph.this.modificationCount;
+		final Display display = getDisplay();
+		boolean canceled;
+		boolean failed;
+
+		AsynchronousLayout(LayoutAlgorithm algorithm, LayoutSnapshot snapshot) {
+			this.algorithm = algorithm;
+			this.snapshot = snapshot;
+		}
+
+		public void progressStarted(ProgressEvent e) {
+		}
+
+		public void progressUpdated(ProgressEvent e) {
+		}
+
+		public void progressEnded(ProgressEvent e) {
+			// the snapshot of a failed layout may only be partially laid out
+			failed = algorithm instanceof AbstractLayoutAlgorithm
+					&& ((AbstractLayoutAlgorithm) algorithm).hasLayoutFailed();
+			if (!display.isDisposed()) {
+				display.asyncExec(new Runnable() {
+					public void run() {
+						asynchronousLayoutEnded(AsynchronousLayout.this);
+					}
+				});
+			}
+		}
+	}
+
 	interface MyRunnable extends Runnable {
 		public boolean isVisible();
 	}
@@ -268,6 +268,7 @@ public class GraphNode extends GraphItem {
 	public void setLocation(double x, double y) {
 		currentLocation.x = (int) x;
 		currentLocation.y = (int) y;
+		graph.nodeMoved(this);
 		refreshLocation();
 	}
 
@@ -624,6 +625,7 @@ public class GraphNode extends GraphItem {
 		if ((width != size.width) || (height != size.height)) {
 			size.width = (int) width;
 			size.height = (int) height;
+			graph.nodeMoved(this);
 			refreshLocation();
 		}
 	}
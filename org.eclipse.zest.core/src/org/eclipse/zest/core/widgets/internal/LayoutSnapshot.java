@@ -0,0 +1,254 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.zest.core.widgets.internal;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.zest.layouts.LayoutBendPoint;
+import org.eclipse.zest.layouts.LayoutEntity;
+import org.eclipse.zest.layouts.LayoutRelationship;
+import org.eclipse.zest.layouts.constraints.BasicEdgeConstraints;
+import org.eclipse.zest.layouts.constraints.BasicEntityConstraint;
+import org.eclipse.zest.layouts.constraints.LayoutConstraint;
+
+/**
+ * A copy of the entities and relationships of a graph, which a layout
+ * algorithm can lay out on another thread. The snapshot is taken on the
+ * display thread, copying the location and size of every entity and the
+ * basic layout constraints of every entity and relationship. The layout
+ * algorithm then only works with the copies, and the computed locations and
+ * sizes are copied back to the graph by {@link #apply()}, again on the display
+ * thread.
+ * <p>
+ * Layout constraints other than {@link BasicEntityConstraint} and
+ * {@link BasicEdgeConstraints} are not populated, since the graph's constraint
+ * adapters may only be called on the display thread.
+ */
+public class LayoutSnapshot {
+
+	private final LayoutEntity[] sources;
+	private final EntitySnapshot[] entities;
+	private final RelationshipSnapshot[] relationships;
+
+	/**
+	 * Takes a snapshot of the given entities, and of the relationships between
+	 * them.
+	 *
+	 * @param entities
+	 *            the entities to lay out
+	 * @param relationships
+	 *            the relationships to consider
+	 */
+	public LayoutSnapshot(LayoutEntity[] entities,
+			LayoutRelationship[] relationships) {
+		this.sources = entities;
+		this.entities = new EntitySnapshot[entities.length];
+		Map copies = new HashMap(entities.length * 2);
+		for (int i = 0; i < entities.length; i++) {
+			this.entities[i] = new EntitySnapshot(entities[i]);
+			copies.put(entities[i], this.entities[i]);
+		}
+		List copiedRelationships = new ArrayList(relationships.length);
+		for (int i = 0; i < relationships.length; i++) {
+			EntitySnapshot source = (EntitySnapshot) copies
+					.get(relationships[i].getSourceInLayout());
+			EntitySnapshot destination = (EntitySnapshot) copies
+					.get(relationships[i].getDestinationInLayout());
+			if (source != null && destination != null) {
+				copiedRelationships.add(new RelationshipSnapshot(
+						relationships[i], source, destination));
+			}
+		}
+		this.relationships = (RelationshipSnapshot[]) copiedRelationships
+				.toArray(new RelationshipSnapshot[copiedRelationships.size()]);
+	}
+
+	/**
+	 * Returns the copies of the entities, to be laid out.
+	 *
+	 * @return the copied entities
+	 */
+	public LayoutEntity[] getEntities() {
+		return entities;
+	}
+
+	/**
+	 * Returns the copies of the relationships, to be considered by the
+	 * layout.
+	 *
+	 * @return the copied relationships
+	 */
+	public LayoutRelationship[] getRelationships() {
+		return relationships;
+	}
+
+	/**
+	 * Sets the locations and sizes computed by the layout on the entities the
+	 * snapshot was taken of. Only the locations and sizes which the layout
+	 * set are applied.
+	 */
+	public void apply() {
+		for (int i = 0; i < entities.length; i++) {
+			EntitySnapshot entity = entities[i];
+			if (entity.moved) {
+				sources[i].setLocationInLayout(entity.x, entity.y);
+			}
+			if (entity.resized) {
+				sources[i].setSizeInLayout(entity.width, entity.height);
+			}
+		}
+	}
+
+	private static class EntitySnapshot implements LayoutEntity {
+
+		private final Object graphData;
+		private final String text;
+		private final BasicEntityConstraint constraint = new BasicEntityConstraint();
+		private double x, y, width, height;
+		private boolean moved, resized;
+		private Object layoutInformation;
+
+		EntitySnapshot(LayoutEntity entity) {
+			graphData = entity.getGraphData();
+			text = entity.toString();
+			x = entity.getXInLayout();
+			y = entity.getYInLayout();
+			width = entity.getWidthInLayout();
+			height = entity.getHeightInLayout();
+			entity.populateLayoutConstraint(constraint);
+		}
+
+		public int compareTo(Object o) {
+			if (text != null && o instanceof EntitySnapshot
+					&& ((EntitySnapshot) o).text != null) {
+				return text.compareTo(((EntitySnapshot) o).text);
+			}
+			return 0;
+		}
+
+		public Object getGraphData() {
+			return graphData;
+		}
+
+		public double getHeightInLayout() {
+			return height;
+		}
+
+		public Object getLayoutInformation() {
+			return layoutInformation;
+		}
+
+		public double getWidthInLayout() {
+			return width;
+		}
+
+		public double getXInLayout() {
+			return x;
+		}
+
+		public double getYInLayout() {
+			return y;
+		}
+
+		public void populateLayoutConstraint(LayoutConstraint constraint) {
+			if (constraint instanceof BasicEntityConstraint) {
+				BasicEntityConstraint basic = (BasicEntityConstraint) constraint;
+				basic.hasPreferredLocation = this.constraint.hasPreferredLocation;
+				basic.preferredX = this.constraint.preferredX;
+				basic.preferredY = this.constraint.preferredY;
+				basic.hasPreferredSize = this.constraint.hasPreferredSize;
+				basic.preferredWidth = this.constraint.preferredWidth;
+				basic.preferredHeight = this.constraint.preferredHeight;
+			}
+		}
+
+		public void setGraphData(Object o) {
+		}
+
+		public void setLayoutInformation(Object internalEntity) {
+			layoutInformation = internalEntity;
+		}
+
+		public void setLocationInLayout(double x, double y) {
+			this.x = x;
+			this.y = y;
+			moved = true;
+		}
+
+		public void setSizeInLayout(double width, double height) {
+			this.width = width;
+			this.height = height;
+			resized = true;
+		}
+
+		public String toString() {
+			return text;
+		}
+
+	}
+
+	private static class RelationshipSnapshot implements LayoutRelationship {
+
+		private final Object graphData;
+		private final EntitySnapshot source, destination;
+		private final BasicEdgeConstraints constraint = new BasicEdgeConstraints();
+		private Object layoutInformation;
+
+		RelationshipSnapshot(LayoutRelationship relationship,
+				EntitySnapshot source, EntitySnapshot destination) {
+			graphData = relationship.getGraphData();
+			this.source = source;
+			this.destination = destination;
+			relationship.populateLayoutConstraint(constraint);
+		}
+
+		public void clearBendPoints() {
+		}
+
+		public LayoutEntity getDestinationInLayout() {
+			return destination;
+		}
+
+		public Object getGraphData() {
+			return graphData;
+		}
+
+		public Object getLayoutInformation() {
+			return layoutInformation;
+		}
+
+		public LayoutEntity getSourceInLayout() {
+			return source;
+		}
+
+		public void populateLayoutConstraint(LayoutConstraint constraint) {
+			if (constraint instanceof BasicEdgeConstraints) {
+				BasicEdgeConstraints basic = (BasicEdgeConstraints) constraint;
+				basic.isBiDirectional = this.constraint.isBiDirectional;
+				basic.weight = this.constraint.weight;
+			}
+		}
+
+		public void setBendPoints(LayoutBendPoint[] bendPoints) {
+		}
+
+		public void setGraphData(Object o) {
+		}
+
+		public void setLayoutInformation(Object layoutInformation) {
+			this.layoutInformation = layoutInformation;
+		}
+
+	}
+
+}
@@ -15,8 +15,11 @@ import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
 import org.eclipse.zest.layouts.Filter;
 import org.eclipse.zest.layouts.InvalidLayoutConfiguration;
@@ -60,6 +63,7 @@ public abstract class AbstractLayoutAlgorithm implements LayoutAlgorithm, Stoppa
 	private final static int MIN_TIME_DELAY_BETWEEN_PROGRESS_EVENTS = 1;
 
 	private Thread creationThread = null;
+	private Thread layoutThread = null;
 	protected Comparator comparator;
 	protected Filter filter;
 	private List progressListeners;
@@ -87,6 +91,12 @@ public abstract class AbstractLayoutAlgorithm implements LayoutAlgorithm, Stoppa
 	 */
 	private InternalNode[] internalNodes;
 	private InternalRelationship[] internalRelationships;
+
+	/**
+	 * The entities which keep their locations in the running incremental
+	 * layout, or <code>null</code>.
+	 */
+	private Set pinnedNodes;
 	private double internalX;
 	private double internalY;
 	private double internalWidth;
@@ -110,7 +120,9 @@ public abstract class AbstractLayoutAlgorithm implements LayoutAlgorithm, Stoppa
 
 	//protected boolean cancelled = false;
 
-	protected boolean layoutStopped = true;
+	protected volatile boolean layoutStopped = true;
+
+	private volatile boolean layoutFailed = false;
 
 	protected int layout_styles = 0;
 
@@ -353,12 +365,29 @@ public abstract class AbstractLayoutAlgorithm implements LayoutAlgorithm, Stoppa
 		return !layoutStopped;
 	}
 
+	/**
+	 * Returns true if the last asynchronous layout ended with an exception
+	 * instead of completing, in which case its entities may only have been
+	 * partially laid out.
+	 * @return boolean if the last asynchronous layout failed
+	 */
+	public boolean hasLayoutFailed() {
+		return layoutFailed;
+	}
+
 	/**
 	 * Stops the current layout from running.
 	 * All layout algorithms should constantly check isLayoutRunning
+	 * <p>
+	 * If an asynchronous layout is running on another thread, it is only asked
+	 * to stop. It finishes on its own thread, and notifies the progress
+	 * listeners when it has ended.
 	 */
 	public synchronized void stop() {
 		layoutStopped = true;
+		if (layoutThread != null && layoutThread != Thread.currentThread()) {
+			return;
+		}
 		postLayoutAlgorithm(internalNodes, internalRelationships);
 		fireProgressEnded(getTotalNumberOfLayoutSteps());
 	}
@@ -451,25 +480,41 @@ public abstract class AbstractLayoutAlgorithm implements LayoutAlgorithm, Stoppa
 		clearBendPoints(relationshipsToConsider);
 
 		this.layoutStopped = false;
+		this.layoutFailed = false;
 
 		// when an algorithm starts, reset the progress event
 		lastProgressEventFired = Calendar.getInstance();
 		if (asynchronous) {
 
-			Thread thread = new Thread(new Runnable() {
+			layoutThread = new Thread(new Runnable() {
 
 				public void run() {
-					setupLayout(entitiesToLayout, relationshipsToConsider, x, y, width, height);
-					preLayoutAlgorithm(internalNodes, internalRelationships, internalX, internalY, internalWidth, internalHeight);
-					fireProgressStarted(getTotalNumberOfLayoutSteps());
-
-					applyLayoutInternal(internalNodes, internalRelationships, internalX, internalY, internalWidth, internalHeight);
-					stop();
+					boolean completed = false;
+					try {
+						setupLayout(entitiesToLayout, relationshipsToConsider, x, y, width, height);
+						preLayoutAlgorithm(internalNodes, internalRelationships, internalX, internalY, internalWidth, internalHeight);
+						fireProgressStarted(getTotalNumberOfLayoutSteps());
+
+						applyLayoutInternal(internalNodes, internalRelationships, internalX, internalY, internalWidth, internalHeight);
+						completed = true;
+					} finally {
+						synchronized (AbstractLayoutAlgorithm.this) {
+							layoutThread = null;
+						}
+						if (completed) {
+							stop();
+						} else {
+							// let the listeners know the layout will not complete
+							layoutFailed = true;
+							layoutStopped = true;
+							fireProgressEnded(getTotalNumberOfLayoutSteps());
+						}
+					}
 				}
 
 			});
-			thread.setPriority(Thread.MIN_PRIORITY);
-			thread.start();
+			layoutThread.setPriority(Thread.MIN_PRIORITY);
+			layoutThread.start();
 		} else {
 
 			// If we are running synchronously then we have to stop this at some
@@ -484,6 +529,168 @@ public abstract class AbstractLayoutAlgorithm implements LayoutAlgorithm, Stoppa
 
 	}
 
+	/**
+	 * Applies the layout to the given entities, leaving every entity which is
+	 * not in <code>changedEntities</code> where it is. Only the changed
+	 * entities are moved, to places chosen around the entities which stay, so
+	 * a graph which gained a few entities keeps its shape. If the
+	 * neighbourhood of a change should be laid out again as well, its
+	 * entities should be included in <code>changedEntities</code>.
+	 * <p>
+	 * The layout runs synchronously. If no entity stays in place, all of them
+	 * are laid out as by
+	 * {@link #applyLayout(LayoutEntity[], LayoutRelationship[], double, double, double, double, boolean, boolean)}.
+	 * 
+	 * @param entitiesToLayout Apply the algorithm to these entities
+	 * @param relationshipsToConsider Only consider these relationships when applying the algorithm.
+	 * @param changedEntities The entities which may be moved
+	 * @param x The left side of the bounds in which the layout can place the entities.
+	 * @param y The top side of the bounds in which the layout can place the entities.
+	 * @param width The width of the bounds in which the layout can place the entities.
+	 * @param height The height of the bounds in which the layout can place the entities.
+	 */
+	public synchronized void applyLayoutIncrementally(LayoutEntity[] entitiesToLayout, LayoutRelationship[] relationshipsToConsider, LayoutEntity[] changedEntities, double x, double y, double width, double height) throws InvalidLayoutConfiguration {
+		checkThread();
+		this.internalAsynchronous = false;
+		this.internalContinuous = false;
+
+		if (!isValidConfiguration(false, false)) {
+			throw new InvalidLayoutConfiguration();
+		}
+
+		clearBendPoints(relationshipsToConsider);
+
+		this.layoutStopped = false;
+
+		// when an algorithm starts, reset the progress event
+		lastProgressEventFired = Calendar.getInstance();
+
+		setupLayout(entitiesToLayout, relationshipsToConsider, x, y, width, height);
+		Set changed = new HashSet(Arrays.asList(changedEntities));
+		pinnedNodes = new HashSet();
+		for (int i = 0; i < internalNodes.length; i++) {
+			if (!changed.contains(internalNodes[i].getLayoutEntity())) {
+				pinnedNodes.add(internalNodes[i]);
+			}
+		}
+		try {
+			preLayoutAlgorithm(internalNodes, internalRelationships, internalX, internalY, internalWidth, internalHeight);
+			fireProgressStarted(getTotalNumberOfLayoutSteps());
+
+			if (pinnedNodes.isEmpty()) {
+				applyLayoutInternal(internalNodes, internalRelationships, internalX, internalY, internalWidth, internalHeight);
+			} else {
+				applyLayoutIncrementallyInternal(internalNodes, internalRelationships, internalX, internalY, internalWidth, internalHeight);
+			}
+			layoutStopped = true;
+			postLayoutAlgorithm(internalNodes, internalRelationships);
+			if (!pinnedNodes.isEmpty()) {
+				placeChangedEntities(internalNodes);
+			}
+			fireProgressEnded(getTotalNumberOfLayoutSteps());
+		} finally {
+			layoutStopped = true;
+			pinnedNodes = null;
+		}
+	}
+
+	/**
+	 * Computes the layout of an incremental layout, in which the entities for
+	 * which {@link #isPinned(InternalNode)} returns true must keep their
+	 * locations. This is called between {@link #preLayoutAlgorithm} and
+	 * {@link #postLayoutAlgorithm}, in place of {@link #applyLayoutInternal}.
+	 * <p>
+	 * By default this lays out all the entities, without updating the pinned
+	 * ones, and {@link #placeChangedEntities(InternalNode[])} then fits the
+	 * result to the pinned entities. Algorithms which can use the locations of
+	 * the pinned entities should override this, and leave the internal
+	 * locations of the pinned entities unchanged.
+	 */
+	protected void applyLayoutIncrementallyInternal(InternalNode[] entitiesToLayout, InternalRelationship[] relationshipsToConsider, double boundsX, double boundsY, double boundsWidth, double boundsHeight) {
+		applyLayoutInternal(entitiesToLayout, relationshipsToConsider, boundsX, boundsY, boundsWidth, boundsHeight);
+	}
+
+	/**
+	 * Moves the changed entities of an incremental layout to their final
+	 * locations, once {@link #postLayoutAlgorithm} has run. By default the
+	 * computed locations are scaled and translated by
+	 * {@link #fitToPinnedEntities(InternalNode[])}, which leaves them as they
+	 * are if the internal locations of the pinned entities were not changed.
+	 */
+	protected void placeChangedEntities(InternalNode[] entitiesToLayout) {
+		double[] fit = fitToPinnedEntities(entitiesToLayout);
+		for (int i = 0; i < entitiesToLayout.length; i++) {
+			InternalNode node = entitiesToLayout[i];
+			if (!isPinned(node)) {
+				node.setInternalLocation(fit[0] * node.getInternalX() + fit[1], fit[2] * node.getInternalY() + fit[3]);
+			}
+		}
+		updateLayoutLocations(entitiesToLayout);
+	}
+
+	/**
+	 * Finds the scale and translation which best map the internal locations
+	 * of the pinned entities to their current locations, in the least squares
+	 * sense. An axis along which the pinned entities do not spread is only
+	 * translated.
+	 * 
+	 * @return the scale and translation along the x axis, followed by those
+	 *         along the y axis
+	 */
+	protected double[] fitToPinnedEntities(InternalNode[] entitiesToLayout) {
+		int count = 0;
+		double newX = 0, newY = 0, oldX = 0, oldY = 0;
+		for (int i = 0; i < entitiesToLayout.length; i++) {
+			InternalNode node = entitiesToLayout[i];
+			if (isPinned(node)) {
+				newX += node.getInternalX();
+				newY += node.getInternalY();
+				oldX += node.getCurrentX();
+				oldY += node.getCurrentY();
+				count++;
+			}
+		}
+		double[] fit = { 1, 0, 1, 0 };
+		if (count == 0) {
+			return fit;
+		}
+		newX /= count;
+		newY /= count;
+		oldX /= count;
+		oldY /= count;
+		double productX = 0, productY = 0, varianceX = 0, varianceY = 0;
+		for (int i = 0; i < entitiesToLayout.length; i++) {
+			InternalNode node = entitiesToLayout[i];
+			if (isPinned(node)) {
+				double dx = node.getInternalX() - newX;
+				double dy = node.getInternalY() - newY;
+				productX += dx * (node.getCurrentX() - oldX);
+				productY += dy * (node.getCurrentY() - oldY);
+				varianceX += dx * dx;
+				varianceY += dy * dy;
+			}
+		}
+		if (varianceX > 0) {
+			fit[0] = productX / varianceX;
+		}
+		if (varianceY > 0) {
+			fit[2] = productY / varianceY;
+		}
+		fit[1] = oldX - fit[0] * newX;
+		fit[3] = oldY - fit[2] * newY;
+		return fit;
+	}
+
+	/**
+	 * Returns whether the given entity must keep its location, because an
+	 * incremental layout is running and the entity has not changed.
+	 * 
+	 * @see #applyLayoutIncrementally(LayoutEntity[], LayoutRelationship[], LayoutEntity[], double, double, double, double)
+	 */
+	protected boolean isPinned(InternalNode node) {
+		return pinnedNodes != null && pinnedNodes.contains(node);
+	}
+
 	/**
 	 * Clear out all old bend points before doing a layout
 	 */
@@ -618,22 +825,13 @@ public abstract class AbstractLayoutAlgorithm implements LayoutAlgorithm, Stoppa
 	 */
 	public static boolean verifyInput(LayoutEntity[] entitiesToLayout, LayoutRelationship[] relationshipsToConsider) {
 		boolean stillValid = true;
+		Set entities = new HashSet(Arrays.asList(entitiesToLayout));
 		for (int i = 0; i < relationshipsToConsider.length; i++) {
 			LayoutRelationship relationship = relationshipsToConsider[i];
 			LayoutEntity source = relationship.getSourceInLayout();
 			LayoutEntity destination = relationship.getDestinationInLayout();
-			boolean containsSrc = false;
-			boolean containsDest = false;
-			int j = 0;
-			while (j < entitiesToLayout.length && !(containsSrc && containsDest)) {
-				if (entitiesToLayout[j].equals(source)) {
-					containsSrc = true;
-				}
-				if (entitiesToLayout[j].equals(destination)) {
-					containsDest = true;
-				}
-				j++;
-			}
+			boolean containsSrc = entities.contains(source);
+			boolean containsDest = entities.contains(destination);
 			stillValid = containsSrc && containsDest;
 		}
 		return stillValid;
@@ -905,25 +1103,71 @@ public abstract class AbstractLayoutAlgorithm implements LayoutAlgorithm, Stoppa
 	private DisplayIndependentDimension getMinimumDistance(InternalNode[] entitiesToLayout) {
 		DisplayIndependentDimension horAndVertdistance = new DisplayIndependentDimension(Double.MAX_VALUE, Double.MAX_VALUE);
 		double minDistance = Double.MAX_VALUE; // the minimum distance between all the nodes
-		//TODO: Very Slow!
+		int minFirst = -1, minSecond = -1; // the closest nodes, the lower index first
+
+		// Sweep the nodes from left to right, keeping the nodes less than
+		// minDistance to the left sorted by y. Only those within minDistance
+		// above or below need to be compared with the next node.
+		final double[] xs = new double[entitiesToLayout.length];
+		final double[] ys = new double[entitiesToLayout.length + 1];
+		Integer[] order = new Integer[entitiesToLayout.length];
 		for (int i = 0; i < entitiesToLayout.length; i++) {
-			InternalNode layoutEntity1 = entitiesToLayout[i];
-			double x1 = layoutEntity1.getInternalX();
-			double y1 = layoutEntity1.getInternalY();
-			for (int j = i + 1; j < entitiesToLayout.length; j++) {
-				InternalNode layoutEntity2 = entitiesToLayout[j];
-				double x2 = layoutEntity2.getInternalX();
-				double y2 = layoutEntity2.getInternalY();
+			xs[i] = entitiesToLayout[i].getInternalX();
+			ys[i] = entitiesToLayout[i].getInternalY();
+			order[i] = new Integer(i);
+		}
+		Arrays.sort(order, new Comparator() {
+			public int compare(Object o1, Object o2) {
+				int result = Double.compare(xs[((Integer) o1).intValue()], xs[((Integer) o2).intValue()]);
+				return result != 0 ? result : ((Integer) o1).compareTo((Integer) o2);
+			}
+		});
+		// The last y is used to search the sweep line
+		final Integer probe = new Integer(entitiesToLayout.length);
+		TreeSet sweepLine = new TreeSet(new Comparator() {
+			public int compare(Object o1, Object o2) {
+				int result = Double.compare(ys[((Integer) o1).intValue()], ys[((Integer) o2).intValue()]);
+				if (result != 0)
+					return result;
+				if (o1 == probe || o2 == probe)
+					return o1 == probe ? -1 : 1;
+				return ((Integer) o1).compareTo((Integer) o2);
+			}
+		});
+
+		int left = 0;
+		for (int k = 0; k < order.length; k++) {
+			int j = order[k].intValue();
+			double x2 = xs[j];
+			double y2 = ys[j];
+			while (x2 - xs[order[left].intValue()] > minDistance) {
+				sweepLine.remove(order[left++]);
+			}
+			ys[probe.intValue()] = y2 - minDistance;
+			for (Iterator iter = sweepLine.tailSet(probe).iterator(); iter.hasNext();) {
+				int i = ((Integer) iter.next()).intValue();
+				double x1 = xs[i];
+				double y1 = ys[i];
+				if (y1 - y2 > minDistance) {
+					break;
+				}
 				double distanceX = Math.abs(x1 - x2);
 				double distanceY = Math.abs(y1 - y2);
 				double distance = Math.sqrt(Math.pow(distanceX, 2) + Math.pow(distanceY, 2));
 
-				if (distance < minDistance) {
+				// prefer the first pair in index order, as comparing every
+				// pair would
+				int first = Math.min(i, j);
+				int second = Math.max(i, j);
+				if (distance < minDistance || (distance == minDistance && minFirst != -1 && (first < minFirst || (first == minFirst && second < minSecond)))) {
 					minDistance = distance;
+					minFirst = first;
+					minSecond = second;
 					horAndVertdistance.width = distanceX;
 					horAndVertdistance.height = distanceY;
 				}
 			}
+			sweepLine.add(order[k]);
 		}
 		return horAndVertdistance;
 	}
@@ -967,7 +1211,7 @@ public abstract class AbstractLayoutAlgorithm implements LayoutAlgorithm, Stoppa
 	protected void updateLayoutLocations(InternalNode[] nodes) {
 		for (int i = 0; i < nodes.length; i++) {
 			InternalNode node = nodes[i];
-			if (!node.hasPreferredLocation()) {
+			if (!node.hasPreferredLocation() && !isPinned(node)) {
 				node.setLocation(node.getInternalX(), node.getInternalY());
 
 				if ((layout_styles & LayoutStyles.NO_LAYOUT_NODE_RESIZING) != 1) {
@@ -54,8 +54,9 @@ public class CompositeLayoutAlgorithm extends AbstractLayoutAlgorithm {
 	}
 
 	protected boolean isValidConfiguration(boolean asynchronous, boolean continuous) {
-		// TODO Auto-generated method stub
-		return true;
+		// the algorithms may only be applied on the thread which created them,
+		// so they cannot be applied from a layout thread
+		return !asynchronous;
 	}
 
 	protected void postLayoutAlgorithm(InternalNode[] entitiesToLayout, InternalRelationship[] relationshipsToConsider) {
@@ -132,6 +132,45 @@ public class GridLayoutAlgorithm extends AbstractLayoutAlgorithm {
 		fireProgressEvent(totalProgress, totalProgress);
 	}
 
+	/**
+	 * Leaves the pinned entities where they are, and places the changed
+	 * entities in the first cells of the grid which hold no pinned entity.
+	 * Once the grid is full, further entities are placed in extra rows below.
+	 */
+	protected void applyLayoutIncrementallyInternal(InternalNode[] entitiesToLayout, InternalRelationship[] relationshipsToConsider, double boundsX, double boundsY, double boundsWidth, double boundsHeight) {
+		if (numChildren < 1)
+			return;
+
+		// find the cells which already hold an entity
+		boolean[] occupied = new boolean[rows * cols];
+		for (int i = 0; i < entitiesToLayout.length; i++) {
+			InternalNode sn = entitiesToLayout[i];
+			if (isPinned(sn)) {
+				int col = (int) Math.floor((sn.getInternalX() - boundsX) / colWidth);
+				int row = (int) Math.floor((sn.getInternalY() - boundsY) / rowHeight);
+				if (col >= 0 && col < cols && row >= 0 && row < rows) {
+					occupied[row * cols + col] = true;
+				}
+			}
+		}
+
+		int cell = 0;
+		for (int i = 0; i < entitiesToLayout.length; i++) {
+			InternalNode sn = entitiesToLayout[i];
+			if (isPinned(sn))
+				continue;
+			while (cell < occupied.length && occupied[cell])
+				cell++;
+			double xmove = boundsX + (cell % cols) * colWidth + offsetX;
+			double ymove = boundsY + (cell / cols) * rowHeight + offsetY;
+			sn.setInternalLocation(xmove, ymove);
+			sn.setInternalSize(Math.max(w, MIN_ENTITY_SIZE), Math.max(h, MIN_ENTITY_SIZE));
+			cell++;
+		}
+		updateLayoutLocations(entitiesToLayout);
+		fireProgressEvent(totalProgress, totalProgress);
+	}
+
 	protected void postLayoutAlgorithm(InternalNode[] entitiesToLayout, InternalRelationship[] relationshipsToConsider) {
 
 	}
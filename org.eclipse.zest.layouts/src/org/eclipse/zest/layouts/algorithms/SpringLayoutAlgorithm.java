@@ -9,11 +9,16 @@
  *******************************************************************************/
 package org.eclipse.zest.layouts.algorithms;
 
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Random;
 
 import org.eclipse.zest.layouts.LayoutStyles;
+import org.eclipse.zest.layouts.algorithms.internal.BarnesHutTree;
+import org.eclipse.zest.layouts.algorithms.internal.RepulsionGrid;
+import org.eclipse.zest.layouts.algorithms.internal.WorkerPool;
 import org.eclipse.zest.layouts.dataStructures.DisplayIndependentRectangle;
 import org.eclipse.zest.layouts.dataStructures.InternalNode;
 import org.eclipse.zest.layouts.dataStructures.InternalRelationship;
@@ -31,6 +36,11 @@ import org.eclipse.zest.layouts.dataStructures.InternalRelationship;
  * 4. Execute {@link #compute compute()}; <br>
  * 5. Execute {@link #fitWithinBounds fitWithinBounds(...)}; <br>
  * 6. Query the computed results(node size and node position).
+ * <p>
+ * By default every pair of nodes is compared on each iteration, which takes
+ * O(n<sup>2</sup>) time. For large graphs the repulsion between unrelated
+ * nodes can instead be approximated, see {@link #setRepulsion(int)}, and the
+ * forces can be computed by several threads, see {@link #setThreadCount(int)}.
  * 
  * @version 2.0
  * @author Ian Bull
@@ -85,6 +95,35 @@ public class SpringLayoutAlgorithm extends ContinuousLayoutAlgorithm {
 	 */
 	public static final double DEFAULT_SPRING_GRAVITATION = 1.0f;
 
+	/**
+	 * Repulsion is computed exactly between every pair of nodes. This is the
+	 * default.
+	 */
+	public static final int REPULSION_EXACT = 0;
+
+	/**
+	 * Repulsion is approximated using a quadtree (Barnes-Hut). Groups of
+	 * distant nodes are treated as a single body at their center of mass. See
+	 * {@link #setBarnesHutTheta(double)}.
+	 */
+	public static final int REPULSION_BARNES_HUT = 1;
+
+	/**
+	 * Repulsion is computed only between nodes closer than a cutoff radius,
+	 * found using a grid. See {@link #setRepulsionCutoff(double)}.
+	 */
+	public static final int REPULSION_GRID = 2;
+
+	/**
+	 * The default value for the Barnes-Hut accuracy.
+	 */
+	public static final double DEFAULT_BARNES_HUT_THETA = 0.7;
+
+	/**
+	 * The default value for the repulsion cutoff radius.
+	 */
+	public static final double DEFAULT_REPULSION_CUTOFF = 3.0;
+
 	/**
 	 * The variable can be customized to set the number of iterations used.
 	 */
@@ -140,27 +179,67 @@ public class SpringLayoutAlgorithm extends ContinuousLayoutAlgorithm {
 	private double largestMovement = 0;
 
 	/**
-	 * Maps a src and dest object to the number of relations between them. Key
-	 * is src.toString() + dest.toString(), value is an Integer
+	 * Maps a relationship type to a weight. Key is a string, value is a Double
 	 */
-	private Map srcDestToNumRelsMap;
+	private static Map relTypeToWeightMap = new HashMap();
+
+	private int iteration;
+
+	private int repulsion = REPULSION_EXACT;
+
+	private double theta = DEFAULT_BARNES_HUT_THETA;
+
+	private double cutoff = DEFAULT_REPULSION_CUTOFF;
 
 	/**
-	 * Maps a src and dest object to the average weight of the relations between
-	 * them. Key is src.toString() + dest.toString(), value is a Double
+	 * The related nodes of each node, in compressed form. The nodes related to
+	 * node <code>i</code> with a greater index are stored in
+	 * <code>relatedNodes[relatedStart[i]]</code> to
+	 * <code>relatedNodes[relatedStart[i + 1] - 1]</code>, along with the
+	 * number of relations and their average weight.
 	 */
-	private Map srcDestToRelsAvgWeightMap;
+	private int[] relatedStart;
+
+	private int[] relatedNodes;
+
+	private int[] relatedNumRels;
+
+	private double[] relatedAvgWeight;
 
 	/**
-	 * Maps a relationship type to a weight. Key is a string, value is a Double
+	 * Rows of the relation counts and weights, filled in for one node at a time
+	 * when comparing every pair of nodes.
 	 */
-	private static Map relTypeToWeightMap = new HashMap();
+	private int[] rowNumRels;
 
-	private int iteration;
+	private double[] rowAvgWeight;
+
+	private BarnesHutTree tree;
+
+	private RepulsionGrid grid;
 
-	private int[][] srcDestToNumRels;
+	private int threadCount = 1;
 
-	private double[][] srcDestToRelsAvgWeight;
+	private WorkerPool pool;
+
+	/**
+	 * The exact forces which each thread adds to the nodes after the rows it
+	 * computes, summed in order once all threads have finished.
+	 */
+	private double[][] partForcesX;
+
+	private double[][] partForcesY;
+
+	private int[][] partNumRels;
+
+	private double[][] partAvgWeight;
+
+	/**
+	 * The exact force on each node from the nodes after it.
+	 */
+	private double[] rowForcesX;
+
+	private double[] rowForcesY;
 
 	private double[] tempLocationsX;
 
@@ -181,8 +260,6 @@ public class SpringLayoutAlgorithm extends ContinuousLayoutAlgorithm {
 	 */
 	public SpringLayoutAlgorithm(int styles) {
 		super(styles);
-		srcDestToNumRelsMap = new HashMap();
-		srcDestToRelsAvgWeightMap = new HashMap();
 		date = new Date();
 	}
 
@@ -296,6 +373,106 @@ public class SpringLayoutAlgorithm extends ContinuousLayoutAlgorithm {
 		return sprGravitation;
 	}
 
+	/**
+	 * Sets how the repulsion between nodes is computed. Nodes which are
+	 * related always attract each other exactly; only the repulsion between
+	 * unrelated nodes is approximated, and the approximated results differ from
+	 * the exact ones.
+	 * 
+	 * @param repulsion
+	 *            one of {@link #REPULSION_EXACT},
+	 *            {@link #REPULSION_BARNES_HUT} or {@link #REPULSION_GRID}
+	 */
+	public void setRepulsion(int repulsion) {
+		if (repulsion != REPULSION_EXACT && repulsion != REPULSION_BARNES_HUT
+				&& repulsion != REPULSION_GRID)
+			throw new IllegalArgumentException("Invalid repulsion: " + repulsion);
+		this.repulsion = repulsion;
+	}
+
+	/**
+	 * Returns how the repulsion between nodes is computed.
+	 * 
+	 * @return The repulsion mode.
+	 */
+	public int getRepulsion() {
+		return repulsion;
+	}
+
+	/**
+	 * Sets the accuracy of the {@link #REPULSION_BARNES_HUT} approximation. A
+	 * group of nodes is approximated when the size of its area divided by its
+	 * distance is below theta. <code>0</code> is exact, and larger values are
+	 * faster and less accurate.
+	 * 
+	 * @param theta
+	 *            The Barnes-Hut accuracy.
+	 */
+	public void setBarnesHutTheta(double theta) {
+		if (theta < 0)
+			throw new IllegalArgumentException("Invalid theta: " + theta);
+		this.theta = theta;
+	}
+
+	/**
+	 * Returns the accuracy of the {@link #REPULSION_BARNES_HUT} approximation.
+	 * 
+	 * @return The Barnes-Hut accuracy.
+	 */
+	public double getBarnesHutTheta() {
+		return theta;
+	}
+
+	/**
+	 * Sets the distance beyond which nodes do not repel each other when using
+	 * {@link #REPULSION_GRID}. The distance is in the same units as the
+	 * length-control. In this mode the nodes start spread over an area
+	 * proportional to their number, rather than over a unit square.
+	 * 
+	 * @param cutoff
+	 *            The cutoff radius.
+	 */
+	public void setRepulsionCutoff(double cutoff) {
+		if (!(cutoff > 0))
+			throw new IllegalArgumentException("Invalid cutoff: " + cutoff);
+		this.cutoff = cutoff;
+	}
+
+	/**
+	 * Returns the distance beyond which nodes do not repel each other when
+	 * using {@link #REPULSION_GRID}.
+	 * 
+	 * @return The cutoff radius.
+	 */
+	public double getRepulsionCutoff() {
+		return cutoff;
+	}
+
+	/**
+	 * Sets the number of threads used to compute the forces on the nodes. With
+	 * more than one thread, the exact forces are summed in a different order,
+	 * so the positions can differ from those of a single thread by rounding.
+	 * The same number of threads always gives the same positions. The
+	 * approximated forces are the same for any number of threads.
+	 * 
+	 * @param threads
+	 *            The number of threads, <code>1</code> by default.
+	 */
+	public void setThreadCount(int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("Invalid thread count: " + threads);
+		threadCount = threads;
+	}
+
+	/**
+	 * Returns the number of threads used to compute the forces on the nodes.
+	 * 
+	 * @return The number of threads.
+	 */
+	public int getThreadCount() {
+		return threadCount;
+	}
+
 	/**
 	 * Sets the number of iterations to be used.
 	 * 
@@ -365,9 +542,24 @@ public class SpringLayoutAlgorithm extends ContinuousLayoutAlgorithm {
 		forcesX = null;
 		forcesY = null;
 		anchors = null;
+		relatedStart = null;
+		relatedNodes = null;
+		relatedNumRels = null;
+		relatedAvgWeight = null;
+		rowNumRels = null;
+		rowAvgWeight = null;
+		tree = null;
+		grid = null;
+		if (pool != null)
+			pool.dispose();
+		pool = null;
+		partForcesX = null;
+		partForcesY = null;
+		partNumRels = null;
+		partAvgWeight = null;
+		rowForcesX = null;
+		rowForcesY = null;
 		setDefaultConditions();
-		srcDestToNumRelsMap = new HashMap();
-		srcDestToRelsAvgWeightMap = new HashMap();
 		relTypeToWeightMap = new HashMap();
 	}
 
@@ -388,13 +580,9 @@ public class SpringLayoutAlgorithm extends ContinuousLayoutAlgorithm {
 		for (int i = 0; i < entitiesToLayout.length; i++) {
 			anchors[i] = DEFAULT_ANCHOR;
 		}
-		for (int i = 0; i < relationshipsToConsider.length; i++) {
-			InternalRelationship layoutRelationship = relationshipsToConsider[i];
-			addRelation(layoutRelationship);
-		}
 
 		// do the calculations
-		preCompute(entitiesToLayout);
+		preCompute(entitiesToLayout, relationshipsToConsider);
 		startTime = date.getTime();
 	}
 
@@ -402,64 +590,88 @@ public class SpringLayoutAlgorithm extends ContinuousLayoutAlgorithm {
 		reset(entitiesToLayout);
 	}
 
-	/**
-	 * Adds a simple relation between two nodes to the relation repository.
-	 * 
-	 * @param layoutRelationship
-	 *            The simple relation to be added
-	 * @throws java.lang.NullPointerExcetption
-	 *             If <code>sr</code> is null
-	 * @see SimpleRelation
-	 */
-	private void addRelation(InternalRelationship layoutRelationship) {
-		if (layoutRelationship == null) {
-			throw new IllegalArgumentException("The arguments can not be null!");
-		} else {
-			double weight = layoutRelationship.getWeight();
-			weight = (weight <= 0 ? 0.1 : weight);
-			String key1 = layoutRelationship.getSource().toString() + layoutRelationship.getDestination().toString();
-			String key2 = layoutRelationship.getDestination().toString() + layoutRelationship.getSource().toString();
-			String[] keys = { key1, key2 };
-			for (int i = 0; i < keys.length; i++) {
-				String key = keys[i];
-				Integer count = (Integer) srcDestToNumRelsMap.get(key);
-				Double avgWeight = (Double) srcDestToRelsAvgWeightMap.get(key);
-				if (count == null) {
-					count = new Integer(1);
-					avgWeight = new Double(weight);
-				} else {
-					int newCount = count.intValue() + 1;
-					double newAverage = (avgWeight.doubleValue() * count.doubleValue() + weight) / newCount;
-					avgWeight = new Double(newAverage);
-					count = new Integer(newCount);
-				}
-				srcDestToNumRelsMap.put(key, count);
-				srcDestToRelsAvgWeightMap.put(key, avgWeight);
-			}
-		}
-	}
-
-	private void preCompute(InternalNode[] entitiesToLayout) {
-		// count number of relationships between all nodes and the average
+	private void preCompute(InternalNode[] entitiesToLayout, InternalRelationship[] relationshipsToConsider) {
+		// count number of relationships between related nodes and the average
 		// weight between them
-		srcDestToNumRels = new int[entitiesToLayout.length][entitiesToLayout.length];
-		srcDestToRelsAvgWeight = new double[entitiesToLayout.length][entitiesToLayout.length];
+		int n = entitiesToLayout.length;
+		Map indices = new HashMap(n * 2);
+		for (int i = 0; i < n; i++) {
+			indices.put(entitiesToLayout[i], new Integer(i));
+		}
 
-		for (int i = 0; i < entitiesToLayout.length - 1; i++) {
-			InternalNode layoutEntity1 = entitiesToLayout[i];
-			for (int j = i + 1; j < entitiesToLayout.length; j++) {
-				InternalNode layoutEntity2 = entitiesToLayout[j];
-				srcDestToNumRels[i][j] = numRelations(layoutEntity1, layoutEntity2);
-				srcDestToNumRels[i][j] += numRelations(layoutEntity2, layoutEntity1);
-				srcDestToRelsAvgWeight[i][j] = avgWeight(layoutEntity1, layoutEntity2);
+		// find each related pair once, ordered by the lower index
+		int[] lows = new int[relationshipsToConsider.length];
+		int[] highs = new int[relationshipsToConsider.length];
+		long[] pairs = new long[relationshipsToConsider.length];
+		int pairCount = 0;
+		for (int i = 0; i < relationshipsToConsider.length; i++) {
+			InternalRelationship layoutRelationship = relationshipsToConsider[i];
+			if (layoutRelationship == null)
+				throw new IllegalArgumentException("The arguments can not be null!");
+			Integer source = (Integer) indices.get(layoutRelationship.getSource());
+			Integer destination = (Integer) indices.get(layoutRelationship.getDestination());
+			if (source == null || destination == null || source.equals(destination)) {
+				lows[i] = -1;
+				continue;
 			}
+			lows[i] = Math.min(source.intValue(), destination.intValue());
+			highs[i] = Math.max(source.intValue(), destination.intValue());
+			pairs[pairCount++] = (long) lows[i] * n + highs[i];
+		}
+		Arrays.sort(pairs, 0, pairCount);
+
+		relatedStart = new int[n + 1];
+		relatedNodes = new int[pairCount];
+		relatedNumRels = new int[pairCount];
+		relatedAvgWeight = new double[pairCount];
+		int count = 0;
+		for (int i = 0; i < pairCount; i++) {
+			if (i > 0 && pairs[i] == pairs[i - 1])
+				continue;
+			relatedStart[(int) (pairs[i] / n) + 1]++;
+			relatedNodes[count++] = (int) (pairs[i] % n);
+		}
+		for (int i = 0; i < n; i++) {
+			relatedStart[i + 1] += relatedStart[i];
 		}
 
+		// accumulate the relations in their given order, averaging the
+		// weights as each one is added
+		for (int i = 0; i < relationshipsToConsider.length; i++) {
+			if (lows[i] == -1)
+				continue;
+			int k = findRelated(lows[i], highs[i]);
+			double weight = relationshipsToConsider[i].getWeight();
+			weight = (weight <= 0 ? 0.1 : weight);
+			int relations = relatedNumRels[k];
+			if (relations == 0)
+				relatedAvgWeight[k] = weight;
+			else
+				relatedAvgWeight[k] = (relatedAvgWeight[k] * relations + weight) / (relations + 1);
+			relatedNumRels[k] = relations + 1;
+		}
+		// each relation is counted once from either of its nodes
+		for (int k = 0; k < count; k++) {
+			relatedNumRels[k] *= 2;
+		}
+		rowNumRels = new int[n];
+		rowAvgWeight = new double[n];
+
 		if (sprRandom)
 			placeRandomly(entitiesToLayout); // put vertices in random places
 		else
 			convertToUnitCoordinates(entitiesToLayout);
 
+		if (repulsion == REPULSION_GRID) {
+			// a cutoff only saves work once the nodes are spread out, so start
+			// with about one node per unit of area
+			double scale = Math.sqrt(n) * sprLength;
+			for (int i = 0; i < n; i++) {
+				tempLocationsX[i] *= scale;
+				tempLocationsY[i] *= scale;
+			}
+		}
+
 		iteration = 1;
 		largestMovement = Double.MAX_VALUE;
 	}
@@ -574,6 +786,100 @@ public class SpringLayoutAlgorithm extends ContinuousLayoutAlgorithm {
 		iteration++;
 	}
 
+	/**
+	 * Relaxes only the changed entities, starting each one next to its pinned
+	 * neighbours. The pinned entities are anchored where they are, and the
+	 * layout is not scaled to the bounds, so that they keep their locations.
+	 */
+	protected void applyLayoutIncrementallyInternal(InternalNode[] entitiesToLayout, InternalRelationship[] relationshipsToConsider, double x, double y, double width, double height) {
+		int n = entitiesToLayout.length;
+		boolean[] pinned = new boolean[n];
+		double minX = Double.MAX_VALUE;
+		double maxX = -Double.MAX_VALUE;
+		double minY = Double.MAX_VALUE;
+		double maxY = -Double.MAX_VALUE;
+		for (int i = 0; i < n; i++) {
+			pinned[i] = isPinned(entitiesToLayout[i]);
+			if (pinned[i]) {
+				minX = Math.min(minX, entitiesToLayout[i].getInternalX());
+				minY = Math.min(minY, entitiesToLayout[i].getInternalY());
+				maxX = Math.max(maxX, entitiesToLayout[i].getInternalX());
+				maxY = Math.max(maxY, entitiesToLayout[i].getInternalY());
+			}
+		}
+		double spanX = maxX - minX > EPSILON ? maxX - minX : width;
+		double spanY = maxY - minY > EPSILON ? maxY - minY : height;
+		double scale = repulsion == REPULSION_GRID ? Math.sqrt(n) * sprLength : 1;
+
+		// the pinned entities span the unit square, as in a full layout
+		for (int i = 0; i < n; i++) {
+			if (pinned[i]) {
+				tempLocationsX[i] = (entitiesToLayout[i].getInternalX() - minX) / spanX * scale;
+				tempLocationsY[i] = (entitiesToLayout[i].getInternalY() - minY) / spanY * scale;
+				anchors[i] = true;
+			} else {
+				tempLocationsX[i] = 0;
+				tempLocationsY[i] = 0;
+			}
+		}
+
+		// start the changed entities at the centre of their pinned neighbours,
+		// the same way each time unless random placement is wanted
+		Random random = sprRandom ? new Random() : new Random(n);
+		int[] neighbours = new int[n];
+		for (int i = 0; i < n; i++) {
+			for (int k = relatedStart[i]; k < relatedStart[i + 1]; k++) {
+				int j = relatedNodes[k];
+				if (pinned[i] && !pinned[j]) {
+					tempLocationsX[j] += tempLocationsX[i];
+					tempLocationsY[j] += tempLocationsY[i];
+					neighbours[j]++;
+				} else if (pinned[j] && !pinned[i]) {
+					tempLocationsX[i] += tempLocationsX[j];
+					tempLocationsY[i] += tempLocationsY[j];
+					neighbours[i]++;
+				}
+			}
+		}
+		for (int i = 0; i < n; i++) {
+			if (pinned[i]) {
+				continue;
+			} else if (neighbours[i] > 0) {
+				// spread entities sharing the same neighbours apart
+				tempLocationsX[i] = tempLocationsX[i] / neighbours[i] + (random.nextDouble() - 0.5) * 0.1 * scale;
+				tempLocationsY[i] = tempLocationsY[i] / neighbours[i] + (random.nextDouble() - 0.5) * 0.1 * scale;
+			} else {
+				tempLocationsX[i] = random.nextDouble() * scale;
+				tempLocationsY[i] = random.nextDouble() * scale;
+			}
+		}
+
+		while (!layoutStopped && performAnotherNonContinuousIteration()) {
+			computeForces(entitiesToLayout);
+			largestMovement = Double.MAX_VALUE;
+			computePositions(entitiesToLayout);
+			iteration++;
+			fireProgressEvent(getCurrentLayoutStep(), getTotalNumberOfLayoutSteps());
+		}
+
+		// map the changed entities back, keeping their sizes and keeping them
+		// within the bounds
+		for (int i = 0; i < n; i++) {
+			if (!pinned[i]) {
+				InternalNode entity = entitiesToLayout[i];
+				double entityWidth = entity.getWidthInLayout();
+				double entityHeight = entity.getHeightInLayout();
+				double px = minX + tempLocationsX[i] / scale * spanX;
+				double py = minY + tempLocationsY[i] / scale * spanY;
+				px = Math.max(x, Math.min(px, x + Math.max(0, width - entityWidth)));
+				py = Math.max(y, Math.min(py, y + Math.max(0, height - entityHeight)));
+				entity.setInternalLocation(px, py);
+				entity.setInternalSize(entityWidth, entityHeight);
+			}
+		}
+		updateLayoutLocations(entitiesToLayout);
+	}
+
 	/**
 	 * Puts vertices in random places, all between (0,0) and (1,1).
 	 */
@@ -615,7 +921,23 @@ public class SpringLayoutAlgorithm extends ContinuousLayoutAlgorithm {
 			forcesY[i] = 0.0;
 		}
 
-		// TODO: Again really really slow!
+		if (threadCount > 1 && (pool == null || pool.getThreadCount() != threadCount)) {
+			if (pool != null)
+				pool.dispose();
+			pool = new WorkerPool(threadCount);
+		} else if (threadCount == 1 && pool != null) {
+			pool.dispose();
+			pool = null;
+		}
+
+		if (repulsion != REPULSION_EXACT) {
+			computeApproximateForces(entitiesToLayout);
+			return;
+		}
+		if (pool != null) {
+			computeExactForcesInParallel(entitiesToLayout);
+			return;
+		}
 
 		for (int i = 0; i < entitiesToLayout.length - 1; i++) {
 			InternalNode sourceEntity = entitiesToLayout[i];
@@ -625,6 +947,11 @@ public class SpringLayoutAlgorithm extends ContinuousLayoutAlgorithm {
 			double fx = forcesX[i]; // force in x direction
 			double fy = forcesY[i]; // force in y direction
 
+			for (int k = relatedStart[i]; k < relatedStart[i + 1]; k++) {
+				rowNumRels[relatedNodes[k]] = relatedNumRels[k];
+				rowAvgWeight[relatedNodes[k]] = relatedAvgWeight[k];
+			}
+
 			for (int j = i + 1; j < entitiesToLayout.length; j++) {
 				InternalNode destinationEntity = entitiesToLayout[j];
 
@@ -642,8 +969,8 @@ public class SpringLayoutAlgorithm extends ContinuousLayoutAlgorithm {
 					// then decrease force on srcObj (a pull) in direction of destObj
 					// If no relation between srcObj and destObj then increase
 					// force on srcObj (a push) from direction of destObj.
-					int numRels = srcDestToNumRels[i][j];
-					double avgWeight = srcDestToRelsAvgWeight[i][j];
+					int numRels = rowNumRels[j];
+					double avgWeight = rowAvgWeight[j];
 					if (numRels > 0) {
 						// nodes are pulled towards each other
 						double f = sprStrain * Math.log(distance / sprLength) * numRels * avgWeight;
@@ -679,6 +1006,155 @@ public class SpringLayoutAlgorithm extends ContinuousLayoutAlgorithm {
 			// objects.
 			// dests.remove(srcObj);
 
+			for (int k = relatedStart[i]; k < relatedStart[i + 1]; k++) {
+				rowNumRels[relatedNodes[k]] = 0;
+			}
+		}
+	}
+
+	/**
+	 * Computes the same forces as {@link #computeForces(InternalNode[])} using
+	 * several threads. Each node <code>i</code> adds the running total of its
+	 * force to every later node <code>j</code>, starting from the total which
+	 * the earlier nodes added to <code>i</code>. The rows are divided between
+	 * the threads, which add only the sums along the rows, and the totals
+	 * carried from earlier nodes are then added in order.
+	 */
+	private void computeExactForcesInParallel(final InternalNode[] entitiesToLayout) {
+		final int n = entitiesToLayout.length;
+		int parts = pool.getThreadCount();
+		if (partForcesX == null || partForcesX.length != parts || rowForcesX.length != n) {
+			partForcesX = new double[parts][n];
+			partForcesY = new double[parts][n];
+			partNumRels = new int[parts][n];
+			partAvgWeight = new double[parts][n];
+			rowForcesX = new double[n];
+			rowForcesY = new double[n];
+		}
+
+		pool.run(new WorkerPool.Task() {
+			public void run(int part, int parts) {
+				double[] forcesX = partForcesX[part];
+				double[] forcesY = partForcesY[part];
+				int[] numRelsRow = partNumRels[part];
+				double[] avgWeightRow = partAvgWeight[part];
+				Arrays.fill(forcesX, 0);
+				Arrays.fill(forcesY, 0);
+				// alternate the rows, which get shorter, between the threads
+				for (int i = part; i < n - 1; i += parts) {
+					InternalNode sourceEntity = entitiesToLayout[i];
+					double srcLocationX = tempLocationsX[i];
+					double srcLocationY = tempLocationsY[i];
+					double fx = 0;
+					double fy = 0;
+
+					for (int k = relatedStart[i]; k < relatedStart[i + 1]; k++) {
+						numRelsRow[relatedNodes[k]] = relatedNumRels[k];
+						avgWeightRow[relatedNodes[k]] = relatedAvgWeight[k];
+					}
+
+					for (int j = i + 1; j < n; j++) {
+						if (!entitiesToLayout[j].equals(sourceEntity)) {
+							double dx = srcLocationX - tempLocationsX[j];
+							double dy = srcLocationY - tempLocationsY[j];
+							double distance = Math.sqrt(dx * dx + dy * dy);
+							double distance_sq = distance * distance;
+							distance = Math.max(MIN_DISTANCE, distance);
+							int numRels = numRelsRow[j];
+							if (numRels > 0) {
+								double f = sprStrain * Math.log(distance / sprLength) * numRels * avgWeightRow[j];
+								fx = fx - (f * dx / distance);
+								fy = fy - (f * dy / distance);
+							} else {
+								double f = sprGravitation / (distance_sq);
+								fx = fx + (f * dx / distance);
+								fy = fy + (f * dy / distance);
+							}
+							forcesX[j] += fx;
+							forcesY[j] += fy;
+						}
+					}
+					rowForcesX[i] = fx;
+					rowForcesY[i] = fy;
+
+					for (int k = relatedStart[i]; k < relatedStart[i + 1]; k++) {
+						numRelsRow[relatedNodes[k]] = 0;
+					}
+				}
+			}
+		});
+
+		rowForcesX[n - 1] = 0;
+		rowForcesY[n - 1] = 0;
+		double carriedX = 0;
+		double carriedY = 0;
+		for (int j = 0; j < n; j++) {
+			double fx = -carriedX;
+			double fy = -carriedY;
+			for (int part = 0; part < parts; part++) {
+				fx -= partForcesX[part][j];
+				fy -= partForcesY[part][j];
+			}
+			carriedX += fx;
+			carriedY += fy;
+			forcesX[j] = fx + rowForcesX[j];
+			forcesY[j] = fy + rowForcesY[j];
+		}
+	}
+
+	/**
+	 * Computes the forces using an approximation of the repulsion between all
+	 * nodes, and then replaces the repulsion between related nodes with their
+	 * attraction. Unlike the exact computation, the forces on each pair of
+	 * nodes are equal and opposite.
+	 */
+	private void computeApproximateForces(InternalNode[] entitiesToLayout) {
+		final int n = entitiesToLayout.length;
+		if (repulsion == REPULSION_BARNES_HUT) {
+			if (tree == null)
+				tree = new BarnesHutTree();
+			tree.build(tempLocationsX, tempLocationsY, n);
+		} else {
+			if (grid == null)
+				grid = new RepulsionGrid();
+			grid.build(tempLocationsX, tempLocationsY, n, cutoff);
+		}
+		// the repulsion on each node is independent of the others
+		WorkerPool.Task task = new WorkerPool.Task() {
+			public void run(int part, int parts) {
+				int from = (int) ((long) n * part / parts);
+				int to = (int) ((long) n * (part + 1) / parts);
+				if (repulsion == REPULSION_BARNES_HUT)
+					tree.addRepulsion(tempLocationsX, tempLocationsY, from, to, forcesX, forcesY, sprGravitation, theta, MIN_DISTANCE);
+				else
+					grid.addRepulsion(tempLocationsX, tempLocationsY, from, to, forcesX, forcesY, sprGravitation, MIN_DISTANCE);
+			}
+		};
+		if (pool != null)
+			pool.run(task);
+		else
+			task.run(0, 1);
+
+		for (int i = 0; i < n - 1; i++) {
+			for (int k = relatedStart[i]; k < relatedStart[i + 1]; k++) {
+				int j = relatedNodes[k];
+				double dx = tempLocationsX[i] - tempLocationsX[j];
+				double dy = tempLocationsY[i] - tempLocationsY[j];
+				double distance = Math.sqrt(dx * dx + dy * dy);
+				double f = 0;
+				// take back the repulsion the approximation applied
+				if (repulsion == REPULSION_BARNES_HUT || distance < cutoff) {
+					double d = Math.max(MIN_DISTANCE, distance);
+					f = -sprGravitation / (d * d);
+				}
+				distance = Math.max(MIN_DISTANCE, distance);
+				// nodes are pulled towards each other
+				f += sprStrain * Math.log(distance / sprLength) * relatedNumRels[k] * relatedAvgWeight[k];
+				forcesX[i] -= f * dx / distance;
+				forcesY[i] -= f * dy / distance;
+				forcesX[j] += f * dx / distance;
+				forcesY[j] += f * dy / distance;
+			}
 		}
 	}
 
@@ -757,35 +1233,27 @@ public class SpringLayoutAlgorithm extends ContinuousLayoutAlgorithm {
 	}
 
 	/**
-	 * Examines the number of specified relation between the <code>src</code>
-	 * and the <code>dest</code> that exist in this
-	 * SpringLayoutAlgorithm's relation repository.
+	 * Returns the position in <code>relatedNodes</code> of the pair of nodes
+	 * with the given indices.
 	 * 
-	 * @param src
-	 *            The source part of the relaton to be examined.
-	 * @param dest
-	 *            The destination part of the relation to be examined.
-	 * @return The number of relations between src and dest.
+	 * @param low
+	 *            The lower index of the pair
+	 * @param high
+	 *            The higher index of the pair
+	 * @return The position of the pair in the related nodes of
+	 *         <code>low</code>
 	 */
-	private int numRelations(Object src, Object dest) {
-		String key = src.toString() + dest.toString();
-		Integer count = (Integer) srcDestToNumRelsMap.get(key);
-		int intCount = (count == null) ? 0 : count.intValue();
-		return intCount;
-	}
-
-	/**
-	 * Returns the average weight between a src and dest object.
-	 * 
-	 * @param src
-	 * @param dest
-	 * @return The average weight between the given src and dest nodes
-	 */
-	private double avgWeight(Object src, Object dest) {
-		String key = src.toString() + dest.toString();
-		Double avgWeight = (Double) srcDestToRelsAvgWeightMap.get(key);
-		double doubleWeight = (avgWeight == null) ? 1 : avgWeight.doubleValue();
-		return doubleWeight;
+	private int findRelated(int low, int high) {
+		int first = relatedStart[low];
+		int last = relatedStart[low + 1] - 1;
+		while (first < last) {
+			int middle = (first + last) >>> 1;
+			if (relatedNodes[middle] < high)
+				first = middle + 1;
+			else
+				last = middle;
+		}
+		return first;
 	}
 
 	protected boolean isValidConfiguration(boolean asynchronous, boolean continueous) {
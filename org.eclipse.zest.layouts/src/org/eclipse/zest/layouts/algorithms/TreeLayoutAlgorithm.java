@@ -11,25 +11,24 @@ package org.eclipse.zest.layouts.algorithms;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
-import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 
 import org.eclipse.zest.layouts.LayoutStyles;
 import org.eclipse.zest.layouts.dataStructures.DisplayIndependentRectangle;
 import org.eclipse.zest.layouts.dataStructures.InternalNode;
 import org.eclipse.zest.layouts.dataStructures.InternalRelationship;
-import org.eclipse.zest.layouts.exampleStructures.SimpleRelationship;
 
 /**
  * The TreeLayoutAlgorithm class implements a simple algorithm to
  * arrange graph nodes in a layered vertical tree-like layout. 
  * 
- * This is by no means an efficiently coded algorithm.
+ * The relationships are indexed once, after which the forest is built,
+ * weighted and placed in time linear in the number of nodes and
+ * relationships. The trees are traversed with explicit stacks, so
+ * arbitrarily deep trees can be laid out.
  *
  * @version  2.0
  * @author   Casey Best and Rob Lintern (version 1.0 by Jingwei Wu)
@@ -39,12 +38,6 @@ public class TreeLayoutAlgorithm extends AbstractLayoutAlgorithm {
 	private final static double DEFAULT_WEIGHT = 0;
 	private final static boolean DEFAULT_MARKED = false;
 
-	private final static boolean AS_DESTINATION = false;
-	private final static boolean AS_SOURCE = true;
-
-	private final static int NUM_DESCENDENTS_INDEX = 0;
-	private final static int NUM_LEVELS_INDEX = 1;
-
 	private ArrayList treeRoots;
 
 	private double boundsX;
@@ -53,11 +46,56 @@ public class TreeLayoutAlgorithm extends AbstractLayoutAlgorithm {
 	private double boundsHeight;
 	private DisplayIndependentRectangle layoutBounds = null;
 
-	private List[] parentLists;
-	private List[] childrenLists;
+	/**
+	 * The children of each node, in compressed form. The children of node
+	 * <code>i</code> are <code>children[childrenStart[i]]</code> to
+	 * <code>children[childrenStart[i + 1] - 1]</code>, each child once and in
+	 * the order they are laid out.
+	 */
+	private int[] childrenStart;
+	private int[] children;
+
+	/**
+	 * Whether the relationship to each child in <code>children</code> leads
+	 * back to an ancestor in the forest, closing a cycle.
+	 */
+	private boolean[] backEdges;
+
+	/**
+	 * The source of the first relationship leading to each node, or
+	 * <code>-1</code>.
+	 */
+	private int[] firstParents;
+
+	/**
+	 * The number of relationships leading from each node.
+	 */
+	private int[] numRelationships;
+
+	/**
+	 * The nodes in the order the forest was built. Each node is followed by
+	 * its subtree, which holds <code>subtreeSizes[i]</code> nodes including
+	 * the node itself, and <code>preorderIndices[i]</code> is the position of
+	 * node <code>i</code>.
+	 */
+	private int[] preorder;
+	private int[] preorderIndices;
+	private int[] subtreeSizes;
+
+	/**
+	 * The nodes in the order their subtrees were finished.
+	 */
+	private int[] postorder;
+
 	private double[] weights;
 	private boolean[] markedArr;
 
+	/**
+	 * The closest pinned ancestor of each node in the forest, or
+	 * <code>-1</code>, while an incremental layout is running.
+	 */
+	private int[] pinnedAncestors;
+
 	/////////////////////////////////////////////////////////////////////////
 	/////                        Constructors                           /////
 	/////////////////////////////////////////////////////////////////////////
@@ -111,13 +149,9 @@ public class TreeLayoutAlgorithm extends AbstractLayoutAlgorithm {
 		// Filter unwanted entities and relationships
 		//super.applyLayout (entitiesToLayout, relationshipsToConsider, boundsX, boundsY, boundsWidth, boundsHeight);
 
-		parentLists = new List[entitiesToLayout.length];
-		childrenLists = new List[entitiesToLayout.length];
 		weights = new double[entitiesToLayout.length];
 		markedArr = new boolean[entitiesToLayout.length];
 		for (int i = 0; i < entitiesToLayout.length; i++) {
-			parentLists[i] = new ArrayList();
-			childrenLists[i] = new ArrayList();
 			weights[i] = DEFAULT_WEIGHT;
 			markedArr[i] = DEFAULT_MARKED;
 		}
@@ -147,61 +181,65 @@ public class TreeLayoutAlgorithm extends AbstractLayoutAlgorithm {
 		}
 	}
 
-	protected void postLayoutAlgorithm(InternalNode[] entitiesToLayout, InternalRelationship[] relationshipsToConsider) {
-		updateLayoutLocations(entitiesToLayout);
-		fireProgressEvent(4, 4);
-	}
-
 	/**
-	 * Returns the last found roots
+	 * Lays out the whole forest, noting the closest pinned ancestor of each
+	 * node so that {@link #placeChangedEntities(InternalNode[])} can place the
+	 * changed nodes below it.
 	 */
-	public List getRoots() {
-		return treeRoots;
+	protected void applyLayoutIncrementallyInternal(InternalNode[] entitiesToLayout, InternalRelationship[] relationshipsToConsider, double boundsX, double boundsY, double boundsWidth, double boundsHeight) {
+		pinnedAncestors = new int[entitiesToLayout.length];
+		applyLayoutInternal(entitiesToLayout, relationshipsToConsider, boundsX, boundsY, boundsWidth, boundsHeight);
 	}
 
 	/**
-	 * Finds all the relationships in which the node <code>obj<code>
-	 * plays the specified <code>role</code>.
-	 * @param entity The node that concerns the relations to be found.
-	 * @param role The role played by the <code>obj</code>. Its type
-	 * must be of <code>ACTOR_ROLE</code> or <code>ACTEE_ROLE</code>.
-	 * @see SimpleRelationship
+	 * Places each changed node at the same offset from its closest pinned
+	 * ancestor as in the computed layout, scaled to the pinned nodes. Nodes
+	 * without a pinned ancestor are placed as by the default implementation.
 	 */
-	private Collection findRelationships(Object entity, boolean objectAsSource, InternalRelationship[] relationshipsToConsider) {
-		Collection foundRels = new ArrayList();
-		for (int i = 0; i < relationshipsToConsider.length; i++) {
-			InternalRelationship rel = relationshipsToConsider[i];
-			if (objectAsSource && rel.getSource().equals(entity)) {
-				foundRels.add(rel);
-			} else if (!objectAsSource && rel.getDestination().equals(entity)) {
-				foundRels.add(rel);
+	protected void placeChangedEntities(InternalNode[] entitiesToLayout) {
+		double[] fit = fitToPinnedEntities(entitiesToLayout);
+		double[] xs = new double[entitiesToLayout.length];
+		double[] ys = new double[entitiesToLayout.length];
+		for (int i = 0; i < entitiesToLayout.length; i++) {
+			xs[i] = entitiesToLayout[i].getInternalX();
+			ys[i] = entitiesToLayout[i].getInternalY();
+		}
+		for (int i = 0; i < entitiesToLayout.length; i++) {
+			InternalNode entity = entitiesToLayout[i];
+			if (isPinned(entity)) {
+				continue;
+			}
+			int ancestor = pinnedAncestors == null ? -1 : pinnedAncestors[i];
+			if (ancestor == -1) {
+				entity.setInternalLocation(fit[0] * xs[i] + fit[1], fit[2] * ys[i] + fit[3]);
+			} else {
+				InternalNode pinned = entitiesToLayout[ancestor];
+				entity.setInternalLocation(pinned.getCurrentX() + fit[0] * (xs[i] - xs[ancestor]), pinned.getCurrentY() + fit[2] * (ys[i] - ys[ancestor]));
 			}
 		}
-		return foundRels;
+		pinnedAncestors = null;
+		updateLayoutLocations(entitiesToLayout);
+	}
+
+	protected void postLayoutAlgorithm(InternalNode[] entitiesToLayout, InternalRelationship[] relationshipsToConsider) {
+		updateLayoutLocations(entitiesToLayout);
+		fireProgressEvent(4, 4);
+		childrenStart = null;
+		children = null;
+		backEdges = null;
+		firstParents = null;
+		numRelationships = null;
+		preorder = null;
+		preorderIndices = null;
+		subtreeSizes = null;
+		postorder = null;
 	}
 
 	/**
-	 * Finds the relation that has the lowest index in the relation
-	 * repository in which the node <code>obj<code> plays the specified
-	 * <code>role</code>.
-	 * @param obj The node that concerns the relations to be found.
-	 * @param role The role played by the <code>obj</code>. Its type must
-	 * be of <code>ACTOR_ROLE</code> or <code>ACTEE_ROLE</code>.
-	 * @see SimpleRelationship
-	 * @see SimpleRelationship#ACTOR_ROLE
-	 * @see SimpleRelationship#ACTEE_ROLE
+	 * Returns the last found roots
 	 */
-	private InternalRelationship findRelationship(Object entity, boolean objectAsSource, InternalRelationship[] relationshipsToConsider) {
-		InternalRelationship relationship = null;
-		for (int i = 0; i < relationshipsToConsider.length && relationship == null; i++) {
-			InternalRelationship possibleRel = relationshipsToConsider[i];
-			if (objectAsSource && possibleRel.getSource().equals(entity)) {
-				relationship = possibleRel;
-			} else if (!objectAsSource && possibleRel.getDestination().equals(entity)) {
-				relationship = possibleRel;
-			}
-		}
-		return relationship;
+	public List getRoots() {
+		return treeRoots;
 	}
 
 	/////////////////////////////////////////////////////////////////////////
@@ -210,220 +248,236 @@ public class TreeLayoutAlgorithm extends AbstractLayoutAlgorithm {
 
 	/**
 	 * Builds the tree forest that is used to calculate positions
-	 * for each node in this TreeLayoutAlgorithm.
+	 * for each node in this TreeLayoutAlgorithm. All entities
+	 * will be placed somewhere in the forest.
 	 */
 	private void buildForest(List roots, InternalNode[] entities, InternalRelationship[] relationships) {
-		List unplacedEntities = new ArrayList(Arrays.asList(entities));
-		buildForestRecursively(roots, unplacedEntities, entities, relationships);
-	}
-
-	/**
-	 * Builds the forest recursively. All entities
-	 * will be placed somewhere in the forest. 
-	 */
-	private void buildForestRecursively(List roots, List unplacedEntities, InternalNode[] entities, InternalRelationship[] relationships) {
-		if (unplacedEntities.size() == 0) {
-			return; // no more entities to place
-		}
-
-		// get the first entity in the list of unplaced entities, find its root, and build this root's tree
-		InternalNode layoutEntity = (InternalNode) unplacedEntities.get(0);
-		InternalNode rootEntity = findRootObjectRecursive(layoutEntity, new HashSet(), relationships);
-		int rootEntityIndex = indexOfInternalNode(entities, rootEntity);
-		buildTreeRecursively(rootEntity, rootEntityIndex, 0, entities, relationships);
-		roots.add(rootEntity);
-
-		// now see which nodes are left to be placed in a tree somewhere
-		List unmarkedCopy = new ArrayList(unplacedEntities);
-		for (Iterator iter = unmarkedCopy.iterator(); iter.hasNext();) {
-			InternalNode tmpEntity = (InternalNode) iter.next();
-			int tmpEntityIndex = indexOfInternalNode(entities, tmpEntity);
-			boolean isMarked = markedArr[tmpEntityIndex];
-			if (isMarked) {
-				unplacedEntities.remove(tmpEntity);
+		buildChildren(entities, relationships);
+		sortChildren(entities);
+
+		int n = entities.length;
+		preorder = new int[n];
+		preorderIndices = new int[n];
+		subtreeSizes = new int[n];
+		postorder = new int[n];
+		int[] seen = new int[n];
+		int[] stack = new int[n];
+		int[] nextChild = new int[n];
+		boolean[] onStack = new boolean[n];
+		int count = 0;
+		int finished = 0;
+
+		// take the first unplaced entity, find its root, and build this root's tree
+		for (int i = 0; i < n; i++) {
+			if (markedArr[i]) {
+				continue;
 			}
-		}
-		buildForestRecursively(roots, unplacedEntities, entities, relationships);
-	}
+			int root = findRoot(i, seen, i + 1);
+			roots.add(entities[root]);
 
-	/**
-	 * Finds the root node that can be treated as the root of a tree.
-	 * The found root node should be one of the unmarked nodes.
-	 */
-	private InternalNode findRootObjectRecursive(InternalNode currentEntity, Set seenAlready, InternalRelationship[] relationshipsToConsider) {
-		InternalNode rootEntity = null;
-		InternalRelationship rel = findRelationship(currentEntity, AS_DESTINATION, relationshipsToConsider);
-		if (rel == null) {
-			rootEntity = currentEntity;
-		} else {
-			InternalNode parentEntity = rel.getSource();
-			if (!seenAlready.contains(parentEntity)) {
-				seenAlready.add(parentEntity);
-				rootEntity = findRootObjectRecursive(parentEntity, seenAlready, relationshipsToConsider);
-			} else {
-				rootEntity = currentEntity;
+			if (pinnedAncestors != null) {
+				pinnedAncestors[root] = -1;
+			}
+			int top = 0;
+			stack[top++] = root;
+			markedArr[root] = true;
+			onStack[root] = true;
+			nextChild[root] = childrenStart[root];
+			preorderIndices[root] = count;
+			preorder[count++] = root;
+			while (top > 0) {
+				int entity = stack[top - 1];
+				if (nextChild[entity] < childrenStart[entity + 1]) {
+					int k = nextChild[entity]++;
+					int child = children[k];
+					if (onStack[child]) {
+						backEdges[k] = true;
+					} else if (!markedArr[child]) {
+						stack[top++] = child;
+						if (pinnedAncestors != null) {
+							pinnedAncestors[child] = isPinned(entities[entity]) ? entity : pinnedAncestors[entity];
+						}
+						markedArr[child] = true;
+						onStack[child] = true;
+						nextChild[child] = childrenStart[child];
+						preorderIndices[child] = count;
+						preorder[count++] = child;
+					}
+				} else {
+					top--;
+					onStack[entity] = false;
+					subtreeSizes[entity] = count - preorderIndices[entity];
+					postorder[finished++] = entity;
+				}
 			}
 		}
-		return rootEntity;
+		computeWeights();
 	}
 
 	/**
-	 * Builds a tree of the passed in entity.
-	 * The entity will pass a weight value to all of its children recursively.
+	 * Indexes the relationships by the positions of their source and
+	 * destination in <code>entities</code>.
 	 */
-	private void buildTreeRecursively(InternalNode layoutEntity, int i, double weight, InternalNode[] entities, final InternalRelationship[] relationships) {
-		// No need to do further computation!
-		if (layoutEntity == null) {
-			return;
+	private void buildChildren(InternalNode[] entities, InternalRelationship[] relationships) {
+		int n = entities.length;
+		Map indices = new HashMap(n * 2);
+		for (int i = 0; i < n; i++) {
+			indices.put(entities[i], new Integer(i));
 		}
-
-		// A marked entity means that it has been added to the
-		// forest, and its weight value needs to be modified.		
-		if (markedArr[i]) {
-			modifyWeightRecursively(layoutEntity, i, weight, new HashSet(), entities, relationships);
-			return; //No need to do further computation.
+		int[] sources = new int[relationships.length];
+		int[] destinations = new int[relationships.length];
+		firstParents = new int[n];
+		numRelationships = new int[n];
+		Arrays.fill(firstParents, -1);
+		for (int i = 0; i < relationships.length; i++) {
+			sources[i] = indexOfInternalNode(indices, relationships[i].getSource());
+			destinations[i] = indexOfInternalNode(indices, relationships[i].getDestination());
+			numRelationships[sources[i]]++;
+			if (firstParents[destinations[i]] == -1) {
+				firstParents[destinations[i]] = sources[i];
+			}
 		}
 
-		// Mark this entity, set its weight value and create a new tree node.
-		markedArr[i] = true;
-		weights[i] = weight;
-
-		// collect the children of this entity and put them in order
-		Collection rels = findRelationships(layoutEntity, AS_SOURCE, relationships);
-		List children = new ArrayList();
-		for (Iterator iter = rels.iterator(); iter.hasNext();) {
-			InternalRelationship layoutRel = (InternalRelationship) iter.next();
-			InternalNode childEntity = layoutRel.getDestination();
-			children.add(childEntity);
+		// group the destinations by source, in the order of the relationships
+		int[] start = new int[n + 1];
+		for (int i = 0; i < n; i++) {
+			start[i + 1] = start[i] + numRelationships[i];
+		}
+		int[] all = new int[relationships.length];
+		int[] fill = new int[n];
+		System.arraycopy(start, 0, fill, 0, n);
+		for (int i = 0; i < relationships.length; i++) {
+			all[fill[sources[i]]++] = destinations[i];
 		}
 
-		if (comparator != null) {
-			Collections.sort(children, comparator);
-		} else {
-			// sort the children by level, then by number of descendents, then by number of children
-			// TODO: SLOW
-			Collections.sort(children, new Comparator() {
-				public int compare(Object o1, Object o2) {
-					InternalNode node1 = (InternalNode) o1;
-					InternalNode node2 = (InternalNode) o2;
-					int[] numDescendentsAndLevel1 = new int[2];
-					int[] numDescendentsAndLevel2 = new int[2];
-					int level1 = numDescendentsAndLevel1[NUM_LEVELS_INDEX];
-					int level2 = numDescendentsAndLevel2[NUM_LEVELS_INDEX];
-					if (level1 == level2) {
-						getNumDescendentsAndLevel(node1, relationships, numDescendentsAndLevel1);
-						getNumDescendentsAndLevel(node2, relationships, numDescendentsAndLevel2);
-						int numDescendents1 = numDescendentsAndLevel1[NUM_DESCENDENTS_INDEX];
-						int numDescendents2 = numDescendentsAndLevel2[NUM_DESCENDENTS_INDEX];
-						if (numDescendents1 == numDescendents2) {
-							int numChildren1 = getNumChildren(node1, relationships);
-							int numChildren2 = getNumChildren(node1, relationships);
-							return numChildren2 - numChildren1;
-						} else {
-							return numDescendents2 - numDescendents1;
-						}
-					} else {
-						return level2 - level1;
-					}
-					//return getNumChildren(node2, relationships) - getNumChildren(node1, relationships);
+		// keep the first relationship between each pair
+		int[] lastParents = new int[n];
+		Arrays.fill(lastParents, -1);
+		childrenStart = new int[n + 1];
+		int count = 0;
+		for (int i = 0; i < n; i++) {
+			childrenStart[i] = count;
+			for (int k = start[i]; k < start[i + 1]; k++) {
+				int child = all[k];
+				if (lastParents[child] != i) {
+					lastParents[child] = i;
+					all[count++] = child;
 				}
-			});
+			}
 		}
+		childrenStart[n] = count;
+		children = new int[count];
+		System.arraycopy(all, 0, children, 0, count);
+		backEdges = new boolean[count];
+	}
 
-		// map children to this parent, and vice versa
-		for (Iterator iter = children.iterator(); iter.hasNext();) {
-			InternalNode childEntity = (InternalNode) iter.next();
-			int childEntityIndex = indexOfInternalNode(entities, childEntity);
-			if (!childrenLists[i].contains(childEntity)) {
-				childrenLists[i].add(childEntity);
+	/**
+	 * Puts the children of each node in order, using the comparator if one
+	 * was given. Otherwise the children with the most descendents come first.
+	 */
+	private void sortChildren(final InternalNode[] entities) {
+		final long[] numDescendents = (comparator == null) ? countDescendents(entities.length) : null;
+		Comparator order = new Comparator() {
+			public int compare(Object o1, Object o2) {
+				int node1 = ((Integer) o1).intValue();
+				int node2 = ((Integer) o2).intValue();
+				if (comparator != null) {
+					return comparator.compare(entities[node1], entities[node2]);
+				}
+				long numDescendents1 = numDescendents[node1];
+				long numDescendents2 = numDescendents[node2];
+				return (numDescendents1 < numDescendents2) ? 1 : (numDescendents1 > numDescendents2) ? -1 : 0;
 			}
-			if (!parentLists[childEntityIndex].contains(layoutEntity)) {
-				parentLists[childEntityIndex].add(layoutEntity);
+		};
+		for (int i = 0; i < entities.length; i++) {
+			int first = childrenStart[i];
+			int count = childrenStart[i + 1] - first;
+			if (count < 2) {
+				continue;
+			}
+			Integer[] sorted = new Integer[count];
+			for (int k = 0; k < count; k++) {
+				sorted[k] = new Integer(children[first + k]);
+			}
+			Arrays.sort(sorted, order);
+			for (int k = 0; k < count; k++) {
+				children[first + k] = sorted[k].intValue();
 			}
 		}
-
-		for (Iterator iter = children.iterator(); iter.hasNext();) {
-			InternalNode childEntity = (InternalNode) iter.next();
-			int childEntityIndex = indexOfInternalNode(entities, childEntity);
-			buildTreeRecursively(childEntity, childEntityIndex, weight + 1, entities, relationships);
-		}
-	}
-
-	private int getNumChildren(InternalNode layoutEntity, InternalRelationship[] relationships) {
-		return findRelationships(layoutEntity, AS_SOURCE, relationships).size();
-	}
-
-	private void getNumDescendentsAndLevel(InternalNode layoutEntity, InternalRelationship[] relationships, int[] numDescendentsAndLevel) {
-		getNumDescendentsAndLevelRecursive(layoutEntity, relationships, new HashSet(), numDescendentsAndLevel, 0);
 	}
 
-	private void getNumDescendentsAndLevelRecursive(InternalNode layoutEntity, InternalRelationship[] relationships, Set seenAlready, int[] numDescendentsAndLevel, int currentLevel) {
-		if (seenAlready.contains(layoutEntity)) {
-			return;
-		}
-		seenAlready.add(layoutEntity);
-		numDescendentsAndLevel[NUM_LEVELS_INDEX] = Math.max(numDescendentsAndLevel[NUM_LEVELS_INDEX], currentLevel);
-		Collection rels = findRelationships(layoutEntity, AS_SOURCE, relationships);
-		for (Iterator iter = rels.iterator(); iter.hasNext();) {
-			InternalRelationship layoutRel = (InternalRelationship) iter.next();
-			InternalNode childEntity = layoutRel.getDestination();
-			numDescendentsAndLevel[NUM_DESCENDENTS_INDEX]++;
-			getNumDescendentsAndLevelRecursive(childEntity, relationships, seenAlready, numDescendentsAndLevel, currentLevel + 1);
-
+	/**
+	 * Counts the relationships leading from each node and from the nodes
+	 * below it. Relationships closing a cycle are not followed, and a node
+	 * below several others is counted under each of them.
+	 */
+	private long[] countDescendents(int n) {
+		long[] numDescendents = new long[n];
+		int[] state = new int[n]; // 0: unvisited, 1: on the stack, 2: counted
+		int[] stack = new int[n];
+		int[] nextChild = new int[n];
+		for (int i = 0; i < n; i++) {
+			if (state[i] != 0) {
+				continue;
+			}
+			int top = 0;
+			stack[top++] = i;
+			state[i] = 1;
+			nextChild[i] = childrenStart[i];
+			while (top > 0) {
+				int entity = stack[top - 1];
+				if (nextChild[entity] < childrenStart[entity + 1]) {
+					int child = children[nextChild[entity]++];
+					if (state[child] == 0) {
+						stack[top++] = child;
+						state[child] = 1;
+						nextChild[child] = childrenStart[child];
+					} else if (state[child] == 2) {
+						numDescendents[entity] += numDescendents[child];
+					}
+				} else {
+					top--;
+					state[entity] = 2;
+					numDescendents[entity] += numRelationships[entity];
+					if (top > 0) {
+						numDescendents[stack[top - 1]] += numDescendents[entity];
+					}
+				}
+			}
 		}
+		return numDescendents;
 	}
 
 	/**
-	 * Modifies the weight value of the marked node recursively.
+	 * Finds the root node that can be treated as the root of a tree, by
+	 * following the first relationship leading to each node until a node
+	 * without one, or a node seen already, is reached.
 	 */
-	private void modifyWeightRecursively(InternalNode layoutEntity, int i, double weight, Set descendentsSeenSoFar, InternalNode[] entities, InternalRelationship[] relationships) {
-		// No need to do further computation!
-		if (layoutEntity == null) {
-			return;
-		}
-
-		if (descendentsSeenSoFar.contains(layoutEntity)) {
-			return; //No need to do further computation.
-		}
-
-		descendentsSeenSoFar.add(layoutEntity);
-		// No need to do further computation!
-		if (weight < weights[i]) {
-			return;
-		}
-
-		weights[i] = weight;
-		Collection rels = findRelationships(layoutEntity, AS_SOURCE, relationships);
-
-		for (Iterator iter = rels.iterator(); iter.hasNext();) {
-			InternalRelationship tmpRel = (InternalRelationship) iter.next();
-			InternalNode tmpEntity = tmpRel.getDestination();
-			int tmpEntityIndex = indexOfInternalNode(entities, tmpEntity);
-			modifyWeightRecursively(tmpEntity, tmpEntityIndex, weight + 1, descendentsSeenSoFar, entities, relationships);
+	private int findRoot(int entity, int[] seen, int mark) {
+		int rootEntity = entity;
+		while (firstParents[rootEntity] != -1 && seen[firstParents[rootEntity]] != mark) {
+			rootEntity = firstParents[rootEntity];
+			seen[rootEntity] = mark;
 		}
+		return rootEntity;
 	}
 
 	/**
-	 * Gets the maxium weight of a tree in the forest of this TreeLayoutAlgorithm.
+	 * Sets the weight of each node to the length of the longest path leading
+	 * to it from a root, ignoring relationships which close a cycle.
 	 */
-	private double getMaxiumWeightRecursive(InternalNode layoutEntity, int i, Set seenAlready, InternalNode[] entities) {
-		double result = 0;
-		if (seenAlready.contains(layoutEntity)) {
-			return result;
-		}
-		seenAlready.add(layoutEntity);
-		List children = childrenLists[i];
-		if (children.isEmpty()) {
-			result = weights[i];
-		} else {
-			//TODO: SLOW
-			for (Iterator iter = children.iterator(); iter.hasNext();) {
-				InternalNode childEntity = (InternalNode) iter.next();
-				int childEntityIndex = indexOfInternalNode(entities, childEntity);
-				result = Math.max(result, getMaxiumWeightRecursive(childEntity, childEntityIndex, seenAlready, entities));
+	private void computeWeights() {
+		// the reverse of the order the subtrees were finished puts each node
+		// after all the nodes leading to it
+		for (int p = postorder.length - 1; p >= 0; p--) {
+			int entity = postorder[p];
+			for (int k = childrenStart[entity]; k < childrenStart[entity + 1]; k++) {
+				if (!backEdges[k]) {
+					int child = children[k];
+					weights[child] = Math.max(weights[child], weights[entity] + 1);
+				}
 			}
 		}
-		return result;
 	}
 
 	/**
@@ -436,119 +490,37 @@ public class TreeLayoutAlgorithm extends AbstractLayoutAlgorithm {
 			return;
 		}
 
-		int totalLeafCount = 0;
+		// count the leaves before each position in the forest
+		int n = entities.length;
+		int[] leavesBefore = new int[n + 1];
 		double maxWeight = 0;
-		for (int i = 0; i < roots.size(); i++) {
-			InternalNode rootEntity = (InternalNode) roots.get(i);
-			int rootEntityIndex = indexOfInternalNode(entities, rootEntity);
-			totalLeafCount = totalLeafCount + getNumberOfLeaves(rootEntity, rootEntityIndex, entities);
-			maxWeight = Math.max(maxWeight, getMaxiumWeightRecursive(rootEntity, rootEntityIndex, new HashSet(), entities) + 1.0);
+		for (int p = 0; p < n; p++) {
+			int entity = preorder[p];
+			leavesBefore[p + 1] = leavesBefore[p] + (subtreeSizes[entity] == 1 ? 1 : 0);
+			maxWeight = Math.max(maxWeight, weights[entity] + 1.0);
 		}
 
-		double width = 1.0 / totalLeafCount;
+		double width = 1.0 / leavesBefore[n];
 		double height = 1.0 / maxWeight;
 
-		int leafCountSoFar = 0;
+		for (int i = 0; i < n; i++) {
+			int relativePosition = leavesBefore[preorderIndices[i]];
+			int breadth = leavesBefore[preorderIndices[i] + subtreeSizes[i]] - relativePosition;
+			double absHPosition = relativePosition + breadth / 2.0;
+			double absVPosition = (weights[i] + 0.5);
 
-		//TODO: SLOW!
-		for (int i = 0; i < roots.size(); i++) {
-			InternalNode rootEntity = (InternalNode) roots.get(i);
-			int rootEntityIndex = indexOfInternalNode(entities, rootEntity);
-			computePositionRecursively(rootEntity, rootEntityIndex, leafCountSoFar, width, height, new HashSet(), entities);
-			leafCountSoFar = leafCountSoFar + getNumberOfLeaves(rootEntity, rootEntityIndex, entities);
+			double posx = absHPosition * width;
+			double posy = absVPosition * height;
+			entities[i].setInternalLocation(posx, posy);
 		}
 	}
 
-	/**
-	 * Computes positions recursively until the leaf nodes are reached.
-	 */
-	private void computePositionRecursively(InternalNode layoutEntity, int i, int relativePosition, double width, double height, Set seenAlready, InternalNode[] entities) {
-		if (seenAlready.contains(layoutEntity)) {
-			return;
-		}
-		seenAlready.add(layoutEntity);
-		double level = getLevel(layoutEntity, i, entities);
-		int breadth = getNumberOfLeaves(layoutEntity, i, entities);
-		double absHPosition = relativePosition + breadth / 2.0;
-		double absVPosition = (level + 0.5);
-
-		double posx = absHPosition * width;
-		double posy = absVPosition * height;
-		double weight = weights[i];
-		posy = posy + height * (weight - level);
-		layoutEntity.setInternalLocation(posx, posy);
-
-		int relativeCount = 0;
-		List children = childrenLists[i];
-		//TODO: Slow
-		for (Iterator iter = children.iterator(); iter.hasNext();) {
-			InternalNode childEntity = (InternalNode) iter.next();
-			int childEntityIndex = indexOfInternalNode(entities, childEntity);
-			computePositionRecursively(childEntity, childEntityIndex, relativePosition + relativeCount, width, height, seenAlready, entities);
-			relativeCount = relativeCount + getNumberOfLeaves(childEntity, childEntityIndex, entities);
-		}
-	}
-
-	private int getNumberOfLeaves(InternalNode layoutEntity, int i, InternalNode[] entities) {
-		return getNumberOfLeavesRecursive(layoutEntity, i, new HashSet(), entities);
-	}
-
-	private int getNumberOfLeavesRecursive(InternalNode layoutEntity, int i, Set seen, InternalNode[] entities) {
-		int numLeaves = 0;
-		List children = childrenLists[i];
-		if (children.size() == 0) {
-			numLeaves = 1;
-		} else {
-			//TODO: SLOW!
-			for (Iterator iter = children.iterator(); iter.hasNext();) {
-				InternalNode childEntity = (InternalNode) iter.next();
-				if (!seen.contains(childEntity)) {
-					seen.add(childEntity);
-					int childEntityIndex = indexOfInternalNode(entities, childEntity);
-					numLeaves += getNumberOfLeavesRecursive(childEntity, childEntityIndex, seen, entities);
-				} else {
-					numLeaves = 1;
-				}
-			}
-		}
-		return numLeaves;
-	}
-
-	private int getLevel(InternalNode layoutEntity, int i, InternalNode[] entities) {
-		return getLevelRecursive(layoutEntity, i, new HashSet(), entities);
-	}
-
-	private int getLevelRecursive(InternalNode layoutEntity, int i, Set seen, InternalNode[] entities) {
-		if (seen.contains(layoutEntity)) {
-			return 0;
-		}
-		seen.add(layoutEntity);
-		List parents = parentLists[i];
-		int maxParentLevel = 0;
-		for (Iterator iter = parents.iterator(); iter.hasNext();) {
-			InternalNode parentEntity = (InternalNode) iter.next();
-			int parentEntityIndex = indexOfInternalNode(entities, parentEntity);
-			int parentLevel = getLevelRecursive(parentEntity, parentEntityIndex, seen, entities) + 1;
-			maxParentLevel = Math.max(maxParentLevel, parentLevel);
-		}
-		return maxParentLevel;
-	}
-
-	/**
-	 * Note: Use this as little as possible!
-	 * TODO limit the use of this method 
-	 * @param nodes
-	 * @param nodeToFind
-	 * @return
-	 */
-	private int indexOfInternalNode(InternalNode[] nodes, InternalNode nodeToFind) {
-		for (int i = 0; i < nodes.length; i++) {
-			InternalNode node = nodes[i];
-			if (node.equals(nodeToFind)) {
-				return i;
-			}
+	private int indexOfInternalNode(Map indices, InternalNode nodeToFind) {
+		Integer index = (Integer) indices.get(nodeToFind);
+		if (index == null) {
+			throw new RuntimeException("Couldn't find index of internal node: " + nodeToFind);
 		}
-		throw new RuntimeException("Couldn't find index of internal node: " + nodeToFind);
+		return index.intValue();
 	}
 
 	protected boolean isValidConfiguration(boolean asynchronous, boolean continueous) {
@@ -0,0 +1,241 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.zest.layouts.algorithms.internal;
+
+/**
+ * A quadtree over a set of points which approximates the repulsion between all
+ * pairs of points in O(n log n) time, as described by Barnes and Hut. Each cell
+ * of the tree records the number of points it contains and their center of
+ * mass. A cell which is small compared to its distance from a point is treated
+ * as a single body at its center of mass.
+ * <p>
+ * The tree is stored in parallel arrays which are reused when the tree is
+ * rebuilt, so that an iterating layout does not allocate on every iteration.
+ */
+public class BarnesHutTree {
+
+	/**
+	 * Cells are not split beyond this depth. Points closer together than the
+	 * root's size divided by 2^MAX_DEPTH share a leaf.
+	 */
+	private static final int MAX_DEPTH = 24;
+
+	private double[] cellX = new double[0];
+	private double[] cellY = new double[0];
+	private double[] cellSize = new double[0];
+	private double[] massX = new double[0];
+	private double[] massY = new double[0];
+	private int[] mass = new int[0];
+	private int[] firstChild = new int[0];
+	private int[] firstBody = new int[0];
+	private int[] nextBody = new int[0];
+	private int cellCount;
+
+	/**
+	 * Builds the tree for the first <code>count</code> points.
+	 *
+	 * @param x
+	 *            the x coordinates of the points
+	 * @param y
+	 *            the y coordinates of the points
+	 * @param count
+	 *            the number of points
+	 */
+	public void build(double[] x, double[] y, int count) {
+		if (nextBody.length < count)
+			nextBody = new int[count];
+		double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+		double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+		for (int i = 0; i < count; i++) {
+			minX = Math.min(minX, x[i]);
+			minY = Math.min(minY, y[i]);
+			maxX = Math.max(maxX, x[i]);
+			maxY = Math.max(maxY, y[i]);
+		}
+		double size = Math.max(maxX - minX, maxY - minY);
+		if (!(size > 0))
+			size = 1;
+
+		cellCount = 0;
+		newCell(minX, minY, size);
+		for (int i = 0; i < count; i++)
+			insert(i, x, y);
+		for (int cell = 0; cell < cellCount; cell++)
+			if (mass[cell] > 0) {
+				massX[cell] /= mass[cell];
+				massY[cell] /= mass[cell];
+			}
+	}
+
+	/**
+	 * Adds the repulsion acting on each of the points from <code>from</code>
+	 * up to <code>to</code> to the given forces. Two points at distance
+	 * <i>d</i> repel each other with a force of
+	 * <code>gravitation / d<sup>2</sup></code>. The tree is not modified, so
+	 * several threads may compute the repulsion on different points at the
+	 * same time.
+	 *
+	 * @param x
+	 *            the x coordinates the tree was built with
+	 * @param y
+	 *            the y coordinates the tree was built with
+	 * @param from
+	 *            the first point
+	 * @param to
+	 *            the point after the last
+	 * @param forcesX
+	 *            the forces in the x direction
+	 * @param forcesY
+	 *            the forces in the y direction
+	 * @param gravitation
+	 *            the strength of the repulsion
+	 * @param theta
+	 *            the ratio of a cell's size to its distance below which the
+	 *            cell is approximated; <code>0</code> is exact
+	 * @param minDistance
+	 *            the smallest distance considered between two points
+	 */
+	public void addRepulsion(double[] x, double[] y, int from, int to,
+			double[] forcesX, double[] forcesY, double gravitation,
+			double theta, double minDistance) {
+		int[] stack = new int[3 * MAX_DEPTH + 4];
+		for (int i = from; i < to; i++) {
+			double px = x[i];
+			double py = y[i];
+			double fx = 0, fy = 0;
+			int top = 0;
+			stack[top++] = 0;
+			while (top > 0) {
+				int cell = stack[--top];
+				if (mass[cell] == 0)
+					continue;
+				if (firstChild[cell] == -1) {
+					for (int b = firstBody[cell]; b != -1; b = nextBody[b]) {
+						if (b == i)
+							continue;
+						double dx = px - x[b];
+						double dy = py - y[b];
+						double distance = Math.max(minDistance, Math.sqrt(dx
+								* dx + dy * dy));
+						double f = gravitation / (distance * distance);
+						fx += f * dx / distance;
+						fy += f * dy / distance;
+					}
+					continue;
+				}
+				double dx = px - massX[cell];
+				double dy = py - massY[cell];
+				double distance = Math.sqrt(dx * dx + dy * dy);
+				double size = cellSize[cell];
+				if (size < theta * distance
+						&& !(px >= cellX[cell] && px <= cellX[cell] + size
+								&& py >= cellY[cell] && py <= cellY[cell]
+								+ size)) {
+					distance = Math.max(minDistance, distance);
+					double f = gravitation * mass[cell]
+							/ (distance * distance);
+					fx += f * dx / distance;
+					fy += f * dy / distance;
+				} else {
+					int child = firstChild[cell];
+					stack[top++] = child;
+					stack[top++] = child + 1;
+					stack[top++] = child + 2;
+					stack[top++] = child + 3;
+				}
+			}
+			forcesX[i] += fx;
+			forcesY[i] += fy;
+		}
+	}
+
+	private void insert(int body, double[] x, double[] y) {
+		double px = x[body];
+		double py = y[body];
+		int cell = 0;
+		int depth = 0;
+		while (true) {
+			mass[cell]++;
+			massX[cell] += px;
+			massY[cell] += py;
+			if (firstChild[cell] == -1) {
+				if (firstBody[cell] == -1 || depth == MAX_DEPTH) {
+					nextBody[body] = firstBody[cell];
+					firstBody[cell] = body;
+					return;
+				}
+				// Split the leaf and push its point down one level
+				int other = firstBody[cell];
+				firstBody[cell] = -1;
+				double half = cellSize[cell] / 2;
+				int child = cellCount;
+				newCell(cellX[cell], cellY[cell], half);
+				newCell(cellX[cell] + half, cellY[cell], half);
+				newCell(cellX[cell], cellY[cell] + half, half);
+				newCell(cellX[cell] + half, cellY[cell] + half, half);
+				firstChild[cell] = child;
+				int target = quadrant(cell, x[other], y[other]);
+				mass[target] = 1;
+				massX[target] = x[other];
+				massY[target] = y[other];
+				firstBody[target] = other;
+				nextBody[other] = -1;
+			}
+			cell = quadrant(cell, px, py);
+			depth++;
+		}
+	}
+
+	private void newCell(double x, double y, double size) {
+		if (cellCount == mass.length) {
+			int capacity = Math.max(64, cellCount * 2);
+			cellX = grow(cellX, capacity);
+			cellY = grow(cellY, capacity);
+			cellSize = grow(cellSize, capacity);
+			massX = grow(massX, capacity);
+			massY = grow(massY, capacity);
+			mass = grow(mass, capacity);
+			firstChild = grow(firstChild, capacity);
+			firstBody = grow(firstBody, capacity);
+		}
+		cellX[cellCount] = x;
+		cellY[cellCount] = y;
+		cellSize[cellCount] = size;
+		massX[cellCount] = 0;
+		massY[cellCount] = 0;
+		mass[cellCount] = 0;
+		firstChild[cellCount] = -1;
+		firstBody[cellCount] = -1;
+		cellCount++;
+	}
+
+	private int quadrant(int cell, double px, double py) {
+		double half = cellSize[cell] / 2;
+		int child = firstChild[cell];
+		if (px >= cellX[cell] + half)
+			child++;
+		if (py >= cellY[cell] + half)
+			child += 2;
+		return child;
+	}
+
+	private static double[] grow(double[] array, int capacity) {
+		double[] result = new double[capacity];
+		System.arraycopy(array, 0, result, 0, array.length);
+		return result;
+	}
+
+	private static int[] grow(int[] array, int capacity) {
+		int[] result = new int[capacity];
+		System.arraycopy(array, 0, result, 0, array.length);
+		return result;
+	}
+
+}
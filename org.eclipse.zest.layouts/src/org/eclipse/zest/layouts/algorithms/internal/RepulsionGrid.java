@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.zest.layouts.algorithms.internal;
+
+import java.util.Arrays;
+
+/**
+ * A uniform grid over a set of points which computes the repulsion between the
+ * pairs of points closer than a cutoff radius, ignoring all other pairs. The
+ * grid's cells are as large as the cutoff, so only a point's own cell and the
+ * eight cells around it need to be searched.
+ * <p>
+ * Rather than allocating a cell for every square of the grid, the points are
+ * sorted by the index of the cell containing them, and a cell's points are
+ * found by binary search. The arrays are reused when the grid is rebuilt.
+ */
+public class RepulsionGrid {
+
+	/**
+	 * The largest number of rows or columns. Larger cells are used if the
+	 * points are spread too far for the cutoff.
+	 */
+	private static final long MAX_CELLS = 1 << 18;
+
+	/**
+	 * The number of low bits of a sort key holding the point's index.
+	 */
+	private static final int INDEX_BITS = 26;
+
+	private long columns;
+	private double cellSize;
+	private double cutoff;
+	private int count;
+	private long[] keys = new long[0];
+	private int[] bodies = new int[0];
+	private double minX, minY;
+
+	/**
+	 * Builds the grid for the first <code>count</code> points.
+	 *
+	 * @param x
+	 *            the x coordinates of the points
+	 * @param y
+	 *            the y coordinates of the points
+	 * @param count
+	 *            the number of points
+	 * @param cutoff
+	 *            the distance beyond which points do not repel each other
+	 */
+	public void build(double[] x, double[] y, int count, double cutoff) {
+		if (keys.length < count) {
+			keys = new long[count];
+			bodies = new int[count];
+		}
+		this.count = count;
+		this.cutoff = cutoff;
+		minX = Double.MAX_VALUE;
+		minY = Double.MAX_VALUE;
+		double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+		for (int i = 0; i < count; i++) {
+			minX = Math.min(minX, x[i]);
+			minY = Math.min(minY, y[i]);
+			maxX = Math.max(maxX, x[i]);
+			maxY = Math.max(maxY, y[i]);
+		}
+		double span = Math.max(maxX - minX, maxY - minY);
+		cellSize = Math.max(cutoff, span / MAX_CELLS);
+		if (!(cellSize > 0))
+			cellSize = 1;
+		columns = (long) ((maxX - minX) / cellSize) + 1;
+
+		// Sort the points by cell, keeping the point's index in the low bits
+		for (int i = 0; i < count; i++)
+			keys[i] = key(row(y[i]), column(x[i])) << INDEX_BITS | i;
+		Arrays.sort(keys, 0, count);
+		for (int i = 0; i < count; i++) {
+			bodies[i] = (int) (keys[i] & ((1 << INDEX_BITS) - 1));
+			keys[i] >>= INDEX_BITS;
+		}
+	}
+
+	/**
+	 * Adds the repulsion acting on each of the points from <code>from</code>
+	 * up to <code>to</code> to the given forces. Two points at distance
+	 * <i>d</i> less than the cutoff repel each other with a force of
+	 * <code>gravitation / d<sup>2</sup></code>. The grid is not modified, so
+	 * several threads may compute the repulsion on different points at the
+	 * same time.
+	 *
+	 * @param x
+	 *            the x coordinates the grid was built with
+	 * @param y
+	 *            the y coordinates the grid was built with
+	 * @param from
+	 *            the first point
+	 * @param to
+	 *            the point after the last
+	 * @param forcesX
+	 *            the forces in the x direction
+	 * @param forcesY
+	 *            the forces in the y direction
+	 * @param gravitation
+	 *            the strength of the repulsion
+	 * @param minDistance
+	 *            the smallest distance considered between two points
+	 */
+	public void addRepulsion(double[] x, double[] y, int from, int to,
+			double[] forcesX, double[] forcesY, double gravitation,
+			double minDistance) {
+		for (int i = from; i < to; i++) {
+			double px = x[i];
+			double py = y[i];
+			long row = row(py);
+			long column = column(px);
+			double fx = 0, fy = 0;
+			for (long r = Math.max(0, row - 1); r <= row + 1; r++) {
+				long last = key(r, Math.min(columns - 1, column + 1));
+				for (int k = lowerBound(key(r, Math.max(0, column - 1))); k < count
+						&& keys[k] <= last; k++) {
+					int b = bodies[k];
+					if (b == i)
+						continue;
+					double dx = px - x[b];
+					double dy = py - y[b];
+					double distance = Math.sqrt(dx * dx + dy * dy);
+					if (distance >= cutoff)
+						continue;
+					distance = Math.max(minDistance, distance);
+					double f = gravitation / (distance * distance);
+					fx += f * dx / distance;
+					fy += f * dy / distance;
+				}
+			}
+			forcesX[i] += fx;
+			forcesY[i] += fy;
+		}
+	}
+
+	private long column(double px) {
+		return (long) ((px - minX) / cellSize);
+	}
+
+	private long key(long row, long column) {
+		return row * columns + column;
+	}
+
+	private int lowerBound(long key) {
+		int low = 0, high = count;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (keys[middle] < key)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	private long row(double py) {
+		return (long) ((py - minY) / cellSize);
+	}
+
+}
@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.zest.layouts.algorithms.internal;
+
+/**
+ * A fixed set of threads which run the parts of a task together. The calling
+ * thread runs the first part itself and waits until the others have finished,
+ * so a pool of <i>n</i> threads starts <i>n - 1</i> worker threads. The parts
+ * are always numbered the same way, so a task which divides its work by part
+ * number divides it identically on every run.
+ */
+public class WorkerPool {
+
+	/**
+	 * A task divided into parts.
+	 */
+	public interface Task {
+
+		/**
+		 * Runs one part of the task. Each part is run exactly once, and all
+		 * parts may run at the same time.
+		 *
+		 * @param part
+		 *            the part to run, from <code>0</code> to
+		 *            <code>parts - 1</code>
+		 * @param parts
+		 *            the number of parts
+		 */
+		void run(int part, int parts);
+
+	}
+
+	private final int parts;
+	private Thread[] workers;
+	private Task task;
+	private int generation;
+	private int pending;
+	private Throwable failure;
+	private boolean disposed;
+
+	/**
+	 * Creates a pool running each task in the given number of parts.
+	 *
+	 * @param threads
+	 *            the number of threads, including the calling thread
+	 */
+	public WorkerPool(int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("Invalid thread count: " + threads);
+		parts = threads;
+		workers = new Thread[threads - 1];
+		for (int i = 0; i < workers.length; i++) {
+			final int part = i + 1;
+			workers[i] = new Thread("Zest Layout Worker " + part) {
+				public void run() {
+					work(part);
+				}
+			};
+			workers[i].setDaemon(true);
+			workers[i].start();
+		}
+	}
+
+	/**
+	 * Returns the number of parts each task is run in.
+	 *
+	 * @return the number of threads
+	 */
+	public int getThreadCount() {
+		return parts;
+	}
+
+	/**
+	 * Runs all the parts of the given task, and returns once they have
+	 * finished. If a part fails, the failure is thrown once all parts have
+	 * finished. After the pool is disposed all parts are run by the calling
+	 * thread.
+	 *
+	 * @param task
+	 *            the task to run
+	 */
+	public void run(Task task) {
+		synchronized (this) {
+			if (disposed) {
+				for (int part = 0; part < parts; part++)
+					task.run(part, parts);
+				return;
+			}
+			this.task = task;
+			failure = null;
+			pending = workers.length;
+			generation++;
+			notifyAll();
+		}
+		Throwable thrown = null;
+		try {
+			task.run(0, parts);
+		} catch (Throwable t) {
+			thrown = t;
+		}
+		synchronized (this) {
+			while (pending > 0) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					// keep waiting, the workers are still using the task
+				}
+			}
+			this.task = null;
+			if (thrown == null)
+				thrown = failure;
+		}
+		if (thrown instanceof RuntimeException)
+			throw (RuntimeException) thrown;
+		if (thrown instanceof Error)
+			throw (Error) thrown;
+		if (thrown != null)
+			throw new RuntimeException(thrown.toString());
+	}
+
+	/**
+	 * Stops the worker threads once they are idle.
+	 */
+	public synchronized void dispose() {
+		disposed = true;
+		notifyAll();
+	}
+
+	private void work(int part) {
+		int done = 0;
+		while (true) {
+			Task current;
+			synchronized (this) {
+				while (generation == done && !disposed) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						// keep waiting for work
+					}
+				}
+				if (generation == done)
+					return;
+				done = generation;
+				current = task;
+			}
+			Throwable thrown = null;
+			try {
+				current.run(part, parts);
+			} catch (Throwable t) {
+				thrown = t;
+			}
+			synchronized (this) {
+				if (thrown != null && failure == null)
+					failure = thrown;
+				pending--;
+				if (pending == 0)
+					notifyAll();
+			}
+		}
+	}
+
+}
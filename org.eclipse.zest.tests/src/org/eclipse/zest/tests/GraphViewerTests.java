@@ -9,15 +9,22 @@
 package org.eclipse.zest.tests;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import junit.framework.Assert;
 import junit.framework.TestCase;
 
+import org.eclipse.draw2d.IFigure;
+import org.eclipse.draw2d.Label;
 import org.eclipse.jface.util.DelegatingDragAdapter;
 import org.eclipse.jface.viewers.ISelectionChangedListener;
+import org.eclipse.jface.viewers.LabelProvider;
 import org.eclipse.jface.viewers.SelectionChangedEvent;
 import org.eclipse.jface.viewers.StructuredSelection;
+import org.eclipse.jface.viewers.Viewer;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.dnd.DND;
 import org.eclipse.swt.dnd.DropTarget;
@@ -26,6 +33,8 @@ import org.eclipse.swt.dnd.Transfer;
 import org.eclipse.swt.widgets.Event;
 import org.eclipse.swt.widgets.Shell;
 import org.eclipse.zest.core.viewers.GraphViewer;
+import org.eclipse.zest.core.viewers.IFigureProvider;
+import org.eclipse.zest.core.viewers.IGraphEntityContentProvider;
 import org.eclipse.zest.core.widgets.Graph;
 import org.eclipse.zest.core.widgets.GraphConnection;
 import org.eclipse.zest.core.widgets.GraphItem;
@@ -111,4 +120,114 @@ public class GraphViewerTests extends TestCase {
 		assertFalse("Post selection listeners should be notified",
 				selected.isEmpty());
 	}
+
+	/**
+	 * Assert that refreshing the viewer only replaces the items of elements
+	 * which were added or removed, and updates the labels which changed.
+	 */
+	public void testRefresh() {
+		final List elements = new ArrayList(Arrays.asList(new String[] { "a",
+				"b", "c" }));
+		final Map labels = new HashMap();
+		viewer.setContentProvider(new IGraphEntityContentProvider() {
+			public Object[] getElements(Object input) {
+				return elements.toArray();
+			}
+
+			public Object[] getConnectedTo(Object entity) {
+				return entity.equals("a") ? new Object[] { "b" }
+						: new Object[0];
+			}
+
+			public void dispose() {
+			}
+
+			public void inputChanged(Viewer viewer, Object oldInput,
+					Object newInput) {
+			}
+		});
+		viewer.setLabelProvider(new LabelProvider() {
+			public String getText(Object element) {
+				return labels.containsKey(element) ? (String) labels
+						.get(element) : super.getText(element);
+			}
+		});
+		viewer.setInput(elements);
+		GraphNode a = (GraphNode) viewer.findGraphItem("a");
+		GraphNode b = (GraphNode) viewer.findGraphItem("b");
+		GraphNode c = (GraphNode) viewer.findGraphItem("c");
+		GraphConnection connection = (GraphConnection) a
+				.getSourceConnections().get(0);
+		assertEquals("b", b.getText());
+
+		elements.remove("c");
+		elements.add("d");
+		labels.put("b", "B");
+		viewer.refresh();
+		assertSame(a, viewer.findGraphItem("a"));
+		assertSame(b, viewer.findGraphItem("b"));
+		assertSame(connection, a.getSourceConnections().get(0));
+		assertEquals("B", b.getText());
+		assertTrue(c.isDisposed());
+		assertNull(viewer.findGraphItem("c"));
+		assertNotNull(viewer.findGraphItem("d"));
+		assertEquals(3, viewer.getGraphControl().getNodes().size());
+		assertEquals(1, viewer.getGraphControl().getConnections().size());
+	}
+
+	private static class FigureLabelProvider extends LabelProvider implements
+			IFigureProvider {
+		Map figures = new HashMap();
+
+		public IFigure getFigure(Object element) {
+			return (IFigure) figures.get(element);
+		}
+	}
+
+	/**
+	 * Assert that refreshing the viewer shows the new figures of an
+	 * IFigureProvider, and keeps the nodes whose figures did not change.
+	 */
+	public void testRefreshWithFigureProvider() {
+		final List elements = new ArrayList(Arrays.asList(new String[] { "a",
+				"b" }));
+		viewer.setContentProvider(new IGraphEntityContentProvider() {
+			public Object[] getElements(Object input) {
+				return elements.toArray();
+			}
+
+			public Object[] getConnectedTo(Object entity) {
+				return entity.equals("a") ? new Object[] { "b" }
+						: new Object[0];
+			}
+
+			public void dispose() {
+			}
+
+			public void inputChanged(Viewer viewer, Object oldInput,
+					Object newInput) {
+			}
+		});
+		FigureLabelProvider labelProvider = new FigureLabelProvider();
+		labelProvider.figures.put("a", new Label("a"));
+		labelProvider.figures.put("b", new Label("b"));
+		viewer.setLabelProvider(labelProvider);
+		viewer.setInput(elements);
+		GraphNode a = (GraphNode) viewer.findGraphItem("a");
+		GraphNode b = (GraphNode) viewer.findGraphItem("b");
+		a.setLocation(40, 30);
+
+		IFigure figure = new Label("A");
+		labelProvider.figures.put("a", figure);
+		viewer.refresh();
+		GraphNode newA = (GraphNode) viewer.findGraphItem("a");
+		assertNotSame(a, newA);
+		assertSame(figure, newA.getNodeFigure());
+		assertEquals(40, newA.getLocation().x);
+		assertEquals(30, newA.getLocation().y);
+		assertSame(b, viewer.findGraphItem("b"));
+		assertEquals(1, newA.getSourceConnections().size());
+		assertEquals(2, viewer.getGraphControl().getNodes().size());
+		assertEquals(1, viewer.getGraphControl().getConnections().size());
+	}
 }
@@ -0,0 +1,157 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.zest.tests;
+
+import junit.framework.TestCase;
+
+import org.eclipse.zest.layouts.LayoutEntity;
+import org.eclipse.zest.layouts.LayoutRelationship;
+import org.eclipse.zest.layouts.LayoutStyles;
+import org.eclipse.zest.layouts.algorithms.AbstractLayoutAlgorithm;
+import org.eclipse.zest.layouts.algorithms.GridLayoutAlgorithm;
+import org.eclipse.zest.layouts.algorithms.HorizontalTreeLayoutAlgorithm;
+import org.eclipse.zest.layouts.algorithms.SpringLayoutAlgorithm;
+import org.eclipse.zest.layouts.algorithms.TreeLayoutAlgorithm;
+import org.eclipse.zest.layouts.exampleStructures.SimpleNode;
+import org.eclipse.zest.layouts.exampleStructures.SimpleRelationship;
+
+/**
+ * Tests for incremental layouts, which only move the changed entities.
+ */
+public class IncrementalLayoutTests extends TestCase {
+
+	private static final int SIZE = 100;
+
+	private static final int ADDED = 5;
+
+	private SimpleNode[] nodes;
+
+	private LayoutRelationship[] relationships;
+
+	private SimpleNode[] added;
+
+	protected void setUp() throws Exception {
+		nodes = new SimpleNode[SIZE + ADDED];
+		for (int i = 0; i < nodes.length; i++) {
+			nodes[i] = new SimpleNode("node " + i, 0, 0, 10, 10);
+		}
+		relationships = new LayoutRelationship[nodes.length - 1];
+		for (int i = 1; i < nodes.length; i++) {
+			relationships[i - 1] = new SimpleRelationship(nodes[(i - 1) / 2],
+					nodes[i], false);
+		}
+		added = new SimpleNode[ADDED];
+		System.arraycopy(nodes, SIZE, added, 0, ADDED);
+	}
+
+	/**
+	 * Lays out the first SIZE nodes, then adds the others incrementally, and
+	 * checks that the first nodes did not move.
+	 */
+	private void layout(AbstractLayoutAlgorithm algorithm) throws Exception {
+		SimpleNode[] initial = new SimpleNode[SIZE];
+		System.arraycopy(nodes, 0, initial, 0, SIZE);
+		LayoutRelationship[] initialRelationships = new LayoutRelationship[SIZE - 1];
+		System.arraycopy(relationships, 0, initialRelationships, 0, SIZE - 1);
+		algorithm.applyLayout(initial, initialRelationships, 0, 0, 1000, 1000,
+				false, false);
+		double[] x = new double[SIZE];
+		double[] y = new double[SIZE];
+		for (int i = 0; i < SIZE; i++) {
+			x[i] = nodes[i].getX();
+			y[i] = nodes[i].getY();
+		}
+
+		algorithm.applyLayoutIncrementally(nodes, relationships, added, 0, 0,
+				1000, 1000);
+		assertFalse(algorithm.isRunning());
+		for (int i = 0; i < SIZE; i++) {
+			assertEquals(x[i], nodes[i].getX(), 0);
+			assertEquals(y[i], nodes[i].getY(), 0);
+		}
+		for (int i = SIZE; i < nodes.length; i++) {
+			assertTrue(nodes[i].getX() >= 0 && nodes[i].getX() <= 1000);
+			assertTrue(nodes[i].getY() >= 0 && nodes[i].getY() <= 1000);
+		}
+	}
+
+	public void testSpring() throws Exception {
+		SpringLayoutAlgorithm algorithm = new SpringLayoutAlgorithm(
+				LayoutStyles.NO_LAYOUT_NODE_RESIZING);
+		algorithm.setRandom(false);
+		algorithm.setIterations(20);
+		layout(algorithm);
+
+		// without random placement, the added nodes are placed the same way
+		double[] x = new double[ADDED];
+		double[] y = new double[ADDED];
+		for (int i = 0; i < ADDED; i++) {
+			x[i] = added[i].getX();
+			y[i] = added[i].getY();
+			added[i].setLocation(0, 0);
+		}
+		algorithm.applyLayoutIncrementally(nodes, relationships, added, 0, 0,
+				1000, 1000);
+		for (int i = 0; i < ADDED; i++) {
+			assertEquals(x[i], added[i].getX(), 0);
+			assertEquals(y[i], added[i].getY(), 0);
+		}
+	}
+
+	public void testGrid() throws Exception {
+		layout(new GridLayoutAlgorithm(LayoutStyles.NO_LAYOUT_NODE_RESIZING));
+		// the added nodes are placed in cells of their own
+		for (int i = SIZE; i < nodes.length; i++) {
+			for (int j = 0; j < i; j++) {
+				assertFalse(nodes[i].getX() == nodes[j].getX()
+						&& nodes[i].getY() == nodes[j].getY());
+			}
+		}
+	}
+
+	public void testTree() throws Exception {
+		layout(new TreeLayoutAlgorithm(LayoutStyles.NO_LAYOUT_NODE_RESIZING));
+		// the added nodes are placed below their parents
+		for (int i = SIZE; i < nodes.length; i++) {
+			assertTrue(nodes[i].getY() > nodes[(i - 1) / 2].getY());
+		}
+	}
+
+	public void testHorizontalTree() throws Exception {
+		layout(new HorizontalTreeLayoutAlgorithm(
+				LayoutStyles.NO_LAYOUT_NODE_RESIZING));
+		// the added nodes are placed to the right of their parents
+		for (int i = SIZE; i < nodes.length; i++) {
+			assertTrue(nodes[i].getX() > nodes[(i - 1) / 2].getX());
+		}
+	}
+
+	public void testAllChanged() throws Exception {
+		GridLayoutAlgorithm algorithm = new GridLayoutAlgorithm(
+				LayoutStyles.NO_LAYOUT_NODE_RESIZING);
+		algorithm.applyLayout(nodes, relationships, 0, 0, 1000, 1000, false,
+				false);
+		double[] x = new double[nodes.length];
+		double[] y = new double[nodes.length];
+		for (int i = 0; i < nodes.length; i++) {
+			x[i] = nodes[i].getX();
+			y[i] = nodes[i].getY();
+			nodes[i].setLocation(0, 0);
+		}
+		LayoutEntity[] changed = nodes;
+		algorithm.applyLayoutIncrementally(nodes, relationships, changed, 0,
+				0, 1000, 1000);
+		for (int i = 0; i < nodes.length; i++) {
+			assertEquals(x[i], nodes[i].getX(), 0);
+			assertEquals(y[i], nodes[i].getY(), 0);
+		}
+	}
+
+}
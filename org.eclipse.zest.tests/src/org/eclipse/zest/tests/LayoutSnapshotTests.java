@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.zest.tests;
+
+import junit.framework.TestCase;
+
+import org.eclipse.zest.core.widgets.internal.LayoutSnapshot;
+import org.eclipse.zest.layouts.InvalidLayoutConfiguration;
+import org.eclipse.zest.layouts.LayoutAlgorithm;
+import org.eclipse.zest.layouts.LayoutRelationship;
+import org.eclipse.zest.layouts.LayoutStyles;
+import org.eclipse.zest.layouts.algorithms.AbstractLayoutAlgorithm;
+import org.eclipse.zest.layouts.algorithms.CompositeLayoutAlgorithm;
+import org.eclipse.zest.layouts.algorithms.HorizontalShift;
+import org.eclipse.zest.layouts.algorithms.SpringLayoutAlgorithm;
+import org.eclipse.zest.layouts.algorithms.TreeLayoutAlgorithm;
+import org.eclipse.zest.layouts.dataStructures.InternalNode;
+import org.eclipse.zest.layouts.dataStructures.InternalRelationship;
+import org.eclipse.zest.layouts.exampleStructures.SimpleNode;
+import org.eclipse.zest.layouts.exampleStructures.SimpleRelationship;
+import org.eclipse.zest.layouts.progress.ProgressEvent;
+import org.eclipse.zest.layouts.progress.ProgressListener;
+
+/**
+ * Tests for the {@link LayoutSnapshot} class, and for asynchronous layouts of
+ * snapshots.
+ */
+public class LayoutSnapshotTests extends TestCase {
+
+	private static final int SIZE = 100;
+
+	private static final long TIMEOUT = 10000;
+
+	private SimpleNode[] nodes;
+
+	private LayoutRelationship[] relationships;
+
+	private static class EndListener implements ProgressListener {
+
+		int ended;
+
+		public void progressStarted(ProgressEvent e) {
+		}
+
+		public void progressUpdated(ProgressEvent e) {
+		}
+
+		public synchronized void progressEnded(ProgressEvent e) {
+			ended++;
+			notifyAll();
+		}
+
+		synchronized void waitForEnd() throws InterruptedException {
+			long end = System.currentTimeMillis() + TIMEOUT;
+			while (ended == 0 && System.currentTimeMillis() < end) {
+				wait(end - System.currentTimeMillis());
+			}
+			assertTrue(ended > 0);
+		}
+	}
+
+	protected void setUp() throws Exception {
+		nodes = new SimpleNode[SIZE];
+		for (int i = 0; i < SIZE; i++) {
+			nodes[i] = new SimpleNode("node " + i, i, i, 10, 10);
+		}
+		relationships = new LayoutRelationship[SIZE - 1];
+		for (int i = 1; i < SIZE; i++) {
+			relationships[i - 1] = new SimpleRelationship(nodes[(i - 1) / 2],
+					nodes[i], false);
+		}
+	}
+
+	public void testAsynchronousLayout() throws Exception {
+		LayoutSnapshot snapshot = new LayoutSnapshot(nodes, relationships);
+		assertEquals(SIZE, snapshot.getEntities().length);
+		assertEquals(SIZE - 1, snapshot.getRelationships().length);
+
+		AbstractLayoutAlgorithm algorithm = new TreeLayoutAlgorithm(
+				LayoutStyles.NO_LAYOUT_NODE_RESIZING);
+		EndListener listener = new EndListener();
+		algorithm.addProgressListener(listener);
+		algorithm.applyLayout(snapshot.getEntities(), snapshot
+				.getRelationships(), 0, 0, 1000, 1000, true, false);
+		listener.waitForEnd();
+		for (int i = 0; i < SIZE; i++) {
+			assertEquals(i, nodes[i].getX(), 0);
+			assertEquals(i, nodes[i].getY(), 0);
+		}
+
+		snapshot.apply();
+		double[] x = new double[SIZE];
+		double[] y = new double[SIZE];
+		for (int i = 0; i < SIZE; i++) {
+			x[i] = nodes[i].getX();
+			y[i] = nodes[i].getY();
+			assertEquals(10, nodes[i].getWidth(), 0);
+		}
+		new TreeLayoutAlgorithm(LayoutStyles.NO_LAYOUT_NODE_RESIZING)
+				.applyLayout(nodes, relationships, 0, 0, 1000, 1000, false,
+						false);
+		for (int i = 0; i < SIZE; i++) {
+			assertEquals(nodes[i].getX(), x[i], 0);
+			assertEquals(nodes[i].getY(), y[i], 0);
+		}
+	}
+
+	public void testStop() throws Exception {
+		LayoutSnapshot snapshot = new LayoutSnapshot(nodes, relationships);
+		SpringLayoutAlgorithm algorithm = new SpringLayoutAlgorithm(
+				LayoutStyles.NO_LAYOUT_NODE_RESIZING);
+		algorithm.setIterations(Integer.MAX_VALUE);
+		algorithm.setSpringTimeout(Long.MAX_VALUE);
+		EndListener listener = new EndListener();
+		algorithm.addProgressListener(listener);
+		algorithm.applyLayout(snapshot.getEntities(), snapshot
+				.getRelationships(), 0, 0, 1000, 1000, true, false);
+		algorithm.stop();
+		listener.waitForEnd();
+		assertFalse(algorithm.isRunning());
+	}
+
+	public void testFailedLayout() throws Exception {
+		LayoutSnapshot snapshot = new LayoutSnapshot(nodes, relationships);
+		AbstractLayoutAlgorithm algorithm = new TreeLayoutAlgorithm(
+				LayoutStyles.NO_LAYOUT_NODE_RESIZING) {
+			protected void applyLayoutInternal(InternalNode[] entitiesToLayout,
+					InternalRelationship[] relationshipsToConsider,
+					double boundsX, double boundsY, double boundsWidth,
+					double boundsHeight) {
+				throw new IllegalStateException();
+			}
+		};
+		EndListener listener = new EndListener();
+		algorithm.addProgressListener(listener);
+		algorithm.applyLayout(snapshot.getEntities(), snapshot
+				.getRelationships(), 0, 0, 1000, 1000, true, false);
+		listener.waitForEnd();
+		assertTrue(algorithm.hasLayoutFailed());
+		assertFalse(algorithm.isRunning());
+
+		AbstractLayoutAlgorithm tree = new TreeLayoutAlgorithm(
+				LayoutStyles.NO_LAYOUT_NODE_RESIZING);
+		listener = new EndListener();
+		tree.addProgressListener(listener);
+		tree.applyLayout(snapshot.getEntities(), snapshot.getRelationships(),
+				0, 0, 1000, 1000, true, false);
+		listener.waitForEnd();
+		assertFalse(tree.hasLayoutFailed());
+	}
+
+	public void testCompositeLayoutRunsSynchronously() throws Exception {
+		CompositeLayoutAlgorithm algorithm = new CompositeLayoutAlgorithm(
+				LayoutStyles.NO_LAYOUT_NODE_RESIZING, new LayoutAlgorithm[] {
+						new TreeLayoutAlgorithm(
+								LayoutStyles.NO_LAYOUT_NODE_RESIZING),
+						new HorizontalShift(
+								LayoutStyles.NO_LAYOUT_NODE_RESIZING) });
+		LayoutSnapshot snapshot = new LayoutSnapshot(nodes, relationships);
+		try {
+			algorithm.applyLayout(snapshot.getEntities(), snapshot
+					.getRelationships(), 0, 0, 1000, 1000, true, false);
+			fail();
+		} catch (InvalidLayoutConfiguration e) {
+		}
+		algorithm.applyLayout(snapshot.getEntities(), snapshot
+				.getRelationships(), 0, 0, 1000, 1000, false, false);
+		assertFalse(algorithm.isRunning());
+	}
+
+}
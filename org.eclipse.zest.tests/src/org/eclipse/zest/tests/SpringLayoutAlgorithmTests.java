@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.zest.tests;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.eclipse.zest.layouts.LayoutRelationship;
+import org.eclipse.zest.layouts.LayoutStyles;
+import org.eclipse.zest.layouts.algorithms.SpringLayoutAlgorithm;
+import org.eclipse.zest.layouts.exampleStructures.SimpleNode;
+import org.eclipse.zest.layouts.exampleStructures.SimpleRelationship;
+import org.eclipse.zest.layouts.progress.ProgressEvent;
+import org.eclipse.zest.layouts.progress.ProgressListener;
+
+/**
+ * Tests for the {@link SpringLayoutAlgorithm} class.
+ */
+public class SpringLayoutAlgorithmTests extends TestCase {
+
+	private static final int SIZE = 500;
+
+	private SimpleNode[] nodes;
+
+	private LayoutRelationship[] relationships;
+
+	protected void setUp() throws Exception {
+		Random random = new Random(SIZE);
+		nodes = new SimpleNode[SIZE];
+		for (int i = 0; i < SIZE; i++) {
+			nodes[i] = new SimpleNode("node " + i, random.nextDouble() * 1000,
+					random.nextDouble() * 1000, 10, 10);
+		}
+		relationships = new LayoutRelationship[SIZE - 1];
+		for (int i = 1; i < SIZE; i++) {
+			relationships[i - 1] = new SimpleRelationship(
+					nodes[random.nextInt(i)], nodes[i], false);
+		}
+	}
+
+	private void layout(int repulsion) throws Exception {
+		SpringLayoutAlgorithm algorithm = new SpringLayoutAlgorithm(
+				LayoutStyles.NO_LAYOUT_NODE_RESIZING);
+		algorithm.setRepulsion(repulsion);
+		algorithm.setRandom(false);
+		algorithm.setIterations(20);
+		final int[] total = new int[1];
+		algorithm.addProgressListener(new ProgressListener() {
+			public void progressStarted(ProgressEvent e) {
+				total[0] = e.getTotalNumberOfSteps();
+			}
+
+			public void progressUpdated(ProgressEvent e) {
+			}
+
+			public void progressEnded(ProgressEvent e) {
+			}
+		});
+		algorithm.applyLayout(nodes, relationships, 0, 0, 1000, 1000, false,
+				false);
+		assertEquals(20, total[0]);
+		for (int i = 0; i < SIZE; i++) {
+			assertTrue(nodes[i].getX() >= 0 && nodes[i].getX() <= 1000);
+			assertTrue(nodes[i].getY() >= 0 && nodes[i].getY() <= 1000);
+		}
+	}
+
+	public void testExactRepulsion() throws Exception {
+		layout(SpringLayoutAlgorithm.REPULSION_EXACT);
+	}
+
+	public void testBarnesHutRepulsion() throws Exception {
+		layout(SpringLayoutAlgorithm.REPULSION_BARNES_HUT);
+	}
+
+	public void testGridRepulsion() throws Exception {
+		layout(SpringLayoutAlgorithm.REPULSION_GRID);
+	}
+
+	public void testThreads() throws Exception {
+		double[] expected = new double[2 * SIZE];
+		double[] initial = new double[2 * SIZE];
+		for (int i = 0; i < SIZE; i++) {
+			initial[2 * i] = nodes[i].getX();
+			initial[2 * i + 1] = nodes[i].getY();
+		}
+		for (int threads = 1; threads <= 3; threads++) {
+			for (int i = 0; i < SIZE; i++)
+				nodes[i].setLocation(initial[2 * i], initial[2 * i + 1]);
+			SpringLayoutAlgorithm algorithm = new SpringLayoutAlgorithm(
+					LayoutStyles.NO_LAYOUT_NODE_RESIZING);
+			algorithm.setRepulsion(SpringLayoutAlgorithm.REPULSION_BARNES_HUT);
+			algorithm.setRandom(false);
+			algorithm.setIterations(20);
+			algorithm.setThreadCount(threads);
+			assertEquals(threads, algorithm.getThreadCount());
+			algorithm.applyLayout(nodes, relationships, 0, 0, 1000, 1000,
+					false, false);
+			for (int i = 0; i < SIZE; i++) {
+				if (threads == 1) {
+					expected[2 * i] = nodes[i].getX();
+					expected[2 * i + 1] = nodes[i].getY();
+				} else {
+					assertEquals(expected[2 * i], nodes[i].getX(), 0);
+					assertEquals(expected[2 * i + 1], nodes[i].getY(), 0);
+				}
+			}
+		}
+	}
+
+	public void testDuplicateNames() throws Exception {
+		Random random = new Random(SIZE);
+		SimpleNode[] named = new SimpleNode[SIZE];
+		for (int i = 0; i < SIZE; i++) {
+			named[i] = new SimpleNode("node", random.nextDouble() * 1000,
+					random.nextDouble() * 1000, 10, 10);
+		}
+		LayoutRelationship[] namedRelationships = new LayoutRelationship[SIZE - 1];
+		for (int i = 1; i < SIZE; i++) {
+			namedRelationships[i - 1] = new SimpleRelationship(
+					named[random.nextInt(i)], named[i], false);
+		}
+		layout(SpringLayoutAlgorithm.REPULSION_EXACT);
+		SpringLayoutAlgorithm algorithm = new SpringLayoutAlgorithm(
+				LayoutStyles.NO_LAYOUT_NODE_RESIZING);
+		algorithm.setRandom(false);
+		algorithm.setIterations(20);
+		algorithm.applyLayout(named, namedRelationships, 0, 0, 1000, 1000,
+				false, false);
+		for (int i = 0; i < SIZE; i++) {
+			assertEquals(nodes[i].getX(), named[i].getX(), 0);
+			assertEquals(nodes[i].getY(), named[i].getY(), 0);
+		}
+	}
+
+	public void testInvalidSettings() {
+		SpringLayoutAlgorithm algorithm = new SpringLayoutAlgorithm();
+		try {
+			algorithm.setRepulsion(-1);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+		try {
+			algorithm.setThreadCount(0);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+		try {
+			algorithm.setBarnesHutTheta(-1);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+		try {
+			algorithm.setRepulsionCutoff(0);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+}
@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.zest.tests;
+
+import junit.framework.TestCase;
+
+import org.eclipse.zest.layouts.LayoutRelationship;
+import org.eclipse.zest.layouts.LayoutStyles;
+import org.eclipse.zest.layouts.algorithms.HorizontalTreeLayoutAlgorithm;
+import org.eclipse.zest.layouts.algorithms.RadialLayoutAlgorithm;
+import org.eclipse.zest.layouts.algorithms.TreeLayoutAlgorithm;
+import org.eclipse.zest.layouts.dataStructures.InternalNode;
+import org.eclipse.zest.layouts.exampleStructures.SimpleNode;
+import org.eclipse.zest.layouts.exampleStructures.SimpleRelationship;
+
+/**
+ * Tests for the {@link TreeLayoutAlgorithm} class and its subclasses.
+ */
+public class TreeLayoutAlgorithmTests extends TestCase {
+
+	private static SimpleNode[] createNodes(int count) {
+		SimpleNode[] nodes = new SimpleNode[count];
+		for (int i = 0; i < count; i++) {
+			nodes[i] = new SimpleNode("node " + i, 0, 0, 10, 10);
+		}
+		return nodes;
+	}
+
+	public void testTree() throws Exception {
+		// 0 has the children 1 and 2, and 1 has the children 3 and 4
+		SimpleNode[] nodes = createNodes(5);
+		LayoutRelationship[] relationships = new LayoutRelationship[] {
+				new SimpleRelationship(nodes[1], nodes[4], false),
+				new SimpleRelationship(nodes[0], nodes[2], false),
+				new SimpleRelationship(nodes[1], nodes[3], false),
+				new SimpleRelationship(nodes[0], nodes[1], false) };
+		TreeLayoutAlgorithm algorithm = new TreeLayoutAlgorithm(
+				LayoutStyles.NO_LAYOUT_NODE_RESIZING);
+		algorithm.applyLayout(nodes, relationships, 0, 0, 1000, 1000, false,
+				false);
+		assertEquals(1, algorithm.getRoots().size());
+		assertEquals(nodes[2].getY(), nodes[1].getY(), 0);
+		assertEquals(nodes[3].getY(), nodes[4].getY(), 0);
+		assertTrue(nodes[0].getY() < nodes[1].getY());
+		assertTrue(nodes[1].getY() < nodes[3].getY());
+		// the child with more descendents comes first
+		assertTrue(nodes[1].getX() < nodes[2].getX());
+		assertTrue(nodes[4].getX() < nodes[3].getX());
+		assertEquals((nodes[4].getX() + nodes[3].getX()) / 2, nodes[1].getX(),
+				0.001);
+	}
+
+	public void testDeepChain() throws Exception {
+		int count = 100000;
+		SimpleNode[] nodes = createNodes(count);
+		LayoutRelationship[] relationships = new LayoutRelationship[count - 1];
+		for (int i = 1; i < count; i++) {
+			relationships[i - 1] = new SimpleRelationship(nodes[i - 1],
+					nodes[i], false);
+		}
+		TreeLayoutAlgorithm algorithm = new TreeLayoutAlgorithm(
+				LayoutStyles.NO_LAYOUT_NODE_RESIZING);
+		algorithm.applyLayout(nodes, relationships, 0, 0, 1000, 100000,
+				false, false);
+		assertEquals(1, algorithm.getRoots().size());
+		assertSame(nodes[0], ((InternalNode) algorithm.getRoots().get(0))
+				.getLayoutEntity());
+		for (int i = 1; i < count; i++) {
+			assertEquals(nodes[0].getX(), nodes[i].getX(), 0);
+			assertTrue(nodes[i - 1].getY() < nodes[i].getY());
+		}
+	}
+
+	public void testCycle() throws Exception {
+		SimpleNode[] nodes = createNodes(4);
+		LayoutRelationship[] relationships = new LayoutRelationship[] {
+				new SimpleRelationship(nodes[0], nodes[1], false),
+				new SimpleRelationship(nodes[1], nodes[2], false),
+				new SimpleRelationship(nodes[2], nodes[0], false),
+				new SimpleRelationship(nodes[3], nodes[3], false) };
+		TreeLayoutAlgorithm algorithm = new TreeLayoutAlgorithm(
+				LayoutStyles.NO_LAYOUT_NODE_RESIZING);
+		algorithm.applyLayout(nodes, relationships, 0, 0, 1000, 1000, false,
+				false);
+		assertEquals(2, algorithm.getRoots().size());
+		assertTrue(nodes[0].getY() < nodes[1].getY());
+		assertTrue(nodes[1].getY() < nodes[2].getY());
+		assertEquals(nodes[0].getY(), nodes[3].getY(), 0);
+	}
+
+	public void testSharedChild() throws Exception {
+		// 3 is below both 1 and 2, and so one level below 2
+		SimpleNode[] nodes = createNodes(4);
+		LayoutRelationship[] relationships = new LayoutRelationship[] {
+				new SimpleRelationship(nodes[0], nodes[1], false),
+				new SimpleRelationship(nodes[1], nodes[2], false),
+				new SimpleRelationship(nodes[0], nodes[3], false),
+				new SimpleRelationship(nodes[2], nodes[3], false) };
+		TreeLayoutAlgorithm algorithm = new TreeLayoutAlgorithm(
+				LayoutStyles.NO_LAYOUT_NODE_RESIZING);
+		algorithm.applyLayout(nodes, relationships, 0, 0, 1000, 1000, false,
+				false);
+		assertTrue(nodes[2].getY() < nodes[3].getY());
+	}
+
+	public void testHorizontalAndRadial() throws Exception {
+		int count = 10000;
+		SimpleNode[] nodes = createNodes(count);
+		LayoutRelationship[] relationships = new LayoutRelationship[count - 1];
+		for (int i = 1; i < count; i++) {
+			relationships[i - 1] = new SimpleRelationship(nodes[(i - 1) / 3],
+					nodes[i], false);
+		}
+		new HorizontalTreeLayoutAlgorithm(LayoutStyles.NO_LAYOUT_NODE_RESIZING)
+				.applyLayout(nodes, relationships, 0, 0, 1000, 1000, false,
+						false);
+		assertTrue(nodes[0].getX() < nodes[1].getX());
+		assertTrue(nodes[1].getX() < nodes[count - 1].getX());
+		new RadialLayoutAlgorithm(LayoutStyles.NO_LAYOUT_NODE_RESIZING)
+				.applyLayout(nodes, relationships, 0, 0, 1000, 1000, false,
+						false);
+		for (int i = 0; i < count; i++) {
+			assertTrue(nodes[i].getX() >= 0 && nodes[i].getX() <= 1000);
+			assertTrue(nodes[i].getY() >= 0 && nodes[i].getY() <= 1000);
+		}
+	}
+
+}
@@ -28,5 +28,9 @@ public class ZestTestSuite extends TestSuite {
 		addTest(new TestSuite(GraphTests.class));
 		addTest(new TestSuite(GraphSelectionTests.class));
 		addTest(new TestSuite(GraphViewerTests.class));
+		addTest(new TestSuite(SpringLayoutAlgorithmTests.class));
+		addTest(new TestSuite(TreeLayoutAlgorithmTests.class));
+		addTest(new TestSuite(LayoutSnapshotTests.class));
+		addTest(new TestSuite(IncrementalLayoutTests.class));
 	}
 }
@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.zest.tests.perf;
+
+import java.util.Random;
+
+import org.eclipse.zest.layouts.LayoutRelationship;
+import org.eclipse.zest.layouts.LayoutStyles;
+import org.eclipse.zest.layouts.algorithms.SpringLayoutAlgorithm;
+import org.eclipse.zest.layouts.dataStructures.InternalNode;
+import org.eclipse.zest.layouts.exampleStructures.SimpleNode;
+import org.eclipse.zest.layouts.exampleStructures.SimpleRelationship;
+
+/**
+ * Measures the time SpringLayoutAlgorithm takes to compute the forces in one
+ * iteration, for graphs of 2k, 10k and 50k nodes, with each kind of repulsion
+ * and an increasing number of threads up to the number of processors. Each
+ * graph is a random tree plus a third as many random relationships. The first
+ * iteration is not counted, to leave time for the JIT.
+ * <p>
+ * The thread counts to compare may be given as arguments.
+ */
+public class SpringLayoutBenchmark {
+
+	private static final int[] SIZES = { 2000, 10000, 50000 };
+
+	private static final int ITERATIONS = 4;
+
+	private static class TimedSpringLayoutAlgorithm extends SpringLayoutAlgorithm {
+
+		long time;
+
+		int count;
+
+		TimedSpringLayoutAlgorithm() {
+			super(LayoutStyles.NO_LAYOUT_NODE_RESIZING);
+		}
+
+		protected void computeForces(InternalNode[] entitiesToLayout) {
+			long start = System.currentTimeMillis();
+			super.computeForces(entitiesToLayout);
+			if (count++ > 0)
+				time += System.currentTimeMillis() - start;
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		int[] threads;
+		if (args.length > 0) {
+			threads = new int[args.length];
+			for (int i = 0; i < args.length; i++)
+				threads[i] = Integer.parseInt(args[i]);
+		} else {
+			int processors = Runtime.getRuntime().availableProcessors();
+			int count = 1;
+			while (1 << count <= processors)
+				count++;
+			threads = new int[count];
+			for (int i = 0; i < count; i++)
+				threads[i] = 1 << i;
+			if (threads[count - 1] != processors)
+				threads[count - 1] = processors;
+		}
+		int[] repulsions = { SpringLayoutAlgorithm.REPULSION_EXACT, SpringLayoutAlgorithm.REPULSION_BARNES_HUT, SpringLayoutAlgorithm.REPULSION_GRID };
+		String[] names = { "exact", "barnes-hut", "grid" };
+		for (int s = 0; s < SIZES.length; s++) {
+			for (int r = 0; r < repulsions.length; r++) {
+				double single = 0;
+				for (int t = 0; t < threads.length; t++) {
+					double millis = run(SIZES[s], repulsions[r], threads[t]);
+					if (t == 0)
+						single = millis;
+					System.out.println(SIZES[s] + " nodes, " + names[r] + ", " + threads[t] + " threads: " + millis + " ms per iteration, speedup " + Math.round(single / millis * 100) / 100.0);
+				}
+			}
+		}
+	}
+
+	private static double run(int size, int repulsion, int threads) throws Exception {
+		Random random = new Random(size);
+		SimpleNode[] nodes = new SimpleNode[size];
+		for (int i = 0; i < size; i++)
+			nodes[i] = new SimpleNode(new Integer(i), random.nextDouble() * 1000, random.nextDouble() * 1000, 10, 10);
+		LayoutRelationship[] relationships = new LayoutRelationship[size - 1 + size / 3];
+		for (int i = 1; i < size; i++)
+			relationships[i - 1] = new SimpleRelationship(nodes[random.nextInt(i)], nodes[i], false);
+		for (int i = size - 1; i < relationships.length; i++)
+			relationships[i] = new SimpleRelationship(nodes[random.nextInt(size)], nodes[random.nextInt(size)], false);
+
+		TimedSpringLayoutAlgorithm algorithm = new TimedSpringLayoutAlgorithm();
+		algorithm.setRandom(false);
+		algorithm.setIterations(ITERATIONS);
+		algorithm.setSpringTimeout(0);
+		algorithm.setRepulsion(repulsion);
+		algorithm.setThreadCount(threads);
+		algorithm.applyLayout(nodes, relationships, 0, 0, 1000, 1000, false, false);
+		return (double) algorithm.time / (algorithm.count - 1);
+	}
+
+}
@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.zest.tests.perf;
+
+import java.util.Random;
+
+import org.eclipse.zest.layouts.LayoutRelationship;
+import org.eclipse.zest.layouts.LayoutStyles;
+import org.eclipse.zest.layouts.algorithms.SpringLayoutAlgorithm;
+import org.eclipse.zest.layouts.dataStructures.InternalNode;
+import org.eclipse.zest.layouts.dataStructures.InternalRelationship;
+import org.eclipse.zest.layouts.exampleStructures.SimpleNode;
+import org.eclipse.zest.layouts.exampleStructures.SimpleRelationship;
+
+/**
+ * Measures the time SpringLayoutAlgorithm takes to prepare a layout, before
+ * the first iteration, for graphs of 1k, 5k and 20k nodes. Each graph is a
+ * random tree plus as many random relationships again, some of them repeated.
+ * Each size is measured several times and the fastest time is reported.
+ */
+public class SpringLayoutSetupBenchmark {
+
+	private static final int[] SIZES = { 1000, 5000, 20000 };
+
+	private static final int RUNS = 5;
+
+	private static class TimedSpringLayoutAlgorithm extends SpringLayoutAlgorithm {
+
+		long time;
+
+		TimedSpringLayoutAlgorithm() {
+			super(LayoutStyles.NO_LAYOUT_NODE_RESIZING);
+		}
+
+		protected void preLayoutAlgorithm(InternalNode[] entitiesToLayout, InternalRelationship[] relationshipsToConsider, double x, double y, double width, double height) {
+			long start = System.currentTimeMillis();
+			super.preLayoutAlgorithm(entitiesToLayout, relationshipsToConsider, x, y, width, height);
+			time = System.currentTimeMillis() - start;
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		for (int s = 0; s < SIZES.length; s++) {
+			long best = Long.MAX_VALUE;
+			for (int run = 0; run < RUNS; run++)
+				best = Math.min(best, run(SIZES[s]));
+			System.out.println(SIZES[s] + " nodes: " + best + " ms to set up");
+		}
+	}
+
+	private static long run(int size) throws Exception {
+		Random random = new Random(size);
+		SimpleNode[] nodes = new SimpleNode[size];
+		for (int i = 0; i < size; i++)
+			nodes[i] = new SimpleNode("node " + i, random.nextDouble() * 1000, random.nextDouble() * 1000, 10, 10);
+		LayoutRelationship[] relationships = new LayoutRelationship[2 * (size - 1)];
+		for (int i = 1; i < size; i++)
+			relationships[i - 1] = new SimpleRelationship(nodes[random.nextInt(i)], nodes[i], false);
+		for (int i = size - 1; i < relationships.length; i++) {
+			if (random.nextBoolean())
+				relationships[i] = new SimpleRelationship(nodes[random.nextInt(size)], nodes[random.nextInt(size)], false);
+			else
+				relationships[i] = new SimpleRelationship(relationships[i - size + 1].getDestinationInLayout(), relationships[i - size + 1].getSourceInLayout(), false);
+		}
+
+		TimedSpringLayoutAlgorithm algorithm = new TimedSpringLayoutAlgorithm();
+		algorithm.setRandom(false);
+		algorithm.setIterations(1);
+		algorithm.setRepulsion(SpringLayoutAlgorithm.REPULSION_BARNES_HUT);
+		algorithm.applyLayout(nodes, relationships, 0, 0, 1000, 1000, false, false);
+		return algorithm.time;
+	}
+
+}